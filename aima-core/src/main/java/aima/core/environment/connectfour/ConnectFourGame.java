@@ -3,16 +3,20 @@ package aima.core.environment.connectfour;
 import java.util.ArrayList;
 import java.util.List;
 
-import aima.core.search.adversarial.Game;
+import aima.core.search.adversarial.MutableStateGame;
+import aima.core.search.adversarial.StateHashFunction;
 
 /**
  * Provides an implementation of the ConnectFour game which can be used for
- * experiments with the Minimax algorithm.
+ * experiments with the Minimax algorithm. States are hashed by Zobrist keys
+ * for transposition tables, and moves can be applied and undone in place.
  * 
  * @author Ruediger Lunde
  * 
  */
-public class ConnectFourGame implements Game<ConnectFourState, Integer, String> {
+public class ConnectFourGame implements
+		MutableStateGame<ConnectFourState, Integer, String>,
+		StateHashFunction<ConnectFourState> {
 
 	String[] players = new String[] { "red", "yellow" };
 	ConnectFourState initialState = new ConnectFourState(6, 7);
@@ -63,6 +67,21 @@ public class ConnectFourGame implements Game<ConnectFourState, Integer, String>
 		return result;
 	}
 
+	@Override
+	public void makeMove(ConnectFourState state, Integer action) {
+		state.pushDisk(action);
+	}
+
+	@Override
+	public void unmakeMove(ConnectFourState state, Integer action) {
+		state.popDisk();
+	}
+
+	@Override
+	public void applyMove(ConnectFourState state, Integer action) {
+		state.dropDisk(action);
+	}
+
 	@Override
 	public boolean isTerminal(ConnectFourState state) {
 		return state.getUtility() != -1;
@@ -79,4 +98,9 @@ public class ConnectFourGame implements Game<ConnectFourState, Integer, String>
 		}
 		return result;
 	}
+
+	@Override
+	public long hash(ConnectFourState state) {
+		return state.getZobristKey();
+	}
 }
@@ -1,5 +1,7 @@
 package aima.core.environment.connectfour;
 
+import java.util.Arrays;
+
 /**
  * A state of the Connect Four game is characterized by a board containing a
  * grid of spaces for disks, the next player to move, and some utility
@@ -26,6 +28,16 @@ public class ConnectFourState implements Cloneable {
 	private double utility;
 	public int winPositions1;
 	public int winPositions2;
+	/** Zobrist hash code of the disks on the board. */
+	private long zobristKey;
+	/**
+	 * Changes of the moves made by {@link #pushDisk(int)}. For each move: the
+	 * old win position counts, the old values of the changed board entries
+	 * (position << 8 | value), and the number of changed entries.
+	 */
+	private int[] undoLog;
+	private int undoLogSize;
+	private boolean isLogging;
 
 	public ConnectFourState(int rows, int cols) {
 		utility = -1;
@@ -57,10 +69,24 @@ public class ConnectFourState implements Cloneable {
 		return moveCount;
 	}
 
+	/**
+	 * Returns a 64 bit hash code for the disks on the board, which is updated
+	 * incrementally with each move. The player to move is implied by the
+	 * number of disks.
+	 */
+	public long getZobristKey() {
+		return zobristKey;
+	}
+
 	public void dropDisk(int col) {
 		int playerNum = getPlayerToMove();
 		int row = getFreeRow(col);
 		if (row != -1) {
+			int logStart = undoLogSize;
+			if (isLogging) {
+				log(winPositions1);
+				log(winPositions2);
+			}
 			moveCount++;
 			if (moveCount == board.length)
 				utility = 0.5;
@@ -74,10 +100,43 @@ public class ConnectFourState implements Cloneable {
 				if (playerNum == 2)
 					utility = 0.0;
 			}
-			board[row * cols + col] = (byte) playerNum;
+			setBoardValue(row * cols + col, (byte) playerNum);
+			zobristKey ^= getZobristKey(row * cols + col, playerNum);
 			if (utility == -1)
 				analyzeWinPositions(row, col);
+			if (isLogging)
+				log(undoLogSize - logStart - 2);
+		}
+	}
+
+	/**
+	 * Drops a disk like {@link #dropDisk(int)} and records the changes, so
+	 * that the move can be reverted by {@link #popDisk()}. Copies of the
+	 * state do not inherit the recorded changes.
+	 */
+	public void pushDisk(int col) {
+		if (getFreeRow(col) == -1)
+			throw new IllegalArgumentException("Column is full.");
+		isLogging = true;
+		dropDisk(col);
+		isLogging = false;
+	}
+
+	/** Reverts the last move which was made by {@link #pushDisk(int)}. */
+	public void popDisk() {
+		int changes = undoLog[--undoLogSize];
+		int pos = -1;
+		for (int i = 0; i < changes; i++) {
+			int change = undoLog[--undoLogSize];
+			pos = change >>> 8;
+			board[pos] = (byte) change;
 		}
+		winPositions2 = undoLog[--undoLogSize];
+		winPositions1 = undoLog[--undoLogSize];
+		moveCount--;
+		utility = -1;
+		// the disk was the first change
+		zobristKey ^= getZobristKey(pos, getPlayerToMove());
 	}
 
 	/**
@@ -109,7 +168,22 @@ public class ConnectFourState implements Cloneable {
 		} else {
 			throw new IllegalArgumentException("Wrong player number.");
 		}
-		board[row * cols + col] |= playerNum * 4;
+		setBoardValue(row * cols + col,
+				(byte) (board[row * cols + col] | playerNum * 4));
+	}
+
+	private void setBoardValue(int pos, byte value) {
+		if (isLogging)
+			log(pos << 8 | (board[pos] & 0xFF));
+		board[pos] = value;
+	}
+
+	private void log(int value) {
+		if (undoLog == null)
+			undoLog = new int[64];
+		else if (undoLogSize == undoLog.length)
+			undoLog = Arrays.copyOf(undoLog, 2 * undoLog.length);
+		undoLog[undoLogSize++] = value;
 	}
 
 	/**
@@ -205,6 +279,18 @@ public class ConnectFourState implements Cloneable {
 		return result;
 	}
 
+	/**
+	 * Returns a pseudo-random key for a disk of the given player at the given
+	 * board position (by means of the SplitMix64 finalizer), so that no key
+	 * table is needed for the different board sizes.
+	 */
+	private static long getZobristKey(int pos, int playerNum) {
+		long z = (2L * pos + playerNum) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
 	public ConnectFourState clone() {
 		ConnectFourState result = null;
 		try {
@@ -213,6 +299,8 @@ public class ConnectFourState implements Cloneable {
 			e.printStackTrace();
 		}
 		result.board = board.clone();
+		result.undoLog = null;
+		result.undoLogSize = 0;
 		return result;
 	}
 
@@ -0,0 +1,25 @@
+package aima.core.environment.eightpuzzle;
+
+import aima.core.search.framework.StateEncoder;
+
+/**
+ * Encodes eight puzzle boards as <code>long</code> values. Each of the nine
+ * squares is represented by four bits holding its tile number (0 for the gap).
+ */
+public class EightPuzzleStateEncoder implements StateEncoder {
+
+	public long encode(Object state) {
+		int[] tiles = ((EightPuzzleBoard) state).getState();
+		long result = 0;
+		for (int i = 0; i < 9; i++)
+			result |= ((long) tiles[i]) << (4 * i);
+		return result;
+	}
+
+	public Object decode(long code) {
+		int[] tiles = new int[9];
+		for (int i = 0; i < 9; i++)
+			tiles[i] = (int) ((code >>> (4 * i)) & 0xF);
+		return new EightPuzzleBoard(tiles);
+	}
+}
@@ -0,0 +1,57 @@
+package aima.core.environment.nqueens;
+
+import aima.core.search.framework.StateEncoder;
+
+/**
+ * Encodes n-queens boards with at most one queen per column as
+ * <code>long</code> values. For each column, the row of the queen plus one (0
+ * for an empty column) is stored in a fixed number of bits. This covers both
+ * the incremental and the complete-state formulation for board sizes up to 15.
+ */
+public class NQueensStateEncoder implements StateEncoder {
+	private final int size;
+	private final int bitsPerColumn;
+
+	public NQueensStateEncoder(int size) {
+		int bits = 1;
+		while ((1 << bits) < size + 1)
+			bits++;
+		if (size * bits > 64)
+			throw new IllegalArgumentException("Board size " + size
+					+ " cannot be encoded in 64 bits.");
+		this.size = size;
+		this.bitsPerColumn = bits;
+	}
+
+	public long encode(Object state) {
+		NQueensBoard board = (NQueensBoard) state;
+		if (board.getSize() != size)
+			throw new IllegalArgumentException("Board size " + size
+					+ " expected.");
+		long result = 0;
+		for (int x = 0; x < size; x++) {
+			int value = 0;
+			for (int y = 0; y < size; y++) {
+				if (board.squares[x][y] == 1) {
+					if (value != 0)
+						throw new IllegalArgumentException(
+								"More than one queen in column " + x + ".");
+					value = y + 1;
+				}
+			}
+			result |= ((long) value) << (bitsPerColumn * x);
+		}
+		return result;
+	}
+
+	public Object decode(long code) {
+		NQueensBoard board = new NQueensBoard(size);
+		long mask = (1L << bitsPerColumn) - 1;
+		for (int x = 0; x < size; x++) {
+			int value = (int) ((code >>> (bitsPerColumn * x)) & mask);
+			if (value != 0)
+				board.squares[x][value - 1] = 1;
+		}
+		return board;
+	}
+}
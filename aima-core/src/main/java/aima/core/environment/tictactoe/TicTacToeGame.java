@@ -2,17 +2,21 @@ package aima.core.environment.tictactoe;
 
 import java.util.List;
 
-import aima.core.search.adversarial.Game;
+import aima.core.search.adversarial.MutableStateGame;
+import aima.core.search.adversarial.StateHashFunction;
 import aima.core.util.datastructure.XYLocation;
 
 /**
  * Provides an implementation of the Tic-tac-toe game which can be used for
- * experiments with the Minimax algorithm.
+ * experiments with the Minimax algorithm. States are hashed by Zobrist keys
+ * for transposition tables, and moves can be applied and undone in place.
  * 
  * @author Ruediger Lunde
  * 
  */
-public class TicTacToeGame implements Game<TicTacToeState, XYLocation, String> {
+public class TicTacToeGame implements
+		MutableStateGame<TicTacToeState, XYLocation, String>,
+		StateHashFunction<TicTacToeState> {
 
 	TicTacToeState initialState = new TicTacToeState();
 
@@ -43,6 +47,21 @@ public class TicTacToeGame implements Game<TicTacToeState, XYLocation, String> {
 		return result;
 	}
 
+	@Override
+	public void makeMove(TicTacToeState state, XYLocation action) {
+		state.mark(action);
+	}
+
+	@Override
+	public void unmakeMove(TicTacToeState state, XYLocation action) {
+		state.unmark(action);
+	}
+
+	@Override
+	public void applyMove(TicTacToeState state, XYLocation action) {
+		state.mark(action);
+	}
+
 	@Override
 	public boolean isTerminal(TicTacToeState state) {
 		return state.getUtility() != -1;
@@ -59,4 +78,9 @@ public class TicTacToeGame implements Game<TicTacToeState, XYLocation, String> {
 		}
 		return result;
 	}
+
+	@Override
+	public long hash(TicTacToeState state) {
+		return state.getZobristKey();
+	}
 }
@@ -3,6 +3,7 @@ package aima.core.environment.tictactoe;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import aima.core.util.datastructure.XYLocation;
 
@@ -17,12 +18,20 @@ public class TicTacToeState implements Cloneable {
 	public static final String O = "O";
 	public static final String X = "X";
 	public static final String EMPTY = "-";
+	/** Keys for X and O at each position. */
+	private static final long[] ZOBRIST_KEYS = new long[18];
+	static {
+		Random random = new Random(9);
+		for (int i = 0; i < ZOBRIST_KEYS.length; i++)
+			ZOBRIST_KEYS[i] = random.nextLong();
+	}
 	//
 	private String[] board = new String[] { EMPTY, EMPTY, EMPTY, EMPTY, EMPTY,
 			EMPTY, EMPTY, EMPTY, EMPTY };
 
 	private String playerToMove = X;
 	private double utility = -1; // 1: win for X, 0: win for O, 0.5: draw
+	private long zobristKey;
 
 	public String getPlayerToMove() {
 		return playerToMove;
@@ -40,6 +49,14 @@ public class TicTacToeState implements Cloneable {
 		return utility;
 	}
 
+	/**
+	 * Returns a 64 bit hash code for the marks on the board, which is updated
+	 * incrementally with each move.
+	 */
+	public long getZobristKey() {
+		return zobristKey;
+	}
+
 	public void mark(XYLocation action) {
 		mark(action.getXCoOrdinate(), action.getYCoOrdinate());
 	}
@@ -47,11 +64,28 @@ public class TicTacToeState implements Cloneable {
 	public void mark(int col, int row) {
 		if (utility == -1 && getValue(col, row) == EMPTY) {
 			board[getAbsPosition(col, row)] = playerToMove;
+			zobristKey ^= ZOBRIST_KEYS[2 * getAbsPosition(col, row)
+					+ (playerToMove == X ? 0 : 1)];
 			analyzeUtility();
 			playerToMove = (playerToMove == X ? O : X);
 		}
 	}
 
+	/**
+	 * Removes the mark at the given position, which must be the position of
+	 * the last mark.
+	 */
+	public void unmark(XYLocation action) {
+		int pos = getAbsPosition(action.getXCoOrdinate(),
+				action.getYCoOrdinate());
+		if (board[pos] != EMPTY) {
+			playerToMove = board[pos];
+			zobristKey ^= ZOBRIST_KEYS[2 * pos + (playerToMove == X ? 0 : 1)];
+			board[pos] = EMPTY;
+			utility = -1;
+		}
+	}
+
 	private void analyzeUtility() {
 		if (lineThroughBoard()) {
 			utility = (playerToMove == X ? 1 : 0);
@@ -1,7 +1,9 @@
 package aima.core.search.adversarial;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import aima.core.search.framework.Metrics;
 
@@ -9,7 +11,28 @@ import aima.core.search.framework.Metrics;
  * Implements an iterative deepening Minimax search with alpha-beta pruning and
  * action ordering. Maximal computation time is specified in seconds. The
  * algorithm is implemented as template method and can be configured and tuned
- * by subclassing.
+ * by subclassing.<br>
+ * <br>
+ * Results of previous depth-limited searches are reused in two ways. If the
+ * game provides hash codes for states (see {@link StateHashFunction}), values,
+ * bounds and best actions are stored in a transposition table. Values are used
+ * to cut off the search if the stored depth is sufficient, and best actions
+ * are tried first (hash move). At the root, the best action of the previous
+ * iteration comes first (principal variation). Additionally, for each depth,
+ * the two most recent actions which caused a cutoff (killer moves) are tried
+ * early. These orderings are applied to the result of
+ * {@link #orderActions(Object, List, Object, int)}.<br>
+ * <br>
+ * The actions at the root can be evaluated by several threads in parallel
+ * (see {@link #setThreadCount(int)}). Each thread uses its own copy of the
+ * search object, which is created by <code>clone</code>, so that the primitive
+ * operations of subclasses are used by all threads. The copies share the game
+ * and the transposition table. Therefore, the game must be thread-safe. Due
+ * to the shared table, parallel searches are not deterministic.<br>
+ * <br>
+ * For games which implement {@link MutableStateGame}, moves below the root
+ * are applied to one state object and undone afterwards. The states passed to
+ * the primitive operations must therefore not be stored.
  * 
  * @author Ruediger Lunde
  * 
@@ -21,9 +44,16 @@ import aima.core.search.framework.Metrics;
  *            Type which is used for players in the game.
  */
 public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
-		implements AdversarialSearch<STATE, ACTION> {
+		implements AdversarialSearch<STATE, ACTION>, Cloneable {
+
+	public static final String METRIC_EXPANDED_NODES = "expandedNodes";
+	public static final String METRIC_MAX_DEPTH = "maxDepth";
+	public static final String METRIC_TRANSPOSITION_HITS = "transpositionHits";
+	public static final String METRIC_THREADS = "threads";
 
 	protected Game<STATE, ACTION, PLAYER> game;
+	/** The game if moves are applied in place, otherwise null. */
+	private MutableStateGame<STATE, ACTION, PLAYER> mutableGame;
 	protected double utilMax;
 	protected double utilMin;
 	protected int currDepthLimit;
@@ -33,6 +63,19 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
 
 	private int expandedNodes;
 	private int maxDepth;
+	private int transpositionHits;
+
+	private StateHashFunction<STATE> hashFunction;
+	private TranspositionTable<ACTION> transpositions;
+	/** Player for whom the values in the transposition table were computed. */
+	private PLAYER transpositionsPlayer;
+	/** Killer moves by depth, most recent first. */
+	private List<List<ACTION>> killers = new ArrayList<List<ACTION>>();
+	private TranspositionTable.Entry<ACTION> entry = new TranspositionTable.Entry<ACTION>();
+
+	private int threadCount = 1;
+	/** Search objects of the threads, the first one is this object. */
+	private List<IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>> workers;
 
 	/** Creates a new search object for a given game. */
 	public static <STATE, ACTION, PLAYER> IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> createFor(
@@ -48,12 +91,51 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
 		this.utilMin = utilMin;
 		this.utilMax = utilMax;
 		this.maxTime = time * 1000; // internal: ms instead of s
+		if (game instanceof StateHashFunction<?>)
+			setTranspositionTable(castToHashFunction(game),
+					new TranspositionTable<ACTION>(1 << 18));
+		setInPlaceMovesEnabled(true);
 	}
 
 	public void setLogEnabled(boolean b) {
 		logEnabled = b;
 	}
 
+	/**
+	 * Enables or disables applying and undoing moves on one state object
+	 * below the root. Only games which implement {@link MutableStateGame}
+	 * support this, for other games, new states are always created. Enabled
+	 * by default.
+	 */
+	@SuppressWarnings("unchecked")
+	public void setInPlaceMovesEnabled(boolean b) {
+		mutableGame = b && game instanceof MutableStateGame<?, ?, ?> ? (MutableStateGame<STATE, ACTION, PLAYER>) game
+				: null;
+	}
+
+	/**
+	 * Sets the transposition table and the hash function which provides its
+	 * keys. By default, a table with 2^18 entries is used if the game
+	 * implements {@link StateHashFunction}. Null values disable the table.
+	 */
+	public void setTranspositionTable(StateHashFunction<STATE> hashFunction,
+			TranspositionTable<ACTION> table) {
+		this.hashFunction = table != null ? hashFunction : null;
+		this.transpositions = hashFunction != null ? table : null;
+		transpositionsPlayer = null;
+	}
+
+	/**
+	 * Sets the number of threads which evaluate the actions at the root. The
+	 * calling thread is one of them. Default is one.
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException(
+					"At least one thread is needed.");
+		this.threadCount = threadCount;
+	}
+
 	/**
 	 * Template method controlling the search.
 	 */
@@ -65,7 +147,19 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
 		StringBuffer logText = null;
 		expandedNodes = 0;
 		maxDepth = 0;
+		transpositionHits = 0;
 		currDepthLimit = 0;
+		killers.clear();
+		if (transpositions != null) {
+			if (!player.equals(transpositionsPlayer))
+				transpositions.clear();
+			transpositionsPlayer = player;
+			transpositions.startSearch();
+		}
+		workers = new ArrayList<IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>>();
+		workers.add(this);
+		for (int i = 1; i < threadCount; i++)
+			workers.add(createWorker());
 		long startTime = System.currentTimeMillis();
 		boolean exit = false;
 		do {
@@ -76,15 +170,19 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
 			double secondBestValue = Double.NEGATIVE_INFINITY;
 			if (logEnabled)
 				logText = new StringBuffer("depth " + currDepthLimit + ": ");
-			for (ACTION action : orderActions(state, game.getActions(state),
-					player, 0)) {
-				if (results != null
-						&& System.currentTimeMillis() > startTime + maxTime) {
+			List<ACTION> actions = orderActions(state, game.getActions(state),
+					player, 0);
+			if (results != null)
+				actions = moveToFront(actions, results.get(0), null);
+			double[] values = evaluateActions(state, actions, player,
+					results != null ? startTime + maxTime : Long.MAX_VALUE);
+			for (int i = 0; i < actions.size(); i++) {
+				if (Double.isNaN(values[i])) {
 					exit = true;
 					break;
 				}
-				double value = minValue(game.getResult(state, action), player,
-						Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, 1);
+				ACTION action = actions.get(i);
+				double value = values[i];
 				if (logEnabled)
 					logText.append(action + "->" + value + " ");
 				if (value >= newResultValue) {
@@ -118,15 +216,37 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
 		if (game.isTerminal(state) || depth >= currDepthLimit) {
 			return eval(state, player);
 		} else {
+			long hash = 0;
+			ACTION hashAction = null;
+			if (transpositions != null) {
+				hash = hashFunction.hash(state);
+				if (transpositions.find(hash, entry)) {
+					if (isCutoff(alpha, beta, depth))
+						return entry.getValue();
+					hashAction = entry.getAction();
+				}
+			}
+			boolean depthLimitReached = maxDepthReached;
+			maxDepthReached = false;
+			double alphaOrig = alpha;
 			double value = Double.NEGATIVE_INFINITY;
-			for (ACTION action : orderActions(state, game.getActions(state),
-					player, depth)) {
-				value = Math.max(value, minValue(game.getResult(state, action), //
-						player, alpha, beta, depth + 1));
-				if (value >= beta)
-					return value;
+			ACTION bestAction = null;
+			for (ACTION action : orderActions(state, player, depth, hashAction)) {
+				double childValue = minValue(makeMove(state, action), player,
+						alpha, beta, depth + 1);
+				unmakeMove(state, action);
+				if (childValue > value || bestAction == null) {
+					value = childValue;
+					bestAction = action;
+				}
+				if (value >= beta) {
+					addKiller(action, depth);
+					break;
+				}
 				alpha = Math.max(alpha, value);
 			}
+			store(hash, value, alphaOrig, beta, depth, bestAction);
+			maxDepthReached |= depthLimitReached;
 			return value;
 		}
 	}
@@ -138,25 +258,67 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
 		if (game.isTerminal(state) || depth >= currDepthLimit) {
 			return eval(state, player);
 		} else {
+			long hash = 0;
+			ACTION hashAction = null;
+			if (transpositions != null) {
+				hash = hashFunction.hash(state);
+				if (transpositions.find(hash, entry)) {
+					if (isCutoff(alpha, beta, depth))
+						return entry.getValue();
+					hashAction = entry.getAction();
+				}
+			}
+			boolean depthLimitReached = maxDepthReached;
+			maxDepthReached = false;
+			double betaOrig = beta;
 			double value = Double.POSITIVE_INFINITY;
-			for (ACTION action : orderActions(state, game.getActions(state),
-					player, depth)) {
-				value = Math.min(value, maxValue(game.getResult(state, action), //
-						player, alpha, beta, depth + 1));
-				if (value <= alpha)
-					return value;
+			ACTION bestAction = null;
+			for (ACTION action : orderActions(state, player, depth, hashAction)) {
+				double childValue = maxValue(makeMove(state, action), player,
+						alpha, beta, depth + 1);
+				unmakeMove(state, action);
+				if (childValue < value || bestAction == null) {
+					value = childValue;
+					bestAction = action;
+				}
+				if (value <= alpha) {
+					addKiller(action, depth);
+					break;
+				}
 				beta = Math.min(beta, value);
 			}
+			store(hash, value, alpha, betaOrig, depth, bestAction);
+			maxDepthReached |= depthLimitReached;
 			return value;
 		}
 	}
 
-	/** Returns some statistic data from the last search. */
+	/**
+	 * Returns some statistic data from the last search. For parallel
+	 * searches, the expanded nodes of thread i are reported as
+	 * <code>expandedNodes-i</code>.
+	 */
 	@Override
 	public Metrics getMetrics() {
 		Metrics result = new Metrics();
-		result.set("expandedNodes", expandedNodes);
-		result.set("maxDepth", maxDepth);
+		int nodes = 0;
+		int depth = 0;
+		int hits = 0;
+		int threads = workers != null ? workers.size() : 1;
+		for (int i = 0; i < threads; i++) {
+			IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> worker;
+			worker = workers != null ? workers.get(i) : this;
+			nodes += worker.expandedNodes;
+			depth = Math.max(depth, worker.maxDepth);
+			hits += worker.transpositionHits;
+			if (threads > 1)
+				result.set(METRIC_EXPANDED_NODES + "-" + i,
+						worker.expandedNodes);
+		}
+		result.set(METRIC_EXPANDED_NODES, nodes);
+		result.set(METRIC_MAX_DEPTH, depth);
+		result.set(METRIC_TRANSPOSITION_HITS, hits);
+		result.set(METRIC_THREADS, threads);
 		return result;
 	}
 
@@ -211,4 +373,197 @@ public class IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>
 			PLAYER player, int depth) {
 		return actions;
 	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the result of the action, which is the modified state if moves
+	 * are applied in place.
+	 */
+	private STATE makeMove(STATE state, ACTION action) {
+		if (mutableGame == null)
+			return game.getResult(state, action);
+		mutableGame.makeMove(state, action);
+		return state;
+	}
+
+	/** Reverts {@link #makeMove(Object, Object)} if moves are applied in place. */
+	private void unmakeMove(STATE state, ACTION action) {
+		if (mutableGame != null)
+			mutableGame.unmakeMove(state, action);
+	}
+
+	/**
+	 * Computes the values of the actions for the current depth limit. Each
+	 * thread repeatedly takes the next action which has not been taken yet.
+	 * Actions which are taken after <code>endTime</code> are not evaluated
+	 * and get the value NaN.
+	 */
+	private double[] evaluateActions(final STATE state,
+			final List<ACTION> actions, final PLAYER player, final long endTime) {
+		final double[] values = new double[actions.size()];
+		Arrays.fill(values, Double.NaN);
+		final AtomicInteger next = new AtomicInteger();
+		final RuntimeException[] errors = new RuntimeException[workers.size()];
+		Runnable[] tasks = new Runnable[workers.size()];
+		for (int i = 0; i < workers.size(); i++) {
+			final int t = i;
+			final IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> worker = workers
+					.get(i);
+			worker.currDepthLimit = currDepthLimit;
+			worker.maxDepthReached = false;
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						int a;
+						while ((a = next.getAndIncrement()) < values.length
+								&& System.currentTimeMillis() <= endTime) {
+							values[a] = worker.minValue(
+									game.getResult(state, actions.get(a)),
+									player, Double.NEGATIVE_INFINITY,
+									Double.POSITIVE_INFINITY, 1);
+						}
+					} catch (RuntimeException e) {
+						errors[t] = e;
+						next.set(values.length);
+					}
+				}
+			};
+		}
+		Thread[] threads = new Thread[workers.size()];
+		for (int i = 1; i < threads.length; i++) {
+			threads[i] = new Thread(tasks[i], "alpha-beta-worker-" + i);
+			threads[i].start();
+		}
+		tasks[0].run();
+		boolean interrupted = false;
+		for (int i = 1; i < threads.length; i++) {
+			while (threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			maxDepthReached |= workers.get(i).maxDepthReached;
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		for (RuntimeException e : errors)
+			if (e != null)
+				throw e;
+		return values;
+	}
+
+	/** Creates a copy of this search object for another thread. */
+	@SuppressWarnings("unchecked")
+	private IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> createWorker() {
+		IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER> result = null;
+		try {
+			result = (IterativeDeepeningAlphaBetaSearch<STATE, ACTION, PLAYER>) clone();
+			result.killers = new ArrayList<List<ACTION>>();
+			result.entry = new TranspositionTable.Entry<ACTION>();
+			result.workers = null;
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace(); // should never happen...
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private StateHashFunction<STATE> castToHashFunction(
+			Game<STATE, ACTION, PLAYER> game) {
+		return (StateHashFunction<STATE>) game;
+	}
+
+	/**
+	 * Checks whether the transposition table entry which was found last makes
+	 * further search unnecessary. Entries which depend on the depth limit
+	 * count as reaching the depth limit.
+	 */
+	private boolean isCutoff(double alpha, double beta, int depth) {
+		int entryDepth = entry.getDepth();
+		if (entryDepth < currDepthLimit - depth)
+			return false;
+		double value = entry.getValue();
+		byte bound = entry.getBound();
+		if (bound == TranspositionTable.EXACT
+				|| bound == TranspositionTable.LOWER_BOUND && value >= beta
+				|| bound == TranspositionTable.UPPER_BOUND && value <= alpha) {
+			if (entryDepth != TranspositionTable.UNLIMITED_DEPTH)
+				maxDepthReached = true;
+			transpositionHits++;
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Stores the result of a search with the given initial search window in
+	 * the transposition table.
+	 */
+	private void store(long hash, double value, double alpha, double beta,
+			int depth, ACTION bestAction) {
+		if (transpositions != null) {
+			byte bound;
+			if (value <= alpha)
+				bound = TranspositionTable.UPPER_BOUND;
+			else if (value >= beta)
+				bound = TranspositionTable.LOWER_BOUND;
+			else
+				bound = TranspositionTable.EXACT;
+			int entryDepth = maxDepthReached ? currDepthLimit - depth
+					: TranspositionTable.UNLIMITED_DEPTH;
+			transpositions.store(hash, value, bound, entryDepth, bestAction);
+		}
+	}
+
+	/**
+	 * Orders the actions by means of {@link #orderActions(Object, List, Object, int)}
+	 * and moves hash move and killer moves to the front.
+	 */
+	private List<ACTION> orderActions(STATE state, PLAYER player, int depth,
+			ACTION hashAction) {
+		List<ACTION> result = orderActions(state, game.getActions(state),
+				player, depth);
+		List<ACTION> depthKillers = depth < killers.size() ? killers
+				.get(depth) : null;
+		if (hashAction != null || depthKillers != null
+				&& !depthKillers.isEmpty())
+			result = moveToFront(result, hashAction, depthKillers);
+		return result;
+	}
+
+	/**
+	 * Returns a list with the first action in front, followed by the killer
+	 * actions and the remaining actions. Actions which are not contained in
+	 * the given list are ignored.
+	 */
+	private List<ACTION> moveToFront(List<ACTION> actions, ACTION first,
+			List<ACTION> killerActions) {
+		List<ACTION> result = new ArrayList<ACTION>(actions);
+		if (killerActions != null)
+			for (int i = killerActions.size() - 1; i >= 0; i--)
+				if (result.remove(killerActions.get(i)))
+					result.add(0, killerActions.get(i));
+		if (first != null && result.remove(first))
+			result.add(0, first);
+		return result;
+	}
+
+	/** Remembers an action which caused a cutoff at the given depth. */
+	private void addKiller(ACTION action, int depth) {
+		while (killers.size() <= depth)
+			killers.add(new ArrayList<ACTION>(2));
+		List<ACTION> depthKillers = killers.get(depth);
+		if (depthKillers.isEmpty() || !depthKillers.get(0).equals(action)) {
+			depthKillers.remove(action);
+			depthKillers.add(0, action);
+			if (depthKillers.size() > 2)
+				depthKillers.remove(2);
+		}
+	}
 }
@@ -0,0 +1,421 @@
+package aima.core.search.adversarial;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import aima.core.search.framework.Metrics;
+
+/**
+ * Monte Carlo tree search with the UCT selection policy (upper confidence
+ * bounds applied to trees). Each iteration descends from the root to a node
+ * with untried actions, adds a child for one of them, plays the game from the
+ * state of the child to the end, and adds the utility of the terminal state
+ * to the statistics of all nodes on the path. Utilities are normalized to
+ * [0, 1] by means of the given bounds. The decision is the action which was
+ * visited most often at the root.<br>
+ * <br>
+ * The search stops when the time budget is exhausted or when the maximum
+ * number of iterations is reached (if set). The tree of the previous decision
+ * is kept and reused if it contains the new state within two moves. Several
+ * threads can share one tree (tree parallelization, the default) or build one
+ * tree each and sum up the visits at the root (root parallelization). In a
+ * shared tree, visits are counted before the playout starts (virtual loss),
+ * so that other threads prefer other paths. With more than one thread, the
+ * game and the playout policy must be thread-safe.<br>
+ * <br>
+ * The playout policy is a primitive operation which can be replaced in
+ * subclasses (see {@link #selectPlayoutAction(Object, List, Random)}). For
+ * games which implement {@link MutableStateGame}, each playout copies the
+ * state only once and applies the remaining moves in place.
+ *
+ * @param <STATE>
+ *            Type which is used for states in the game.
+ * @param <ACTION>
+ *            Type which is used for actions in the game.
+ * @param <PLAYER>
+ *            Type which is used for players in the game.
+ */
+public class MonteCarloTreeSearch<STATE, ACTION, PLAYER> implements
+		AdversarialSearch<STATE, ACTION> {
+
+	public static final String METRIC_ITERATIONS = "iterations";
+	public static final String METRIC_TREE_SIZE = "treeSize";
+	public static final String METRIC_REUSED_NODES = "reusedNodes";
+	public static final String METRIC_THREADS = "threads";
+
+	protected Game<STATE, ACTION, PLAYER> game;
+	protected double utilMax;
+	protected double utilMin;
+	private long maxTime;
+	private int maxIterations;
+	private int maxNodes = 1000000;
+	private double explorationConstant = Math.sqrt(2);
+	private int threadCount = 1;
+	private boolean rootParallel;
+	private Random seeds = new Random();
+
+	/** Trees of the last decision, one for each thread or one shared tree. */
+	private List<Tree<STATE, ACTION>> trees = new ArrayList<Tree<STATE, ACTION>>();
+	private int[] iterations = new int[0];
+	private int reusedNodes;
+
+	/** Creates a new search object for a given game. */
+	public static <STATE, ACTION, PLAYER> MonteCarloTreeSearch<STATE, ACTION, PLAYER> createFor(
+			Game<STATE, ACTION, PLAYER> game, double utilMin, double utilMax,
+			int time) {
+		return new MonteCarloTreeSearch<STATE, ACTION, PLAYER>(game, utilMin,
+				utilMax, time);
+	}
+
+	public MonteCarloTreeSearch(Game<STATE, ACTION, PLAYER> game,
+			double utilMin, double utilMax, int time) {
+		this.game = game;
+		this.utilMin = utilMin;
+		this.utilMax = utilMax;
+		this.maxTime = time * 1000; // internal: ms instead of s
+	}
+
+	/**
+	 * Limits the number of iterations per decision (summed up over all
+	 * threads). Zero means no limit, which is the default.
+	 */
+	public void setMaxIterations(int maxIterations) {
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Limits the number of nodes per tree. When the limit is reached, the
+	 * iterations continue without adding nodes. Default is one million.
+	 */
+	public void setMaxNodes(int maxNodes) {
+		this.maxNodes = maxNodes;
+	}
+
+	/** Sets the weight of exploration in UCT selection. Default is sqrt(2). */
+	public void setExplorationConstant(double explorationConstant) {
+		this.explorationConstant = explorationConstant;
+	}
+
+	/**
+	 * Sets the number of threads which run iterations. The calling thread is
+	 * one of them. Default is one.
+	 */
+	public void setThreadCount(int threadCount) {
+		if (threadCount < 1)
+			throw new IllegalArgumentException(
+					"At least one thread is needed.");
+		this.threadCount = threadCount;
+	}
+
+	/**
+	 * Selects root parallelization (one tree per thread) instead of tree
+	 * parallelization (one shared tree).
+	 */
+	public void setRootParallel(boolean rootParallel) {
+		this.rootParallel = rootParallel;
+	}
+
+	/**
+	 * Makes the random choices reproducible. Single-threaded searches with an
+	 * iteration limit then always return the same sequence of decisions.
+	 */
+	public void setRandomSeed(long seed) {
+		seeds = new Random(seed);
+	}
+
+	@Override
+	public ACTION makeDecision(STATE state) {
+		List<ACTION> actions = game.getActions(state);
+		prepareTrees(state);
+		iterations = new int[threadCount];
+		if (actions.size() > 1)
+			runIterations();
+		ACTION result = actions.get(0);
+		int resultVisits = -1;
+		for (ACTION action : actions) {
+			int visits = 0;
+			for (Tree<STATE, ACTION> tree : trees)
+				visits += tree.root.getVisits(action);
+			if (visits > resultVisits) {
+				result = action;
+				resultVisits = visits;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns some statistic data from the last search. For several threads,
+	 * the iterations of thread i are reported as <code>iterations-i</code>.
+	 */
+	@Override
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		int total = 0;
+		for (int i = 0; i < iterations.length; i++) {
+			total += iterations[i];
+			if (iterations.length > 1)
+				result.set(METRIC_ITERATIONS + "-" + i, iterations[i]);
+		}
+		int treeSize = 0;
+		for (Tree<STATE, ACTION> tree : trees)
+			treeSize += tree.size.get();
+		result.set(METRIC_ITERATIONS, total);
+		result.set(METRIC_TREE_SIZE, treeSize);
+		result.set(METRIC_REUSED_NODES, reusedNodes);
+		result.set(METRIC_THREADS, iterations.length);
+		return result;
+	}
+
+	/**
+	 * Primitive operation which selects the next action of a playout. This
+	 * implementation chooses uniformly at random.
+	 */
+	protected ACTION selectPlayoutAction(STATE state, List<ACTION> actions,
+			Random random) {
+		return actions.get(random.nextInt(actions.size()));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Provides a tree for each thread or one shared tree with the given state
+	 * at the root. Subtrees of the last decision are reused if possible.
+	 */
+	private void prepareTrees(STATE state) {
+		List<Tree<STATE, ACTION>> newTrees = new ArrayList<Tree<STATE, ACTION>>();
+		reusedNodes = 0;
+		for (int i = 0; i < (rootParallel ? threadCount : 1); i++) {
+			Tree<STATE, ACTION> tree = new Tree<STATE, ACTION>();
+			Node<STATE, ACTION> root = null;
+			if (i < trees.size())
+				root = findNode(trees.get(i).root, state, 2);
+			if (root != null) {
+				root.parent = null;
+				tree.root = root;
+				tree.size.set(countNodes(root));
+				reusedNodes += tree.size.get();
+			} else {
+				tree.root = createNode(null, null, state);
+				tree.size.set(1);
+			}
+			newTrees.add(tree);
+		}
+		trees = newTrees;
+	}
+
+	/** Searches the tree up to the given depth for a node with the state. */
+	private Node<STATE, ACTION> findNode(Node<STATE, ACTION> node, STATE state,
+			int depth) {
+		if (node.state.equals(state))
+			return node;
+		if (depth > 0) {
+			for (Node<STATE, ACTION> child : node.children) {
+				Node<STATE, ACTION> result = findNode(child, state, depth - 1);
+				if (result != null)
+					return result;
+			}
+		}
+		return null;
+	}
+
+	private int countNodes(Node<STATE, ACTION> node) {
+		int result = 1;
+		for (Node<STATE, ACTION> child : node.children)
+			result += countNodes(child);
+		return result;
+	}
+
+	/**
+	 * Runs iterations until the budget is exhausted. Thread 0 is the calling
+	 * thread.
+	 */
+	private void runIterations() {
+		final long endTime = System.currentTimeMillis() + maxTime;
+		final AtomicInteger started = new AtomicInteger();
+		final RuntimeException[] errors = new RuntimeException[threadCount];
+		Runnable[] tasks = new Runnable[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			final int t = i;
+			final Tree<STATE, ACTION> tree = trees.get(rootParallel ? i : 0);
+			final Random random = new Random(seeds.nextLong());
+			tasks[i] = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						while ((maxIterations == 0 || started.getAndIncrement() < maxIterations)
+								&& System.currentTimeMillis() <= endTime) {
+							runIteration(tree, random);
+							iterations[t]++;
+						}
+					} catch (RuntimeException e) {
+						errors[t] = e;
+					}
+				}
+			};
+		}
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 1; i < threadCount; i++) {
+			threads[i] = new Thread(tasks[i], "mcts-worker-" + i);
+			threads[i].start();
+		}
+		tasks[0].run();
+		boolean interrupted = false;
+		for (int i = 1; i < threadCount; i++) {
+			while (threads[i].isAlive()) {
+				try {
+					threads[i].join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		for (RuntimeException e : errors)
+			if (e != null)
+				throw e;
+	}
+
+	/**
+	 * Performs selection, expansion, playout, and backpropagation. The
+	 * statistics of a node are guarded by the lock of its parent (the root by
+	 * its own lock), so that selection sees consistent values.
+	 */
+	private void runIteration(Tree<STATE, ACTION> tree, Random random) {
+		Node<STATE, ACTION> node = tree.root;
+		synchronized (node) {
+			node.visits++;
+		}
+		boolean expanded = false;
+		while (!expanded) {
+			Node<STATE, ACTION> child = null;
+			synchronized (node) {
+				if (node.untriedActions == null && node.player != -1)
+					node.untriedActions = new ArrayList<ACTION>(
+							game.getActions(node.state));
+				if (node.player == -1) {
+					// terminal state
+				} else if (!node.untriedActions.isEmpty()
+						&& tree.size.get() < maxNodes) {
+					int last = node.untriedActions.size() - 1;
+					int i = random.nextInt(last + 1);
+					ACTION action = node.untriedActions.get(i);
+					node.untriedActions.set(i, node.untriedActions.get(last));
+					node.untriedActions.remove(last);
+					child = createNode(node, action,
+							game.getResult(node.state, action));
+					node.children.add(child);
+					tree.size.incrementAndGet();
+					expanded = true;
+				} else if (!node.children.isEmpty()) {
+					child = selectChild(node);
+				}
+				if (child != null)
+					child.visits++;
+			}
+			if (child == null)
+				break;
+			node = child;
+		}
+		double[] rewards = playout(node.state, random);
+		for (; node.parent != null; node = node.parent) {
+			synchronized (node.parent) {
+				node.reward += rewards[node.parent.player];
+			}
+		}
+	}
+
+	/** Returns the child with the highest upper confidence bound. */
+	private Node<STATE, ACTION> selectChild(Node<STATE, ACTION> node) {
+		Node<STATE, ACTION> result = null;
+		double resultValue = Double.NEGATIVE_INFINITY;
+		double logVisits = Math.log(node.visits);
+		for (Node<STATE, ACTION> child : node.children) {
+			double value = child.reward / child.visits + explorationConstant
+					* Math.sqrt(logVisits / child.visits);
+			if (value > resultValue) {
+				result = child;
+				resultValue = value;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Plays the game to the end and returns the normalized utilities for all
+	 * players, in the order of <code>game.getPlayers()</code>.
+	 */
+	private double[] playout(STATE state, Random random) {
+		if (game instanceof MutableStateGame<?, ?, ?>) {
+			@SuppressWarnings("unchecked")
+			MutableStateGame<STATE, ACTION, PLAYER> mutableGame = (MutableStateGame<STATE, ACTION, PLAYER>) game;
+			if (!game.isTerminal(state))
+				state = game.getResult(state,
+						selectPlayoutAction(state, game.getActions(state), random));
+			while (!game.isTerminal(state))
+				mutableGame.applyMove(state,
+						selectPlayoutAction(state, game.getActions(state), random));
+		}
+		while (!game.isTerminal(state))
+			state = game.getResult(state,
+					selectPlayoutAction(state, game.getActions(state), random));
+		PLAYER[] players = game.getPlayers();
+		double[] result = new double[players.length];
+		for (int i = 0; i < players.length; i++)
+			result[i] = (game.getUtility(state, players[i]) - utilMin)
+					/ (utilMax - utilMin);
+		return result;
+	}
+
+	private Node<STATE, ACTION> createNode(Node<STATE, ACTION> parent,
+			ACTION action, STATE state) {
+		int player = -1;
+		if (!game.isTerminal(state)) {
+			PLAYER[] players = game.getPlayers();
+			player = 0;
+			while (!players[player].equals(game.getPlayer(state)))
+				player++;
+		}
+		return new Node<STATE, ACTION>(parent, action, state, player);
+	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// nested classes
+
+	private static class Tree<STATE, ACTION> {
+		Node<STATE, ACTION> root;
+		AtomicInteger size = new AtomicInteger();
+	}
+
+	private static class Node<STATE, ACTION> {
+		Node<STATE, ACTION> parent;
+		final ACTION action;
+		final STATE state;
+		/** Index of the player to move, -1 for terminal states. */
+		final int player;
+		List<ACTION> untriedActions;
+		final List<Node<STATE, ACTION>> children = new ArrayList<Node<STATE, ACTION>>();
+		int visits;
+		/** Sum of rewards for the player who moved to this node. */
+		double reward;
+
+		Node(Node<STATE, ACTION> parent, ACTION action, STATE state, int player) {
+			this.parent = parent;
+			this.action = action;
+			this.state = state;
+			this.player = player;
+		}
+
+		synchronized int getVisits(ACTION action) {
+			for (Node<STATE, ACTION> child : children)
+				if (child.action.equals(action))
+					return child.visits;
+			return 0;
+		}
+	}
+}
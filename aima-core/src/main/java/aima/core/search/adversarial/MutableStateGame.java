@@ -0,0 +1,37 @@
+package aima.core.search.adversarial;
+
+/**
+ * Extension of the game interface for games whose states can be modified in
+ * place. Search algorithms which know this interface apply a move to a state
+ * and undo it after searching the subtree, instead of creating a new state
+ * for each node. Data which the state maintains incrementally (e.g. Zobrist
+ * keys or evaluation features) must be restored by undo as well. Games can
+ * implement this interface to support such algorithms.
+ * 
+ * @param <STATE>
+ *            Type which is used for states in the game.
+ * @param <ACTION>
+ *            Type which is used for actions in the game.
+ * @param <PLAYER>
+ *            Type which is used for players in the game.
+ */
+public interface MutableStateGame<STATE, ACTION, PLAYER> extends
+		Game<STATE, ACTION, PLAYER> {
+
+	/** Modifies the state by applying the action. */
+	void makeMove(STATE state, ACTION action);
+
+	/**
+	 * Reverts the last move which was applied to the state by
+	 * {@link #makeMove(Object, Object)}. The action must be the action of
+	 * that move.
+	 */
+	void unmakeMove(STATE state, ACTION action);
+
+	/**
+	 * Modifies the state by applying the action like
+	 * {@link #makeMove(Object, Object)}, but without recording anything for
+	 * undo. Used for moves which are never reverted, e.g. in playouts.
+	 */
+	void applyMove(STATE state, ACTION action);
+}
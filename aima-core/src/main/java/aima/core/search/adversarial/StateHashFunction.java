@@ -0,0 +1,15 @@
+package aima.core.search.adversarial;
+
+/**
+ * Computes 64 bit hash codes for game states. Equal states must be mapped to
+ * equal codes, and different states should collide very rarely (e.g. Zobrist
+ * hashing). Search algorithms use the codes as keys for transposition tables
+ * without checking states for equality. Games can implement this interface to
+ * support such algorithms.
+ * 
+ * @param <STATE>
+ *            Type which is used for states in the game.
+ */
+public interface StateHashFunction<STATE> {
+	long hash(STATE state);
+}
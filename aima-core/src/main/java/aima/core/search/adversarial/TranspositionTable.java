@@ -0,0 +1,165 @@
+package aima.core.search.adversarial;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-size table which stores results of game tree searches by state hash
+ * code. Each entry consists of the value of a state, the kind of bound which
+ * the value represents, the search depth below the state, and the best
+ * action found. The table is organized as one array per entry component, and
+ * each hash code is mapped to exactly one slot. When two states compete for a
+ * slot, entries of previous searches are replaced first, and within the
+ * current search the entry with the deeper search result is kept.<br>
+ * <br>
+ * The table can be shared by several search threads without locking. Each
+ * slot stores the hash code combined with value and bound information by
+ * exclusive or. An entry which is read while another thread overwrites it
+ * does not pass this check and is ignored. The best action of an entry is not
+ * part of the check and can belong to another state after concurrent
+ * modifications. So it should only be used as hint.
+ *
+ * @param <ACTION>
+ *            Type which is used for actions in the game.
+ */
+public class TranspositionTable<ACTION> {
+	/** The value is the exact value of the state. */
+	public static final byte EXACT = 1;
+	/** The exact value is greater than or equal to the value. */
+	public static final byte LOWER_BOUND = 2;
+	/** The exact value is less than or equal to the value. */
+	public static final byte UPPER_BOUND = 3;
+	/** Depth of entries which are independent of the depth limit. */
+	public static final int UNLIMITED_DEPTH = Integer.MAX_VALUE;
+
+	private final int mask;
+	/** Hash code xor value bits xor info. */
+	private final long[] checks;
+	private final long[] values;
+	/** Depth, bound, and age. */
+	private final long[] infos;
+	private final Object[] actions;
+	private volatile int age;
+
+	/**
+	 * Creates a table with the specified number of slots, rounded up to the
+	 * next power of two.
+	 */
+	public TranspositionTable(int capacity) {
+		int slots = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+		mask = slots - 1;
+		checks = new long[slots];
+		values = new long[slots];
+		infos = new long[slots];
+		actions = new Object[slots];
+	}
+
+	/** Returns the number of slots. */
+	public int getCapacity() {
+		return checks.length;
+	}
+
+	/** Removes all entries. Must not be called during a search. */
+	public void clear() {
+		Arrays.fill(checks, 0);
+		Arrays.fill(values, 0);
+		Arrays.fill(infos, 0);
+		Arrays.fill(actions, null);
+	}
+
+	/**
+	 * Marks the beginning of a new search. Entries of previous searches remain
+	 * available but are replaced preferably.
+	 */
+	public void startSearch() {
+		age = (age + 1) & 0xFF;
+	}
+
+	/**
+	 * Copies the entry for the given hash code into <code>result</code>.
+	 *
+	 * @return false if the table contains no such entry.
+	 */
+	public boolean find(long key, Entry<ACTION> result) {
+		int slot = getSlot(key);
+		long value = values[slot];
+		long info = infos[slot];
+		if (info == 0 || (checks[slot] ^ value ^ info) != key)
+			return false;
+		result.value = Double.longBitsToDouble(value);
+		result.bound = (byte) (info >>> 8);
+		result.depth = (int) (info >>> 32);
+		result.action = getAction(slot);
+		return true;
+	}
+
+	/**
+	 * Stores a search result unless the slot contains a deeper result of the
+	 * current search for another state.
+	 *
+	 * @param depth
+	 *            The search depth below the state or {@link #UNLIMITED_DEPTH}
+	 *            (must not be negative).
+	 */
+	public void store(long key, double value, byte bound, int depth,
+			ACTION action) {
+		int slot = getSlot(key);
+		long oldInfo = infos[slot];
+		if (oldInfo != 0 && (oldInfo & 0xFF) == age
+				&& (int) (oldInfo >>> 32) > depth
+				&& (checks[slot] ^ values[slot] ^ oldInfo) != key)
+			return;
+		long valueBits = Double.doubleToLongBits(value);
+		long info = ((long) depth << 32) | ((bound & 0xFFL) << 8) | age;
+		values[slot] = valueBits;
+		infos[slot] = info;
+		actions[slot] = action;
+		checks[slot] = key ^ valueBits ^ info;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private int getSlot(long key) {
+		long h = key ^ (key >>> 32);
+		return (int) (h ^ (h >>> 16)) & mask;
+	}
+
+	@SuppressWarnings("unchecked")
+	private ACTION getAction(int slot) {
+		return (ACTION) actions[slot];
+	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// nested classes
+
+	/** Holds a copy of a table entry. */
+	public static class Entry<ACTION> {
+		private double value;
+		private byte bound;
+		private int depth;
+		private ACTION action;
+
+		public double getValue() {
+			return value;
+		}
+
+		public byte getBound() {
+			return bound;
+		}
+
+		/**
+		 * Returns the depth of the search below the state, or
+		 * {@link TranspositionTable#UNLIMITED_DEPTH} if the search was not
+		 * limited by depth.
+		 */
+		public int getDepth() {
+			return depth;
+		}
+
+		/** Returns the best action or null if unknown. */
+		public ACTION getAction() {
+			return action;
+		}
+	}
+}
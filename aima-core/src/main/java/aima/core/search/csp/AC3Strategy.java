@@ -47,7 +47,7 @@ public class AC3Strategy {
 	 *         undo the operation.
 	 */
 	public DomainRestoreInfo reduceDomains(CSP csp) {
-		DomainRestoreInfo result = new DomainRestoreInfo();
+		DomainRestoreInfo result = new DomainRestoreInfo(csp);
 		FIFOQueue<Variable> queue = new FIFOQueue<Variable>();
 		for (Variable var : csp.getVariables())
 			queue.add(var);
@@ -64,14 +64,15 @@ public class AC3Strategy {
 	 *         undo the operation.
 	 */
 	public DomainRestoreInfo reduceDomains(Variable var, Object value, CSP csp) {
-		DomainRestoreInfo result = new DomainRestoreInfo();
+		DomainRestoreInfo result = new DomainRestoreInfo(csp);
 		Domain domain = csp.getDomain(var);
 		if (domain.contains(value)) {
 			if (domain.size() > 1) {
 				FIFOQueue<Variable> queue = new FIFOQueue<Variable>();
 				queue.add(var);
-				result.storeDomainFor(var, domain);
-				csp.setDomain(var, new Domain(new Object[] { value }));
+				for (Object v : domain)
+					if (!v.equals(value))
+						csp.removeValueFromDomain(var, v);
 				reduceDomains(queue, csp, result);
 			}
 		} else {
@@ -87,7 +88,7 @@ public class AC3Strategy {
 			for (Constraint constraint : csp.getConstraints(var)) {
 				if (constraint.getScope().size() == 2) {
 					Variable neighbor = csp.getNeighbor(var, constraint);
-					if (revise(neighbor, var, constraint, csp, info)) {
+					if (revise(neighbor, var, constraint, csp)) {
 						if (csp.getDomain(neighbor).isEmpty()) {
 							info.setEmptyDomainFound(true);
 							return;
@@ -100,7 +101,7 @@ public class AC3Strategy {
 	}
 
 	private boolean revise(Variable xi, Variable xj, Constraint constraint,
-			CSP csp, DomainRestoreInfo info) {
+			CSP csp) {
 		boolean revised = false;
 		Assignment assignment = new Assignment();
 		for (Object iValue : csp.getDomain(xi)) {
@@ -114,7 +115,6 @@ public class AC3Strategy {
 				}
 			}
 			if (!consistentExtensionFound) {
-				info.storeDomainFor(xi, csp.getDomain(xi));
 				csp.removeValueFromDomain(xi, iValue);
 				revised = true;
 			}
@@ -2,7 +2,7 @@ package aima.core.search.csp;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -17,11 +17,11 @@ public class Assignment {
 	 */
 	List<Variable> variables;
 	/** Maps variables to their assigned values. */
-	Hashtable<Variable, Object> variableToValue;
+	HashMap<Variable, Object> variableToValue;
 
 	public Assignment() {
 		variables = new ArrayList<Variable>();
-		variableToValue = new Hashtable<Variable, Object>();
+		variableToValue = new HashMap<Variable, Object>();
 	}
 
 	public List<Variable> getVariables() {
@@ -38,9 +38,13 @@ public class Assignment {
 		variableToValue.put(var, value);
 	}
 
+	/**
+	 * Removes the assignment of the variable. Variables are searched from the
+	 * end, so removing in reverse order of assignment is fast.
+	 */
 	public void removeAssignment(Variable var) {
 		if (hasAssignmentFor(var)) {
-			variables.remove(var);
+			variables.remove(variables.lastIndexOf(var));
 			variableToValue.remove(var);
 		}
 	}
@@ -64,8 +64,10 @@ public class BacktrackingStrategy extends SolutionStrategy {
 						fireStateChanged(csp);
 					if (!info.isEmptyDomainFound()) {
 						result = recursiveBackTrackingSearch(csp, assignment);
-						if (result != null)
+						if (result != null) {
+							info.keepDomainChanges();
 							break;
+						}
 					}
 					info.restoreDomains(csp);
 				}
@@ -1,8 +1,9 @@
 package aima.core.search.csp;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.Hashtable;
+import java.util.HashMap;
 import java.util.List;
 
 /**
@@ -15,30 +16,59 @@ import java.util.List;
  * <li>D is a set of domains, {D1, ... ,Dn}, one for each variable.</li>
  * <li>C is a set of constraints that specify allowable combinations of values.</li>
  * </ul>
+ * Internally, variables are identified by their index, and the current domain
+ * of each variable is represented by the values of the domain which was set
+ * last and a bitset which marks the values which have not been removed yet.
+ * While a checkpoint is active, all domain changes are recorded on a trail,
+ * so that they can be undone in reverse order without copying domains (see
+ * {@link #setCheckpoint()}). Without active checkpoint, nothing is recorded.
  * 
  * @author Ruediger Lunde
  */
 public class CSP {
 
 	private List<Variable> variables;
-	private List<Domain> domains;
+	/** Values of the domains which were set last, by variable index. */
+	private Object[][] domainValues;
+	/** Marks the values which have not been removed, by variable index. */
+	private long[][] domainBits;
+	private int[] domainSizes;
+	/** Immutable copies of the current domains, null if outdated. */
+	private Domain[] domainViews;
 	private List<Constraint> constraints;
 
 	/** Lookup, which maps a variable to its index in the list of variables. */
-	private Hashtable<Variable, Integer> varIndexHash;
+	private HashMap<Variable, Integer> varIndexHash;
 	/**
 	 * Constraint network. Maps variables to those constraints in which they
 	 * participate.
 	 */
-	private Hashtable<Variable, List<Constraint>> cnet;
+	private HashMap<Variable, List<Constraint>> cnet;
+
+	/**
+	 * Domain changes in chronological order. Each entry contains the variable
+	 * index (high 32 bits) and the index of the removed value or -1 if the
+	 * domain was replaced.
+	 */
+	private long[] trail;
+	private int trailSize;
+	/** The domains which were replaced, in chronological order. */
+	private List<Domain> replacedDomains;
+	/** Number of checkpoints which have not been finished yet. */
+	private int activeCheckpoints;
 
 	/** Creates a new CSP. */
 	public CSP() {
 		variables = new ArrayList<Variable>();
-		domains = new ArrayList<Domain>();
+		domainValues = new Object[8][];
+		domainBits = new long[8][];
+		domainSizes = new int[8];
+		domainViews = new Domain[8];
 		constraints = new ArrayList<Constraint>();
-		varIndexHash = new Hashtable<Variable, Integer>();
-		cnet = new Hashtable<Variable, List<Constraint>>();
+		varIndexHash = new HashMap<Variable, Integer>();
+		cnet = new HashMap<Variable, List<Constraint>>();
+		trail = new long[16];
+		replacedDomains = new ArrayList<Domain>();
 	}
 	
 	/** Creates a new CSP. */
@@ -50,10 +80,17 @@ public class CSP {
 
 	protected void addVariable(Variable var) {
 		if (!varIndexHash.containsKey(var)) {
-			Domain emptyDomain = new Domain(Collections.emptyList());
+			int index = variables.size();
+			if (index == domainSizes.length) {
+				int capacity = 2 * index;
+				domainValues = Arrays.copyOf(domainValues, capacity);
+				domainBits = Arrays.copyOf(domainBits, capacity);
+				domainSizes = Arrays.copyOf(domainSizes, capacity);
+				domainViews = Arrays.copyOf(domainViews, capacity);
+			}
 			variables.add(var);
-			domains.add(emptyDomain);
-			varIndexHash.put(var, variables.size()-1);
+			assignDomain(index, new Domain(Collections.emptyList()));
+			varIndexHash.put(var, index);
 			cnet.put(var, new ArrayList<Constraint>());
 		} else {
 			throw new IllegalArgumentException("Variable with same name already exists.");
@@ -68,25 +105,102 @@ public class CSP {
 		return varIndexHash.get(var);
 	}
 
+	/**
+	 * Returns the current domain of the variable. The result is not affected
+	 * by later domain changes.
+	 */
 	public Domain getDomain(Variable var) {
-		return domains.get(varIndexHash.get(var));
+		int index = indexOf(var);
+		Domain result = domainViews[index];
+		if (result == null) {
+			result = new Domain(domainValues[index],
+					domainBits[index].clone(), domainSizes[index]);
+			domainViews[index] = result;
+		}
+		return result;
 	}
 
 	public void setDomain(Variable var, Domain domain) {
-		domains.set(indexOf(var), domain);
+		int index = indexOf(var);
+		if (activeCheckpoints > 0) {
+			replacedDomains.add(getDomain(var));
+			pushTrail(index, -1);
+		}
+		assignDomain(index, domain);
 	}
 
 	/**
-	 * Replaces the domain of the specified variable by new domain, which
-	 * contains all values of the old domain except the specified value.
+	 * Removes the specified value from the domain of the specified variable.
+	 * Only a bit is changed, the domain returned by
+	 * {@link #getDomain(Variable)} before is not affected.
 	 */
 	public void removeValueFromDomain(Variable var, Object value) {
-		Domain currDomain = getDomain(var);
-		List<Object> values = new ArrayList<Object>(currDomain.size());
-		for (Object v : currDomain)
-			if (!v.equals(value))
-				values.add(v);
-		setDomain(var, new Domain(values));
+		int index = indexOf(var);
+		Object[] values = domainValues[index];
+		long[] bits = domainBits[index];
+		for (int i = 0; i < values.length; i++) {
+			if ((bits[i >> 6] & 1L << i) != 0 && values[i].equals(value)) {
+				bits[i >> 6] &= ~(1L << i);
+				domainSizes[index]--;
+				domainViews[index] = null;
+				if (activeCheckpoints > 0)
+					pushTrail(index, i);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of domain changes which have been recorded so far.
+	 * The trail grows with each change while a checkpoint is active and
+	 * shrinks when changes are undone.
+	 */
+	public int getTrailSize() {
+		return trailSize;
+	}
+
+	/**
+	 * Starts a checkpoint. Domain changes are recorded until all checkpoints
+	 * have been finished by {@link #undoDomainChanges(int)} or
+	 * {@link #releaseCheckpoint()}.
+	 * 
+	 * @return The current trail size, which identifies the checkpoint.
+	 */
+	public int setCheckpoint() {
+		activeCheckpoints++;
+		return trailSize;
+	}
+
+	/**
+	 * Finishes a checkpoint and keeps the domain changes. When the last active
+	 * checkpoint is finished, the trail is cleared.
+	 */
+	public void releaseCheckpoint() {
+		if (activeCheckpoints > 0 && --activeCheckpoints == 0) {
+			trailSize = 0;
+			replacedDomains.clear();
+		}
+	}
+
+	/**
+	 * Undoes the most recent domain changes, until the trail has the size of
+	 * the specified checkpoint, and finishes the checkpoint.
+	 */
+	public void undoDomainChanges(int checkpoint) {
+		while (trailSize > checkpoint) {
+			long entry = trail[--trailSize];
+			int index = (int) (entry >>> 32);
+			int valueIndex = (int) entry;
+			if (valueIndex == -1) {
+				assignDomain(index,
+						replacedDomains.remove(replacedDomains.size() - 1));
+			} else {
+				domainBits[index][valueIndex >> 6] |= 1L << valueIndex;
+				domainSizes[index]++;
+				domainViews[index] = null;
+			}
+		}
+		releaseCheckpoint();
 	}
 
 	public void addConstraint(Constraint constraint) {
@@ -123,17 +237,47 @@ public class CSP {
 	}
 
 	/**
-	 * Returns a copy which contains a copy of the domains list and is in all
-	 * other aspects a flat copy of this.
+	 * Returns a copy which contains a copy of the domains and is in all
+	 * other aspects a flat copy of this. The trail of the copy is empty.
 	 */
 	public CSP copyDomains() {
 		CSP result = new CSP();
 		result.variables = variables;
-		result.domains = new ArrayList<Domain>(domains.size());
-		result.domains.addAll(domains);
+		result.domainValues = domainValues.clone();
+		result.domainBits = new long[domainBits.length][];
+		for (int i = 0; i < variables.size(); i++)
+			result.domainBits[i] = domainBits[i].clone();
+		result.domainSizes = domainSizes.clone();
+		result.domainViews = domainViews.clone();
 		result.constraints = constraints;
 		result.varIndexHash = varIndexHash;
 		result.cnet = cnet;
 		return result;
 	}
-}
\ No newline at end of file
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void assignDomain(int index, Domain domain) {
+		Object[] values = domain.getValues();
+		long[] bits = domain.getBits();
+		if (bits != null) {
+			bits = bits.clone();
+		} else {
+			bits = new long[(values.length + 63) >> 6];
+			for (int i = 0; i < values.length; i++)
+				bits[i >> 6] |= 1L << i;
+		}
+		domainValues[index] = values;
+		domainBits[index] = bits;
+		domainSizes[index] = domain.size();
+		domainViews[index] = domain;
+	}
+
+	private void pushTrail(int index, int valueIndex) {
+		if (trailSize == trail.length)
+			trail = Arrays.copyOf(trail, 2 * trailSize);
+		trail[trailSize++] = (long) index << 32 | valueIndex & 0xFFFFFFFFL;
+	}
+}
@@ -3,6 +3,7 @@ package aima.core.search.csp;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import aima.core.util.ArrayIterator;
 
@@ -11,40 +12,77 @@ import aima.core.util.ArrayIterator;
  * corresponding variable Xi and defines a default order on those values. This
  * implementation guarantees, that domains are never changed after they have
  * been created. Domain reduction is implemented by replacement instead of
- * modification. So previous states can easily and safely be restored.
- * 
+ * modification. So previous states can easily and safely be restored.<br>
+ * <br>
+ * Domains which are obtained from a CSP after domain reduction share the value
+ * array of the original domain and mark the remaining values in a bitset.
+ *
  * @author Ruediger Lunde
  */
 public class Domain implements Iterable<Object> {
 
 	private Object[] values;
+	/** Marks the values which are contained, null if all are contained. */
+	private long[] bits;
+	private int size;
+	/** Positions of the contained values, created on demand. */
+	private volatile int[] positions;
 
 	public Domain(List<?> values) {
 		this.values = new Object[values.size()];
 		for (int i = 0; i < values.size(); i++)
 			this.values[i] = values.get(i);
+		size = this.values.length;
 	}
 
 	public Domain(Object[] values) {
 		this.values = new Object[values.length];
 		for (int i = 0; i < values.length; i++)
 			this.values[i] = values[i];
+		size = values.length;
+	}
+
+	/**
+	 * Creates a domain which contains the marked values. The arrays are not
+	 * copied and must not be changed afterwards.
+	 */
+	Domain(Object[] values, long[] bits, int size) {
+		this.values = values;
+		this.bits = bits;
+		this.size = size;
 	}
 
 	public int size() {
-		return values.length;
+		return size;
 	}
 
+	/**
+	 * Returns the value at the specified position. For reduced domains, the
+	 * positions of all contained values are computed with the first call, so
+	 * that further calls take constant time.
+	 */
 	public Object get(int index) {
-		return values[index];
+		if (bits == null)
+			return values[index];
+		if (index < 0 || index >= size)
+			throw new IndexOutOfBoundsException("Index: " + index);
+		int[] pos = positions;
+		if (pos == null) {
+			pos = new int[size];
+			int count = 0;
+			for (int i = nextIndex(0); i != -1; i = nextIndex(i + 1))
+				pos[count++] = i;
+			positions = pos;
+		}
+		return values[pos[index]];
 	}
 
 	public boolean isEmpty() {
-		return values.length == 0;
+		return size == 0;
 	}
 
 	public boolean contains(Object value) {
-		for (Object v : values)
+		for (Object v : this)
 			if (v.equals(value))
 				return true;
 		return false;
@@ -52,13 +90,36 @@ public class Domain implements Iterable<Object> {
 
 	@Override
 	public Iterator<Object> iterator() {
-		return new ArrayIterator<Object>(values);
+		if (bits == null)
+			return new ArrayIterator<Object>(values);
+		return new Iterator<Object>() {
+			int next = nextIndex(0);
+
+			@Override
+			public boolean hasNext() {
+				return next != -1;
+			}
+
+			@Override
+			public Object next() {
+				if (next == -1)
+					throw new NoSuchElementException();
+				Object result = values[next];
+				next = nextIndex(next + 1);
+				return result;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	/** Not very efficient... */
 	public List<Object> asList() {
 		List<Object> result = new ArrayList<Object>();
-		for (Object value : values)
+		for (Object value : this)
 			result.add(value);
 		return result;
 	}
@@ -67,22 +128,23 @@ public class Domain implements Iterable<Object> {
 	public boolean equals(Object obj) {
 		if (obj instanceof Domain) {
 			Domain d = (Domain) obj;
-			if (d.size() != values.length)
+			if (d.size() != size)
 				return false;
-			else
-				for (int i = 0; i < values.length; i++)
-					if (!values[i].equals(d.values[i]))
-						return false;
+			Iterator<Object> iter = d.iterator();
+			for (Object value : this)
+				if (!value.equals(iter.next()))
+					return false;
+			return true;
 		}
-		return true;
+		return false;
 	}
 
 	@Override
 	public int hashCode() {
 		int hash = 9; // arbitrary seed value
 		int multiplier = 13; // arbitrary multiplier value
-		for (int i = 0; i < values.length; i++)
-			hash = hash * multiplier + values[i].hashCode();
+		for (Object value : this)
+			hash = hash * multiplier + value.hashCode();
 		return hash;
 	}
 
@@ -90,7 +152,7 @@ public class Domain implements Iterable<Object> {
 	public String toString() {
 		StringBuffer result = new StringBuffer("{");
 		boolean comma = false;
-		for (Object value : values) {
+		for (Object value : this) {
 			if (comma)
 				result.append(", ");
 			result.append(value.toString());
@@ -99,4 +161,32 @@ public class Domain implements Iterable<Object> {
 		result.append("}");
 		return result.toString();
 	}
-}
\ No newline at end of file
+
+	/** Returns all values of the original domain, including removed ones. */
+	Object[] getValues() {
+		return values;
+	}
+
+	/** Returns the bitset of contained values, null if all are contained. */
+	long[] getBits() {
+		return bits;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the index of the next contained value or -1. */
+	private int nextIndex(int from) {
+		int word = from >> 6;
+		if (word >= bits.length)
+			return -1;
+		long w = bits[word] & (-1L << from);
+		while (w == 0) {
+			if (++word == bits.length)
+				return -1;
+			w = bits[word];
+		}
+		return (word << 6) + Long.numberOfTrailingZeros(w);
+	}
+}
@@ -11,7 +11,10 @@ import aima.core.util.datastructure.Pair;
  * propagation algorithm. It maintains old domains for variables and provides
  * means to restore the initial state of the CSP (before domain reduction
  * started). Additionally, a flag indicates whether an empty domain has been
- * found during propagation.
+ * found during propagation. Instead of saving old domains, the object can
+ * also set a checkpoint in the CSP at creation time and restore the domains by
+ * undoing the changes recorded afterwards. Such objects must be finished by
+ * {@link #restoreDomains(CSP)} or {@link #keepDomainChanges()}.
  * 
  * @author Ruediger Lunde
  * 
@@ -20,19 +23,34 @@ public class DomainRestoreInfo {
 	private List<Pair<Variable, Domain>> savedDomains;
 	private HashSet<Variable> affectedVariables;
 	private boolean emptyDomainObserved;
+	/** CSP whose trail is used for restoration or null. */
+	private CSP csp;
+	private int checkpoint;
 
 	public DomainRestoreInfo() {
 		savedDomains = new ArrayList<Pair<Variable, Domain>>();
 		affectedVariables = new HashSet<Variable>();
 	}
 
+	/**
+	 * Creates an object which restores the domains of the specified CSP by
+	 * undoing all domain changes which are performed after creation (see
+	 * {@link CSP#setCheckpoint()}).
+	 */
+	public DomainRestoreInfo(CSP csp) {
+		this();
+		this.csp = csp;
+		checkpoint = csp.setCheckpoint();
+	}
+
 	public void clear() {
 		savedDomains.clear();
 		affectedVariables.clear();
 	}
 
 	public boolean isEmpty() {
-		return savedDomains.isEmpty();
+		return savedDomains.isEmpty()
+				&& (csp == null || csp.getTrailSize() == checkpoint);
 	}
 
 	/**
@@ -70,10 +88,25 @@ public class DomainRestoreInfo {
 	}
 
 	public void restoreDomains(CSP csp) {
+		if (csp == this.csp) {
+			csp.undoDomainChanges(checkpoint);
+			this.csp = null;
+		}
 		for (Pair<Variable, Domain> pair : getSavedDomains())
 			csp.setDomain(pair.getFirst(), pair.getSecond());
 	}
 
+	/**
+	 * Finishes the checkpoint without undoing the domain changes. Afterwards,
+	 * only saved domains are restored.
+	 */
+	public void keepDomainChanges() {
+		if (csp != null) {
+			csp.releaseCheckpoint();
+			csp = null;
+		}
+	}
+
 	public String toString() {
 		StringBuffer result = new StringBuffer();
 		for (Pair<Variable, Domain> pair : savedDomains)
@@ -51,7 +51,9 @@ public class ImprovedBacktrackingStrategy extends BacktrackingStrategy {
 	public Assignment solve(CSP csp) {
 		if (inferenceStrategy == Inference.AC3) {
 			DomainRestoreInfo info = new AC3Strategy().reduceDomains(csp);
-			if (!info.isEmpty()) {
+			boolean changed = !info.isEmpty();
+			info.keepDomainChanges();
+			if (changed) {
 				fireStateChanged(csp);
 				if (info.isEmptyDomainFound())
 					return null;
@@ -207,14 +209,13 @@ public class ImprovedBacktrackingStrategy extends BacktrackingStrategy {
 	/** Implements forward checking. */
 	private DomainRestoreInfo doForwardChecking(Variable var,
 			Assignment assignment, CSP csp) {
-		DomainRestoreInfo result = new DomainRestoreInfo();
+		DomainRestoreInfo result = new DomainRestoreInfo(csp);
 		for (Constraint constraint : csp.getConstraints(var)) {
 			List<Variable> scope = constraint.getScope();
 			if (scope.size() == 2) {
 				for (Variable neighbor : constraint.getScope()) {
 					if (!assignment.hasAssignmentFor(neighbor)) {
-						if (revise(neighbor, constraint, assignment, csp,
-								result)) {
+						if (revise(neighbor, constraint, assignment, csp)) {
 							if (csp.getDomain(neighbor).isEmpty()) {
 								result.setEmptyDomainFound(true);
 								return result;
@@ -228,13 +229,12 @@ public class ImprovedBacktrackingStrategy extends BacktrackingStrategy {
 	}
 
 	private boolean revise(Variable var, Constraint constraint,
-			Assignment assignment, CSP csp, DomainRestoreInfo info) {
+			Assignment assignment, CSP csp) {
 
 		boolean revised = false;
 		for (Object value : csp.getDomain(var)) {
 			assignment.setAssignment(var, value);
 			if (!constraint.isSatisfiedWith(assignment)) {
-				info.storeDomainFor(var, csp.getDomain(var));
 				csp.removeValueFromDomain(var, value);
 				revised = true;
 			}
@@ -0,0 +1,294 @@
+package aima.core.search.framework;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.util.CancelableThread;
+import aima.core.util.datastructure.LongIntHashMap;
+
+/**
+ * Graph search for problems with a {@link StateEncoder}. Instead of
+ * {@link Node} objects, the search tree is stored in parallel arrays (state
+ * code, parent index, action, path cost) which are indexed by node number.
+ * Explored set and frontier membership are tracked by a {@link LongIntHashMap}
+ * from state codes to node numbers. So memory consumption per generated node
+ * is a few array slots and the search does not keep any state objects alive.
+ * States are decoded only for expansion and goal test.<br>
+ * <br>
+ * Two strategies are supported:
+ * <ul>
+ * <li>breadth-first search (no heuristic function specified): The goal test
+ * is applied when nodes are generated. The FIFO frontier is just the range of
+ * node numbers which have not been expanded yet.</li>
+ * <li>A* search: The frontier is a binary heap of node numbers ordered by
+ * f(n) = g(n) + h(n). Cheaper paths to frontier states are added as
+ * duplicates, stale heap entries are discarded when popped (compare
+ * {@link LazyDeletionGraphSearch}). A heuristic function which always returns
+ * 0 results in uniform-cost search.</li>
+ * </ul>
+ * Metrics use the same keys as {@link QueueSearch}.
+ */
+public class EncodedGraphSearch implements Search {
+
+	private final StateEncoder encoder;
+	private final HeuristicFunction hf;
+	private final SearchCounters counters = new SearchCounters();
+
+	// struct-of-arrays node storage
+	private long[] codes;
+	private int[] parents;
+	private Action[] actions;
+	private double[] pathCosts;
+	private int nodeCount;
+
+	/** Creates a breadth-first graph search. */
+	public EncodedGraphSearch(StateEncoder encoder) {
+		this(encoder, null);
+	}
+
+	/**
+	 * Creates an A* graph search. If <code>hf</code> is null, breadth-first
+	 * search is used instead.
+	 */
+	public EncodedGraphSearch(StateEncoder encoder, HeuristicFunction hf) {
+		this.encoder = encoder;
+		this.hf = hf;
+	}
+
+	public List<Action> search(Problem p) {
+		counters.clear();
+		counters.startTimer();
+		allocate(1024);
+		try {
+			int goal = (hf == null) ? breadthFirstSearch(p) : aStarSearch(p);
+			if (goal == -1)
+				return Collections.emptyList();
+			counters.setPathCost(pathCosts[goal]);
+			return actionsTo(goal);
+		} finally {
+			counters.stopTimer();
+			// release node storage of the finished search
+			codes = null;
+			parents = null;
+			actions = null;
+			pathCosts = null;
+		}
+	}
+
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set(QueueSearch.METRIC_NODES_EXPANDED,
+				counters.getNodesExpanded());
+		result.set(QueueSearch.METRIC_QUEUE_SIZE, counters.getQueueSize());
+		result.set(QueueSearch.METRIC_MAX_QUEUE_SIZE,
+				counters.getMaxQueueSize());
+		result.set(QueueSearch.METRIC_PATH_COST, counters.getPathCost());
+		return result;
+	}
+
+	/** Returns the primitive counters of the last search. */
+	public SearchCounters getCounters() {
+		return counters;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the number of the goal node or -1. */
+	private int breadthFirstSearch(Problem p) {
+		LongIntHashMap reached = new LongIntHashMap(1024);
+		Object initialState = p.getInitialState();
+		int root = addNode(encoder.encode(initialState), -1, null, 0);
+		if (isGoal(p, initialState, root))
+			return root;
+		reached.put(codes[root], root);
+		int head = 0;
+		counters.setQueueSize(nodeCount - head);
+		while (head < nodeCount && !CancelableThread.currIsCanceled()) {
+			int node = head++;
+			Object state = encoder.decode(codes[node]);
+			counters.incNodesExpanded();
+			for (Action action : p.getActionsFunction().actions(state)) {
+				Object succ = p.getResultFunction().result(state, action);
+				long code = encoder.encode(succ);
+				if (reached.containsKey(code))
+					continue;
+				int child = addNode(code, node, action, pathCosts[node]
+						+ p.getStepCostFunction().c(state, action, succ));
+				if (isGoal(p, succ, child))
+					return child;
+				reached.put(code, child);
+			}
+			counters.setQueueSize(nodeCount - head);
+		}
+		return -1;
+	}
+
+	/** Returns the number of the goal node or -1. */
+	private int aStarSearch(Problem p) {
+		// state code -> node with lowest path cost found so far
+		LongIntHashMap best = new LongIntHashMap(1024);
+		BitSet expanded = new BitSet();
+		NodeHeap frontier = new NodeHeap();
+		Object initialState = p.getInitialState();
+		int root = addNode(encoder.encode(initialState), -1, null, 0);
+		best.put(codes[root], root);
+		frontier.insert(root, hf.h(initialState));
+		counters.setQueueSize(frontier.size());
+		while (!frontier.isEmpty() && !CancelableThread.currIsCanceled()) {
+			int node = frontier.pop();
+			counters.setQueueSize(frontier.size());
+			if (best.get(codes[node]) != node)
+				continue; // stale entry, a cheaper node has been added later
+			Object state = encoder.decode(codes[node]);
+			if (isGoal(p, state, node))
+				return node;
+			expanded.set(node);
+			counters.incNodesExpanded();
+			for (Action action : p.getActionsFunction().actions(state)) {
+				Object succ = p.getResultFunction().result(state, action);
+				long code = encoder.encode(succ);
+				double g = pathCosts[node]
+						+ p.getStepCostFunction().c(state, action, succ);
+				int other = best.get(code);
+				if (other != -1
+						&& (expanded.get(other) || g >= pathCosts[other]))
+					continue;
+				int child = addNode(code, node, action, g);
+				best.put(code, child);
+				frontier.insert(child, g + hf.h(succ));
+			}
+			counters.setQueueSize(frontier.size());
+		}
+		return -1;
+	}
+
+	private boolean isGoal(Problem p, Object state, int node) {
+		GoalTest gt = p.getGoalTest();
+		if (!gt.isGoalState(state))
+			return false;
+		if (gt instanceof SolutionChecker)
+			return ((SolutionChecker) gt).isAcceptableSolution(
+					actionsTo(node), state);
+		return true;
+	}
+
+	private List<Action> actionsTo(int node) {
+		List<Action> result = new ArrayList<Action>();
+		if (parents[node] == -1) {
+			// already at the goal
+			result.add(NoOpAction.NO_OP);
+		} else {
+			for (; parents[node] != -1; node = parents[node])
+				result.add(actions[node]);
+			Collections.reverse(result);
+		}
+		return result;
+	}
+
+	private void allocate(int capacity) {
+		codes = new long[capacity];
+		parents = new int[capacity];
+		actions = new Action[capacity];
+		pathCosts = new double[capacity];
+		nodeCount = 0;
+	}
+
+	private int addNode(long code, int parent, Action action, double pathCost) {
+		if (nodeCount == codes.length) {
+			int capacity = codes.length * 2;
+			long[] newCodes = new long[capacity];
+			int[] newParents = new int[capacity];
+			Action[] newActions = new Action[capacity];
+			double[] newPathCosts = new double[capacity];
+			System.arraycopy(codes, 0, newCodes, 0, nodeCount);
+			System.arraycopy(parents, 0, newParents, 0, nodeCount);
+			System.arraycopy(actions, 0, newActions, 0, nodeCount);
+			System.arraycopy(pathCosts, 0, newPathCosts, 0, nodeCount);
+			codes = newCodes;
+			parents = newParents;
+			actions = newActions;
+			pathCosts = newPathCosts;
+		}
+		codes[nodeCount] = code;
+		parents[nodeCount] = parent;
+		actions[nodeCount] = action;
+		pathCosts[nodeCount] = pathCost;
+		return nodeCount++;
+	}
+
+	/**
+	 * Binary min-heap of node numbers with primitive priorities. Entries with
+	 * equal priority are popped in insertion order.
+	 */
+	private static class NodeHeap {
+		private int[] nodes = new int[256];
+		private double[] priorities = new double[256];
+		private int size;
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		int size() {
+			return size;
+		}
+
+		void insert(int node, double priority) {
+			if (size == nodes.length) {
+				int[] newNodes = new int[size * 2];
+				double[] newPriorities = new double[size * 2];
+				System.arraycopy(nodes, 0, newNodes, 0, size);
+				System.arraycopy(priorities, 0, newPriorities, 0, size);
+				nodes = newNodes;
+				priorities = newPriorities;
+			}
+			int k = size++;
+			while (k > 0) {
+				int parent = (k - 1) >>> 1;
+				if (!less(node, priority, nodes[parent], priorities[parent]))
+					break;
+				nodes[k] = nodes[parent];
+				priorities[k] = priorities[parent];
+				k = parent;
+			}
+			nodes[k] = node;
+			priorities[k] = priority;
+		}
+
+		int pop() {
+			int result = nodes[0];
+			int last = --size;
+			int node = nodes[last];
+			double priority = priorities[last];
+			int k = 0;
+			int half = size >>> 1;
+			while (k < half) {
+				int child = 2 * k + 1;
+				int right = child + 1;
+				if (right < size
+						&& less(nodes[right], priorities[right], nodes[child],
+								priorities[child]))
+					child = right;
+				if (!less(nodes[child], priorities[child], node, priority))
+					break;
+				nodes[k] = nodes[child];
+				priorities[k] = priorities[child];
+				k = child;
+			}
+			nodes[k] = node;
+			priorities[k] = priority;
+			return result;
+		}
+
+		// node numbers increase with insertion time
+		private static boolean less(int n1, double p1, int n2, double p2) {
+			return p1 < p2 || p1 == p2 && n1 < n2;
+		}
+	}
+}
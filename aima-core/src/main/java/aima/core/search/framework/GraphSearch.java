@@ -100,10 +100,12 @@ public class GraphSearch extends QueueSearch {
 				// Want to replace the current frontier node with the child
 				// node therefore mark the child to be added and remove the
 				// current fontierNode
-				removeNodeFromFrontier(frontierNode);
-				// Ensure removed from add to frontier as well
-				// as 1 or more may reach the same state at the same time
-				addToFrontier.remove(frontierNode);
+				if (!removeNodeFromFrontier(frontierNode)) {
+					// Not in the frontier yet, so it must have been added
+					// to add to frontier during this expansion (1 or more
+					// may reach the same state at the same time)
+					addToFrontier.remove(frontierNode);
+				}
 			}
 
 			if (yesAddToFrontier) {
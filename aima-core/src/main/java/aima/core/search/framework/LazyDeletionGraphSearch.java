@@ -0,0 +1,64 @@
+package aima.core.search.framework;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import aima.core.agent.Action;
+import aima.core.util.datastructure.Queue;
+
+/**
+ * Variant of {@link GraphSearch} for priority searches like
+ * {@link aima.core.search.informed.AStarSearch} and
+ * {@link aima.core.search.uninformed.UniformCostSearch}, which never removes
+ * nodes from the frontier. If a cheaper path to a state is found, the child
+ * node is just added as duplicate. Of all nodes for the same state, the one
+ * with the lowest path cost is popped first. All nodes popped later for the
+ * same state are stale and discarded without expansion.<br>
+ * <br>
+ * Compared to <code>GraphSearch</code>, no state to frontier node bookkeeping
+ * is needed and the frontier never has to support removal of arbitrary
+ * elements. The price is a larger frontier. Note that the queue size metrics
+ * include stale nodes.
+ */
+public class LazyDeletionGraphSearch extends QueueSearch {
+
+	private Set<Object> explored = new HashSet<Object>();
+	// for each generated state the node with the lowest path cost so far
+	private Map<Object, Node> bestNodes = new HashMap<Object, Node>();
+	private List<Node> addToFrontier = new ArrayList<Node>();
+
+	@Override
+	public List<Action> search(Problem problem, Queue<Node> frontier) {
+		explored.clear();
+		bestNodes.clear();
+		return super.search(problem, frontier);
+	}
+
+	@Override
+	public List<Node> getResultingNodesToAddToFrontier(Node nodeToExpand,
+			Problem problem) {
+
+		addToFrontier.clear();
+		// a node with the same state and lower cost has already been expanded
+		if (!explored.add(nodeToExpand.getState()))
+			return addToFrontier;
+		bestNodes.remove(nodeToExpand.getState());
+
+		for (Node cfn : expandNode(nodeToExpand, problem)) {
+			Object state = cfn.getState();
+			if (!explored.contains(state)) {
+				Node bestNode = bestNodes.get(state);
+				if (bestNode == null
+						|| cfn.getPathCost() < bestNode.getPathCost()) {
+					bestNodes.put(state, cfn);
+					addToFrontier.add(cfn);
+				}
+			}
+		}
+		return addToFrontier;
+	}
+}
@@ -4,7 +4,9 @@ import java.util.Hashtable;
 import java.util.Set;
 
 /**
- * Stores key-value pairs for efficiency analysis.
+ * Stores key-value pairs for efficiency analysis. Searches which update values
+ * in their inner loop should use {@link SearchCounters} and publish the
+ * values here on demand.
  * @author Ravi Mohan
  * @author Ruediger Lunde
  */
@@ -28,15 +30,15 @@ public class Metrics {
 	}
 
 	public int getInt(String name) {
-		return new Integer(hash.get(name)).intValue();
+		return Integer.parseInt(hash.get(name));
 	}
 
 	public double getDouble(String name) {
-		return new Double(hash.get(name)).doubleValue();
+		return Double.parseDouble(hash.get(name));
 	}
 	
 	public long getLong(String name) {
-		return new Long(hash.get(name)).longValue();
+		return Long.parseLong(hash.get(name));
 	}
 
 	public String get(String name) {
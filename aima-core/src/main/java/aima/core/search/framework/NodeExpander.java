@@ -13,15 +13,22 @@ public class NodeExpander {
 	public static final String METRIC_NODES_EXPANDED = "nodesExpanded";
 
 	protected Metrics metrics;
+	/**
+	 * Primitive counters updated during search. Their values are copied into
+	 * {@link #metrics} only when the metrics are requested.
+	 */
+	protected final SearchCounters counters;
 
 	public NodeExpander() {
 		metrics = new Metrics();
+		counters = new SearchCounters();
 	}
 
 	/**
 	 * Sets the nodes expanded metric to zero.
 	 */
 	public void clearInstrumentation() {
+		counters.clear();
 		metrics.set(METRIC_NODES_EXPANDED, 0);
 	}
 
@@ -31,7 +38,18 @@ public class NodeExpander {
 	 * @return the number of nodes expanded so far.
 	 */
 	public int getNodesExpanded() {
-		return metrics.getInt(METRIC_NODES_EXPANDED);
+		return (int) counters.getNodesExpanded();
+	}
+
+	/**
+	 * Returns the primitive counters of the node expander. In contrast to
+	 * {@link #getMetrics()}, the returned object always reflects the current
+	 * state of the search.
+	 * 
+	 * @return the primitive counters of the node expander.
+	 */
+	public SearchCounters getCounters() {
+		return counters;
 	}
 
 	/**
@@ -40,6 +58,7 @@ public class NodeExpander {
 	 * @return all the metrics of the node expander.
 	 */
 	public Metrics getMetrics() {
+		metrics.set(METRIC_NODES_EXPANDED, counters.getNodesExpanded());
 		return metrics;
 	}
 
@@ -70,8 +89,7 @@ public class NodeExpander {
 					successorState);
 			childNodes.add(new Node(successorState, node, action, stepCost));
 		}
-		metrics.set(METRIC_NODES_EXPANDED,
-				metrics.getInt(METRIC_NODES_EXPANDED) + 1);
+		counters.incNodesExpanded();
 
 		return childNodes;
 	}
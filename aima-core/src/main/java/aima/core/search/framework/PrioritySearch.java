@@ -4,9 +4,13 @@ import java.util.Comparator;
 import java.util.List;
 
 import aima.core.agent.Action;
-import aima.core.util.datastructure.PriorityQueue;
+import aima.core.util.datastructure.IndexedPriorityQueue;
 
 /**
+ * Searches with a priority queue as frontier. The frontier is an
+ * {@link IndexedPriorityQueue}, so that graph searches can replace frontier
+ * nodes in logarithmic time.
+ * 
  * @author Ravi Mohan
  * @author Ruediger Lunde
  */
@@ -24,7 +28,7 @@ public class PrioritySearch implements Search {
 	}
 	
 	public List<Action> search(Problem p) throws Exception {
-		return search.search(p, new PriorityQueue<Node>(5, comparator));
+		return search.search(p, new IndexedPriorityQueue<Node>(5, comparator));
 	}
 
 	public Metrics getMetrics() {
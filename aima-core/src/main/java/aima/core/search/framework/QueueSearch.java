@@ -46,47 +46,52 @@ public abstract class QueueSearch extends NodeExpander {
 		this.frontier = frontier;
 
 		clearInstrumentation();
-		// initialize the frontier using the initial state of the problem
-		Node root = new Node(problem.getInitialState());
-		if (isCheckGoalBeforeAddingToFrontier()) {
-			if (SearchUtils.isGoalState(problem, root)) {
-				return SearchUtils.actionsFromNodes(root.getPathFromRoot());
-			}
-		}
-		frontier.insert(root);
-		setQueueSize(frontier.size());
-		while (!(frontier.isEmpty()) && !CancelableThread.currIsCanceled()) {
-			// choose a leaf node and remove it from the frontier
-			Node nodeToExpand = popNodeFromFrontier();
-			setQueueSize(frontier.size());
-			// Only need to check the nodeToExpand if have not already
-			// checked before adding to the frontier
-			if (!isCheckGoalBeforeAddingToFrontier()) {
-				// if the node contains a goal state then return the
-				// corresponding solution
-				if (SearchUtils.isGoalState(problem, nodeToExpand)) {
-					setPathCost(nodeToExpand.getPathCost());
-					return SearchUtils.actionsFromNodes(nodeToExpand
-							.getPathFromRoot());
+		counters.startTimer();
+		try {
+			// initialize the frontier using the initial state of the problem
+			Node root = new Node(problem.getInitialState());
+			if (isCheckGoalBeforeAddingToFrontier()) {
+				if (SearchUtils.isGoalState(problem, root)) {
+					return SearchUtils.actionsFromNodes(root.getPathFromRoot());
 				}
 			}
-			// expand the chosen node, adding the resulting nodes to the
-			// frontier
-			for (Node fn : getResultingNodesToAddToFrontier(nodeToExpand,
-					problem)) {
-				if (isCheckGoalBeforeAddingToFrontier()) {
-					if (SearchUtils.isGoalState(problem, fn)) {
-						setPathCost(fn.getPathCost());
-						return SearchUtils.actionsFromNodes(fn
+			frontier.insert(root);
+			setQueueSize(frontier.size());
+			while (!(frontier.isEmpty()) && !CancelableThread.currIsCanceled()) {
+				// choose a leaf node and remove it from the frontier
+				Node nodeToExpand = popNodeFromFrontier();
+				setQueueSize(frontier.size());
+				// Only need to check the nodeToExpand if have not already
+				// checked before adding to the frontier
+				if (!isCheckGoalBeforeAddingToFrontier()) {
+					// if the node contains a goal state then return the
+					// corresponding solution
+					if (SearchUtils.isGoalState(problem, nodeToExpand)) {
+						setPathCost(nodeToExpand.getPathCost());
+						return SearchUtils.actionsFromNodes(nodeToExpand
 								.getPathFromRoot());
 					}
 				}
-				frontier.insert(fn);
+				// expand the chosen node, adding the resulting nodes to the
+				// frontier
+				for (Node fn : getResultingNodesToAddToFrontier(nodeToExpand,
+						problem)) {
+					if (isCheckGoalBeforeAddingToFrontier()) {
+						if (SearchUtils.isGoalState(problem, fn)) {
+							setPathCost(fn.getPathCost());
+							return SearchUtils.actionsFromNodes(fn
+									.getPathFromRoot());
+						}
+					}
+					frontier.insert(fn);
+				}
+				setQueueSize(frontier.size());
 			}
-			setQueueSize(frontier.size());
+			// if the frontier is empty then return failure
+			return failure();
+		} finally {
+			counters.stopTimer();
 		}
-		// if the frontier is empty then return failure
-		return failure();
 	}
 
 	public boolean isCheckGoalBeforeAddingToFrontier() {
@@ -122,28 +127,34 @@ public abstract class QueueSearch extends NodeExpander {
 		metrics.set(METRIC_PATH_COST, 0);
 	}
 
+	@Override
+	public Metrics getMetrics() {
+		Metrics result = super.getMetrics();
+		result.set(METRIC_QUEUE_SIZE, counters.getQueueSize());
+		result.set(METRIC_MAX_QUEUE_SIZE, counters.getMaxQueueSize());
+		return result;
+	}
+
 	public int getQueueSize() {
-		return metrics.getInt("queueSize");
+		return counters.getQueueSize();
 	}
 
 	public void setQueueSize(int queueSize) {
-
-		metrics.set(METRIC_QUEUE_SIZE, queueSize);
-		int maxQSize = metrics.getInt(METRIC_MAX_QUEUE_SIZE);
-		if (queueSize > maxQSize) {
-			metrics.set(METRIC_MAX_QUEUE_SIZE, queueSize);
-		}
+		counters.setQueueSize(queueSize);
 	}
 
 	public int getMaxQueueSize() {
-		return metrics.getInt(METRIC_MAX_QUEUE_SIZE);
+		return counters.getMaxQueueSize();
 	}
 
 	public double getPathCost() {
-		return metrics.getDouble(METRIC_PATH_COST);
+		return counters.getPathCost();
 	}
 
 	public void setPathCost(Double pathCost) {
+		// called once per search, so the string based view is updated
+		// directly
+		counters.setPathCost(pathCost);
 		metrics.set(METRIC_PATH_COST, pathCost);
 	}
 
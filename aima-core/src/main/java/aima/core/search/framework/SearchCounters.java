@@ -0,0 +1,94 @@
+package aima.core.search.framework;
+
+/**
+ * Typed counterpart of {@link Metrics} for the values which are updated inside
+ * the search loop (nodes expanded, queue size, maximum queue size, path cost
+ * and elapsed time). All values are kept in primitive fields, so updating them
+ * neither boxes numbers nor converts them to strings. Searches publish the
+ * current values to their {@link Metrics} view when it is requested.
+ */
+public class SearchCounters {
+	private long nodesExpanded;
+	private int queueSize;
+	private int maxQueueSize;
+	private double pathCost;
+	private long startTime;
+	private long elapsedNanos;
+
+	/**
+	 * Sets all counters and gauges to zero.
+	 */
+	public void clear() {
+		nodesExpanded = 0;
+		queueSize = 0;
+		maxQueueSize = 0;
+		pathCost = 0.0;
+		startTime = 0;
+		elapsedNanos = 0;
+	}
+
+	/** Increments the number of expanded nodes by one. */
+	public void incNodesExpanded() {
+		nodesExpanded++;
+	}
+
+	public long getNodesExpanded() {
+		return nodesExpanded;
+	}
+
+	public void setNodesExpanded(long nodesExpanded) {
+		this.nodesExpanded = nodesExpanded;
+	}
+
+	/**
+	 * Sets the current queue size and updates the maximum queue size if
+	 * necessary.
+	 */
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+		if (queueSize > maxQueueSize)
+			maxQueueSize = queueSize;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public int getMaxQueueSize() {
+		return maxQueueSize;
+	}
+
+	public void setPathCost(double pathCost) {
+		this.pathCost = pathCost;
+	}
+
+	public double getPathCost() {
+		return pathCost;
+	}
+
+	/** Remembers the current time as start time of the measured interval. */
+	public void startTimer() {
+		startTime = System.nanoTime();
+		elapsedNanos = 0;
+	}
+
+	/** Stores the time passed since the last call of {@link #startTimer()}. */
+	public void stopTimer() {
+		elapsedNanos = System.nanoTime() - startTime;
+	}
+
+	/**
+	 * Returns the time in nanoseconds between the last calls of
+	 * {@link #startTimer()} and {@link #stopTimer()}.
+	 */
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "[nodesExpanded=" + nodesExpanded + ", queueSize=" + queueSize
+				+ ", maxQueueSize=" + maxQueueSize + ", pathCost=" + pathCost
+				+ ", elapsedNanos=" + elapsedNanos + "]";
+	}
+}
@@ -0,0 +1,22 @@
+package aima.core.search.framework;
+
+/**
+ * Optional contract for problems whose states fit into a single
+ * <code>long</code> value. Searches can use it to store states, frontier and
+ * explored set in primitive data structures instead of keeping state objects
+ * for every generated node.<br>
+ * <br>
+ * Encoding must be injective: two states are equal if and only if their codes
+ * are equal. <code>decode(encode(s))</code> must return a state equal to
+ * <code>s</code>.
+ *
+ * @see EncodedGraphSearch
+ */
+public interface StateEncoder {
+
+	/** Returns the code representing the specified state. */
+	long encode(Object state);
+
+	/** Returns a state object for the specified code. */
+	Object decode(long code);
+}
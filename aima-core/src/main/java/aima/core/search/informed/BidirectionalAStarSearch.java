@@ -0,0 +1,254 @@
+package aima.core.search.informed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.search.framework.BidirectionalProblem;
+import aima.core.search.framework.HeuristicFunction;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.QueueSearch;
+import aima.core.search.framework.Search;
+import aima.core.search.framework.SearchCounters;
+import aima.core.util.CancelableThread;
+
+/**
+ * Bidirectional A* graph search (symmetric approach). Two A* searches are run
+ * alternately, one on the original problem guided by a heuristic which
+ * estimates the cost to the goal, and one on the reverse problem guided by a
+ * heuristic which estimates the cost from the initial state. Each time one of
+ * the searches generates a state which has already been reached by the other,
+ * the cost of the connecting path is compared with the best path found so far.
+ * The search stops as soon as the smallest f-value of one of the frontiers is
+ * not smaller than the cost of the best path. For consistent heuristics, the
+ * returned solution is optimal.<br>
+ * <br>
+ * In contrast to {@link aima.core.search.uninformed.BidirectionalSearch}, the
+ * problem must be truly reversible: The reverse problem must start at the goal
+ * state, and for each of its actions leading from <code>a</code> to
+ * <code>b</code>, the original problem must provide an action of the same
+ * cost leading from <code>b</code> to <code>a</code>. The path found by the
+ * reverse search is translated into actions of the original problem.
+ */
+public class BidirectionalAStarSearch implements Search {
+
+	private final HeuristicFunction forwardHf;
+	private final HeuristicFunction backwardHf;
+	private final SearchCounters counters = new SearchCounters();
+
+	/**
+	 * Creates a bidirectional A* search.
+	 *
+	 * @param forwardHf
+	 *            estimates the cost from a state to the goal.
+	 * @param backwardHf
+	 *            estimates the cost from the initial state to a state.
+	 */
+	public BidirectionalAStarSearch(HeuristicFunction forwardHf,
+			HeuristicFunction backwardHf) {
+		this.forwardHf = forwardHf;
+		this.backwardHf = backwardHf;
+	}
+
+	/** Expects a problem which implements {@link BidirectionalProblem}. */
+	public List<Action> search(Problem p) {
+		if (!(p instanceof BidirectionalProblem))
+			throw new IllegalArgumentException(
+					"Bidirectional search needs a BidirectionalProblem.");
+		Problem op = ((BidirectionalProblem) p).getOriginalProblem();
+		Problem rp = ((BidirectionalProblem) p).getReverseProblem();
+		counters.clear();
+		counters.startTimer();
+		try {
+			Direction fwd = new Direction(op, forwardHf);
+			Direction bwd = new Direction(rp, backwardHf);
+			if (op.isGoalState(op.getInitialState())) {
+				List<Action> result = new ArrayList<Action>();
+				result.add(NoOpAction.NO_OP);
+				return result;
+			}
+			// best path found so far, given by the two nodes which meet
+			double bestCost = Double.POSITIVE_INFINITY;
+			Node fMeet = null;
+			Node bMeet = null;
+			while (!CancelableThread.currIsCanceled()) {
+				double fKey = fwd.peekKey();
+				double bKey = bwd.peekKey();
+				if (Math.max(fKey, bKey) >= bestCost
+						|| fKey == Double.POSITIVE_INFINITY
+						|| bKey == Double.POSITIVE_INFINITY)
+					break;
+				Direction curr = (fKey <= bKey) ? fwd : bwd;
+				Direction other = (curr == fwd) ? bwd : fwd;
+				for (Node child : curr.expand()) {
+					Node otherNode = other.bestNodes.get(child.getState());
+					if (otherNode != null
+							&& child.getPathCost() + otherNode.getPathCost() < bestCost) {
+						bestCost = child.getPathCost()
+								+ otherNode.getPathCost();
+						fMeet = (curr == fwd) ? child : otherNode;
+						bMeet = (curr == fwd) ? otherNode : child;
+					}
+				}
+				counters.setNodesExpanded(fwd.nodesExpanded
+						+ bwd.nodesExpanded);
+				counters.setQueueSize(fwd.frontier.size()
+						+ bwd.frontier.size());
+			}
+			if (fMeet == null || CancelableThread.currIsCanceled())
+				return Collections.emptyList();
+			counters.setPathCost(bestCost);
+			return retrieveActions(op, fMeet, bMeet);
+		} finally {
+			counters.stopTimer();
+		}
+	}
+
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set(QueueSearch.METRIC_NODES_EXPANDED,
+				counters.getNodesExpanded());
+		result.set(QueueSearch.METRIC_QUEUE_SIZE, counters.getQueueSize());
+		result.set(QueueSearch.METRIC_MAX_QUEUE_SIZE,
+				counters.getMaxQueueSize());
+		result.set(QueueSearch.METRIC_PATH_COST, counters.getPathCost());
+		return result;
+	}
+
+	/** Returns the primitive counters of the last search. */
+	public SearchCounters getCounters() {
+		return counters;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Concatenates the actions leading to the forward meeting node with the
+	 * original problem actions which correspond to the reverse path.
+	 */
+	private List<Action> retrieveActions(Problem op, Node fMeet, Node bMeet) {
+		List<Action> result = new ArrayList<Action>();
+		for (Node node : fMeet.getPathFromRoot())
+			if (!node.isRootNode())
+				result.add(node.getAction());
+		for (Node node = bMeet; !node.isRootNode(); node = node.getParent()) {
+			Object from = node.getState();
+			Object to = node.getParent().getState();
+			Action best = null;
+			double bestCost = Double.POSITIVE_INFINITY;
+			for (Action action : op.getActionsFunction().actions(from)) {
+				if (to.equals(op.getResultFunction().result(from, action))) {
+					double cost = op.getStepCostFunction().c(from, action, to);
+					if (cost < bestCost) {
+						best = action;
+						bestCost = cost;
+					}
+				}
+			}
+			if (best == null)
+				throw new IllegalStateException(
+						"Reverse problem action cannot be inverted: from "
+								+ to + " to " + from);
+			result.add(best);
+		}
+		return result;
+	}
+
+	private static class Entry {
+		final Node node;
+		final double f;
+
+		Entry(Node node, double f) {
+			this.node = node;
+			this.f = f;
+		}
+	}
+
+	private static final Comparator<Entry> ENTRY_COMPARATOR = new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			return Double.compare(e1.f, e2.f);
+		}
+	};
+
+	/**
+	 * One of the two A* searches. Cheaper paths to frontier states are added
+	 * as duplicates, stale frontier entries are discarded when they reach the
+	 * top of the frontier.
+	 */
+	private static class Direction {
+		private final Problem problem;
+		private final HeuristicFunction hf;
+		private final PriorityQueue<Entry> frontier = new PriorityQueue<Entry>(
+				64, ENTRY_COMPARATOR);
+		// for each reached state the node with the lowest path cost so far
+		final Map<Object, Node> bestNodes = new HashMap<Object, Node>();
+		private final Set<Object> explored = new HashSet<Object>();
+		private final List<Node> children = new ArrayList<Node>();
+		long nodesExpanded;
+
+		Direction(Problem problem, HeuristicFunction hf) {
+			this.problem = problem;
+			this.hf = hf;
+			Node root = new Node(problem.getInitialState());
+			bestNodes.put(root.getState(), root);
+			frontier.add(new Entry(root, hf.h(root.getState())));
+		}
+
+		/**
+		 * Returns the smallest f-value of all valid frontier entries or
+		 * infinity if the frontier is empty.
+		 */
+		double peekKey() {
+			Entry top;
+			while ((top = frontier.peek()) != null) {
+				Object state = top.node.getState();
+				if (!explored.contains(state)
+						&& bestNodes.get(state) == top.node)
+					return top.f;
+				frontier.poll();
+			}
+			return Double.POSITIVE_INFINITY;
+		}
+
+		/**
+		 * Expands the top node of the frontier and returns the children which
+		 * improve the path costs of their states.
+		 */
+		List<Node> expand() {
+			Node node = frontier.poll().node;
+			Object state = node.getState();
+			explored.add(state);
+			nodesExpanded++;
+			children.clear();
+			for (Action action : problem.getActionsFunction().actions(state)) {
+				Object succ = problem.getResultFunction().result(state,
+						action);
+				if (explored.contains(succ))
+					continue;
+				double stepCost = problem.getStepCostFunction().c(state,
+						action, succ);
+				double g = node.getPathCost() + stepCost;
+				Node best = bestNodes.get(succ);
+				if (best == null || g < best.getPathCost()) {
+					Node child = new Node(succ, node, action, stepCost);
+					bestNodes.put(succ, child);
+					frontier.add(new Entry(child, g + hf.h(succ)));
+					children.add(child);
+				}
+			}
+			return children;
+		}
+	}
+}
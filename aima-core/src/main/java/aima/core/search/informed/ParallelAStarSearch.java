@@ -0,0 +1,262 @@
+package aima.core.search.informed;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.HeuristicFunction;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.NodeExpander;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.QueueSearch;
+import aima.core.search.framework.Search;
+import aima.core.search.framework.SearchUtils;
+import aima.core.util.CancelableThread;
+
+/**
+ * Hash distributed A* (HDA*) graph search. The state space is partitioned by
+ * state hash codes among a number of worker threads. Each worker owns an open
+ * list and a best-node map for its states and receives the nodes generated
+ * for them by other workers through a lock-free message queue. Workers expand
+ * nodes independently of each other. Goal nodes update a shared incumbent
+ * solution, and nodes which cannot improve the incumbent are pruned. The
+ * search ends when no node is left in any open list or message queue, so the
+ * returned solution is optimal for admissible heuristics.<br>
+ * <br>
+ * The thread calling {@link #search(Problem)} serves as the first worker.
+ * Cancellation of that thread (see {@link CancelableThread}) stops all
+ * workers. Idle workers are parked until they receive new nodes. Note that
+ * the functions of the problem and the heuristic function are called
+ * concurrently and must therefore be thread-safe. States must
+ * provide consistent <code>equals</code> and <code>hashCode</code> methods.
+ */
+public class ParallelAStarSearch implements Search {
+
+	public static final String METRIC_THREADS = "threads";
+
+	// upper bound for the time an idle worker sleeps without being notified
+	private static final long IDLE_PARK_NANOS = 1000000;
+
+	private final HeuristicFunction hf;
+	private final int numThreads;
+
+	// state of the current search
+	private Problem problem;
+	private Worker[] workers;
+	private Thread caller;
+	// number of nodes in open lists and message queues
+	private final AtomicLong pending = new AtomicLong();
+	private final AtomicReference<Node> solution = new AtomicReference<Node>();
+	private volatile boolean stopped;
+	private volatile Throwable failure;
+
+	private long nodesExpanded;
+
+	/** Creates a search with one worker per available processor. */
+	public ParallelAStarSearch(HeuristicFunction hf) {
+		this(hf, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelAStarSearch(HeuristicFunction hf, int numThreads) {
+		if (numThreads < 1)
+			throw new IllegalArgumentException(
+					"At least one thread is needed.");
+		this.hf = hf;
+		this.numThreads = numThreads;
+	}
+
+	public List<Action> search(Problem p) throws Exception {
+		problem = p;
+		caller = Thread.currentThread();
+		workers = new Worker[numThreads];
+		for (int i = 0; i < numThreads; i++)
+			workers[i] = new Worker();
+		pending.set(0);
+		solution.set(null);
+		stopped = false;
+		failure = null;
+		nodesExpanded = 0;
+
+		Node root = new Node(p.getInitialState());
+		send(root);
+		boolean completed = false;
+		Thread[] threads = new Thread[numThreads];
+		try {
+			for (int i = 1; i < numThreads; i++) {
+				threads[i] = new Thread(workers[i], "HDA*-worker-" + i);
+				threads[i].start();
+			}
+			workers[0].run();
+			for (int i = 1; i < numThreads; i++)
+				threads[i].join();
+			completed = !stopped;
+		} finally {
+			// makes sure that no worker survives an exception
+			stopped = true;
+		}
+		for (Worker worker : workers)
+			nodesExpanded += worker.nodesExpanded;
+		workers = null;
+		problem = null;
+		caller = null;
+		if (failure instanceof Exception)
+			throw (Exception) failure;
+		else if (failure instanceof Error)
+			throw (Error) failure;
+		else if (failure != null)
+			throw new RuntimeException(failure);
+
+		Node goal = solution.get();
+		if (goal == null || !completed)
+			return Collections.emptyList();
+		return SearchUtils.actionsFromNodes(goal.getPathFromRoot());
+	}
+
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set(NodeExpander.METRIC_NODES_EXPANDED, nodesExpanded);
+		Node goal = solution.get();
+		result.set(QueueSearch.METRIC_PATH_COST,
+				goal != null ? goal.getPathCost() : 0);
+		result.set(METRIC_THREADS, numThreads);
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Hands the node over to the worker which owns its state. */
+	private void send(Node node) {
+		pending.incrementAndGet();
+		int hash = node.getState().hashCode();
+		hash ^= (hash >>> 16);
+		Worker worker = workers[(hash & 0x7fffffff) % numThreads];
+		worker.inbox.add(node);
+		if (worker.idle)
+			LockSupport.unpark(worker.thread);
+	}
+
+	/** Checks whether the thread which started the search was canceled. */
+	private boolean isCanceled() {
+		return caller instanceof CancelableThread
+				&& ((CancelableThread) caller).isCanceled();
+	}
+
+	private double getIncumbentCost() {
+		Node goal = solution.get();
+		return goal != null ? goal.getPathCost() : Double.POSITIVE_INFINITY;
+	}
+
+	private void offerSolution(Node goal) {
+		while (true) {
+			Node curr = solution.get();
+			if (curr != null && curr.getPathCost() <= goal.getPathCost())
+				return;
+			if (solution.compareAndSet(curr, goal))
+				return;
+		}
+	}
+
+	private static class OpenEntry {
+		final Node node;
+		final double f;
+
+		OpenEntry(Node node, double f) {
+			this.node = node;
+			this.f = f;
+		}
+	}
+
+	private static final Comparator<OpenEntry> ENTRY_COMPARATOR = new Comparator<OpenEntry>() {
+		public int compare(OpenEntry e1, OpenEntry e2) {
+			return Double.compare(e1.f, e2.f);
+		}
+	};
+
+	private class Worker implements Runnable {
+		final ConcurrentLinkedQueue<Node> inbox = new ConcurrentLinkedQueue<Node>();
+		private final PriorityQueue<OpenEntry> open = new PriorityQueue<OpenEntry>(
+				64, ENTRY_COMPARATOR);
+		// for each owned state the node with the lowest path cost so far
+		private final Map<Object, Node> bestNodes = new HashMap<Object, Node>();
+		long nodesExpanded;
+		volatile Thread thread;
+		// set before the worker parks, so that senders know to unpark it
+		volatile boolean idle;
+
+		public void run() {
+			thread = Thread.currentThread();
+			try {
+				while (!stopped && pending.get() > 0) {
+					if (isCanceled()) {
+						stopped = true;
+						break;
+					}
+					Node node;
+					while ((node = inbox.poll()) != null)
+						receive(node);
+					OpenEntry entry = open.poll();
+					if (entry != null) {
+						process(entry);
+						pending.decrementAndGet();
+					} else {
+						idle = true;
+						if (inbox.isEmpty() && !stopped && pending.get() > 0)
+							LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+						idle = false;
+					}
+				}
+			} catch (Throwable e) {
+				if (failure == null)
+					failure = e;
+				stopped = true;
+			}
+		}
+
+		/** Adds the node to the open list if it is worth to be expanded. */
+		private void receive(Node node) {
+			Object state = node.getState();
+			Node best = bestNodes.get(state);
+			double f = node.getPathCost() + hf.h(state);
+			if ((best == null || node.getPathCost() < best.getPathCost())
+					&& f < getIncumbentCost()) {
+				bestNodes.put(state, node);
+				open.add(new OpenEntry(node, f));
+			} else {
+				pending.decrementAndGet();
+			}
+		}
+
+		private void process(OpenEntry entry) {
+			Node node = entry.node;
+			// skip stale entries and entries which cannot improve the
+			// incumbent any more
+			if (bestNodes.get(node.getState()) != node
+					|| entry.f >= getIncumbentCost())
+				return;
+			if (SearchUtils.isGoalState(problem, node)) {
+				offerSolution(node);
+				return;
+			}
+			nodesExpanded++;
+			Object state = node.getState();
+			for (Action action : problem.getActionsFunction().actions(state)) {
+				Object succ = problem.getResultFunction().result(state,
+						action);
+				double stepCost = problem.getStepCostFunction().c(state,
+						action, succ);
+				send(new Node(succ, node, action, stepCost));
+			}
+		}
+	}
+}
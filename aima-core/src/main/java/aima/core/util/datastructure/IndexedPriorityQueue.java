@@ -0,0 +1,273 @@
+package aima.core.util.datastructure;
+
+import java.util.AbstractQueue;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Binary heap based priority queue which additionally maintains an index from
+ * elements to their heap positions. This reduces the costs of
+ * {@link #remove(Object)} and {@link #contains(Object)} from O(n) to O(log n)
+ * and O(1) respectively. Priority changes are supported by
+ * {@link #replace(Object, Object)}, which replaces an element by an element
+ * with different priority in O(log n).<br>
+ * <br>
+ * Heap maintenance follows exactly the sift operations of
+ * {@link java.util.PriorityQueue}. So both implementations pop elements with
+ * equal priority in the same order and can be exchanged without changing
+ * search results.<br>
+ * <br>
+ * Elements are identified by <code>equals</code>. The queue does not permit
+ * <code>null</code> elements or elements which are equal to elements already
+ * contained in the queue.
+ *
+ * @param <E>
+ *            the type of elements held in this queue
+ */
+public class IndexedPriorityQueue<E> extends AbstractQueue<E> implements
+		Queue<E> {
+	private static final int DEFAULT_INITIAL_CAPACITY = 11;
+
+	private final Comparator<? super E> comparator;
+	private Entry<E>[] heap;
+	private int size;
+	private final HashMap<Object, Entry<E>> index;
+	private int modCount;
+
+	public IndexedPriorityQueue(Comparator<? super E> comparator) {
+		this(DEFAULT_INITIAL_CAPACITY, comparator);
+	}
+
+	public IndexedPriorityQueue(int initialCapacity,
+			Comparator<? super E> comparator) {
+		if (initialCapacity < 1)
+			throw new IllegalArgumentException(
+					"Initial capacity must be positive.");
+		this.comparator = comparator;
+		heap = newArray(initialCapacity);
+		index = new HashMap<Object, Entry<E>>();
+	}
+
+	public Comparator<? super E> comparator() {
+		return comparator;
+	}
+
+	//
+	// START-Queue
+	public boolean isEmpty() {
+		return 0 == size;
+	}
+
+	public E pop() {
+		return poll();
+	}
+
+	public Queue<E> insert(E element) {
+		if (offer(element)) {
+			return this;
+		}
+		return null;
+	}
+
+	// END-Queue
+	//
+
+	/**
+	 * Inserts the specified element into this queue.
+	 *
+	 * @return <code>false</code> if the queue already contains an element
+	 *         which is equal to the specified element.
+	 */
+	public boolean offer(E element) {
+		if (element == null)
+			throw new NullPointerException();
+		if (index.containsKey(element))
+			return false;
+		modCount++;
+		if (size == heap.length)
+			grow();
+		Entry<E> entry = new Entry<E>(element);
+		index.put(element, entry);
+		siftUp(size++, entry);
+		return true;
+	}
+
+	public E poll() {
+		if (size == 0)
+			return null;
+		modCount++;
+		Entry<E> result = heap[0];
+		int last = --size;
+		Entry<E> moved = heap[last];
+		heap[last] = null;
+		if (last > 0)
+			siftDown(0, moved);
+		index.remove(result.element);
+		return result.element;
+	}
+
+	public E peek() {
+		return size == 0 ? null : heap[0].element;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o != null && index.containsKey(o);
+	}
+
+	/** Removes the specified element from the queue in O(log n). */
+	@Override
+	public boolean remove(Object o) {
+		Entry<E> entry = (o != null) ? index.remove(o) : null;
+		if (entry == null)
+			return false;
+		modCount++;
+		removeAt(entry.pos);
+		return true;
+	}
+
+	/**
+	 * Replaces an element of the queue by a new element, typically one with
+	 * changed priority, and restores the heap property in O(log n).
+	 *
+	 * @return <code>false</code> if the old element was not found in the
+	 *         queue or the new element is already contained.
+	 */
+	public boolean replace(E oldElement, E newElement) {
+		if (newElement == null)
+			throw new NullPointerException();
+		Entry<E> entry = index.get(oldElement);
+		if (entry == null || !oldElement.equals(newElement)
+				&& index.containsKey(newElement))
+			return false;
+		modCount++;
+		index.remove(oldElement);
+		entry.element = newElement;
+		index.put(newElement, entry);
+		int pos = entry.pos;
+		siftDown(pos, entry);
+		if (heap[pos] == entry)
+			siftUp(pos, entry);
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		modCount++;
+		for (int i = 0; i < size; i++)
+			heap[i] = null;
+		size = 0;
+		index.clear();
+	}
+
+	public Iterator<E> iterator() {
+		return new Itr();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void grow() {
+		int oldCapacity = heap.length;
+		// double size if small, else grow by 50%
+		int newCapacity = oldCapacity
+				+ ((oldCapacity < 64) ? (oldCapacity + 2) : (oldCapacity >> 1));
+		if (newCapacity < 0)
+			throw new OutOfMemoryError();
+		Entry<E>[] newHeap = newArray(newCapacity);
+		System.arraycopy(heap, 0, newHeap, 0, size);
+		heap = newHeap;
+	}
+
+	@SuppressWarnings("unchecked")
+	private Entry<E>[] newArray(int capacity) {
+		return (Entry<E>[]) new Entry<?>[capacity];
+	}
+
+	private void removeAt(int i) {
+		int last = --size;
+		if (last == i) {
+			heap[i] = null;
+		} else {
+			Entry<E> moved = heap[last];
+			heap[last] = null;
+			siftDown(i, moved);
+			if (heap[i] == moved)
+				siftUp(i, moved);
+		}
+	}
+
+	private void siftUp(int k, Entry<E> entry) {
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			Entry<E> e = heap[parent];
+			if (comparator.compare(entry.element, e.element) >= 0)
+				break;
+			setAt(k, e);
+			k = parent;
+		}
+		setAt(k, entry);
+	}
+
+	private void siftDown(int k, Entry<E> entry) {
+		int half = size >>> 1;
+		while (k < half) {
+			int child = (k << 1) + 1;
+			Entry<E> c = heap[child];
+			int right = child + 1;
+			if (right < size
+					&& comparator.compare(c.element, heap[right].element) > 0)
+				c = heap[child = right];
+			if (comparator.compare(entry.element, c.element) <= 0)
+				break;
+			setAt(k, c);
+			k = child;
+		}
+		setAt(k, entry);
+	}
+
+	private void setAt(int pos, Entry<E> entry) {
+		heap[pos] = entry;
+		entry.pos = pos;
+	}
+
+	/** Heap slot content. Knows its own position within the heap. */
+	private static class Entry<E> {
+		E element;
+		int pos;
+
+		Entry(E element) {
+			this.element = element;
+		}
+	}
+
+	/** Iterates in heap order. Removal is not supported. */
+	private class Itr implements Iterator<E> {
+		private int cursor;
+		private final int expectedModCount = modCount;
+
+		public boolean hasNext() {
+			return cursor < size;
+		}
+
+		public E next() {
+			if (expectedModCount != modCount)
+				throw new ConcurrentModificationException();
+			if (cursor >= size)
+				throw new NoSuchElementException();
+			return heap[cursor++].element;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package aima.core.util.datastructure;
+
+import java.util.Arrays;
+
+/**
+ * Hash map from primitive <code>long</code> keys to primitive
+ * <code>int</code> values. Entries are stored in two parallel arrays using open
+ * addressing with linear probing, so neither lookups nor insertions create
+ * objects. Useful for mapping large numbers of ids or encoded states to array
+ * indices.<br>
+ * <br>
+ * Lookups for keys which are not contained in the map return the
+ * <em>no-entry value</em> specified at construction time (default: -1). The
+ * map is not synchronized.
+ */
+public class LongIntHashMap {
+	private static final long FREE_KEY = 0;
+	private static final int MIN_CAPACITY = 8;
+
+	private long[] keys;
+	private int[] values;
+	private int size;
+	private int mask;
+	private int resizeThreshold;
+	// the free key is stored outside of the arrays
+	private boolean hasFreeKey;
+	private int freeKeyValue;
+	private final int noEntryValue;
+
+	public LongIntHashMap() {
+		this(16, -1);
+	}
+
+	/**
+	 * Creates a map which can store the specified number of entries without
+	 * rehashing.
+	 */
+	public LongIntHashMap(int expectedSize) {
+		this(expectedSize, -1);
+	}
+
+	/**
+	 * Creates a map which can store the specified number of entries without
+	 * rehashing and returns <code>noEntryValue</code> for missing keys.
+	 */
+	public LongIntHashMap(int expectedSize, int noEntryValue) {
+		this.noEntryValue = noEntryValue;
+		int capacity = MIN_CAPACITY;
+		while (capacity * 3 / 4 < expectedSize)
+			capacity <<= 1;
+		allocate(capacity);
+	}
+
+	public int getNoEntryValue() {
+		return noEntryValue;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns the value to which the specified key is mapped or the no-entry
+	 * value if the map contains no mapping for the key.
+	 */
+	public int get(long key) {
+		if (key == FREE_KEY)
+			return hasFreeKey ? freeKeyValue : noEntryValue;
+		int pos = indexOf(key);
+		while (true) {
+			long k = keys[pos];
+			if (k == key)
+				return values[pos];
+			if (k == FREE_KEY)
+				return noEntryValue;
+			pos = (pos + 1) & mask;
+		}
+	}
+
+	public boolean containsKey(long key) {
+		if (key == FREE_KEY)
+			return hasFreeKey;
+		int pos = indexOf(key);
+		while (true) {
+			long k = keys[pos];
+			if (k == key)
+				return true;
+			if (k == FREE_KEY)
+				return false;
+			pos = (pos + 1) & mask;
+		}
+	}
+
+	/**
+	 * Associates the specified value with the specified key.
+	 *
+	 * @return the previous value for the key or the no-entry value if there
+	 *         was no mapping for the key.
+	 */
+	public int put(long key, int value) {
+		if (key == FREE_KEY) {
+			int result = hasFreeKey ? freeKeyValue : noEntryValue;
+			if (!hasFreeKey) {
+				hasFreeKey = true;
+				size++;
+			}
+			freeKeyValue = value;
+			return result;
+		}
+		int pos = indexOf(key);
+		while (true) {
+			long k = keys[pos];
+			if (k == FREE_KEY) {
+				keys[pos] = key;
+				values[pos] = value;
+				if (++size > resizeThreshold)
+					allocateAndRehash(keys.length << 1);
+				return noEntryValue;
+			} else if (k == key) {
+				int result = values[pos];
+				values[pos] = value;
+				return result;
+			}
+			pos = (pos + 1) & mask;
+		}
+	}
+
+	/**
+	 * Removes the mapping for the specified key.
+	 *
+	 * @return the removed value or the no-entry value if there was no mapping
+	 *         for the key.
+	 */
+	public int remove(long key) {
+		if (key == FREE_KEY) {
+			if (!hasFreeKey)
+				return noEntryValue;
+			hasFreeKey = false;
+			size--;
+			return freeKeyValue;
+		}
+		int pos = indexOf(key);
+		while (true) {
+			long k = keys[pos];
+			if (k == key) {
+				int result = values[pos];
+				shiftKeys(pos);
+				size--;
+				return result;
+			} else if (k == FREE_KEY) {
+				return noEntryValue;
+			}
+			pos = (pos + 1) & mask;
+		}
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE_KEY);
+		hasFreeKey = false;
+		size = 0;
+	}
+
+	/**
+	 * Returns all keys of the map in unspecified order.
+	 */
+	public long[] keys() {
+		long[] result = new long[size];
+		int i = 0;
+		if (hasFreeKey)
+			result[i++] = FREE_KEY;
+		for (long k : keys)
+			if (k != FREE_KEY)
+				result[i++] = k;
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private int indexOf(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		resizeThreshold = capacity * 3 / 4;
+	}
+
+	private void allocateAndRehash(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			long k = oldKeys[i];
+			if (k != FREE_KEY) {
+				int pos = indexOf(k);
+				while (keys[pos] != FREE_KEY)
+					pos = (pos + 1) & mask;
+				keys[pos] = k;
+				values[pos] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Backward shift deletion: closes the gap at <code>pos</code> by moving
+	 * entries of the same probe sequence one step back.
+	 */
+	private void shiftKeys(int pos) {
+		while (true) {
+			int last = pos;
+			pos = (pos + 1) & mask;
+			long k;
+			while (true) {
+				k = keys[pos];
+				if (k == FREE_KEY) {
+					keys[last] = FREE_KEY;
+					return;
+				}
+				int slot = indexOf(k);
+				// move k only if its home slot is not in (last, pos]
+				if (last <= pos ? (last >= slot || slot > pos)
+						: (last >= slot && slot > pos))
+					break;
+				pos = (pos + 1) & mask;
+			}
+			keys[last] = k;
+			values[last] = values[pos];
+		}
+	}
+}
@@ -4,6 +4,7 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 
 import aima.test.core.unit.environment.cellworld.CellWorldTest;
+import aima.test.core.unit.environment.connectfour.ConnectFourTest;
 import aima.test.core.unit.environment.eightpuzzle.EightPuzzleBoardMoveTest;
 import aima.test.core.unit.environment.eightpuzzle.EightPuzzleBoardTest;
 import aima.test.core.unit.environment.eightpuzzle.EightPuzzleFunctionFactoryTest;
@@ -29,7 +30,8 @@ import aima.test.core.unit.environment.wumpusworld.WumpusKnowledgeBaseTest;
 import aima.test.core.unit.environment.xyenv.XYEnvironmentTest;
 
 @RunWith(Suite.class)
-@Suite.SuiteClasses({ CellWorldTest.class, EightPuzzleBoardMoveTest.class,
+@Suite.SuiteClasses({ CellWorldTest.class, ConnectFourTest.class,
+		EightPuzzleBoardMoveTest.class,
 		EightPuzzleBoardTest.class, EightPuzzleFunctionFactoryTest.class,
 		MisplacedTileHeuristicFunctionTest.class, TicTacToeTest.class,
 		MapAgentTest.class, MapEnvironmentTest.class,
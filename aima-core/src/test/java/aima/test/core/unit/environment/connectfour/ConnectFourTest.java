@@ -0,0 +1,69 @@
+package aima.test.core.unit.environment.connectfour;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.environment.connectfour.ConnectFourGame;
+import aima.core.environment.connectfour.ConnectFourState;
+
+public class ConnectFourTest {
+
+	private ConnectFourGame game;
+
+	@Before
+	public void setUp() {
+		game = new ConnectFourGame();
+	}
+
+	@Test
+	public void testUnmakeMove() {
+		Random random = new Random(7);
+		for (int g = 0; g < 50; g++) {
+			ConnectFourState state = game.getInitialState().clone();
+			List<ConnectFourState> history = new ArrayList<ConnectFourState>();
+			List<Integer> moves = new ArrayList<Integer>();
+			while (!game.isTerminal(state)) {
+				List<Integer> actions = game.getActions(state);
+				Integer action = actions.get(random.nextInt(actions.size()));
+				history.add(state.clone());
+				moves.add(action);
+				game.makeMove(state, action);
+			}
+			for (int i = moves.size() - 1; i >= 0; i--) {
+				game.unmakeMove(state, moves.get(i));
+				ConnectFourState expected = history.get(i);
+				Assert.assertEquals(expected, state);
+				Assert.assertEquals(expected.getZobristKey(),
+						state.getZobristKey());
+				Assert.assertEquals(expected.winPositions1,
+						state.winPositions1);
+				Assert.assertEquals(expected.winPositions2,
+						state.winPositions2);
+				Assert.assertEquals(expected.getUtility(), state.getUtility(),
+						0.0);
+				Assert.assertEquals(expected.getMoves(), state.getMoves());
+			}
+		}
+	}
+
+	@Test
+	public void testApplyMove() {
+		Random random = new Random(11);
+		ConnectFourState state1 = game.getInitialState().clone();
+		ConnectFourState state2 = game.getInitialState().clone();
+		while (!game.isTerminal(state1)) {
+			List<Integer> actions = game.getActions(state1);
+			Integer action = actions.get(random.nextInt(actions.size()));
+			game.makeMove(state1, action);
+			game.applyMove(state2, action);
+			Assert.assertEquals(state1, state2);
+			Assert.assertEquals(state1.getZobristKey(), state2.getZobristKey());
+			Assert.assertEquals(state1.getUtility(), state2.getUtility(), 0.0);
+		}
+	}
+}
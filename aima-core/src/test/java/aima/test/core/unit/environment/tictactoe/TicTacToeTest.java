@@ -9,6 +9,7 @@ import aima.core.environment.tictactoe.TicTacToeState;
 import aima.core.search.adversarial.AlphaBetaSearch;
 import aima.core.search.adversarial.IterativeDeepeningAlphaBetaSearch;
 import aima.core.search.adversarial.MinimaxSearch;
+import aima.core.search.adversarial.MonteCarloTreeSearch;
 import aima.core.util.datastructure.XYLocation;
 
 /**
@@ -163,6 +164,128 @@ public class TicTacToeTest {
 				.createFor(game, 0.0, 1.0, 100);
 		search.makeDecision(state);
 		int expandedNodes = search.getMetrics().getInt("expandedNodes");
-		Assert.assertEquals(76035, expandedNodes);
+		Assert.assertEquals(13855, expandedNodes);
+		Assert.assertTrue(search.getMetrics().getInt("transpositionHits") > 0);
+	}
+
+	@Test
+	public void testIterativeDeepeningAlphaBetaDecisionWithoutTranspositionTable() {
+		IterativeDeepeningAlphaBetaSearch<TicTacToeState, XYLocation, String> search = IterativeDeepeningAlphaBetaSearch
+				.createFor(game, 0.0, 1.0, 100);
+		search.setTranspositionTable(null, null);
+		search.makeDecision(state);
+		int expandedNodes = search.getMetrics().getInt("expandedNodes");
+		Assert.assertEquals(47336, expandedNodes);
+		Assert.assertEquals(0, search.getMetrics().getInt("transpositionHits"));
+	}
+
+	@Test
+	public void testIterativeDeepeningAlphaBetaDecisionWithoutInPlaceMoves() {
+		IterativeDeepeningAlphaBetaSearch<TicTacToeState, XYLocation, String> search = IterativeDeepeningAlphaBetaSearch
+				.createFor(game, 0.0, 1.0, 100);
+		search.setInPlaceMovesEnabled(false);
+		search.makeDecision(state);
+		int expandedNodes = search.getMetrics().getInt("expandedNodes");
+		Assert.assertEquals(13855, expandedNodes);
+	}
+
+	@Test
+	public void testParallelIterativeDeepeningAlphaBetaDecision() {
+		state = game.getResult(state, new XYLocation(0, 0));
+		state = game.getResult(state, new XYLocation(1, 1));
+		state = game.getResult(state, new XYLocation(1, 0));
+		IterativeDeepeningAlphaBetaSearch<TicTacToeState, XYLocation, String> search = IterativeDeepeningAlphaBetaSearch
+				.createFor(game, 0.0, 1.0, 100);
+		search.setThreadCount(4);
+		Assert.assertEquals(new XYLocation(2, 0), search.makeDecision(state));
+		Assert.assertEquals(4, search.getMetrics().getInt("threads"));
+		int expandedNodes = 0;
+		for (int i = 0; i < 4; i++)
+			expandedNodes += search.getMetrics().getInt("expandedNodes-" + i);
+		Assert.assertEquals(search.getMetrics().getInt("expandedNodes"),
+				expandedNodes);
+	}
+
+	@Test
+	public void testMonteCarloTreeSearchDecision() {
+		state = game.getResult(state, new XYLocation(0, 0));
+		state = game.getResult(state, new XYLocation(1, 1));
+		state = game.getResult(state, new XYLocation(1, 0));
+		MonteCarloTreeSearch<TicTacToeState, XYLocation, String> search = MonteCarloTreeSearch
+				.createFor(game, 0.0, 1.0, 100);
+		search.setMaxIterations(2000);
+		search.setRandomSeed(1);
+		Assert.assertEquals(new XYLocation(2, 0), search.makeDecision(state));
+		Assert.assertEquals(2000, search.getMetrics().getInt("iterations"));
+		Assert.assertEquals(0, search.getMetrics().getInt("reusedNodes"));
+
+		state = game.getResult(state, new XYLocation(2, 0));
+		state = game.getResult(state, new XYLocation(0, 2));
+		Assert.assertEquals(new XYLocation(0, 1), search.makeDecision(state));
+		Assert.assertTrue(search.getMetrics().getInt("reusedNodes") > 0);
+	}
+
+	@Test
+	public void testParallelMonteCarloTreeSearchDecision() {
+		state = game.getResult(state, new XYLocation(0, 0));
+		state = game.getResult(state, new XYLocation(1, 1));
+		state = game.getResult(state, new XYLocation(1, 0));
+		MonteCarloTreeSearch<TicTacToeState, XYLocation, String> search = MonteCarloTreeSearch
+				.createFor(game, 0.0, 1.0, 100);
+		search.setMaxIterations(4000);
+		search.setThreadCount(4);
+		search.setRootParallel(true);
+		Assert.assertEquals(new XYLocation(2, 0), search.makeDecision(state));
+		Assert.assertEquals(4, search.getMetrics().getInt("threads"));
+		Assert.assertEquals(4000, search.getMetrics().getInt("iterations"));
+	}
+
+	@Test
+	public void testTreeParallelMonteCarloTreeSearchDecision() {
+		state = game.getResult(state, new XYLocation(0, 0));
+		state = game.getResult(state, new XYLocation(1, 1));
+		state = game.getResult(state, new XYLocation(1, 0));
+		MonteCarloTreeSearch<TicTacToeState, XYLocation, String> search = MonteCarloTreeSearch
+				.createFor(game, 0.0, 1.0, 100);
+		search.setMaxIterations(4000);
+		search.setThreadCount(4);
+		Assert.assertEquals(new XYLocation(2, 0), search.makeDecision(state));
+		Assert.assertEquals(4, search.getMetrics().getInt("threads"));
+		Assert.assertEquals(4000, search.getMetrics().getInt("iterations"));
+	}
+
+	@Test
+	public void testUnmakeMove() {
+		state = game.getResult(state, new XYLocation(0, 0));
+		state = game.getResult(state, new XYLocation(1, 1));
+		TicTacToeState state1 = state.clone();
+		game.makeMove(state, new XYLocation(1, 0));
+		game.makeMove(state, new XYLocation(0, 1));
+		game.makeMove(state, new XYLocation(2, 0));
+		Assert.assertTrue(game.isTerminal(state));
+		game.unmakeMove(state, new XYLocation(2, 0));
+		game.unmakeMove(state, new XYLocation(0, 1));
+		game.unmakeMove(state, new XYLocation(1, 0));
+		Assert.assertEquals(state1, state);
+		Assert.assertFalse(game.isTerminal(state));
+		Assert.assertEquals(TicTacToeState.X, game.getPlayer(state));
+		Assert.assertEquals(state1.getZobristKey(), state.getZobristKey());
+	}
+
+	@Test
+	public void testZobristKey() {
+		TicTacToeState state1 = game.getResult(state, new XYLocation(0, 0));
+		state1 = game.getResult(state1, new XYLocation(1, 1));
+		state1 = game.getResult(state1, new XYLocation(2, 2));
+		TicTacToeState state2 = game.getResult(state, new XYLocation(2, 2));
+		state2 = game.getResult(state2, new XYLocation(1, 1));
+		state2 = game.getResult(state2, new XYLocation(0, 0));
+		Assert.assertEquals(state1, state2);
+		Assert.assertEquals(game.hash(state1), game.hash(state2));
+		TicTacToeState state3 = game.getResult(state, new XYLocation(1, 1));
+		state3 = game.getResult(state3, new XYLocation(0, 0));
+		state3 = game.getResult(state3, new XYLocation(2, 2));
+		Assert.assertFalse(game.hash(state1) == game.hash(state3));
+		Assert.assertFalse(game.hash(state) == game.hash(state1));
 	}
 }
@@ -3,10 +3,14 @@ package aima.test.core.unit.search;
 import aima.test.core.unit.search.csp.AssignmentTest;
 import aima.test.core.unit.search.csp.CSPTest;
 import aima.test.core.unit.search.csp.MapCSPTest;
+import aima.test.core.unit.search.framework.EncodedGraphSearchTest;
 import aima.test.core.unit.search.framework.NodeTest;
+import aima.test.core.unit.search.framework.SearchCountersTest;
 import aima.test.core.unit.search.framework.SolutionCheckerTest;
 import aima.test.core.unit.search.informed.AStarSearchTest;
+import aima.test.core.unit.search.informed.BidirectionalAStarSearchTest;
 import aima.test.core.unit.search.informed.GreedyBestFirstSearchTest;
+import aima.test.core.unit.search.informed.ParallelAStarSearchTest;
 import aima.test.core.unit.search.informed.RecursiveBestFirstSearchTest;
 import aima.test.core.unit.search.local.SimulatedAnnealingSearchTest;
 import aima.test.core.unit.search.nondeterministic.AndOrSearchTest;
@@ -18,13 +22,15 @@ import org.junit.runners.Suite;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({ AssignmentTest.class, CSPTest.class, MapCSPTest.class,
-		AStarSearchTest.class, GreedyBestFirstSearchTest.class,
-		RecursiveBestFirstSearchTest.class, 
+		AStarSearchTest.class, BidirectionalAStarSearchTest.class,
+		GreedyBestFirstSearchTest.class,
+		ParallelAStarSearchTest.class, RecursiveBestFirstSearchTest.class,
                 SimulatedAnnealingSearchTest.class, AndOrSearchTest.class,
 		LRTAStarAgentTest.class, OnlineDFSAgentTest.class,
 		BidirectionalSearchTest.class, BreadthFirstSearchTest.class,
 		DepthFirstSearchTest.class, DepthLimitedSearchTest.class,
 		IterativeDeepeningSearchTest.class, UniformCostSearchTest.class,
-		NodeTest.class, SolutionCheckerTest.class })
+		EncodedGraphSearchTest.class, NodeTest.class,
+		SearchCountersTest.class, SolutionCheckerTest.class })
 public class SearchTestSuite {
 }
@@ -91,4 +91,82 @@ public class CSPTest {
 		Assert.assertEquals(3, csp.getDomain(X).size());
 		Assert.assertEquals("red", csp.getDomain(X).get(0));
 	}
+
+	@Test
+	public void testUndoDomainChanges() {
+		CSP csp = new CSP(variables);
+		csp.setDomain(X, colors);
+		int checkpoint = csp.setCheckpoint();
+		Domain domain = csp.getDomain(X);
+		csp.removeValueFromDomain(X, "green");
+		Assert.assertEquals(3, domain.size());
+		Assert.assertEquals(2, csp.getDomain(X).size());
+		Assert.assertEquals("blue", csp.getDomain(X).get(1));
+		Assert.assertFalse(csp.getDomain(X).contains("green"));
+		csp.setDomain(X, animals);
+		csp.removeValueFromDomain(X, "cat");
+		Assert.assertEquals("{dog}", csp.getDomain(X).toString());
+
+		csp.undoDomainChanges(checkpoint);
+		Assert.assertEquals(checkpoint, csp.getTrailSize());
+		Assert.assertEquals(colors, csp.getDomain(X));
+		Assert.assertEquals("green", csp.getDomain(X).get(1));
+	}
+
+	@Test
+	public void testCheckpoints() {
+		CSP csp = new CSP(variables);
+		// without checkpoint, changes are not recorded
+		for (int i = 0; i < 10; i++) {
+			csp.setDomain(X, colors);
+			csp.removeValueFromDomain(X, "red");
+		}
+		Assert.assertEquals(0, csp.getTrailSize());
+
+		int outer = csp.setCheckpoint();
+		csp.removeValueFromDomain(X, "green");
+		int inner = csp.setCheckpoint();
+		csp.setDomain(Y, animals);
+		csp.removeValueFromDomain(X, "blue");
+		Assert.assertEquals(3, csp.getTrailSize());
+		csp.releaseCheckpoint(); // keeps the changes of inner
+		Assert.assertTrue(inner > outer);
+		Assert.assertEquals(3, csp.getTrailSize());
+		Assert.assertTrue(csp.getDomain(X).isEmpty());
+		csp.undoDomainChanges(outer);
+		Assert.assertEquals("{green, blue}", csp.getDomain(X).toString());
+		Assert.assertEquals(0, csp.getDomain(Y).size());
+
+		// the trail is cleared when the last checkpoint is released
+		csp.setCheckpoint();
+		csp.removeValueFromDomain(X, "green");
+		csp.releaseCheckpoint();
+		Assert.assertEquals(0, csp.getTrailSize());
+		Assert.assertEquals("{blue}", csp.getDomain(X).toString());
+		csp.setDomain(X, animals);
+		Assert.assertEquals(0, csp.getTrailSize());
+	}
+
+	@Test
+	public void testReducedDomainPositions() {
+		Object[] values = new Object[150];
+		for (int i = 0; i < values.length; i++)
+			values[i] = i;
+		CSP csp = new CSP(variables);
+		csp.setDomain(Z, new Domain(values));
+		for (int i = 0; i < values.length; i += 3)
+			csp.removeValueFromDomain(Z, i);
+		Domain domain = csp.getDomain(Z);
+		Assert.assertEquals(100, domain.size());
+		int i = 0;
+		for (Object value : domain)
+			Assert.assertEquals(value, domain.get(i++));
+		Assert.assertEquals(149, domain.get(99));
+		try {
+			domain.get(100);
+			Assert.fail("Exception expected");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
 }
@@ -7,6 +7,7 @@ import org.junit.Test;
 import aima.core.search.csp.Assignment;
 import aima.core.search.csp.BacktrackingStrategy;
 import aima.core.search.csp.CSP;
+import aima.core.search.csp.ImprovedBacktrackingStrategy;
 import aima.core.search.csp.MapCSP;
 import aima.core.search.csp.MinConflictsStrategy;
 
@@ -35,6 +36,19 @@ public class MapCSPTest {
 		Assert.assertEquals(MapCSP.RED, results.getAssignment(MapCSP.T));
 	}
 
+	@Test
+	public void testImprovedBackTrackingSearchClearsTrail() {
+		ImprovedBacktrackingStrategy strategy = new ImprovedBacktrackingStrategy(
+				true, true, true, true);
+		Assert.assertNotNull(strategy.solve(csp));
+		Assert.assertEquals(0, csp.getTrailSize());
+		strategy.setInference(
+				ImprovedBacktrackingStrategy.Inference.FORWARD_CHECKING);
+		CSP csp2 = new MapCSP();
+		Assert.assertNotNull(strategy.solve(csp2));
+		Assert.assertEquals(0, csp2.getTrailSize());
+	}
+
 	@Test
 	public void testMCSearch() {
 		new MinConflictsStrategy(100).solve(csp);
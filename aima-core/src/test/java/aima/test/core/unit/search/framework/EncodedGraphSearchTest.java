@@ -0,0 +1,89 @@
+package aima.test.core.unit.search.framework;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.agent.Action;
+import aima.core.environment.eightpuzzle.EightPuzzleBoard;
+import aima.core.environment.eightpuzzle.EightPuzzleFunctionFactory;
+import aima.core.environment.eightpuzzle.EightPuzzleGoalTest;
+import aima.core.environment.eightpuzzle.EightPuzzleStateEncoder;
+import aima.core.environment.eightpuzzle.ManhattanHeuristicFunction;
+import aima.core.environment.nqueens.NQueensBoard;
+import aima.core.environment.nqueens.NQueensFunctionFactory;
+import aima.core.environment.nqueens.NQueensGoalTest;
+import aima.core.environment.nqueens.NQueensStateEncoder;
+import aima.core.search.framework.EncodedGraphSearch;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.QueueSearch;
+import aima.core.search.framework.SearchAgent;
+import aima.core.search.framework.StateEncoder;
+import aima.core.search.uninformed.BreadthFirstSearch;
+import aima.core.util.datastructure.XYLocation;
+
+public class EncodedGraphSearchTest {
+
+	@Test
+	public void testEncoders() {
+		StateEncoder encoder = new EightPuzzleStateEncoder();
+		EightPuzzleBoard board = new EightPuzzleBoard(new int[] { 7, 1, 8, 0,
+				4, 6, 2, 3, 5 });
+		Assert.assertEquals(board, encoder.decode(encoder.encode(board)));
+
+		encoder = new NQueensStateEncoder(8);
+		NQueensBoard qBoard = new NQueensBoard(8);
+		qBoard.addQueenAt(new XYLocation(0, 7));
+		qBoard.addQueenAt(new XYLocation(2, 0));
+		Assert.assertEquals(qBoard, encoder.decode(encoder.encode(qBoard)));
+		Assert.assertFalse(encoder.encode(qBoard) == encoder
+				.encode(new NQueensBoard(8)));
+	}
+
+	@Test
+	public void testAStarSearch() {
+		EightPuzzleBoard board = new EightPuzzleBoard(new int[] { 7, 1, 8, 0,
+				4, 6, 2, 3, 5 });
+		Problem problem = new Problem(board,
+				EightPuzzleFunctionFactory.getActionsFunction(),
+				EightPuzzleFunctionFactory.getResultFunction(),
+				new EightPuzzleGoalTest());
+		EncodedGraphSearch search = new EncodedGraphSearch(
+				new EightPuzzleStateEncoder(), new ManhattanHeuristicFunction());
+		List<Action> actions = search.search(problem);
+		Assert.assertEquals(23, actions.size());
+		Assert.assertEquals(23.0, search.getCounters().getPathCost(), 0.0);
+		Assert.assertEquals("23.0",
+				search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
+	}
+
+	@Test
+	public void testBreadthFirstSearch() throws Exception {
+		Problem problem = new Problem(new NQueensBoard(8),
+				NQueensFunctionFactory.getIActionsFunction(),
+				NQueensFunctionFactory.getResultFunction(),
+				new NQueensGoalTest());
+		SearchAgent agent = new SearchAgent(problem, new EncodedGraphSearch(
+				new NQueensStateEncoder(8)));
+		SearchAgent refAgent = new SearchAgent(problem,
+				new BreadthFirstSearch());
+		Assert.assertEquals(refAgent.getActions().toString(), agent
+				.getActions().toString());
+		Assert.assertEquals(
+				refAgent.getInstrumentation().getProperty("nodesExpanded"),
+				agent.getInstrumentation().getProperty("nodesExpanded"));
+	}
+
+	@Test
+	public void testUnsuccessfulSearch() {
+		Problem problem = new Problem(new NQueensBoard(3),
+				NQueensFunctionFactory.getIActionsFunction(),
+				NQueensFunctionFactory.getResultFunction(),
+				new NQueensGoalTest());
+		EncodedGraphSearch search = new EncodedGraphSearch(
+				new NQueensStateEncoder(3));
+		Assert.assertEquals(0, search.search(problem).size());
+		Assert.assertEquals(6, search.getCounters().getNodesExpanded());
+	}
+}
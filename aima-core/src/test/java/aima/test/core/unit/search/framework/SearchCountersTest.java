@@ -0,0 +1,57 @@
+package aima.test.core.unit.search.framework;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.agent.Action;
+import aima.core.environment.nqueens.NQueensBoard;
+import aima.core.environment.nqueens.NQueensFunctionFactory;
+import aima.core.environment.nqueens.NQueensGoalTest;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Node;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.QueueSearch;
+import aima.core.search.framework.SearchCounters;
+import aima.core.search.framework.TreeSearch;
+import aima.core.util.datastructure.LIFOQueue;
+
+public class SearchCountersTest {
+
+	@Test
+	public void testQueueSizeGauge() {
+		SearchCounters counters = new SearchCounters();
+		counters.setQueueSize(3);
+		counters.setQueueSize(7);
+		counters.setQueueSize(2);
+		Assert.assertEquals(2, counters.getQueueSize());
+		Assert.assertEquals(7, counters.getMaxQueueSize());
+		counters.clear();
+		Assert.assertEquals(0, counters.getQueueSize());
+		Assert.assertEquals(0, counters.getMaxQueueSize());
+	}
+
+	@Test
+	public void testMetricsViewMatchesCounters() {
+		Problem problem = new Problem(new NQueensBoard(8),
+				NQueensFunctionFactory.getIActionsFunction(),
+				NQueensFunctionFactory.getResultFunction(),
+				new NQueensGoalTest());
+		TreeSearch search = new TreeSearch();
+		List<Action> actions = search.search(problem, new LIFOQueue<Node>());
+		Assert.assertEquals(8, actions.size());
+
+		SearchCounters counters = search.getCounters();
+		Metrics metrics = search.getMetrics();
+		Assert.assertEquals(113, counters.getNodesExpanded());
+		Assert.assertEquals(counters.getNodesExpanded(),
+				metrics.getLong(QueueSearch.METRIC_NODES_EXPANDED));
+		Assert.assertEquals(counters.getQueueSize(),
+				metrics.getInt(QueueSearch.METRIC_QUEUE_SIZE));
+		Assert.assertEquals(counters.getMaxQueueSize(),
+				metrics.getInt(QueueSearch.METRIC_MAX_QUEUE_SIZE));
+		Assert.assertEquals("8.0", metrics.get(QueueSearch.METRIC_PATH_COST));
+		Assert.assertTrue(counters.getElapsedNanos() > 0);
+	}
+}
@@ -19,6 +19,7 @@ import aima.core.environment.map.StraightLineDistanceHeuristicFunction;
 import aima.core.search.framework.DefaultGoalTest;
 import aima.core.search.framework.GraphSearch;
 import aima.core.search.framework.HeuristicFunction;
+import aima.core.search.framework.LazyDeletionGraphSearch;
 import aima.core.search.framework.Problem;
 import aima.core.search.framework.QueueSearch;
 import aima.core.search.framework.Search;
@@ -164,4 +165,28 @@ public class AStarSearchTest {
 		Assert.assertEquals("5.5",
 				search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
 	}
+
+	@Test
+	public void testAIMA3eFigure3_15_using_LazyDeletionGraphSearch()
+			throws Exception {
+		Map romaniaMap = new SimplifiedRoadMapOfPartOfRomania();
+		Problem problem = new Problem(SimplifiedRoadMapOfPartOfRomania.SIBIU,
+				MapFunctionFactory.getActionsFunction(romaniaMap),
+				MapFunctionFactory.getResultFunction(), new DefaultGoalTest(
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST),
+				new MapStepCostFunction(romaniaMap));
+
+		Search search = new AStarSearch(new LazyDeletionGraphSearch(),
+				new StraightLineDistanceHeuristicFunction(
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST, romaniaMap));
+		SearchAgent agent = new SearchAgent(problem, search);
+
+		List<Action> actions = agent.getActions();
+
+		Assert.assertEquals(
+				"[Action[name==moveTo, location==RimnicuVilcea], Action[name==moveTo, location==Pitesti], Action[name==moveTo, location==Bucharest]]",
+				actions.toString());
+		Assert.assertEquals("278.0",
+				search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
+	}
 }
@@ -0,0 +1,96 @@
+package aima.test.core.unit.search.informed;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.agent.Action;
+import aima.core.environment.map.BidirectionalMapProblem;
+import aima.core.environment.map.ExtendableMap;
+import aima.core.environment.map.Map;
+import aima.core.environment.map.SimplifiedRoadMapOfPartOfRomania;
+import aima.core.environment.map.StraightLineDistanceHeuristicFunction;
+import aima.core.search.framework.GraphSearch;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.QueueSearch;
+import aima.core.search.framework.Search;
+import aima.core.search.informed.AStarSearch;
+import aima.core.search.informed.BidirectionalAStarSearch;
+
+public class BidirectionalAStarSearchTest {
+
+	@Test
+	public void testAIMA3eFigure3_15() throws Exception {
+		Map romaniaMap = new SimplifiedRoadMapOfPartOfRomania();
+		Problem problem = new BidirectionalMapProblem(romaniaMap,
+				SimplifiedRoadMapOfPartOfRomania.SIBIU,
+				SimplifiedRoadMapOfPartOfRomania.BUCHAREST);
+		Search search = new BidirectionalAStarSearch(
+				new StraightLineDistanceHeuristicFunction(
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST, romaniaMap),
+				new StraightLineDistanceHeuristicFunction(
+						SimplifiedRoadMapOfPartOfRomania.SIBIU, romaniaMap));
+		List<Action> actions = search.search(problem);
+		Assert.assertEquals(
+				"[Action[name==moveTo, location==RimnicuVilcea], Action[name==moveTo, location==Pitesti], Action[name==moveTo, location==Bucharest]]",
+				actions.toString());
+		Assert.assertEquals("278.0",
+				search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
+	}
+
+	@Test
+	public void testSameCostAsAStarForAllCityPairs() throws Exception {
+		Map romaniaMap = new SimplifiedRoadMapOfPartOfRomania();
+		for (String from : romaniaMap.getLocations()) {
+			for (String to : romaniaMap.getLocations()) {
+				if (from.equals(to))
+					continue;
+				Problem problem = new BidirectionalMapProblem(romaniaMap,
+						from, to);
+				Search biSearch = new BidirectionalAStarSearch(
+						new StraightLineDistanceHeuristicFunction(to,
+								romaniaMap),
+						new StraightLineDistanceHeuristicFunction(from,
+								romaniaMap));
+				Search search = new AStarSearch(new GraphSearch(),
+						new StraightLineDistanceHeuristicFunction(to,
+								romaniaMap));
+				search.search(problem);
+				Assert.assertFalse(biSearch.search(problem).isEmpty());
+				Assert.assertEquals(
+						search.getMetrics().getDouble(
+								QueueSearch.METRIC_PATH_COST),
+						biSearch.getMetrics().getDouble(
+								QueueSearch.METRIC_PATH_COST), 0.001);
+			}
+		}
+	}
+
+	@Test
+	public void testAlreadyAtGoal() throws Exception {
+		Map romaniaMap = new SimplifiedRoadMapOfPartOfRomania();
+		Problem problem = new BidirectionalMapProblem(romaniaMap,
+				SimplifiedRoadMapOfPartOfRomania.SIBIU,
+				SimplifiedRoadMapOfPartOfRomania.SIBIU);
+		Search search = new BidirectionalAStarSearch(
+				new StraightLineDistanceHeuristicFunction(
+						SimplifiedRoadMapOfPartOfRomania.SIBIU, romaniaMap),
+				new StraightLineDistanceHeuristicFunction(
+						SimplifiedRoadMapOfPartOfRomania.SIBIU, romaniaMap));
+		Assert.assertEquals("[Action[name==NoOp]]", search.search(problem)
+				.toString());
+	}
+
+	@Test
+	public void testGoalNotReachable() throws Exception {
+		ExtendableMap map = new ExtendableMap();
+		map.addBidirectionalLink("A", "B", 5.0);
+		map.addBidirectionalLink("C", "D", 5.0);
+		Problem problem = new BidirectionalMapProblem(map, "A", "D");
+		Search search = new BidirectionalAStarSearch(
+				new StraightLineDistanceHeuristicFunction("D", map),
+				new StraightLineDistanceHeuristicFunction("A", map));
+		Assert.assertTrue(search.search(problem).isEmpty());
+	}
+}
@@ -0,0 +1,108 @@
+package aima.test.core.unit.search.informed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.agent.Action;
+import aima.core.environment.eightpuzzle.EightPuzzleBoard;
+import aima.core.environment.eightpuzzle.EightPuzzleFunctionFactory;
+import aima.core.environment.eightpuzzle.EightPuzzleGoalTest;
+import aima.core.environment.eightpuzzle.ManhattanHeuristicFunction;
+import aima.core.environment.map.Map;
+import aima.core.environment.map.MapFunctionFactory;
+import aima.core.environment.map.MapStepCostFunction;
+import aima.core.environment.map.SimplifiedRoadMapOfPartOfRomania;
+import aima.core.environment.map.StraightLineDistanceHeuristicFunction;
+import aima.core.search.framework.DefaultGoalTest;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.QueueSearch;
+import aima.core.search.framework.Search;
+import aima.core.search.informed.ParallelAStarSearch;
+import aima.core.util.CancelableThread;
+
+public class ParallelAStarSearchTest {
+
+	@Test
+	public void testEightPuzzle() throws Exception {
+		EightPuzzleBoard board = new EightPuzzleBoard(new int[] { 7, 1, 8, 0,
+				4, 6, 2, 3, 5 });
+		Problem problem = new Problem(board,
+				EightPuzzleFunctionFactory.getActionsFunction(),
+				EightPuzzleFunctionFactory.getResultFunction(),
+				new EightPuzzleGoalTest());
+		for (int threads = 1; threads <= 4; threads++) {
+			Search search = new ParallelAStarSearch(
+					new ManhattanHeuristicFunction(), threads);
+			List<Action> actions = search.search(problem);
+			Assert.assertEquals(23, actions.size());
+			Assert.assertEquals("23.0",
+					search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
+		}
+	}
+
+	@Test
+	public void testAIMA3eFigure3_15() throws Exception {
+		Map romaniaMap = new SimplifiedRoadMapOfPartOfRomania();
+		Problem problem = new Problem(SimplifiedRoadMapOfPartOfRomania.SIBIU,
+				MapFunctionFactory.getActionsFunction(romaniaMap),
+				MapFunctionFactory.getResultFunction(), new DefaultGoalTest(
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST),
+				new MapStepCostFunction(romaniaMap));
+
+		Search search = new ParallelAStarSearch(
+				new StraightLineDistanceHeuristicFunction(
+						SimplifiedRoadMapOfPartOfRomania.BUCHAREST, romaniaMap),
+				3);
+		List<Action> actions = search.search(problem);
+		Assert.assertEquals(
+				"[Action[name==moveTo, location==RimnicuVilcea], Action[name==moveTo, location==Pitesti], Action[name==moveTo, location==Bucharest]]",
+				actions.toString());
+		Assert.assertEquals("278.0",
+				search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
+	}
+
+	@Test
+	public void testAlreadyAtGoal() throws Exception {
+		Map romaniaMap = new SimplifiedRoadMapOfPartOfRomania();
+		Problem problem = new Problem(SimplifiedRoadMapOfPartOfRomania.SIBIU,
+				MapFunctionFactory.getActionsFunction(romaniaMap),
+				MapFunctionFactory.getResultFunction(), new DefaultGoalTest(
+						SimplifiedRoadMapOfPartOfRomania.SIBIU),
+				new MapStepCostFunction(romaniaMap));
+		Search search = new ParallelAStarSearch(
+				new StraightLineDistanceHeuristicFunction(
+						SimplifiedRoadMapOfPartOfRomania.SIBIU, romaniaMap), 2);
+		Assert.assertEquals("[Action[name==NoOp]]", search.search(problem)
+				.toString());
+	}
+
+	@Test
+	public void testCanceledSearch() throws Exception {
+		final Problem problem = new Problem(new EightPuzzleBoard(new int[] {
+				7, 1, 8, 0, 4, 6, 2, 3, 5 }),
+				EightPuzzleFunctionFactory.getActionsFunction(),
+				EightPuzzleFunctionFactory.getResultFunction(),
+				new EightPuzzleGoalTest());
+		final List<List<Action>> results = new ArrayList<List<Action>>();
+		CancelableThread thread = new CancelableThread() {
+			@Override
+			public void run() {
+				try {
+					results.add(new ParallelAStarSearch(
+							new ManhattanHeuristicFunction(), 4)
+							.search(problem));
+				} catch (Exception e) {
+					e.printStackTrace();
+				}
+			}
+		};
+		thread.cancel();
+		thread.start();
+		thread.join();
+		Assert.assertEquals(1, results.size());
+		Assert.assertTrue(results.get(0).isEmpty());
+	}
+}
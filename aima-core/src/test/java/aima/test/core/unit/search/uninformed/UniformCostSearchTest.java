@@ -15,6 +15,7 @@ import aima.core.environment.nqueens.NQueensBoard;
 import aima.core.environment.nqueens.NQueensFunctionFactory;
 import aima.core.environment.nqueens.NQueensGoalTest;
 import aima.core.search.framework.DefaultGoalTest;
+import aima.core.search.framework.LazyDeletionGraphSearch;
 import aima.core.search.framework.Problem;
 import aima.core.search.framework.QueueSearch;
 import aima.core.search.framework.Search;
@@ -115,4 +116,34 @@ public class UniformCostSearchTest {
 		Assert.assertEquals("5.5",
 				search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
 	}
+
+	@Test
+	public void testCheckFrontierPathCostWithLazyDeletion() throws Exception {
+		ExtendableMap map = new ExtendableMap();
+		map.addBidirectionalLink("start", "b", 2.5);
+		map.addBidirectionalLink("start", "c", 1.0);
+		map.addBidirectionalLink("b", "d", 2.0);
+		map.addBidirectionalLink("c", "d", 4.0);
+		map.addBidirectionalLink("c", "e", 1.0);
+		map.addBidirectionalLink("d", "goal", 1.0);
+		map.addBidirectionalLink("e", "goal", 5.0);
+		Problem problem = new Problem("start",
+				MapFunctionFactory.getActionsFunction(map),
+				MapFunctionFactory.getResultFunction(), new DefaultGoalTest(
+						"goal"), new MapStepCostFunction(map));
+
+		Search search = new UniformCostSearch(new LazyDeletionGraphSearch());
+		SearchAgent agent = new SearchAgent(problem, search);
+
+		List<Action> actions = agent.getActions();
+
+		Assert.assertEquals(
+				"[Action[name==moveTo, location==b], Action[name==moveTo, location==d], Action[name==moveTo, location==goal]]",
+				actions.toString());
+		Assert.assertEquals("5.5",
+				search.getMetrics().get(QueueSearch.METRIC_PATH_COST));
+		// d and goal are reached twice, the stale d node is not expanded
+		Assert.assertEquals("5",
+				agent.getInstrumentation().getProperty("nodesExpanded"));
+	}
 }
@@ -0,0 +1,95 @@
+package aima.test.core.unit.util.datastructure;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.util.datastructure.IndexedPriorityQueue;
+import aima.core.util.datastructure.PriorityQueue;
+
+public class IndexedPriorityQueueTest {
+
+	private static final Comparator<int[]> BY_FIRST = new Comparator<int[]>() {
+		public int compare(int[] a1, int[] a2) {
+			return a1[0] - a2[0];
+		}
+	};
+
+	@Test
+	public void testPopOrder() {
+		IndexedPriorityQueue<String> queue = new IndexedPriorityQueue<String>(
+				new Comparator<String>() {
+					public int compare(String s1, String s2) {
+						return s1.compareTo(s2);
+					}
+				});
+		Assert.assertTrue(queue.isEmpty());
+		queue.insert("d");
+		queue.insert("b");
+		queue.insert("e");
+		queue.insert("a");
+		Assert.assertFalse(queue.offer("b"));
+		Assert.assertEquals(4, queue.size());
+		Assert.assertTrue(queue.contains("e"));
+		Assert.assertTrue(queue.remove("b"));
+		Assert.assertFalse(queue.remove("b"));
+		Assert.assertFalse(queue.contains("b"));
+		Assert.assertEquals("a", queue.pop());
+		Assert.assertEquals("d", queue.pop());
+		Assert.assertEquals("e", queue.pop());
+		Assert.assertNull(queue.pop());
+	}
+
+	@Test
+	public void testReplace() {
+		IndexedPriorityQueue<int[]> queue = new IndexedPriorityQueue<int[]>(
+				BY_FIRST);
+		int[] a = { 5 };
+		int[] b = { 7 };
+		int[] c = { 9 };
+		queue.insert(a);
+		queue.insert(b);
+		queue.insert(c);
+		int[] c2 = { 1 };
+		Assert.assertTrue(queue.replace(c, c2));
+		Assert.assertFalse(queue.contains(c));
+		Assert.assertSame(c2, queue.pop());
+		Assert.assertSame(a, queue.pop());
+		Assert.assertSame(b, queue.pop());
+	}
+
+	@Test
+	public void testSameOrderAsPriorityQueue() {
+		// elements with equal priority must be returned in the same order as
+		// by the java.util based implementation
+		Random random = new Random(42);
+		IndexedPriorityQueue<int[]> iQueue = new IndexedPriorityQueue<int[]>(
+				5, BY_FIRST);
+		PriorityQueue<int[]> pQueue = new PriorityQueue<int[]>(5, BY_FIRST);
+		List<int[]> inserted = new ArrayList<int[]>();
+		for (int i = 0; i < 2000; i++) {
+			int op = random.nextInt(4);
+			if (op < 2 || inserted.isEmpty()) {
+				int[] e = { random.nextInt(20) };
+				iQueue.insert(e);
+				pQueue.insert(e);
+				inserted.add(e);
+			} else if (op == 2) {
+				int[] e = inserted.remove(random.nextInt(inserted.size()));
+				Assert.assertEquals(pQueue.remove(e), iQueue.remove(e));
+			} else {
+				int[] e = pQueue.pop();
+				Assert.assertSame(e, iQueue.pop());
+				inserted.remove(e);
+			}
+			Assert.assertEquals(pQueue.size(), iQueue.size());
+		}
+		while (!pQueue.isEmpty())
+			Assert.assertSame(pQueue.pop(), iQueue.pop());
+		Assert.assertTrue(iQueue.isEmpty());
+	}
+}
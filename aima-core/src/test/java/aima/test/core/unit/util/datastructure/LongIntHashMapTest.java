@@ -0,0 +1,59 @@
+package aima.test.core.unit.util.datastructure;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aima.core.util.datastructure.LongIntHashMap;
+
+public class LongIntHashMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		LongIntHashMap map = new LongIntHashMap();
+		Assert.assertEquals(-1, map.get(42));
+		Assert.assertEquals(-1, map.put(42, 1));
+		Assert.assertEquals(-1, map.put(0, 2));
+		Assert.assertEquals(1, map.put(42, 3));
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals(3, map.get(42));
+		Assert.assertEquals(2, map.get(0));
+		Assert.assertTrue(map.containsKey(0));
+		Assert.assertEquals(2, map.remove(0));
+		Assert.assertFalse(map.containsKey(0));
+		Assert.assertEquals(1, map.size());
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertEquals(-1, map.get(42));
+	}
+
+	@Test
+	public void testAgainstHashMap() {
+		Random random = new Random(7);
+		LongIntHashMap map = new LongIntHashMap(4, Integer.MIN_VALUE);
+		Map<Long, Integer> refMap = new HashMap<Long, Integer>();
+		for (int i = 0; i < 20000; i++) {
+			// small key range to provoke collisions and removals
+			long key = random.nextInt(3000) - 1000;
+			if (random.nextInt(3) == 0) {
+				Integer ref = refMap.remove(key);
+				Assert.assertEquals(ref != null ? ref : Integer.MIN_VALUE,
+						map.remove(key));
+			} else {
+				Integer ref = refMap.put(key, i);
+				Assert.assertEquals(ref != null ? ref : Integer.MIN_VALUE,
+						map.put(key, i));
+			}
+		}
+		Assert.assertEquals(refMap.size(), map.size());
+		Assert.assertEquals(refMap.size(), map.keys().length);
+		for (long key = -1000; key < 2000; key++) {
+			Integer ref = refMap.get(key);
+			Assert.assertEquals(ref != null ? ref : Integer.MIN_VALUE,
+					map.get(key));
+		}
+	}
+}
@@ -43,8 +43,10 @@ import aimax.osm.viewer.swing.MapViewFrame;
  * <code>RouteCalculator</code> and add in the main method the line
  * <code>System.setProperty(MiniNaviApp.MAP_CLASS_PROPERTY, "x.y.ZRouteCalculator</code>
  * . Analogously, renderer, entity classifier, and even the map representation
- * itself can be replaced. Note, that system properties can also be set by VM
- * argument (-Dpropertyname=value).
+ * itself can be replaced. For example, maps which do not fit into the heap can
+ * be handled with <code>-Daimax.osm.navi.mapclass=aimax.osm.data.impl.OffHeapMap</code>.
+ * Note, that system properties can also be set by VM argument
+ * (-Dpropertyname=value).
  * </p>
  * <p>
  * To enable the GPS interface, download the rs232 serial port library from
@@ -14,6 +14,7 @@ import aimax.osm.data.MapEvent;
 import aimax.osm.data.MapEventListener;
 import aimax.osm.data.OsmMap;
 import aimax.osm.data.Position;
+import aimax.osm.routing.ContractionHierarchyRouteCalculator;
 import aimax.osm.routing.RouteCalculator;
 import aimax.osm.viewer.swing.MapViewFrame;
 
@@ -32,12 +33,17 @@ public class RoutePlannerApp implements ActionListener {
 	protected JComboBox<String> waySelection;
 	protected JButton calcButton;
 	protected RouteCalculator routeCalculator;
+	/** Enabled by program argument <code>-ch</code>. */
+	protected boolean useContractionHierarchies;
 
 	public RoutePlannerApp() {
 		this(new String[0]);
 	}
 
 	public RoutePlannerApp(String[] args) {
+		for (String arg : args)
+			if (arg.equals("-ch"))
+				useContractionHierarchies = true;
 		frame = new MapViewFrame(args);
 		frame.setTitle("OSM Route Planner");
 		routeCalculator = createRouteCalculator();
@@ -57,9 +63,14 @@ public class RoutePlannerApp implements ActionListener {
 
 	/**
 	 * Factory method for the routing component. Subclasses can override it and
-	 * provide more advanced routing algorithms.
+	 * provide more advanced routing algorithms. With program argument
+	 * <code>-ch</code>, this implementation answers requests by contraction
+	 * hierarchy queries. The hierarchy is built when the first route is
+	 * requested, which takes some time for large maps.
 	 */
 	protected RouteCalculator createRouteCalculator() {
+		if (useContractionHierarchies)
+			return new ContractionHierarchyRouteCalculator();
 		return new RouteCalculator();
 	}
 
@@ -114,7 +125,8 @@ public class RoutePlannerApp implements ActionListener {
 	/**
 	 * Start application with program arg <code>-screenwidth=xx</code> (with xx
 	 * the width in cm) or <code>-screensize=yy</code> (with yy measured
-	 * diagonally in inch).
+	 * diagonally in inch). Program arg <code>-ch</code> enables contraction
+	 * hierarchies for fast repeated route queries.
 	 */
 	public static void main(String[] args) {
 		// indicates progress when reading large maps (for testing only)
@@ -1,8 +1,11 @@
 package aimax.osm.data;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 
+import aimax.osm.data.entities.EntityAttribute;
 import aimax.osm.data.entities.MapEntity;
 
 /**
@@ -21,13 +24,21 @@ import aimax.osm.data.entities.MapEntity;
  * 
  * <p>For efficiency reasons, rules are grouped by attribute
  * name on implementation level, and within such a group, binary search is
- * used to find a match.</p>
+ * used to find a match. For classification, the rules are compiled into a
+ * decision table, which maps attribute keys and values to integer ids.
+ * So an entity's attributes are hashed once and all further checks are
+ * array lookups. The table is created on demand and discarded whenever the
+ * classifier or one of its sub-classifiers is modified. Classification is
+ * thread-safe as long as no rules are modified.</p>
  * @author Ruediger Lunde
  * @param <C> Class of classification results.
  */
 public class EntityClassifier<C> {
 	List<RuleGroup<C>> rules;
 	C defaultEntityClass;
+	/** The classifier which created this one by adding a rule. */
+	private EntityClassifier<C> parent;
+	private volatile DecisionTable<C> table;
 	
 	/** Default constructor. */
 	public EntityClassifier() {
@@ -40,12 +51,14 @@ public class EntityClassifier<C> {
 	
 	public void setDefaultEntityClass(C defaultEntityClass) {
 		this.defaultEntityClass = defaultEntityClass;
+		invalidate();
 	}
 	
 	/** Clears the default classification result and all rules. */
 	public void clear() {
 		rules.clear();
 		defaultEntityClass = null;
+		invalidate();
 	}
 	
 	/**
@@ -58,6 +71,8 @@ public class EntityClassifier<C> {
 	public EntityClassifier<C> addRule(String attName, String attValue, C eclass) {
 		EntityClassifier<C> result = new EntityClassifier<C>();
 		result.setDefaultEntityClass(eclass);
+		result.parent = this;
+		invalidate();
 		RuleGroup<C> rg = null;
 		if (!rules.isEmpty()) {
 			RuleGroup<C> last = rules.get(rules.size()-1);
@@ -87,6 +102,8 @@ public class EntityClassifier<C> {
 	public EntityClassifier<C> replaceRule(String attName, String attValue, C eclass) {
 		EntityClassifier<C> newClassifier = new EntityClassifier<C>();
 		newClassifier.setDefaultEntityClass(eclass);
+		newClassifier.parent = this;
+		invalidate();
 		for (RuleGroup<C> rg : rules) {
 			if (attName.equals(rg.attName)) {
 				if (attValue == null) {
@@ -109,31 +126,33 @@ public class EntityClassifier<C> {
 	
 	/** Classifies a map entity with respect to the given rules. */
 	public C classify(MapEntity entity) {
+		return getTable().classify(entity.getAttributes());
+	}
+
+	/**
+	 * Classifies an entity with the given attributes. This saves the creation
+	 * of an entity if only the attributes are known.
+	 */
+	public C classify(EntityAttribute[] atts) {
+		return getTable().classify(atts);
+	}
+
+	/**
+	 * Classifies a map entity by evaluating the rules recursively without
+	 * decision table. The result is the same as for
+	 * {@link #classify(MapEntity)}, but classification is slower. Useful as
+	 * reference for tests.
+	 */
+	public C classifyRecursively(MapEntity entity) {
 		C result = null;
 		for (RuleGroup<C> rg : rules) {
 			String attValue = entity.getAttributeValue(rg.attName);
 			if (attValue != null) {
-				int min = 0;
-				int max = rg.attValueRules.size()-1;
-				int curr;
-				int cr;
-				Rule<C> currRule;
-				while (min <= max) {
-					curr = (min+max)/2;
-					currRule = rg.attValueRules.get(curr);
-					cr = attValue.compareTo(currRule.attValue);
-					if (cr < 0)
-						max = curr-1;
-					else if (cr > 0)
-						min = curr+1;
-					else {
-						result = currRule.subClassifier.classify(entity);
-						break;
-					}
-				}
-				if (result == null && rg.defaultSubClassifier != null) {
-					result =  rg.defaultSubClassifier.classify(entity);
-				}
+				Rule<C> rule = findRule(rg, attValue);
+				if (rule != null)
+					result = rule.subClassifier.classifyRecursively(entity);
+				if (result == null && rg.defaultSubClassifier != null)
+					result = rg.defaultSubClassifier.classifyRecursively(entity);
 				if (result != null)
 					return result;
 			}
@@ -141,6 +160,49 @@ public class EntityClassifier<C> {
 		return defaultEntityClass;
 	}
 
+	//
+	// PRIVATE METHODS
+	//
+
+	private DecisionTable<C> getTable() {
+		DecisionTable<C> result = table;
+		if (result == null) {
+			result = new DecisionTable<C>(this);
+			table = result;
+		}
+		return result;
+	}
+
+	/** Discards the decision tables of this classifier and its ancestors. */
+	private void invalidate() {
+		for (EntityClassifier<C> ec = this; ec != null; ec = ec.parent)
+			ec.table = null;
+	}
+
+	/**
+	 * Returns the rule which is found by binary search for the given value.
+	 * If values have been added twice, the result depends on the position of
+	 * the duplicates.
+	 */
+	private static <C> Rule<C> findRule(RuleGroup<C> rg, String attValue) {
+		int min = 0;
+		int max = rg.attValueRules.size()-1;
+		int curr;
+		int cr;
+		Rule<C> currRule;
+		while (min <= max) {
+			curr = (min+max)/2;
+			currRule = rg.attValueRules.get(curr);
+			cr = attValue.compareTo(currRule.attValue);
+			if (cr < 0)
+				max = curr-1;
+			else if (cr > 0)
+				min = curr+1;
+			else
+				return currRule;
+		}
+		return null;
+	}
 	
 	/////////////////////////////////////////////////////////////////
 	// inner classes
@@ -171,4 +233,125 @@ public class EntityClassifier<C> {
 			attValueRules = new ArrayList<Rule<C>>();
 		}
 	}
+
+	/**
+	 * Rules of a classifier and all its sub-classifiers, compiled into
+	 * arrays. Classifiers are represented by node numbers, rule groups by
+	 * group numbers. For each group, a child node array is indexed by the
+	 * value id of the entity's attribute. Value ids are assigned per key
+	 * and start at 1, id 0 stands for values without rule.
+	 */
+	private static class DecisionTable<C> {
+		private static final int ABSENT = -1;
+
+		private HashMap<String, Integer> keyIds;
+		private List<HashMap<String, Integer>> valueIds;
+		// node data
+		private List<C> defaults;
+		/** Groups of node n range from firstGroup[n] to firstGroup[n+1]-1. */
+		private int[] firstGroup;
+		// group data
+		private int[] groupKeys;
+		private int[][] valueChildren;
+		private int[] defaultChildren;
+
+		DecisionTable(EntityClassifier<C> classifier) {
+			keyIds = new HashMap<String, Integer>();
+			valueIds = new ArrayList<HashMap<String, Integer>>();
+			defaults = new ArrayList<C>();
+			List<EntityClassifier<C>> nodes = new ArrayList<EntityClassifier<C>>();
+			nodes.add(classifier);
+			// breadth-first numbering of nodes, groups are numbered in node order
+			int groupCount = 0;
+			for (int n = 0; n < nodes.size(); n++) {
+				for (RuleGroup<C> rg : nodes.get(n).rules) {
+					for (Rule<C> rule : rg.attValueRules)
+						nodes.add(rule.subClassifier);
+					if (rg.defaultSubClassifier != null)
+						nodes.add(rg.defaultSubClassifier);
+				}
+				groupCount += nodes.get(n).rules.size();
+			}
+			firstGroup = new int[nodes.size() + 1];
+			groupKeys = new int[groupCount];
+			valueChildren = new int[groupCount][];
+			defaultChildren = new int[groupCount];
+			int g = 0;
+			int child = 1;
+			for (int n = 0; n < nodes.size(); n++) {
+				EntityClassifier<C> ec = nodes.get(n);
+				defaults.add(ec.defaultEntityClass);
+				firstGroup[n] = g;
+				for (RuleGroup<C> rg : ec.rules) {
+					int keyId = getKeyId(rg.attName);
+					HashMap<String, Integer> values = valueIds.get(keyId);
+					int[] children = new int[rg.attValueRules.size()];
+					for (Rule<C> rule : rg.attValueRules) {
+						Integer valueId = values.get(rule.attValue);
+						if (valueId == null) {
+							valueId = values.size() + 1;
+							values.put(rule.attValue, valueId);
+						}
+						if (valueId >= children.length)
+							children = grow(children, valueId + 1);
+						// duplicates: use the rule which binary search finds
+						children[valueId] = child
+								+ rg.attValueRules.indexOf(findRule(rg,
+										rule.attValue));
+					}
+					child += rg.attValueRules.size();
+					groupKeys[g] = keyId;
+					valueChildren[g] = children;
+					defaultChildren[g] = rg.defaultSubClassifier != null ? child++
+							: -1;
+					g++;
+				}
+			}
+			firstGroup[nodes.size()] = g;
+		}
+
+		C classify(EntityAttribute[] atts) {
+			int[] values = new int[keyIds.size()];
+			Arrays.fill(values, ABSENT);
+			for (EntityAttribute att : atts) {
+				Integer keyId = keyIds.get(att.getKey());
+				if (keyId != null && values[keyId] == ABSENT) {
+					Integer valueId = valueIds.get(keyId).get(att.getValue());
+					values[keyId] = valueId != null ? valueId : 0;
+				}
+			}
+			return classify(0, values);
+		}
+
+		private C classify(int node, int[] values) {
+			for (int g = firstGroup[node]; g < firstGroup[node + 1]; g++) {
+				int valueId = values[groupKeys[g]];
+				if (valueId != ABSENT) {
+					C result = null;
+					int[] children = valueChildren[g];
+					if (valueId < children.length && children[valueId] > 0)
+						result = classify(children[valueId], values);
+					if (result == null && defaultChildren[g] != -1)
+						result = classify(defaultChildren[g], values);
+					if (result != null)
+						return result;
+				}
+			}
+			return defaults.get(node);
+		}
+
+		private int getKeyId(String key) {
+			Integer result = keyIds.get(key);
+			if (result == null) {
+				result = keyIds.size();
+				keyIds.put(key, result);
+				valueIds.add(new HashMap<String, Integer>());
+			}
+			return result;
+		}
+
+		private static int[] grow(int[] array, int length) {
+			return Arrays.copyOf(array, Math.max(length, 2 * array.length));
+		}
+	}
 }
@@ -92,11 +92,11 @@ public class Position {
 		if (pos1 < entities.size()) {
 			for (int i = pos1; i >= 0
 					&& getDistKM((MapEntity) entities.get(i)) == newDistance; i--)
-				if (entities.get(i) == entity)
+				if (entities.get(i).equals(entity))
 					return -1;
 			for (int i = pos1 + 1; i < entities.size()
 					&& getDistKM((MapEntity) entities.get(i)) == newDistance; i++)
-				if (entities.get(i) == entity)
+				if (entities.get(i).equals(entity))
 					return -1;
 		}
 		return pos1;
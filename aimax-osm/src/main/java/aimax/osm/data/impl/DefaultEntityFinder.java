@@ -12,9 +12,28 @@ import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.entities.MapWay;
 
 public class DefaultEntityFinder extends AbstractEntityFinder {
+	/**
+	 * Name parts which occur more often are searched by checking all entities
+	 * of the search area.
+	 */
+	private static final int MAX_NAME_PART_OCCURRENCES = 5000;
+
+	private NameIndex nameIndex;
 
 	public DefaultEntityFinder(OsmMap storage) {
+		this(storage, null);
+	}
+
+	/**
+	 * Creates a finder which obtains candidates from a name index instead of
+	 * checking all entities of the search area.
+	 * 
+	 * @param nameIndex
+	 *            Index for the ways and points of interest of the map or null.
+	 */
+	public DefaultEntityFinder(OsmMap storage, NameIndex nameIndex) {
 		super(storage);
+		this.nameIndex = nameIndex;
 	}
 
 	/**
@@ -23,9 +42,50 @@ public class DefaultEntityFinder extends AbstractEntityFinder {
 	 */
 	@Override
 	protected void find(boolean findMore) {
+		BoundingBox bb = new BoundingBox(position, nextRadius);
+		if (!mode.equals(Mode.ADDRESS)
+				&& (nameIndex == null || !findInIndex(bb)))
+			findInArea(bb);
+		
+		if (mode.equals(Mode.ADDRESS)) {
+			List<MapEntity> iResults = getIntermediateResults();
+			StringTokenizer tokenizer = new StringTokenizer(pattern, ",");
+			String placeName = null;
+			String wayName = null;
+			if (tokenizer.hasMoreElements())
+				placeName = tokenizer.nextToken();
+			if (tokenizer.hasMoreElements())
+				wayName = tokenizer.nextToken().trim();
+
+			if (placeName != null && !findMore) {
+				for (MapNode place : getStorage().getPlaces(placeName)) {
+					position.insertInAscendingDistanceOrder(
+							iResults, place);
+					if (iResults.size() > 100)
+						iResults.remove(99);
+				}
+				nextRadius = -1;
+			}
+			if (iResults.size() == 1 && wayName != null) {
+				MapNode place = (MapNode) iResults.get(0);
+				findWay(wayName, new Position(place.getLat(), place.getLon()),
+						null);
+			}
+			
+		} else {
+			nextRadius *= 2;
+			if (getResults().isEmpty() && getIntermediateResults().isEmpty() && nextRadius <= getMaxRadius())
+				find(true);
+		}
+	}
+
+	/**
+	 * Checks all points of interest and ways within the search area and keeps
+	 * the best matches.
+	 */
+	private void findInArea(BoundingBox bb) {
 		BestMatchFinder bmf = new BestMatchFinder(pattern);
 		List<MapEntity> results = getResults();
-		BoundingBox bb = new BoundingBox(position, nextRadius);
 		if (!results.isEmpty())
 			bmf.checkMatchQuality(results.get(0));
 		if (mode.equals(Mode.ENTITY) || mode.equals(Mode.NODE)) {
@@ -56,37 +116,49 @@ public class DefaultEntityFinder extends AbstractEntityFinder {
 				}
 			}
 		}
-		
-		if (mode.equals(Mode.ADDRESS)) {
-			List<MapEntity> iResults = getIntermediateResults();
-			StringTokenizer tokenizer = new StringTokenizer(pattern, ",");
-			String placeName = null;
-			String wayName = null;
-			if (tokenizer.hasMoreElements())
-				placeName = tokenizer.nextToken();
-			if (tokenizer.hasMoreElements())
-				wayName = tokenizer.nextToken().trim();
+	}
 
-			if (placeName != null && !findMore) {
-				for (MapNode place : getStorage().getPlaces(placeName)) {
-					position.insertInAscendingDistanceOrder(
-							iResults, place);
-					if (iResults.size() > 100)
-						iResults.remove(99);
+	/**
+	 * Obtains candidates for the match levels of {@link BestMatchFinder} from
+	 * the name index, best level first, and keeps the candidates of the best
+	 * level which lie within the search area.
+	 * 
+	 * @return false if the pattern is too unspecific for the index.
+	 */
+	private boolean findInIndex(BoundingBox bb) {
+		List<MapEntity> results = getResults();
+		results.clear();
+		for (int level = 1; level <= 4 && results.isEmpty(); level++) {
+			List<MapEntity> candidates;
+			if (level == 1)
+				candidates = nameIndex.findByName(pattern);
+			else if (level == 2)
+				candidates = nameIndex.findByAttributeValue(pattern);
+			else if (level == 3)
+				candidates = nameIndex.findByAttributeKey(pattern);
+			else
+				candidates = nameIndex.findByNamePart(pattern,
+						MAX_NAME_PART_OCCURRENCES);
+			if (candidates == null)
+				return false;
+			for (MapEntity entity : candidates) {
+				boolean inserted = false;
+				if (entity instanceof MapNode && !mode.equals(Mode.WAY)) {
+					MapNode node = (MapNode) entity;
+					if (bb.isInside(node.getLat(), node.getLon()))
+						inserted = position.insertInAscendingDistanceOrder(
+								results, node);
+				} else if (entity instanceof MapWay && !mode.equals(Mode.NODE)) {
+					MapWay way = (MapWay) entity;
+					if (way.computeBoundingBox().intersectsWith(bb))
+						inserted = position.insertInAscendingDistanceOrder(
+								results, way);
 				}
-				nextRadius = -1;
+				if (inserted && results.size() > 100)
+					results.remove(99);
 			}
-			if (iResults.size() == 1 && wayName != null) {
-				MapNode place = (MapNode) iResults.get(0);
-				findWay(wayName, new Position(place.getLat(), place.getLon()),
-						null);
-			}
-			
-		} else {
-			nextRadius *= 2;
-			if (results.isEmpty() && getIntermediateResults().isEmpty() && nextRadius <= getMaxRadius())
-				find(true);
 		}
+		return true;
 	}
 
 	/**
@@ -1,10 +1,14 @@
 package aimax.osm.data.impl;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Hashtable;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Logger;
 
 import aimax.osm.data.BoundingBox;
@@ -24,6 +28,7 @@ import aimax.osm.data.entities.MapEntity;
 import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.entities.MapWay;
 import aimax.osm.data.entities.Track;
+import aimax.osm.reader.OsmRuntimeException;
 
 /**
  * Central container for OSM map data. It is responsible for storing loaded map
@@ -51,14 +56,17 @@ import aimax.osm.data.entities.Track;
  */
 public class DefaultMap implements OsmMap {
 	private static Logger LOG = Logger.getLogger("aimax.osm");
+	/** Minimal number of entities which are classified in parallel. */
+	private static final int PARALLEL_CLASSIFY_SIZE = 10000;
+	private static ExecutorService classifierPool;
 	private BoundingBox boundingBox;
 	/**
 	 * Maintains all map nodes during map loading; after compilation only the
 	 * way nodes remain. IDs are used as keys.
 	 */
-	private Hashtable<Long, MapNode> nodes;
+	private EntityTable<MapNode> nodes;
 	/** Maintains all way nodes. IDs are used as keys. */
-	private Hashtable<Long, MapWay> ways;
+	private EntityTable<MapWay> ways;
 	/**
 	 * Maintains after compilation all nodes which have a name or at least one
 	 * attribute.
@@ -71,13 +79,23 @@ public class DefaultMap implements OsmMap {
 	private long nextTrackId;
 
 	private EntityClassifier<EntityViewInfo> entityClassifier;
+	/**
+	 * Kd-tree with all ways and points of interest. Entities without view
+	 * information are only visited by scale-independent queries.
+	 */
 	private KDTree entityTree;
+	/** Spatial index over way nodes, created during compilation. */
+	private WayNodeIndex wayNodeIndex;
+	/** Name index for ways and points of interest, created during compilation. */
+	private NameIndex nameIndex;
+	/** Simplified ways for small scales, created during compilation. */
+	private WayDetailLevels wayDetailLevels;
 
 	private ArrayList<MapEventListener> listeners;
 
 	public DefaultMap() {
-		nodes = new Hashtable<Long, MapNode>();
-		ways = new Hashtable<Long, MapWay>();
+		nodes = new EntityTable<MapNode>();
+		ways = new EntityTable<MapWay>();
 		pois = new ArrayList<MapNode>();
 		markers = new ArrayList<MapNode>();
 		tracks = new ArrayList<Track>();
@@ -100,6 +118,9 @@ public class DefaultMap implements OsmMap {
 		markers.clear();
 		tracks.clear();
 		entityTree = null;
+		wayNodeIndex = null;
+		nameIndex = null;
+		wayDetailLevels = null;
 		boundingBox = null;
 		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_CLEARED));
 	}
@@ -158,9 +179,9 @@ public class DefaultMap implements OsmMap {
 		return nodes.get(id);
 	}
 
-	/** Adds a node to the central node hashtable. */
+	/** Adds a node to the central node table. */
 	protected void addNode(DefaultMapNode node) {
-		nodes.put(node.getId(), node);
+		nodes.put(node);
 	}
 
 	/** {@inheritDoc} */
@@ -175,9 +196,9 @@ public class DefaultMap implements OsmMap {
 		return ways.get(id);
 	}
 
-	/** Adds a way to the central way hashtable. */
+	/** Adds a way to the central way table. */
 	protected void addWay(DefaultMapWay way) {
-		ways.put(way.getId(), way);
+		ways.put(way);
 	}
 
 	/**
@@ -185,35 +206,34 @@ public class DefaultMap implements OsmMap {
 	 */
 	@Override
 	public Collection<MapWay> getWays(BoundingBox bb) {
-		// not really efficient but OK for small maps...
 		List<MapWay> result = new ArrayList<MapWay>();
-		for (MapWay way : ways.values())
-			if (way.computeBoundingBox().intersectsWith(bb))
-				result.add(way);
+		visitWaysAndPois(new EntityCollector(result, null), bb);
 		return result;
 	}
 
 	/**
 	 * Separates way nodes from points of interests, cleans up useless garbage
-	 * and creates a kd-tree for the remaining entities. Always call this method
-	 * before using using the container for viewing.
+	 * and creates kd-trees for the remaining entities as well as a spatial
+	 * index for way nodes, a name index, and simplified ways for small scales.
+	 * Always call this method before using using the container for viewing.
 	 */
 	public void compile() {
-		ArrayList<Long> toDelete = new ArrayList<Long>();
+		// positions of the nodes to be deleted in the node table
+		BitSet toDelete = new BitSet(nodes.size());
+		int pos = 0;
 		for (MapNode node : nodes.values()) {
 			if (node.hasPosition()) {
 				if (node.getName() != null || node.getAttributes().length > 0)
 					pois.add(node);
 				else if (node.getWayRefs().isEmpty())
-					toDelete.add(node.getId());
+					toDelete.set(pos);
 			} else {
 				LOG.warning("No definition found for referenced node " + node.getId() + ".");
-				toDelete.add(node.getId());
+				toDelete.set(pos);
 			}
+			pos++;
 		}
-		for (long id : toDelete) {
-			nodes.remove(id);
-		}
+		nodes.removeAll(toDelete);
 		BoundingBox bbAllNodes = new BoundingBox();
 		bbAllNodes.adjust(nodes.values());
 		bbAllNodes.adjust(pois);
@@ -222,26 +242,99 @@ public class DefaultMap implements OsmMap {
 		else
 			boundingBox.intersectWith(bbAllNodes);
 		applyClassifierAndUpdateTree(bbAllNodes);
+		wayNodeIndex = new WayNodeIndex(nodes.values(), bbAllNodes);
+		List<MapEntity> waysAndPois = new ArrayList<MapEntity>(pois);
+		waysAndPois.addAll(ways.values());
+		nameIndex = new NameIndex(waysAndPois);
+		wayDetailLevels = new WayDetailLevels(ways.values());
 		fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_NEW));
 	}
 
 	/**
 	 * Applies the current entity classifier to all currently maintained map
-	 * entities and creates a new entity tree with all relevant ways and points
-	 * of interest.
+	 * entities and creates a new entity tree with all ways and points of
+	 * interest. The tree serves viewing as well as bounding box queries.
 	 */
 	protected void applyClassifierAndUpdateTree(BoundingBox bb) {
 		entityTree = new KDTree(bb, 8000, 60);
-		for (MapWay way : ways.values())
-			updateEntityViewInfo(way, true);
-		for (MapNode poi : pois)
-			updateEntityViewInfo(poi, true);
+		List<MapEntity> waysAndPois = new ArrayList<MapEntity>(ways.values());
+		waysAndPois.addAll(pois);
+		classifyInParallel(waysAndPois);
+		for (MapEntity entity : waysAndPois)
+			entityTree.insertEntity((DefaultMapEntity) entity);
 		for (MapNode marker : markers)
 			updateEntityViewInfo(marker, false);
 		for (Track track : tracks)
 			updateEntityViewInfo(track, false);
 	}
 
+	/**
+	 * Sets the view information of the entities by means of the current
+	 * entity classifier. Lists with at least {@link #PARALLEL_CLASSIFY_SIZE}
+	 * entities are split into slices which are classified by the threads of
+	 * a shared pool, one slice per available processor.
+	 */
+	private void classifyInParallel(final List<MapEntity> entities) {
+		final EntityClassifier<EntityViewInfo> classifier = entityClassifier;
+		if (classifier == null || entities.size() < PARALLEL_CLASSIFY_SIZE) {
+			for (MapEntity entity : entities)
+				entity.setViewInfo(classifier != null ? classifier
+						.classify(entity) : null);
+			return;
+		}
+		int sliceCount = Runtime.getRuntime().availableProcessors();
+		List<Future<?>> results = new ArrayList<Future<?>>(sliceCount);
+		for (int i = 0; i < sliceCount; i++) {
+			final int from = entities.size() * i / sliceCount;
+			final int to = entities.size() * (i + 1) / sliceCount;
+			results.add(getClassifierPool().submit(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = from; j < to; j++) {
+						MapEntity entity = entities.get(j);
+						entity.setViewInfo(classifier.classify(entity));
+					}
+				}
+			}));
+		}
+		try {
+			for (Future<?> result : results)
+				result.get();
+		} catch (InterruptedException e) {
+			for (Future<?> result : results)
+				result.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new OsmRuntimeException("Classification interrupted.", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new OsmRuntimeException("Classification failed.", e
+					.getCause());
+		}
+	}
+
+	/**
+	 * Returns the thread pool for classification, which is created on first
+	 * use and shared by all maps. Its daemon threads do not prevent the
+	 * application from exiting.
+	 */
+	private static synchronized ExecutorService getClassifierPool() {
+		if (classifierPool == null) {
+			classifierPool = Executors.newFixedThreadPool(Runtime
+					.getRuntime().availableProcessors(), new ThreadFactory() {
+				private int count;
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread result = new Thread(r, "osm-classify-" + count++);
+					result.setDaemon(true);
+					return result;
+				}
+			});
+		}
+		return classifierPool;
+	}
+
 	/**
 	 * Updates the view information of a given entity by means of the current
 	 * entity classifier. If suitable viewing information was found and
@@ -261,39 +354,41 @@ public class DefaultMap implements OsmMap {
 	 */
 	@Override
 	public MapNode getNearestWayNode(Position pos, MapWayFilter filter) {
+		if (wayNodeIndex != null)
+			return wayNodeIndex.getNearestWayNode(pos, filter);
 		MapNode node = pos.selectNearest(nodes.values(), filter);
 		return node;
 	}
 
-	/** Reduces the level of detail by selecting some of the given nodes. */
+	/**
+	 * Returns the <code>k</code> nearest way nodes from all ways which are
+	 * accepted by the filter, in ascending order of distance. Before
+	 * compilation, all nodes are checked.
+	 * 
+	 * @param pos
+	 *            The reference position.
+	 */
+	public List<MapNode> getNearestWayNodes(Position pos, int k,
+			MapWayFilter filter) {
+		if (wayNodeIndex != null)
+			return wayNodeIndex.getNearestWayNodes(pos, k, filter);
+		return UniformGrid.selectNearestNodes(nodes.values(), pos, k, filter);
+	}
+
+	/**
+	 * Reduces the level of detail for small scales (see
+	 * {@link WayDetailLevels}). After compilation, the simplified node lists
+	 * are precomputed and returned without computation.
+	 */
 	@Override
 	public List<MapNode> getWayNodes(MapWay way, float scale) {
-		List<MapNode> wayNodes = way.getNodes();
-		int zoomLevel;
-		if (scale <= 1f / 10000000)
-			zoomLevel = 3;
-		else if (scale <= 1f / 750000)
-			zoomLevel = 2;
-		else if (scale <= 1f / 350000)
-			zoomLevel = 1;
-		else
-			zoomLevel = 0;
-		if (zoomLevel > 0) {
-			int size = wayNodes.size();
-			List<MapNode> result = new ArrayList<MapNode>(size / zoomLevel + 2);
-			int i = 0;
-			for (MapNode node : wayNodes) {
-				if (i == 0 || i == size - 1
-						|| node.getId() % (4 * zoomLevel) == 0)
-					result.add(node);
-				i++;
-			}
-			if (wayNodes.get(0) == wayNodes.get(size - 1) && result.size() < 4)
-				result.clear();
-			return result;
-		} else {
-			return Collections.unmodifiableList(wayNodes);
-		}
+		int level = WayDetailLevels.getLevel(scale);
+		List<MapNode> result = null;
+		if (wayDetailLevels != null)
+			result = wayDetailLevels.getWayNodes(way, level);
+		if (result == null)
+			result = WayDetailLevels.createWayNodes(way.getNodes(), level);
+		return result;
 	}
 
 	/** {@inheritDoc} */
@@ -305,19 +400,23 @@ public class DefaultMap implements OsmMap {
 	/** {@inheritDoc} */
 	@Override
 	public List<MapNode> getPois(BoundingBox bb) {
-		// not really efficient but ok for small maps...
 		List<MapNode> result = new ArrayList<MapNode>();
-		for (MapNode poi : pois)
-			if (bb.isInside(poi.getLat(), poi.getLon()))
-				result.add(poi);
+		visitWaysAndPois(new EntityCollector(null, result), bb);
 		return result;
 	}
 
-	/** {@inheritDoc} */
+	/** {@inheritDoc} After compilation, the name index is used. */
 	@Override
 	public List<MapNode> getPlaces(String name) {
-		String pattern = name.toLowerCase();
 		List<MapNode> results = new ArrayList<MapNode>();
+		if (nameIndex != null) {
+			for (MapEntity entity : nameIndex.findByNamePrefix(name))
+				if (entity instanceof MapNode
+						&& entity.getAttributeValue("place") != null)
+					results.add((MapNode) entity);
+			return results;
+		}
+		String pattern = name.toLowerCase();
 		for (MapNode node : pois) {
 			if (node.getAttributeValue("place") != null
 					&& node.getName() != null
@@ -448,7 +547,7 @@ public class DefaultMap implements OsmMap {
 	/** {@inheritDoc} */
 	@Override
 	public EntityFinder getEntityFinder() {
-		EntityFinder result = new DefaultEntityFinder(this);
+		EntityFinder result = new DefaultEntityFinder(this, nameIndex);
 		return result;
 	}
 
@@ -473,6 +572,26 @@ public class DefaultMap implements OsmMap {
 			entityTree.visitEntities(visitor, vbox, scale);
 	}
 
+	/**
+	 * Visits all ways and points of interest which intersect the specified
+	 * bounding box, independent of their view information. In contrast to
+	 * {@link #getWays(BoundingBox)} and {@link #getPois(BoundingBox)}, no
+	 * intermediate lists are created. Before compilation, all ways and points
+	 * of interest are checked.
+	 */
+	public void visitWaysAndPois(EntityVisitor visitor, BoundingBox bb) {
+		if (entityTree != null) {
+			entityTree.visitEntities(visitor, bb);
+		} else {
+			for (MapWay way : ways.values())
+				if (way.computeBoundingBox().intersectsWith(bb))
+					visitor.visitMapWay(way);
+			for (MapNode poi : pois)
+				if (bb.isInside(poi.getLat(), poi.getLon()))
+					visitor.visitMapNode(poi);
+		}
+	}
+
 	/** Returns a kd-tree with all entities. */
 	public KDTree getEntityTree() {
 		return entityTree;
@@ -496,4 +615,37 @@ public class DefaultMap implements OsmMap {
 		for (MapEventListener listener : listeners)
 			listener.eventHappened(event);
 	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// inner classes
+
+	/**
+	 * Collects the visited ways and points of interest in lists. Null lists
+	 * disable collection for the corresponding type, tracks are ignored.
+	 */
+	static class EntityCollector implements EntityVisitor {
+		private List<MapWay> ways;
+		private List<MapNode> pois;
+
+		EntityCollector(List<MapWay> ways, List<MapNode> pois) {
+			this.ways = ways;
+			this.pois = pois;
+		}
+
+		@Override
+		public void visitMapWay(MapWay way) {
+			if (ways != null)
+				ways.add(way);
+		}
+
+		@Override
+		public void visitMapNode(MapNode node) {
+			if (pois != null)
+				pois.add(node);
+		}
+
+		@Override
+		public void visitTrack(Track track) {
+		}
+	}
 }
\ No newline at end of file
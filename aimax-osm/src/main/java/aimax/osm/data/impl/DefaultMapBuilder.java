@@ -12,18 +12,51 @@ import aimax.osm.data.entities.EntityAttribute;
 import aimax.osm.data.entities.EntityViewInfo;
 import aimax.osm.data.entities.MapNode;
 
+/**
+ * Builds a {@link DefaultMap}. By default, all nodes and ways are added to the
+ * map immediately. Alternatively, they can be collected in
+ * {@link EntityColumns} first, which reduces the memory consumption and the
+ * garbage collection load during loading of large maps. In that case, the
+ * entity objects are created when the map is built.
+ */
 public class DefaultMapBuilder implements MapBuilder {
 	private static Logger LOG = Logger.getLogger("aimax.osm");
 	private DefaultMap result;
+	/** Null if entities are added to the map immediately. */
+	private EntityColumns columns;
 	private boolean nodeRefsWithoutDefsAdded;
 
 	public DefaultMapBuilder() {
-		result = new DefaultMap();
+		this(false);
+	}
+
+	/**
+	 * Creates a builder for a new map.
+	 * 
+	 * @param useColumns
+	 *            Selects whether nodes and ways are collected in
+	 *            {@link EntityColumns} until the map is built.
+	 */
+	public DefaultMapBuilder(boolean useColumns) {
+		this(new DefaultMap(), useColumns);
 	}
 
 	public DefaultMapBuilder(DefaultMap map) {
+		this(map, false);
+	}
+
+	/**
+	 * Creates a builder which clears the given map and fills it with new data.
+	 * 
+	 * @param useColumns
+	 *            Selects whether nodes and ways are collected in
+	 *            {@link EntityColumns} until the map is built.
+	 */
+	public DefaultMapBuilder(DefaultMap map, boolean useColumns) {
 		result = map;
 		result.clear();
+		if (useColumns)
+			columns = new EntityColumns();
 	}
 
 	/** {@inheritDoc} */
@@ -41,6 +74,8 @@ public class DefaultMapBuilder implements MapBuilder {
 	/** {@inheritDoc} */
 	@Override
 	public boolean isNodeDefined(long id, BoundingBox bb) {
+		if (columns != null)
+			return columns.isNodeDefined(id, bb);
 		MapNode node = result.getNode(id);
 		boolean result = (node != null && node.hasPosition());
 		if (result && bb != null)
@@ -51,6 +86,8 @@ public class DefaultMapBuilder implements MapBuilder {
 	/** {@inheritDoc} */
 	@Override
 	public boolean isNodeReferenced(long id) {
+		if (columns != null)
+			return columns.isNodeReferenced(id);
 		MapNode node = result.getNode(id);
 		return node != null && !node.getWayRefs().isEmpty();
 	}
@@ -62,6 +99,12 @@ public class DefaultMapBuilder implements MapBuilder {
 	@Override
 	public void addNode(long id, String name, List<EntityAttribute> atts,
 			float lat, float lon) {
+		if (columns != null) {
+			columns.addNode(id, name, atts, lat, lon);
+			if (columns.getNodeCount() % 500000 == 0)
+				LOG.fine("Nodes: " + columns.getNodeCount());
+			return;
+		}
 		DefaultMapNode node = (DefaultMapNode) result.getNode(id);
 		if (node == null || !node.hasPosition()) {
 			if (node == null)
@@ -78,6 +121,8 @@ public class DefaultMapBuilder implements MapBuilder {
 	/** {@inheritDoc} */
 	@Override
 	public boolean isWayDefined(long id) {
+		if (columns != null)
+			return columns.isWayDefined(id);
 		return result.getWay(id) != null;
 	}
 
@@ -87,7 +132,12 @@ public class DefaultMapBuilder implements MapBuilder {
 	@Override
 	public void addWay(long id, String name, List<EntityAttribute> atts,
 			List<Long> wayNodeIds) {
-		if (wayNodeIds.size() > 1) {
+		if (wayNodeIds.size() > 1 && columns != null) {
+			if (columns.addWay(id, name, atts, wayNodeIds))
+				nodeRefsWithoutDefsAdded = true;
+			if (columns.getWayCount() % 50000 == 0)
+				LOG.fine("Ways: " + columns.getWayCount());
+		} else if (wayNodeIds.size() > 1) {
 			DefaultMapWay way = new DefaultMapWay(id);
 			way.setName(name);
 			way.setAttributes(atts);
@@ -121,6 +171,10 @@ public class DefaultMapBuilder implements MapBuilder {
 	/** {@inheritDoc} */
 	@Override
 	public OsmMap buildMap() {
+		if (columns != null) {
+			columns.addTo(result);
+			columns = new EntityColumns();
+		}
 		result.compile();
 		if (!result.isEmpty())
 			LOG.fine("Loading completed. Ways: " + result.getWayCount()
@@ -29,7 +29,7 @@ public class DefaultMapWay extends DefaultMapEntity implements MapWay {
 	
 	/** Assigns a way description (as list of nodes) to the way. */
 	public void setNodes(List<MapNode> nodes) {
-		this.nodes = nodes;
+		this.nodes = Collections.unmodifiableList(nodes);
 		latMinIdx = -1;
 	}
 	
@@ -48,7 +48,7 @@ public class DefaultMapWay extends DefaultMapEntity implements MapWay {
 	/** {@inheritDoc} */
 	@Override
 	public List<MapNode> getNodes() {
-		return Collections.unmodifiableList(nodes);
+		return nodes;
 	}
 
 	/** {@inheritDoc} */
@@ -0,0 +1,275 @@
+package aimax.osm.data.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import aima.core.util.datastructure.LongIntHashMap;
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Struct-of-arrays storage for nodes and ways during map loading. Ids are
+ * translated into slot numbers by open-addressing hash maps. Node
+ * coordinates are kept in float columns, way definitions as slot numbers in
+ * one int column. Names and attributes are only stored for entities which
+ * have them. No objects are created per node or way until
+ * {@link #addTo(DefaultMap)} is called, and nodes which are neither part of a
+ * way nor points of interest are never created at all.
+ */
+public class EntityColumns {
+	private static final EntityAttribute[] NO_ATTS = new EntityAttribute[0];
+
+	private LongIntHashMap nodeSlots = new LongIntHashMap();
+	private int nodeCount;
+	private long[] nodeIds = new long[1024];
+	private float[] lats = new float[1024];
+	private float[] lons = new float[1024];
+	/** Nodes which are part of at least one way. */
+	private BitSet referenced = new BitSet();
+	/** Index into the tag lists or -1 for nodes without name and attributes. */
+	private int[] nodeTags = new int[1024];
+	private List<String> tagNames = new ArrayList<String>();
+	private List<EntityAttribute[]> tagAtts = new ArrayList<EntityAttribute[]>();
+
+	private LongIntHashMap waySlots = new LongIntHashMap();
+	private int wayCount;
+	private long[] wayIds = new long[256];
+	private String[] wayNames = new String[256];
+	private EntityAttribute[][] wayAtts = new EntityAttribute[256][];
+	// nodes of way w: wayNodes[wayStart[w]] ... wayNodes[wayStart[w+1]-1]
+	private int[] wayStart = new int[257];
+	private int[] wayNodes = new int[4096];
+
+	/** Returns the number of nodes, including referenced but undefined ones. */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/** Returns the number of ways. Redefined ways are counted once. */
+	public int getWayCount() {
+		return waySlots.size();
+	}
+
+	/**
+	 * Checks whether a node with the specified id has been defined and lies
+	 * inside the bounding box.
+	 *
+	 * @param bb
+	 *            possibly null
+	 */
+	public boolean isNodeDefined(long id, BoundingBox bb) {
+		int slot = nodeSlots.get(id);
+		boolean result = slot != -1 && !Float.isNaN(lats[slot]);
+		if (result && bb != null)
+			result = bb.isInside(lats[slot], lons[slot]);
+		return result;
+	}
+
+	/** Checks whether the node is part of a way. */
+	public boolean isNodeReferenced(long id) {
+		int slot = nodeSlots.get(id);
+		return slot != -1 && referenced.get(slot);
+	}
+
+	public boolean isWayDefined(long id) {
+		return waySlots.get(id) != -1;
+	}
+
+	/**
+	 * Adds a node. If a node with the same ID but without position has already
+	 * been added, it is redefined with the new data.
+	 */
+	public void addNode(long id, String name, List<EntityAttribute> atts,
+			float lat, float lon) {
+		int slot = nodeSlots.get(id);
+		if (slot == -1)
+			slot = addNodeSlot(id);
+		else if (!Float.isNaN(lats[slot]))
+			return;
+		lats[slot] = lat;
+		lons[slot] = lon;
+		if (name != null || !atts.isEmpty()) {
+			nodeTags[slot] = tagNames.size();
+			tagNames.add(name);
+			tagAtts.add(atts.toArray(new EntityAttribute[atts.size()]));
+		}
+	}
+
+	/**
+	 * Adds a way. Nodes which have not been defined before are added without
+	 * position.
+	 *
+	 * @return true if at least one node had to be added without position.
+	 */
+	public boolean addWay(long id, String name, List<EntityAttribute> atts,
+			List<Long> wayNodeIds) {
+		boolean undefinedNodesAdded = false;
+		if (wayCount == wayIds.length) {
+			int capacity = wayCount * 2;
+			wayIds = Arrays.copyOf(wayIds, capacity);
+			wayNames = Arrays.copyOf(wayNames, capacity);
+			wayAtts = Arrays.copyOf(wayAtts, capacity);
+			wayStart = Arrays.copyOf(wayStart, capacity + 1);
+		}
+		int start = wayStart[wayCount];
+		int end = start + wayNodeIds.size();
+		if (end > wayNodes.length)
+			wayNodes = Arrays.copyOf(wayNodes, Math.max(end, wayNodes.length * 2));
+		for (long nodeId : wayNodeIds) {
+			int slot = nodeSlots.get(nodeId);
+			if (slot == -1) {
+				slot = addNodeSlot(nodeId);
+				undefinedNodesAdded = true;
+			}
+			referenced.set(slot);
+			wayNodes[start++] = slot;
+		}
+		wayIds[wayCount] = id;
+		wayNames[wayCount] = name;
+		wayAtts[wayCount] = atts.isEmpty() ? NO_ATTS : atts
+				.toArray(new EntityAttribute[atts.size()]);
+		wayStart[wayCount + 1] = end;
+		// a redefined way replaces the old definition
+		waySlots.put(id, wayCount++);
+		return undefinedNodesAdded;
+	}
+
+	/**
+	 * Creates entity objects for all ways, their nodes and all nodes with
+	 * name or attributes, and adds them to the map.
+	 */
+	public void addTo(DefaultMap map) {
+		DefaultMapNode[] nodes = new DefaultMapNode[nodeCount];
+		for (int w = 0; w < wayCount; w++) {
+			if (waySlots.get(wayIds[w]) != w)
+				continue; // redefined later
+			DefaultMapWay way = new DefaultMapWay(wayIds[w]);
+			way.setName(wayNames[w]);
+			way.setAttributes(Arrays.asList(wayAtts[w]));
+			List<MapNode> wayNodeList = new ArrayList<MapNode>(wayStart[w + 1]
+					- wayStart[w]);
+			for (int i = wayStart[w]; i < wayStart[w + 1]; i++) {
+				int slot = wayNodes[i];
+				if (nodes[slot] == null)
+					nodes[slot] = createNode(slot);
+				nodes[slot].addWayRef(way, i - wayStart[w]);
+				wayNodeList.add(nodes[slot]);
+			}
+			way.setNodes(wayNodeList);
+			map.addWay(way);
+		}
+		for (int slot = 0; slot < nodeCount; slot++) {
+			if (nodes[slot] == null && nodeTags[slot] != -1)
+				nodes[slot] = createNode(slot);
+			if (nodes[slot] != null)
+				map.addNode(nodes[slot]);
+		}
+	}
+
+	//
+	// column access for other map representations
+	//
+
+	/** Returns the slot of the node with the specified id or -1. */
+	int getNodeSlot(long id) {
+		return nodeSlots.get(id);
+	}
+
+	long getNodeId(int slot) {
+		return nodeIds[slot];
+	}
+
+	float getLat(int slot) {
+		return lats[slot];
+	}
+
+	float getLon(int slot) {
+		return lons[slot];
+	}
+
+	/** Checks whether the node has a name or attributes. */
+	boolean hasTags(int slot) {
+		return nodeTags[slot] != -1;
+	}
+
+	String getNodeName(int slot) {
+		return nodeTags[slot] != -1 ? tagNames.get(nodeTags[slot]) : null;
+	}
+
+	EntityAttribute[] getNodeAttributes(int slot) {
+		return nodeTags[slot] != -1 ? tagAtts.get(nodeTags[slot]) : NO_ATTS;
+	}
+
+	/** Returns the slot of the way with the specified id or -1. */
+	int getWaySlot(long id) {
+		return waySlots.get(id);
+	}
+
+	/**
+	 * Returns the number of way slots including slots of redefined ways.
+	 */
+	int getWaySlotCount() {
+		return wayCount;
+	}
+
+	/** Checks whether the way has not been redefined later. */
+	boolean isCurrentWay(int w) {
+		return waySlots.get(wayIds[w]) == w;
+	}
+
+	long getWayId(int w) {
+		return wayIds[w];
+	}
+
+	String getWayName(int w) {
+		return wayNames[w];
+	}
+
+	EntityAttribute[] getWayAttributes(int w) {
+		return wayAtts[w];
+	}
+
+	/** Returns the number of nodes of the way. */
+	int getWayNodeCount(int w) {
+		return wayStart[w + 1] - wayStart[w];
+	}
+
+	/** Returns the slot of the i-th node of the way. */
+	int getWayNode(int w, int i) {
+		return wayNodes[wayStart[w] + i];
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private int addNodeSlot(long id) {
+		if (nodeCount == nodeIds.length) {
+			int capacity = nodeCount * 2;
+			nodeIds = Arrays.copyOf(nodeIds, capacity);
+			lats = Arrays.copyOf(lats, capacity);
+			lons = Arrays.copyOf(lons, capacity);
+			nodeTags = Arrays.copyOf(nodeTags, capacity);
+		}
+		int slot = nodeCount++;
+		nodeIds[slot] = id;
+		lats[slot] = Float.NaN;
+		lons[slot] = Float.NaN;
+		nodeTags[slot] = -1;
+		nodeSlots.put(id, slot);
+		return slot;
+	}
+
+	private DefaultMapNode createNode(int slot) {
+		DefaultMapNode node = new DefaultMapNode(nodeIds[slot]);
+		node.setPosition(lats[slot], lons[slot]);
+		if (nodeTags[slot] != -1) {
+			node.setName(tagNames.get(nodeTags[slot]));
+			node.setAttributes(Arrays.asList(tagAtts.get(nodeTags[slot])));
+		}
+		return node;
+	}
+}
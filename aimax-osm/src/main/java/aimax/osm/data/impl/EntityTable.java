@@ -0,0 +1,117 @@
+package aimax.osm.data.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+
+import aima.core.util.datastructure.LongIntHashMap;
+import aimax.osm.data.entities.MapEntity;
+
+/**
+ * Maintains map entities with ids as keys. An open-addressing hash map
+ * translates ids into positions of a dense entity array. Compared to a
+ * <code>Hashtable&lt;Long, E&gt;</code>, lookups neither box the key nor
+ * synchronize, and no entry object is created per entity. Removal moves the
+ * last entity into the gap, so the iteration order is the insertion order
+ * only as long as no entity has been removed by {@link #remove(long)}. The
+ * table is not synchronized.
+ */
+public class EntityTable<E extends MapEntity> {
+	private LongIntHashMap index;
+	private MapEntity[] entities;
+	private int size;
+
+	public EntityTable() {
+		index = new LongIntHashMap();
+		entities = new MapEntity[16];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/** Returns the entity with the specified id or null. */
+	@SuppressWarnings("unchecked")
+	public E get(long id) {
+		int pos = index.get(id);
+		return pos != -1 ? (E) entities[pos] : null;
+	}
+
+	/** Adds the entity and replaces an entity with the same id if present. */
+	public void put(E entity) {
+		int pos = index.get(entity.getId());
+		if (pos == -1) {
+			if (size == entities.length)
+				entities = Arrays.copyOf(entities, size * 2);
+			pos = size++;
+			index.put(entity.getId(), pos);
+		}
+		entities[pos] = entity;
+	}
+
+	/** Removes the entity with the specified id if present. */
+	public void remove(long id) {
+		int pos = index.remove(id);
+		if (pos != -1) {
+			size--;
+			if (pos < size) {
+				entities[pos] = entities[size];
+				index.put(entities[pos].getId(), pos);
+			}
+			entities[size] = null;
+		}
+	}
+
+	/**
+	 * Removes all entities whose positions in {@link #values()} are marked.
+	 * The order of the remaining entities is preserved.
+	 */
+	public void removeAll(BitSet positions) {
+		int newSize = 0;
+		for (int pos = 0; pos < size; pos++) {
+			if (positions.get(pos)) {
+				index.remove(entities[pos].getId());
+			} else {
+				if (newSize < pos) {
+					entities[newSize] = entities[pos];
+					index.put(entities[newSize].getId(), newSize);
+				}
+				newSize++;
+			}
+		}
+		Arrays.fill(entities, newSize, size, null);
+		size = newSize;
+	}
+
+	public void clear() {
+		index = new LongIntHashMap();
+		entities = new MapEntity[16];
+		size = 0;
+	}
+
+	/**
+	 * Returns a read-only view of all entities. The view must not be used
+	 * while the table is modified.
+	 */
+	public Collection<E> values() {
+		return new AbstractList<E>() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public E get(int i) {
+				if (i >= size)
+					throw new IndexOutOfBoundsException();
+				return (E) entities[i];
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+}
@@ -27,7 +27,7 @@ public class KDTree {
 	private ArrayList<DefaultMapEntity> entities;
 	private boolean splitAtLat;
 	private float splitValue;
-	private boolean isSorted;
+	private volatile boolean isSorted;
 	
 	/**
 	 * Constructs the root of the tree.
@@ -69,8 +69,8 @@ public class KDTree {
 	
 	/**
 	 * Adds an entity at the right position in the tree and extends
-	 * the tree if necessary. It is assumed that the entity contains
-	 * view information.
+	 * the tree if necessary. Entities without view information are
+	 * skipped by scale-dependent visits.
 	 */
 	public void insertEntity(DefaultMapEntity entity) {
 		if (children == null) {
@@ -163,13 +163,13 @@ public class KDTree {
 	 */
 	public void visitEntities(EntityVisitor visitor, BoundingBox vbox, float scale) {
 		if (!entities.isEmpty()) {
-			if (!isSorted) {
-				Collections.sort(entities, new EntityComparator());
-				isSorted = true;
-			}
+			if (!isSorted)
+				sortEntities();
 			VisibilityTest vtest = new VisibilityTest(bb, vbox);
 			for (DefaultMapEntity entity : entities) {
-				if (entity.getViewInfo().getMinVisibleScale() > scale)
+				// entities without view information are sorted to the end
+				if (entity.getViewInfo() == null
+						|| entity.getViewInfo().getMinVisibleScale() > scale)
 					break;
 				if (vtest.isVisible(entity))
 					entity.accept(visitor);
@@ -185,19 +185,51 @@ public class KDTree {
 		}
 	}
 
+	/**
+	 * Visits all contained entities which intersect the given region,
+	 * independent of view information and scale.
+	 */
+	public void visitEntities(EntityVisitor visitor, BoundingBox vbox) {
+		if (!entities.isEmpty()) {
+			VisibilityTest vtest = new VisibilityTest(bb, vbox);
+			for (DefaultMapEntity entity : entities)
+				if (vtest.isVisible(entity))
+					entity.accept(visitor);
+		}
+		if (children != null) {
+			float vMin = (splitAtLat ? vbox.getLatMin() : vbox.getLonMin());
+			float vMax = (splitAtLat ? vbox.getLatMax() : vbox.getLonMax());
+			if (vMin <= splitValue)
+				children[0].visitEntities(visitor, vbox);
+			if (vMax >= splitValue)
+				children[1].visitEntities(visitor, vbox);
+		}
+	}
+	
+	/**
+	 * Sorts the entities by minimal visible scale. Synchronized because
+	 * renderers may visit the tree from several threads.
+	 */
+	private synchronized void sortEntities() {
+		if (!isSorted) {
+			Collections.sort(entities, new EntityComparator());
+			isSorted = true;
+		}
+	}
 	
 	/////////////////////////////////////////////////////////////////
 	// some inner classes
 	
 	/**
 	 * Compares entities with respect to their minimal visible scale.
-	 * Entities which are already visible in small scales are preferred.
+	 * Entities which are already visible in small scales are preferred,
+	 * entities without view information come last.
 	 */
 	private static class EntityComparator implements Comparator<MapEntity> {
 		@Override
 		public int compare(MapEntity e1, MapEntity e2) {
-			float vs1 = e1.getViewInfo().getMinVisibleScale();
-			float vs2 = e2.getViewInfo().getMinVisibleScale();
+			float vs1 = getMinVisibleScale(e1);
+			float vs2 = getMinVisibleScale(e2);
 			if (vs1 < vs2)
 				return -1;
 			else if (vs1 > vs2)
@@ -205,6 +237,11 @@ public class KDTree {
 			else
 				return 0;
 		}
+
+		private static float getMinVisibleScale(MapEntity entity) {
+			return entity.getViewInfo() != null ? entity.getViewInfo()
+					.getMinVisibleScale() : Float.POSITIVE_INFINITY;
+		}
 	}
 	
 	/**
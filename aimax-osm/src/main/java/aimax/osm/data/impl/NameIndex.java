@@ -0,0 +1,257 @@
+package aimax.osm.data.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapEntity;
+
+/**
+ * Index for finding entities by name, attribute key and attribute value. All
+ * strings are compared in lower case. Names are organized in a sorted suffix
+ * array, so entities whose names contain or start with a given string are
+ * found by binary search. Attribute keys and values are hashed. The index is
+ * immutable and reflects the entities at construction time.
+ */
+public class NameIndex {
+	/** Suffixes starting at larger offsets are not indexed. */
+	private static final int MAX_OFFSET = 0xFFFF;
+
+	private MapEntity[] entities;
+	/** Lower case names, null for entities without name. */
+	private String[] names;
+	/** Suffixes in ascending order, encoded as entity index and offset. */
+	private long[] suffixes;
+	private Map<String, int[]> keyIndex;
+	private Map<String, int[]> valueIndex;
+
+	/** Creates an index for the given entities. */
+	public NameIndex(Collection<? extends MapEntity> entities) {
+		this.entities = entities.toArray(new MapEntity[entities.size()]);
+		names = new String[this.entities.length];
+		int suffixCount = 0;
+		for (int i = 0; i < names.length; i++) {
+			String name = this.entities[i].getName();
+			if (name != null) {
+				names[i] = name.toLowerCase();
+				suffixCount += Math.min(names[i].length(), MAX_OFFSET + 1);
+			}
+		}
+		suffixes = new long[suffixCount];
+		int s = 0;
+		for (int i = 0; i < names.length; i++)
+			if (names[i] != null)
+				for (int o = 0; o < names[i].length() && o <= MAX_OFFSET; o++)
+					suffixes[s++] = ((long) i << 16) | o;
+		sortSuffixes();
+		keyIndex = createAttributeIndex(true);
+		valueIndex = createAttributeIndex(false);
+	}
+
+	/** Returns all entities whose name is equal to the given string. */
+	public List<MapEntity> findByName(String name) {
+		String pattern = name.toLowerCase();
+		List<MapEntity> result = new ArrayList<MapEntity>();
+		int end = upperBound(pattern);
+		for (int s = lowerBound(pattern); s < end; s++)
+			if (getOffset(suffixes[s]) == 0
+					&& names[getEntity(suffixes[s])].length() == pattern
+							.length())
+				result.add(entities[getEntity(suffixes[s])]);
+		return result;
+	}
+
+	/** Returns all entities whose name starts with the given string. */
+	public List<MapEntity> findByNamePrefix(String prefix) {
+		String pattern = prefix.toLowerCase();
+		List<MapEntity> result = new ArrayList<MapEntity>();
+		int end = upperBound(pattern);
+		for (int s = lowerBound(pattern); s < end; s++)
+			if (getOffset(suffixes[s]) == 0)
+				result.add(entities[getEntity(suffixes[s])]);
+		return result;
+	}
+
+	/**
+	 * Returns all entities whose name contains the given string, or null if
+	 * the string occurs more than <code>maxOccurrences</code> times.
+	 */
+	public List<MapEntity> findByNamePart(String part, int maxOccurrences) {
+		String pattern = part.toLowerCase();
+		int start = lowerBound(pattern);
+		int end = upperBound(pattern);
+		if (end - start > maxOccurrences)
+			return null;
+		int[] found = new int[end - start];
+		for (int s = start; s < end; s++)
+			found[s - start] = getEntity(suffixes[s]);
+		// names can contain the pattern more than once
+		Arrays.sort(found);
+		List<MapEntity> result = new ArrayList<MapEntity>();
+		for (int i = 0; i < found.length; i++)
+			if (i == 0 || found[i] != found[i - 1])
+				result.add(entities[found[i]]);
+		return result;
+	}
+
+	/** Returns all entities with an attribute with the given key. */
+	public List<MapEntity> findByAttributeKey(String key) {
+		return getEntities(keyIndex.get(key.toLowerCase()));
+	}
+
+	/** Returns all entities with an attribute with the given value. */
+	public List<MapEntity> findByAttributeValue(String value) {
+		return getEntities(valueIndex.get(value.toLowerCase()));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static int getEntity(long suffix) {
+		return (int) (suffix >>> 16);
+	}
+
+	private static int getOffset(long suffix) {
+		return (int) (suffix & 0xFFFF);
+	}
+
+	private List<MapEntity> getEntities(int[] indices) {
+		List<MapEntity> result = new ArrayList<MapEntity>();
+		if (indices != null)
+			for (int i : indices)
+				result.add(entities[i]);
+		return result;
+	}
+
+	/**
+	 * Maps lower case attribute keys or values to the indices of the entities
+	 * which have them. Each entity is listed at most once per string.
+	 */
+	private Map<String, int[]> createAttributeIndex(boolean useKeys) {
+		HashMap<String, int[]> result = new HashMap<String, int[]>();
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		HashMap<String, Integer> lastEntity = new HashMap<String, Integer>();
+		for (int pass = 0; pass < 2; pass++) {
+			lastEntity.clear();
+			for (int i = 0; i < entities.length; i++) {
+				for (EntityAttribute att : entities[i].getAttributes()) {
+					String str = (useKeys ? att.getKey() : att.getValue())
+							.toLowerCase();
+					Integer last = lastEntity.put(str, i);
+					if (last != null && last == i)
+						continue;
+					if (pass == 0) {
+						Integer count = counts.get(str);
+						counts.put(str, count == null ? 1 : count + 1);
+					} else {
+						int[] indices = result.get(str);
+						if (indices == null) {
+							indices = new int[counts.get(str)];
+							result.put(str, indices);
+							counts.put(str, 0);
+						}
+						int pos = counts.get(str);
+						indices[pos] = i;
+						counts.put(str, pos + 1);
+					}
+				}
+			}
+		}
+		return result;
+	}
+
+	/** Returns the position of the first suffix not less than the pattern. */
+	private int lowerBound(String pattern) {
+		int low = 0;
+		int high = suffixes.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(suffixes[mid], pattern, false) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the position of the first suffix which is greater than the
+	 * pattern and does not start with it.
+	 */
+	private int upperBound(String pattern) {
+		int low = 0;
+		int high = suffixes.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compare(suffixes[mid], pattern, true) <= 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	/**
+	 * Compares a suffix with a pattern. If <code>prefixOnly</code> is true,
+	 * the suffix is truncated to the length of the pattern.
+	 */
+	private int compare(long suffix, String pattern, boolean prefixOnly) {
+		String name = names[getEntity(suffix)];
+		int offset = getOffset(suffix);
+		int length = name.length() - offset;
+		if (prefixOnly)
+			length = Math.min(length, pattern.length());
+		int n = Math.min(length, pattern.length());
+		for (int i = 0; i < n; i++) {
+			int diff = name.charAt(offset + i) - pattern.charAt(i);
+			if (diff != 0)
+				return diff;
+		}
+		return length - pattern.length();
+	}
+
+	private int compare(long suffix1, long suffix2) {
+		String name1 = names[getEntity(suffix1)];
+		String name2 = names[getEntity(suffix2)];
+		int offset1 = getOffset(suffix1);
+		int offset2 = getOffset(suffix2);
+		int length1 = name1.length() - offset1;
+		int length2 = name2.length() - offset2;
+		int n = Math.min(length1, length2);
+		for (int i = 0; i < n; i++) {
+			int diff = name1.charAt(offset1 + i) - name2.charAt(offset2 + i);
+			if (diff != 0)
+				return diff;
+		}
+		return length1 - length2;
+	}
+
+	/** Sorts the suffixes by means of a bottom-up merge sort. */
+	private void sortSuffixes() {
+		long[] src = suffixes;
+		long[] dest = new long[src.length];
+		for (int width = 1; width < src.length; width *= 2) {
+			for (int low = 0; low < src.length; low += 2 * width) {
+				int mid = Math.min(low + width, src.length);
+				int high = Math.min(low + 2 * width, src.length);
+				int i = low;
+				int j = mid;
+				for (int k = low; k < high; k++) {
+					if (i < mid && (j >= high || compare(src[i], src[j]) <= 0))
+						dest[k] = src[i++];
+					else
+						dest[k] = src[j++];
+				}
+			}
+			long[] tmp = src;
+			src = dest;
+			dest = tmp;
+		}
+		suffixes = src;
+	}
+}
@@ -0,0 +1,771 @@
+package aimax.osm.data.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityAttributeManager;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.MapEvent;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.EntityViewInfo;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.WayRef;
+import aimax.osm.reader.OsmRuntimeException;
+
+/**
+ * Map representation for maps which do not fit into the Java heap. Node
+ * coordinates, way node lists, way references, names and spatial grids are
+ * stored in sections of a store, one <code>ByteBuffer</code> per section.
+ * Stores are created by {@link OffHeapMapBuilder} in direct buffers, can be
+ * saved to file and later be opened as memory-mapped files. Several processes
+ * which open the same store file share its pages.<br>
+ * <br>
+ * Nodes and ways are represented by read-only flyweight objects which are
+ * created on access and which are equal if they refer to the same entity.
+ * Only attribute sets (shared by many entities) and their view information are
+ * kept on the heap. Simplified node lists of the ways for small scales (see
+ * {@link WayDetailLevels}) and an index of place names sorted in lower case
+ * are precomputed and stored in sections as well. Markers and tracks are
+ * maintained as in {@link DefaultMap}. Sections are addressed by int offsets,
+ * so each section is limited to {@link #MAX_SECTION_SIZE} bytes (2 GB). The
+ * builder and {@link #openStore(File)} reject larger sections.
+ */
+public class OffHeapMap extends DefaultMap {
+	static final int MAGIC = 0x41494d4f;
+	static final int VERSION = 2;
+	/** Maximal size of a section in bytes. */
+	public static final long MAX_SECTION_SIZE = Integer.MAX_VALUE;
+
+	static final int NODE_IDS = 0;
+	static final int NODE_LATS = 1;
+	static final int NODE_LONS = 2;
+	static final int NODE_REF_START = 3;
+	static final int REF_WAYS = 4;
+	static final int REF_IDXS = 5;
+	static final int POI_NODES = 6;
+	static final int POI_NAMES = 7;
+	static final int POI_ATTS = 8;
+	static final int WAY_IDS = 9;
+	static final int WAY_NODE_START = 10;
+	static final int WAY_NODES = 11;
+	static final int WAY_NAMES = 12;
+	static final int WAY_ATTS = 13;
+	static final int WAY_BOXES = 14;
+	static final int ATT_SET_START = 15;
+	static final int ATT_STRINGS = 16;
+	static final int STRINGS = 17;
+	static final int WAY_GRID_START = 18;
+	static final int WAY_GRID = 19;
+	static final int POI_GRID_START = 20;
+	static final int POI_GRID = 21;
+	static final int NODE_GRID_START = 22;
+	static final int NODE_GRID = 23;
+	static final int WAY_LEVELS = 24;
+	static final int WAY_LEVEL_NODES = 25;
+	static final int PLACES = 26;
+	static final int SECTION_COUNT = 27;
+
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private ByteBuffer[] sections;
+	private int nodeCount;
+	private int wayCount;
+	private int poiCount;
+	private Grid wayGrid;
+	private Grid poiGrid;
+	private Grid nodeGrid;
+	private EntityAttribute[][] attSets;
+	/** View information for each attribute set. */
+	private EntityViewInfo[] viewInfos;
+	private EntityClassifier<EntityViewInfo> entityClassifier;
+
+	public OffHeapMap() {
+		setStore(null, null);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	protected void clear() {
+		super.clear();
+		setStore(null, null);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isEmpty() {
+		return nodeCount == 0 && wayCount == 0 && super.isEmpty();
+	}
+
+	/** Returns a builder which creates a new store in direct buffers. */
+	@Override
+	public MapBuilder getBuilder() {
+		return new OffHeapMapBuilder(this);
+	}
+
+	/** Releases the store. */
+	@Override
+	public void close() {
+		setStore(null, null);
+	}
+
+	/**
+	 * Classifies all attribute sets. Markers and tracks which are added later
+	 * are classified as in {@link DefaultMap}.
+	 */
+	@Override
+	public void setEntityClassifier(EntityClassifier<EntityViewInfo> classifier) {
+		super.setEntityClassifier(classifier);
+		entityClassifier = classifier;
+		classifyAttributeSets();
+		if (!isEmpty())
+			fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_MODIFIED));
+	}
+
+	/**
+	 * Opens a store file which has been written by {@link #saveStore(File)}.
+	 * All sections are mapped into memory.
+	 */
+	public void openStore(File file) {
+		FileInputStream fs = null;
+		try {
+			fs = new FileInputStream(file);
+			FileChannel channel = fs.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					getHeaderSize());
+			if (header.getInt() != MAGIC || header.getInt() != VERSION)
+				throw new OsmRuntimeException("Unsupported store file format.");
+			long offset = getHeaderSize();
+			ByteBuffer[] newSections = new ByteBuffer[SECTION_COUNT];
+			header.position(getHeaderSize() - 8 * SECTION_COUNT);
+			for (int i = 0; i < SECTION_COUNT; i++) {
+				long length = header.getLong();
+				if (length < 0 || length > MAX_SECTION_SIZE)
+					throw new OsmRuntimeException("Store section " + i
+							+ " has unsupported size " + length + ".");
+				newSections[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+						offset, length);
+				offset += length;
+			}
+			header.rewind();
+			super.clear();
+			setStore(header, newSections);
+		} catch (IOException e) {
+			throw new OsmRuntimeException("Unable to open store file.", e);
+		} finally {
+			if (fs != null) {
+				try {
+					fs.close();
+				} catch (IOException e) {
+					LOG.log(Level.SEVERE, "Unable to close input stream.", e);
+				}
+			}
+		}
+	}
+
+	/** Writes the current store to file. */
+	public void saveStore(File file) {
+		FileOutputStream fs = null;
+		try {
+			fs = new FileOutputStream(file);
+			FileChannel channel = fs.getChannel();
+			ByteBuffer header = createHeader(getBoundingBox(), nodeCount,
+					wayCount, poiCount, new Grid[] { wayGrid, poiGrid,
+							nodeGrid }, sections);
+			while (header.hasRemaining())
+				channel.write(header);
+			for (ByteBuffer section : sections) {
+				ByteBuffer data = section.duplicate();
+				data.rewind();
+				while (data.hasRemaining())
+					channel.write(data);
+			}
+		} catch (IOException e) {
+			throw new OsmRuntimeException("Unable to write store file.", e);
+		} finally {
+			if (fs != null) {
+				try {
+					fs.close();
+				} catch (IOException e) {
+					LOG.log(Level.SEVERE, "Unable to close output stream.", e);
+				}
+			}
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MapNode getNode(long id) {
+		int node = binarySearch(sections[NODE_IDS], nodeCount, id);
+		return node >= 0 ? new OffHeapMapNode(this, node) : null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getWayCount() {
+		return wayCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MapWay getWay(long id) {
+		int way = binarySearch(sections[WAY_IDS], wayCount, id);
+		return way >= 0 ? new OffHeapMapWay(this, way) : null;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Collection<MapWay> getWays(BoundingBox bb) {
+		List<MapWay> result = new ArrayList<MapWay>();
+		visitWays(new DefaultMap.EntityCollector(result, null), bb, Float.NaN);
+		return result;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public int getPoiCount() {
+		return poiCount;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapNode> getPois(BoundingBox bb) {
+		List<MapNode> result = new ArrayList<MapNode>();
+		visitPois(new DefaultMap.EntityCollector(null, result), bb, Float.NaN);
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} The places are found by binary search in the place
+	 * section, which lists all named places sorted by lower case name.
+	 */
+	@Override
+	public List<MapNode> getPlaces(String name) {
+		String pattern = name.toLowerCase();
+		int count = sections[PLACES].capacity() / 4;
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getPlaceName(mid).compareTo(pattern) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		List<MapNode> results = new ArrayList<MapNode>();
+		for (int i = low; i < count && getPlaceName(i).startsWith(pattern); i++) {
+			int poi = sections[PLACES].getInt(i << 2);
+			results.add(new OffHeapMapNode(this, sections[POI_NODES]
+					.getInt(poi << 2), poi));
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the precomputed node list of the way for the level of detail
+	 * which corresponds to the scale. Ways of other maps are handled as in
+	 * {@link DefaultMap}.
+	 */
+	@Override
+	public List<MapNode> getWayNodes(MapWay way, float scale) {
+		int level = WayDetailLevels.getLevel(scale);
+		if (level == 0 || !(way instanceof OffHeapMapWay)
+				|| ((OffHeapMapWay) way).getMap() != this)
+			return super.getWayNodes(way, scale);
+		final int w = ((OffHeapMapWay) way).getIndex();
+		int pos = (w * WayDetailLevels.LEVELS + level - 1) << 3;
+		final int start = sections[WAY_LEVELS].getInt(pos);
+		final int size = sections[WAY_LEVELS].getInt(pos + 4);
+		if (size == -1)
+			return way.getNodes();
+		return new AbstractList<MapNode>() {
+			@Override
+			public MapNode get(int i) {
+				if (i < 0 || i >= size)
+					throw new IndexOutOfBoundsException();
+				return new OffHeapMapNode(OffHeapMap.this, getWayNode(w,
+						sections[WAY_LEVEL_NODES].getInt((start + i) << 2)));
+			}
+
+			@Override
+			public int size() {
+				return size;
+			}
+		};
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public MapNode getNearestWayNode(Position pos, MapWayFilter filter) {
+		List<MapNode> result = getNearestWayNodes(pos, 1, filter);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * {@inheritDoc} Grid cells are visited in ascending order of a lower bound
+	 * of their distance to the reference position, as in
+	 * {@link WayNodeIndex}.
+	 */
+	@Override
+	public List<MapNode> getNearestWayNodes(Position pos, int k,
+			MapWayFilter filter) {
+		if (nodeGrid.size() == 0)
+			return new ArrayList<MapNode>();
+		return nodeGrid.getNearestNodes(pos, k, filter,
+				new UniformGrid.CellEntries() {
+					@Override
+					public int getStart(int cell) {
+						return nodeGrid.getStart(cell);
+					}
+
+					@Override
+					public int getEnd(int cell) {
+						return nodeGrid.getEnd(cell);
+					}
+
+					@Override
+					public float getLat(int i) {
+						return getNodeLat(nodeGrid.getEntry(i));
+					}
+
+					@Override
+					public float getLon(int i) {
+						return getNodeLon(nodeGrid.getEntry(i));
+					}
+
+					@Override
+					public MapNode getNode(int i) {
+						return new OffHeapMapNode(OffHeapMap.this, nodeGrid
+								.getEntry(i));
+					}
+				});
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public Object[][] getStatistics() {
+		long bytes = 0;
+		for (ByteBuffer section : sections)
+			bytes += section.capacity();
+		Object[][] result = new Object[4][2];
+		result[0][0] = "Nodes";
+		result[0][1] = nodeCount;
+		result[1][0] = "Ways";
+		result[1][1] = wayCount;
+		result[2][0] = "POIs";
+		result[2][1] = poiCount;
+		result[3][0] = "Store (MB)";
+		result[3][1] = bytes / (1024 * 1024);
+		return result;
+	}
+
+	/**
+	 * {@inheritDoc} Ways and points of interest are read from the grids, so
+	 * the costs depend on the size of the visible area, not on the scale.
+	 */
+	@Override
+	public void visitEntities(EntityVisitor visitor, BoundingBox vbox,
+			float scale) {
+		visitWays(visitor, vbox, scale);
+		visitPois(visitor, vbox, scale);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void visitWaysAndPois(EntityVisitor visitor, BoundingBox bb) {
+		visitWays(visitor, bb, Float.NaN);
+		visitPois(visitor, bb, Float.NaN);
+	}
+
+	/** Returns null because no kd-tree is maintained. */
+	@Override
+	public KDTree getEntityTree() {
+		return null;
+	}
+
+	/**
+	 * Replaces the current store.
+	 *
+	 * @param header
+	 *            Header as created by
+	 *            {@link #createHeader(BoundingBox, int, int, int, Grid[], ByteBuffer[])}
+	 *            or null for an empty store.
+	 */
+	void setStore(ByteBuffer header, ByteBuffer[] newSections) {
+		if (header == null) {
+			sections = new ByteBuffer[SECTION_COUNT];
+			for (int i = 0; i < SECTION_COUNT; i++)
+				sections[i] = ByteBuffer.allocate(0);
+			sections[NODE_REF_START] = ByteBuffer.allocate(4);
+			sections[WAY_NODE_START] = ByteBuffer.allocate(4);
+			sections[ATT_SET_START] = ByteBuffer.allocate(4);
+			BoundingBox bb = new BoundingBox(0, 0, 0, 0);
+			nodeCount = 0;
+			wayCount = 0;
+			poiCount = 0;
+			wayGrid = new Grid(bb, 1, 1);
+			poiGrid = new Grid(bb, 1, 1);
+			nodeGrid = new Grid(bb, 1, 1);
+			for (Grid grid : new Grid[] { wayGrid, poiGrid, nodeGrid })
+				grid.setCells(ByteBuffer.allocate(8), ByteBuffer.allocate(0));
+		} else {
+			sections = newSections;
+			header.getInt(); // magic
+			header.getInt(); // version
+			BoundingBox bb = new BoundingBox(header.getFloat(), header
+					.getFloat(), header.getFloat(), header.getFloat());
+			setBoundingBox(bb);
+			nodeCount = header.getInt();
+			wayCount = header.getInt();
+			poiCount = header.getInt();
+			wayGrid = new Grid(bb, header.getInt(), header.getInt());
+			poiGrid = new Grid(bb, header.getInt(), header.getInt());
+			nodeGrid = new Grid(bb, header.getInt(), header.getInt());
+			wayGrid.setCells(sections[WAY_GRID_START], sections[WAY_GRID]);
+			poiGrid.setCells(sections[POI_GRID_START], sections[POI_GRID]);
+			nodeGrid.setCells(sections[NODE_GRID_START], sections[NODE_GRID]);
+		}
+		int setCount = sections[ATT_SET_START].capacity() / 4 - 1;
+		attSets = new EntityAttribute[setCount][];
+		for (int s = 0; s < setCount; s++) {
+			int start = sections[ATT_SET_START].getInt(s << 2);
+			int end = sections[ATT_SET_START].getInt((s + 1) << 2);
+			List<EntityAttribute> atts = new ArrayList<EntityAttribute>();
+			for (int i = start; i < end; i++) {
+				EntityAttribute att = EntityAttributeManager.instance().intern(
+						new EntityAttribute(getString(sections[ATT_STRINGS]
+								.getInt(i << 3)), getString(sections[ATT_STRINGS]
+								.getInt((i << 3) + 4))));
+				if (att != null)
+					atts.add(att);
+			}
+			attSets[s] = atts.toArray(new EntityAttribute[atts.size()]);
+			Arrays.sort(attSets[s]);
+		}
+		classifyAttributeSets();
+		if (header != null)
+			fireMapDataEvent(new MapEvent(this, MapEvent.Type.MAP_NEW));
+	}
+
+	/** Returns the size of a store file header in bytes. */
+	static int getHeaderSize() {
+		return 4 * 15 + 8 * SECTION_COUNT;
+	}
+
+	/** Creates a header for a store with the specified content. */
+	static ByteBuffer createHeader(BoundingBox bb, int nodeCount,
+			int wayCount, int poiCount, Grid[] grids, ByteBuffer[] sections) {
+		ByteBuffer header = ByteBuffer.allocate(getHeaderSize());
+		header.putInt(MAGIC);
+		header.putInt(VERSION);
+		header.putFloat(bb.getLatMin());
+		header.putFloat(bb.getLonMin());
+		header.putFloat(bb.getLatMax());
+		header.putFloat(bb.getLonMax());
+		header.putInt(nodeCount);
+		header.putInt(wayCount);
+		header.putInt(poiCount);
+		for (Grid grid : grids) {
+			header.putInt(grid.rows);
+			header.putInt(grid.cols);
+		}
+		for (ByteBuffer section : sections)
+			header.putLong(section.capacity());
+		header.flip();
+		return header;
+	}
+
+	//
+	// access methods for flyweights
+	//
+
+	long getNodeId(int node) {
+		return sections[NODE_IDS].getLong(node << 3);
+	}
+
+	float getNodeLat(int node) {
+		return sections[NODE_LATS].getFloat(node << 2);
+	}
+
+	float getNodeLon(int node) {
+		return sections[NODE_LONS].getFloat(node << 2);
+	}
+
+	List<WayRef> getWayRefs(int node) {
+		int start = sections[NODE_REF_START].getInt(node << 2);
+		int end = sections[NODE_REF_START].getInt((node + 1) << 2);
+		if (start == end)
+			return Collections.emptyList();
+		List<WayRef> result = new ArrayList<WayRef>(end - start);
+		for (int i = start; i < end; i++)
+			result.add(new DefaultWayRef(new OffHeapMapWay(this,
+					sections[REF_WAYS].getInt(i << 2)), sections[REF_IDXS]
+					.getShort(i << 1)));
+		return Collections.unmodifiableList(result);
+	}
+
+	/** Returns the point of interest number of the node or -1. */
+	int getPoi(int node) {
+		int low = 0;
+		int high = poiCount - 1;
+		ByteBuffer poiNodes = sections[POI_NODES];
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int value = poiNodes.getInt(mid << 2);
+			if (value < node)
+				low = mid + 1;
+			else if (value > node)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	String getPoiName(int poi) {
+		return getString(sections[POI_NAMES].getInt(poi << 2));
+	}
+
+	int getPoiAttSet(int poi) {
+		return sections[POI_ATTS].getInt(poi << 2);
+	}
+
+	long getWayId(int way) {
+		return sections[WAY_IDS].getLong(way << 3);
+	}
+
+	int getWayNodeCount(int way) {
+		return sections[WAY_NODE_START].getInt((way + 1) << 2)
+				- sections[WAY_NODE_START].getInt(way << 2);
+	}
+
+	/** Returns the node number of the i-th node of the way. */
+	int getWayNode(int way, int i) {
+		int start = sections[WAY_NODE_START].getInt(way << 2);
+		return sections[WAY_NODES].getInt((start + i) << 2);
+	}
+
+	String getWayName(int way) {
+		return getString(sections[WAY_NAMES].getInt(way << 2));
+	}
+
+	int getWayAttSet(int way) {
+		return sections[WAY_ATTS].getInt(way << 2);
+	}
+
+	/** Returns the bounding box of the way. */
+	BoundingBox getWayBox(int way) {
+		ByteBuffer boxes = sections[WAY_BOXES];
+		int pos = way << 4;
+		return new BoundingBox(boxes.getFloat(pos), boxes.getFloat(pos + 4),
+				boxes.getFloat(pos + 8), boxes.getFloat(pos + 12));
+	}
+
+	EntityAttribute[] getAttributeSet(int set) {
+		return attSets[set];
+	}
+
+	EntityViewInfo getViewInfo(int set) {
+		return viewInfos[set];
+	}
+
+	/**
+	 * Applies binary search to find the specified attribute value and returns
+	 * null if not found.
+	 */
+	static String getAttributeValue(EntityAttribute[] atts, String attName) {
+		int min = 0;
+		int max = atts.length - 1;
+		while (min <= max) {
+			int curr = (min + max) / 2;
+			int cr = attName.compareTo(atts[curr].getKey());
+			if (cr == 0)
+				return atts[curr].getValue();
+			else if (cr < 0)
+				max = curr - 1;
+			else
+				min = curr + 1;
+		}
+		return null;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Returns the lower case name of the i-th entry of the place section. */
+	private String getPlaceName(int i) {
+		return getPoiName(sections[PLACES].getInt(i << 2)).toLowerCase();
+	}
+
+	private void classifyAttributeSets() {
+		viewInfos = new EntityViewInfo[attSets.length];
+		if (entityClassifier != null) {
+			for (int i = 0; i < attSets.length; i++)
+				viewInfos[i] = entityClassifier.classify(attSets[i]);
+		}
+	}
+
+	/** Decodes the string at the specified offset; -1 stands for null. */
+	private String getString(int offset) {
+		if (offset == -1)
+			return null;
+		ByteBuffer strings = sections[STRINGS];
+		byte[] bytes = new byte[strings.getInt(offset)];
+		for (int i = 0; i < bytes.length; i++)
+			bytes[i] = strings.get(offset + 4 + i);
+		return new String(bytes, UTF8);
+	}
+
+	/**
+	 * Visits all ways which intersect the bounding box and are visible in the
+	 * specified scale. NaN as scale stands for all ways.
+	 */
+	private void visitWays(EntityVisitor visitor, BoundingBox bb, float scale) {
+		int r0 = wayGrid.row(bb.getLatMin());
+		int r1 = wayGrid.row(bb.getLatMax());
+		int c0 = wayGrid.col(bb.getLonMin());
+		int c1 = wayGrid.col(bb.getLonMax());
+		ByteBuffer boxes = sections[WAY_BOXES];
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				int cell = r * wayGrid.cols + c;
+				int end = wayGrid.getEnd(cell);
+				for (int i = wayGrid.getStart(cell); i < end; i++) {
+					int way = wayGrid.getEntry(i);
+					int pos = way << 4;
+					float latMin = boxes.getFloat(pos);
+					float lonMin = boxes.getFloat(pos + 4);
+					// report each way only in the first common cell
+					if (r != Math.max(r0, wayGrid.row(latMin))
+							|| c != Math.max(c0, wayGrid.col(lonMin)))
+						continue;
+					if (latMin > bb.getLatMax() || lonMin > bb.getLonMax()
+							|| boxes.getFloat(pos + 8) < bb.getLatMin()
+							|| boxes.getFloat(pos + 12) < bb.getLonMin())
+						continue;
+					if (isVisible(getWayAttSet(way), scale))
+						visitor.visitMapWay(new OffHeapMapWay(this, way));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Visits all points of interest within the bounding box which are visible
+	 * in the specified scale. NaN as scale stands for all points of interest.
+	 */
+	private void visitPois(EntityVisitor visitor, BoundingBox bb, float scale) {
+		int r0 = poiGrid.row(bb.getLatMin());
+		int r1 = poiGrid.row(bb.getLatMax());
+		int c0 = poiGrid.col(bb.getLonMin());
+		int c1 = poiGrid.col(bb.getLonMax());
+		for (int r = r0; r <= r1; r++) {
+			for (int c = c0; c <= c1; c++) {
+				int cell = r * poiGrid.cols + c;
+				int end = poiGrid.getEnd(cell);
+				for (int i = poiGrid.getStart(cell); i < end; i++) {
+					int poi = poiGrid.getEntry(i);
+					int node = sections[POI_NODES].getInt(poi << 2);
+					if (bb.isInside(getNodeLat(node), getNodeLon(node))
+							&& isVisible(getPoiAttSet(poi), scale))
+						visitor.visitMapNode(new OffHeapMapNode(this, node,
+								poi));
+				}
+			}
+		}
+	}
+
+	private boolean isVisible(int attSet, float scale) {
+		if (Float.isNaN(scale))
+			return true;
+		EntityViewInfo info = viewInfos[attSet];
+		return info != null && info.getMinVisibleScale() <= scale;
+	}
+
+	/** Returns the index of the id in the sorted id section or -1. */
+	private static int binarySearch(ByteBuffer ids, int count, long id) {
+		int low = 0;
+		int high = count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			long value = ids.getLong(mid << 3);
+			if (value < id)
+				low = mid + 1;
+			else if (value > id)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Uniform grid over the bounding box of the map. The entries of cell
+	 * <code>c</code> are stored at positions <code>start[c]</code> to
+	 * <code>start[c+1]-1</code> of the entry section.
+	 */
+	static class Grid extends UniformGrid {
+		private ByteBuffer start;
+		private ByteBuffer entries;
+
+		Grid(BoundingBox bb, int rows, int cols) {
+			super(bb, rows, cols);
+		}
+
+		/**
+		 * Creates a grid with approximately square cells (in kilometers)
+		 * which contain on average the specified number of entries.
+		 */
+		static Grid create(BoundingBox bb, int entryCount, int entriesPerCell) {
+			int[] dim = computeDimensions(bb, entryCount, entriesPerCell);
+			return new Grid(bb, dim[0], dim[1]);
+		}
+
+		void setCells(ByteBuffer start, ByteBuffer entries) {
+			this.start = start;
+			this.entries = entries;
+		}
+
+		int size() {
+			return entries.capacity() / 4;
+		}
+
+		int getStart(int cell) {
+			return start.getInt(cell << 2);
+		}
+
+		int getEnd(int cell) {
+			return start.getInt((cell + 1) << 2);
+		}
+
+		int getEntry(int i) {
+			return entries.getInt(i << 2);
+		}
+	}
+}
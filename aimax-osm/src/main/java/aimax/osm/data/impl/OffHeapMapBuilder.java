@@ -0,0 +1,584 @@
+package aimax.osm.data.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Logger;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.EntityViewInfo;
+import aimax.osm.reader.OsmRuntimeException;
+
+/**
+ * Builds an {@link OffHeapMap}. Nodes and ways are collected in
+ * {@link EntityColumns} and written into direct buffers when the map is
+ * built. Nodes and ways are sorted by id. As in {@link DefaultMap}, only way
+ * nodes and points of interest are kept. Referenced nodes without definition
+ * are removed from their ways. For maps which are too large for the columns,
+ * build the store once on a machine with enough memory, save it with
+ * {@link OffHeapMap#saveStore(java.io.File)} and open the file where the map
+ * is needed.
+ */
+public class OffHeapMapBuilder implements MapBuilder {
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+	private OffHeapMap result;
+	private EntityColumns columns;
+	private BoundingBox boundingBox;
+	private boolean nodeRefsWithoutDefsAdded;
+
+	public OffHeapMapBuilder() {
+		this(new OffHeapMap());
+	}
+
+	/** Creates a builder which clears the given map and fills it with new data. */
+	public OffHeapMapBuilder(OffHeapMap map) {
+		result = map;
+		result.clear();
+		columns = new EntityColumns();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setEntityClassifier(EntityClassifier<EntityViewInfo> classifier) {
+		result.setEntityClassifier(classifier);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void setBoundingBox(BoundingBox bb) {
+		boundingBox = bb;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isNodeDefined(long id, BoundingBox bb) {
+		return columns.isNodeDefined(id, bb);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isNodeReferenced(long id) {
+		return columns.isNodeReferenced(id);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void addNode(long id, String name, List<EntityAttribute> atts,
+			float lat, float lon) {
+		columns.addNode(id, name, atts, lat, lon);
+		if (columns.getNodeCount() % 500000 == 0)
+			LOG.fine("Nodes: " + columns.getNodeCount());
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isWayDefined(long id) {
+		return columns.isWayDefined(id);
+	}
+
+	/**
+	 * {@inheritDoc} Ways with less than two way nodes are ignored.
+	 */
+	@Override
+	public void addWay(long id, String name, List<EntityAttribute> atts,
+			List<Long> wayNodeIds) {
+		if (wayNodeIds.size() > 1) {
+			if (columns.addWay(id, name, atts, wayNodeIds))
+				nodeRefsWithoutDefsAdded = true;
+			if (columns.getWayCount() % 50000 == 0)
+				LOG.fine("Ways: " + columns.getWayCount());
+		}
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean nodeRefsWithoutDefsAdded() {
+		boolean result = nodeRefsWithoutDefsAdded;
+		nodeRefsWithoutDefsAdded = false;
+		return result;
+	}
+
+	/** Writes the collected data into a new store of the map. */
+	@Override
+	public OsmMap buildMap() {
+		try {
+			createStore();
+		} catch (IOException e) {
+			throw new OsmRuntimeException("Unable to create map store.", e);
+		}
+		columns = new EntityColumns();
+		if (!result.isEmpty())
+			LOG.fine("Loading completed. Ways: " + result.getWayCount()
+					+ ", Nodes: " + result.getNodeCount() + ", POIs: "
+					+ result.getPoiCount());
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void createStore() throws IOException {
+		// select ways with at least two defined nodes and sort them by id
+		int undefinedRefs = 0;
+		long[] wayIds = new long[columns.getWaySlotCount()];
+		int wayCount = 0;
+		BitSet usedNodes = new BitSet();
+		for (int w = 0; w < columns.getWaySlotCount(); w++) {
+			if (!columns.isCurrentWay(w))
+				continue;
+			int defined = 0;
+			for (int i = 0; i < columns.getWayNodeCount(w); i++) {
+				int slot = columns.getWayNode(w, i);
+				if (Float.isNaN(columns.getLat(slot)))
+					undefinedRefs++;
+				else
+					defined++;
+			}
+			if (defined > 1) {
+				wayIds[wayCount++] = columns.getWayId(w);
+				for (int i = 0; i < columns.getWayNodeCount(w); i++) {
+					int slot = columns.getWayNode(w, i);
+					if (!Float.isNaN(columns.getLat(slot)))
+						usedNodes.set(slot);
+				}
+			}
+		}
+		if (undefinedRefs > 0)
+			LOG.warning("No definition found for " + undefinedRefs
+					+ " node references.");
+		wayIds = Arrays.copyOf(wayIds, wayCount);
+		Arrays.sort(wayIds);
+		int[] waySlots = new int[wayCount];
+		for (int i = 0; i < wayCount; i++)
+			waySlots[i] = columns.getWaySlot(wayIds[i]);
+
+		// select way nodes and points of interest and sort them by id
+		for (int slot = 0; slot < columns.getNodeCount(); slot++)
+			if (columns.hasTags(slot) && !Float.isNaN(columns.getLat(slot)))
+				usedNodes.set(slot);
+		int nodeCount = usedNodes.cardinality();
+		long[] nodeIds = new long[nodeCount];
+		int n = 0;
+		for (int slot = usedNodes.nextSetBit(0); slot >= 0; slot = usedNodes
+				.nextSetBit(slot + 1))
+			nodeIds[n++] = columns.getNodeId(slot);
+		Arrays.sort(nodeIds);
+		int[] nodeOfSlot = new int[columns.getNodeCount()];
+		int[] slotOfNode = new int[nodeCount];
+		for (n = 0; n < nodeCount; n++) {
+			slotOfNode[n] = columns.getNodeSlot(nodeIds[n]);
+			nodeOfSlot[slotOfNode[n]] = n;
+		}
+
+		StringTable strings = new StringTable();
+		HashMap<List<EntityAttribute>, Integer> attSetNumbers;
+		attSetNumbers = new HashMap<List<EntityAttribute>, Integer>();
+		List<EntityAttribute[]> attSets = new ArrayList<EntityAttribute[]>();
+		ByteBuffer[] sections = new ByteBuffer[OffHeapMap.SECTION_COUNT];
+		BoundingBox bb = new BoundingBox(0, 0, 0, 0);
+
+		// nodes and points of interest
+		sections[OffHeapMap.NODE_IDS] = allocate(8L * nodeCount);
+		sections[OffHeapMap.NODE_LATS] = allocate(4L * nodeCount);
+		sections[OffHeapMap.NODE_LONS] = allocate(4L * nodeCount);
+		int poiCount = 0;
+		for (n = 0; n < nodeCount; n++) {
+			int slot = slotOfNode[n];
+			float lat = columns.getLat(slot);
+			float lon = columns.getLon(slot);
+			sections[OffHeapMap.NODE_IDS].putLong(8 * n, nodeIds[n]);
+			sections[OffHeapMap.NODE_LATS].putFloat(4 * n, lat);
+			sections[OffHeapMap.NODE_LONS].putFloat(4 * n, lon);
+			if (n == 0)
+				bb = new BoundingBox(lat, lon, lat, lon);
+			else
+				bb.unifyWith(new BoundingBox(lat, lon, lat, lon));
+			if (columns.hasTags(slot))
+				poiCount++;
+		}
+		sections[OffHeapMap.POI_NODES] = allocate(4L * poiCount);
+		sections[OffHeapMap.POI_NAMES] = allocate(4L * poiCount);
+		sections[OffHeapMap.POI_ATTS] = allocate(4L * poiCount);
+		List<Integer> places = new ArrayList<Integer>();
+		List<String> placeNames = new ArrayList<String>();
+		int poi = 0;
+		for (n = 0; n < nodeCount; n++) {
+			int slot = slotOfNode[n];
+			if (columns.hasTags(slot)) {
+				String name = columns.getNodeName(slot);
+				int attSet = getAttSetNumber(columns.getNodeAttributes(slot),
+						attSetNumbers, attSets);
+				sections[OffHeapMap.POI_NODES].putInt(4 * poi, n);
+				sections[OffHeapMap.POI_NAMES].putInt(4 * poi, strings
+						.add(name));
+				sections[OffHeapMap.POI_ATTS].putInt(4 * poi, attSet);
+				if (name != null
+						&& OffHeapMap.getAttributeValue(attSets.get(attSet),
+								"place") != null) {
+					places.add(poi);
+					placeNames.add(name.toLowerCase());
+				}
+				poi++;
+			}
+		}
+		createPlaces(sections, places, placeNames);
+
+		// ways
+		int wayNodeCount = 0;
+		for (int w : waySlots)
+			for (int i = 0; i < columns.getWayNodeCount(w); i++)
+				if (usedNodes.get(columns.getWayNode(w, i)))
+					wayNodeCount++;
+		sections[OffHeapMap.WAY_IDS] = allocate(8L * wayCount);
+		sections[OffHeapMap.WAY_NODE_START] = allocate(4L * (wayCount + 1));
+		sections[OffHeapMap.WAY_NODES] = allocate(4L * wayNodeCount);
+		sections[OffHeapMap.WAY_NAMES] = allocate(4L * wayCount);
+		sections[OffHeapMap.WAY_ATTS] = allocate(4L * wayCount);
+		sections[OffHeapMap.WAY_BOXES] = allocate(16L * wayCount);
+		int pos = 0;
+		for (int way = 0; way < wayCount; way++) {
+			int w = waySlots[way];
+			sections[OffHeapMap.WAY_IDS].putLong(8 * way, wayIds[way]);
+			sections[OffHeapMap.WAY_NODE_START].putInt(4 * way, pos);
+			sections[OffHeapMap.WAY_NAMES].putInt(4 * way, strings.add(columns
+					.getWayName(w)));
+			sections[OffHeapMap.WAY_ATTS].putInt(4 * way, getAttSetNumber(
+					columns.getWayAttributes(w), attSetNumbers, attSets));
+			float latMin = Float.MAX_VALUE;
+			float lonMin = Float.MAX_VALUE;
+			float latMax = -Float.MAX_VALUE;
+			float lonMax = -Float.MAX_VALUE;
+			for (int i = 0; i < columns.getWayNodeCount(w); i++) {
+				int slot = columns.getWayNode(w, i);
+				if (usedNodes.get(slot)) {
+					sections[OffHeapMap.WAY_NODES].putInt(4 * pos++,
+							nodeOfSlot[slot]);
+					latMin = Math.min(latMin, columns.getLat(slot));
+					lonMin = Math.min(lonMin, columns.getLon(slot));
+					latMax = Math.max(latMax, columns.getLat(slot));
+					lonMax = Math.max(lonMax, columns.getLon(slot));
+				}
+			}
+			sections[OffHeapMap.WAY_BOXES].putFloat(16 * way, latMin);
+			sections[OffHeapMap.WAY_BOXES].putFloat(16 * way + 4, lonMin);
+			sections[OffHeapMap.WAY_BOXES].putFloat(16 * way + 8, latMax);
+			sections[OffHeapMap.WAY_BOXES].putFloat(16 * way + 12, lonMax);
+		}
+		sections[OffHeapMap.WAY_NODE_START].putInt(4 * wayCount, pos);
+		createWayLevels(sections, wayCount);
+
+		// way references, closed ways are referenced only once per node
+		ByteBuffer wayNodes = sections[OffHeapMap.WAY_NODES];
+		ByteBuffer wayNodeStart = sections[OffHeapMap.WAY_NODE_START];
+		int[] refStart = new int[nodeCount + 1];
+		int[] firstRefWay = new int[nodeCount];
+		Arrays.fill(firstRefWay, -1);
+		for (int way = 0; way < wayCount; way++) {
+			for (int i = wayNodeStart.getInt(4 * way); i < wayNodeStart
+					.getInt(4 * way + 4); i++) {
+				int node = wayNodes.getInt(4 * i);
+				if (firstRefWay[node] != way) {
+					if (firstRefWay[node] == -1)
+						firstRefWay[node] = way;
+					refStart[node + 1]++;
+				}
+			}
+		}
+		for (n = 0; n < nodeCount; n++)
+			refStart[n + 1] += refStart[n];
+		sections[OffHeapMap.NODE_REF_START] = allocate(4L * (nodeCount + 1));
+		for (n = 0; n <= nodeCount; n++)
+			sections[OffHeapMap.NODE_REF_START].putInt(4 * n, refStart[n]);
+		sections[OffHeapMap.REF_WAYS] = allocate(4L * refStart[nodeCount]);
+		sections[OffHeapMap.REF_IDXS] = allocate(2L * refStart[nodeCount]);
+		Arrays.fill(firstRefWay, -1);
+		for (int way = 0; way < wayCount; way++) {
+			int start = wayNodeStart.getInt(4 * way);
+			for (int i = start; i < wayNodeStart.getInt(4 * way + 4); i++) {
+				int node = wayNodes.getInt(4 * i);
+				if (firstRefWay[node] != way) {
+					if (firstRefWay[node] == -1)
+						firstRefWay[node] = way;
+					int ref = refStart[node]++;
+					sections[OffHeapMap.REF_WAYS].putInt(4 * ref, way);
+					sections[OffHeapMap.REF_IDXS].putShort(2 * ref,
+							(short) (i - start));
+				}
+			}
+		}
+		refStart = null;
+		firstRefWay = null;
+
+		// attribute sets and strings
+		int attCount = 0;
+		for (EntityAttribute[] atts : attSets)
+			attCount += atts.length;
+		sections[OffHeapMap.ATT_SET_START] = allocate(4L * (attSets.size() + 1));
+		sections[OffHeapMap.ATT_STRINGS] = allocate(8L * attCount);
+		int att = 0;
+		for (int s = 0; s < attSets.size(); s++) {
+			sections[OffHeapMap.ATT_SET_START].putInt(4 * s, att);
+			for (EntityAttribute a : attSets.get(s)) {
+				sections[OffHeapMap.ATT_STRINGS].putInt(8 * att, strings.add(a
+						.getKey()));
+				sections[OffHeapMap.ATT_STRINGS].putInt(8 * att + 4, strings
+						.add(a.getValue()));
+				att++;
+			}
+		}
+		sections[OffHeapMap.ATT_SET_START].putInt(4 * attSets.size(), att);
+		sections[OffHeapMap.STRINGS] = strings.toBuffer();
+
+		// grids
+		OffHeapMap.Grid wayGrid = OffHeapMap.Grid.create(bb, wayCount, 8);
+		int[] entries = new int[wayCount];
+		float[] boxes = new float[4 * wayCount];
+		for (int way = 0; way < wayCount; way++) {
+			entries[way] = way;
+			for (int i = 0; i < 4; i++)
+				boxes[4 * way + i] = sections[OffHeapMap.WAY_BOXES]
+						.getFloat(16 * way + 4 * i);
+		}
+		fillGrid(wayGrid, entries, boxes, sections, OffHeapMap.WAY_GRID_START,
+				OffHeapMap.WAY_GRID);
+
+		OffHeapMap.Grid poiGrid = OffHeapMap.Grid.create(bb, poiCount, 8);
+		entries = new int[poiCount];
+		boxes = new float[4 * poiCount];
+		for (poi = 0; poi < poiCount; poi++) {
+			entries[poi] = poi;
+			n = sections[OffHeapMap.POI_NODES].getInt(4 * poi);
+			setPoint(boxes, poi, sections, n);
+		}
+		fillGrid(poiGrid, entries, boxes, sections, OffHeapMap.POI_GRID_START,
+				OffHeapMap.POI_GRID);
+
+		int refNodeCount = 0;
+		ByteBuffer nodeRefStart = sections[OffHeapMap.NODE_REF_START];
+		for (n = 0; n < nodeCount; n++)
+			if (nodeRefStart.getInt(4 * n) != nodeRefStart.getInt(4 * n + 4))
+				refNodeCount++;
+		OffHeapMap.Grid nodeGrid = OffHeapMap.Grid.create(bb, refNodeCount, 8);
+		entries = new int[refNodeCount];
+		boxes = new float[4 * refNodeCount];
+		int e = 0;
+		for (n = 0; n < nodeCount; n++) {
+			if (nodeRefStart.getInt(4 * n) != nodeRefStart.getInt(4 * n + 4)) {
+				entries[e] = n;
+				setPoint(boxes, e++, sections, n);
+			}
+		}
+		fillGrid(nodeGrid, entries, boxes, sections,
+				OffHeapMap.NODE_GRID_START, OffHeapMap.NODE_GRID);
+
+		ByteBuffer header = OffHeapMap.createHeader(bb, nodeCount, wayCount,
+				poiCount, new OffHeapMap.Grid[] { wayGrid, poiGrid, nodeGrid },
+				sections);
+		result.setStore(header, sections);
+		if (boundingBox != null)
+			result.setBoundingBox(boundingBox.intersectWith(bb));
+	}
+
+	/**
+	 * Simplifies the node lists of all ways for the levels of detail of
+	 * {@link WayDetailLevels}. For each way and level, the way levels section
+	 * contains the start of the selected node indices in the way level nodes
+	 * section and their number, or -1 if all nodes are selected. Levels with
+	 * equal selections share their indices.
+	 */
+	private void createWayLevels(ByteBuffer[] sections, int wayCount) {
+		int levels = WayDetailLevels.LEVELS;
+		ByteBuffer wayNodes = sections[OffHeapMap.WAY_NODES];
+		ByteBuffer wayNodeStart = sections[OffHeapMap.WAY_NODE_START];
+		sections[OffHeapMap.WAY_LEVELS] = allocate(8L * levels * wayCount);
+		int[] indices = new int[1024];
+		int indexCount = 0;
+		float[] lats = new float[16];
+		float[] lons = new float[16];
+		for (int way = 0; way < wayCount; way++) {
+			int start = wayNodeStart.getInt(4 * way);
+			int n = wayNodeStart.getInt(4 * way + 4) - start;
+			if (n > lats.length) {
+				lats = new float[2 * n];
+				lons = new float[2 * n];
+			}
+			for (int i = 0; i < n; i++) {
+				int node = wayNodes.getInt(4 * (start + i));
+				lats[i] = sections[OffHeapMap.NODE_LATS].getFloat(4 * node);
+				lons[i] = sections[OffHeapMap.NODE_LONS].getFloat(4 * node);
+			}
+			boolean closed = wayNodes.getInt(4 * start) == wayNodes
+					.getInt(4 * (start + n - 1));
+			int[] previous = null;
+			int previousStart = 0;
+			for (int level = 1; level <= levels; level++) {
+				int[] selection = WayDetailLevels.select(lats, lons, n,
+						closed, level);
+				int p = 8 * (way * levels + level - 1);
+				if (selection == null) {
+					sections[OffHeapMap.WAY_LEVELS].putInt(p, 0);
+					sections[OffHeapMap.WAY_LEVELS].putInt(p + 4, -1);
+				} else {
+					if (!Arrays.equals(selection, previous)) {
+						if (indexCount + selection.length > indices.length)
+							indices = Arrays.copyOf(indices, 2 * (indexCount
+									+ selection.length));
+						System.arraycopy(selection, 0, indices, indexCount,
+								selection.length);
+						previousStart = indexCount;
+						indexCount += selection.length;
+					}
+					sections[OffHeapMap.WAY_LEVELS].putInt(p, previousStart);
+					sections[OffHeapMap.WAY_LEVELS].putInt(p + 4,
+							selection.length);
+				}
+				previous = selection;
+			}
+		}
+		sections[OffHeapMap.WAY_LEVEL_NODES] = allocate(4L * indexCount);
+		for (int i = 0; i < indexCount; i++)
+			sections[OffHeapMap.WAY_LEVEL_NODES].putInt(4 * i, indices[i]);
+	}
+
+	/**
+	 * Stores the numbers of the points of interest which are places, sorted
+	 * by their lower case names.
+	 */
+	private void createPlaces(ByteBuffer[] sections, List<Integer> places,
+			final List<String> placeNames) {
+		Integer[] order = new Integer[places.size()];
+		for (int i = 0; i < order.length; i++)
+			order[i] = i;
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i1, Integer i2) {
+				return placeNames.get(i1).compareTo(placeNames.get(i2));
+			}
+		});
+		sections[OffHeapMap.PLACES] = allocate(4L * order.length);
+		for (int i = 0; i < order.length; i++)
+			sections[OffHeapMap.PLACES].putInt(4 * i, places.get(order[i]));
+	}
+
+	private int getAttSetNumber(EntityAttribute[] atts,
+			HashMap<List<EntityAttribute>, Integer> attSetNumbers,
+			List<EntityAttribute[]> attSets) {
+		EntityAttribute[] sorted = atts.clone();
+		Arrays.sort(sorted);
+		List<EntityAttribute> key = Arrays.asList(sorted);
+		Integer result = attSetNumbers.get(key);
+		if (result == null) {
+			result = attSets.size();
+			attSetNumbers.put(key, result);
+			attSets.add(sorted);
+		}
+		return result;
+	}
+
+	private void setPoint(float[] boxes, int i, ByteBuffer[] sections, int node) {
+		boxes[4 * i] = boxes[4 * i + 2] = sections[OffHeapMap.NODE_LATS]
+				.getFloat(4 * node);
+		boxes[4 * i + 1] = boxes[4 * i + 3] = sections[OffHeapMap.NODE_LONS]
+				.getFloat(4 * node);
+	}
+
+	/**
+	 * Adds each entry to all cells which intersect its box and stores the
+	 * grid in the specified sections.
+	 */
+	private void fillGrid(OffHeapMap.Grid grid, int[] entries, float[] boxes,
+			ByteBuffer[] sections, int startSection, int entrySection) {
+		int cellCount = grid.rows * grid.cols;
+		int[] start = new int[cellCount + 1];
+		for (int pass = 0; pass < 2; pass++) {
+			if (pass == 1) {
+				for (int c = 0; c < cellCount; c++)
+					start[c + 1] += start[c];
+				sections[startSection] = allocate(4L * (cellCount + 1));
+				for (int c = 0; c <= cellCount; c++)
+					sections[startSection].putInt(4 * c, start[c]);
+				sections[entrySection] = allocate(4L * start[cellCount]);
+			}
+			for (int i = 0; i < entries.length; i++) {
+				int r0 = grid.row(boxes[4 * i]);
+				int c0 = grid.col(boxes[4 * i + 1]);
+				int r1 = grid.row(boxes[4 * i + 2]);
+				int c1 = grid.col(boxes[4 * i + 3]);
+				for (int r = r0; r <= r1; r++) {
+					for (int c = c0; c <= c1; c++) {
+						int cell = r * grid.cols + c;
+						if (pass == 0)
+							start[cell + 1]++;
+						else
+							sections[entrySection].putInt(4 * start[cell]++,
+									entries[i]);
+					}
+				}
+			}
+		}
+		grid.setCells(sections[startSection], sections[entrySection]);
+	}
+
+	/**
+	 * Allocates a direct buffer for a section. Sections are addressed by int
+	 * offsets, so sizes beyond {@link OffHeapMap#MAX_SECTION_SIZE} are
+	 * rejected instead of overflowing.
+	 */
+	private static ByteBuffer allocate(long size) {
+		if (size > OffHeapMap.MAX_SECTION_SIZE)
+			throw new OsmRuntimeException("Map too large, store section of "
+					+ size + " bytes exceeds limit of "
+					+ OffHeapMap.MAX_SECTION_SIZE + " bytes.");
+		return ByteBuffer.allocateDirect((int) size);
+	}
+
+	/**
+	 * Collects strings in a byte array. Each string is stored with its length
+	 * and identified by its offset.
+	 */
+	private static class StringTable {
+		private HashMap<String, Integer> offsets = new HashMap<String, Integer>();
+		private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private DataOutputStream out = new DataOutputStream(bytes);
+
+		/** Returns the offset of the string, -1 for null. */
+		int add(String s) throws IOException {
+			if (s == null)
+				return -1;
+			Integer result = offsets.get(s);
+			if (result == null) {
+				result = out.size();
+				byte[] data = s.getBytes("UTF-8");
+				if (result + 4L + data.length > OffHeapMap.MAX_SECTION_SIZE)
+					throw new OsmRuntimeException("Map too large, string "
+							+ "section exceeds limit of "
+							+ OffHeapMap.MAX_SECTION_SIZE + " bytes.");
+				out.writeInt(data.length);
+				out.write(data);
+				offsets.put(s, result);
+			}
+			return result;
+		}
+
+		ByteBuffer toBuffer() throws IOException {
+			out.flush();
+			byte[] data = bytes.toByteArray();
+			ByteBuffer result = allocate(data.length);
+			result.put(data);
+			result.clear();
+			return result;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package aimax.osm.data.impl;
+
+import java.util.List;
+
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.EntityViewInfo;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.WayRef;
+
+/**
+ * Read-only flyweight for a node of an {@link OffHeapMap}. Nodes are equal if
+ * they refer to the same node of the same map. Only points of interest have
+ * names, attributes and view information.
+ */
+public class OffHeapMapNode implements MapNode {
+	private static final EntityAttribute[] NO_ATTS = new EntityAttribute[0];
+
+	private OffHeapMap map;
+	private int node;
+	/** Point of interest number, -1 for no POI, -2 for not yet known. */
+	private int poi;
+
+	OffHeapMapNode(OffHeapMap map, int node) {
+		this(map, node, -2);
+	}
+
+	OffHeapMapNode(OffHeapMap map, int node, int poi) {
+		this.map = map;
+		this.node = node;
+		this.poi = poi;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getId() {
+		return map.getNodeId(node);
+	}
+
+	/** Throws an <code>UnsupportedOperationException</code>. */
+	@Override
+	public void setId(int id) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** Returns the name of the node or null. */
+	@Override
+	public String getName() {
+		return getPoi() != -1 ? map.getPoiName(poi) : null;
+	}
+
+	/** Throws an <code>UnsupportedOperationException</code>. */
+	@Override
+	public void setName(String name) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EntityAttribute[] getAttributes() {
+		return getPoi() != -1 ? map.getAttributeSet(map.getPoiAttSet(poi))
+				: NO_ATTS;
+	}
+
+	/** Throws an <code>UnsupportedOperationException</code>. */
+	@Override
+	public void setAttributes(List<EntityAttribute> atts) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EntityViewInfo getViewInfo() {
+		return getPoi() != -1 ? map.getViewInfo(map.getPoiAttSet(poi)) : null;
+	}
+
+	/**
+	 * Throws an <code>UnsupportedOperationException</code>. View information
+	 * is provided by the entity classifier of the map.
+	 */
+	@Override
+	public void setViewInfo(EntityViewInfo renderData) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getAttributeValue(String attName) {
+		return OffHeapMap.getAttributeValue(getAttributes(), attName);
+	}
+
+	/** Returns true. Nodes without position are not stored. */
+	@Override
+	public boolean hasPosition() {
+		return true;
+	}
+
+	/** Throws an <code>UnsupportedOperationException</code>. */
+	@Override
+	public void setPosition(float lat, float lon) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getLat() {
+		return map.getNodeLat(node);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getLon() {
+		return map.getNodeLon(node);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<WayRef> getWayRefs() {
+		return map.getWayRefs(node);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void accept(EntityVisitor visitor) {
+		visitor.visitMapNode(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof OffHeapMapNode) {
+			OffHeapMapNode other = (OffHeapMapNode) obj;
+			return node == other.node && map == other.map;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return node;
+	}
+
+	@Override
+	public String toString() {
+		return "Node(" + getId() + ")";
+	}
+
+	private int getPoi() {
+		if (poi == -2)
+			poi = map.getPoi(node);
+		return poi;
+	}
+}
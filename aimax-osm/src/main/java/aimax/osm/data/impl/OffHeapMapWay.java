@@ -0,0 +1,162 @@
+package aimax.osm.data.impl;
+
+import java.util.AbstractList;
+import java.util.List;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.EntityViewInfo;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+
+/**
+ * Read-only flyweight for a way of an {@link OffHeapMap}. Ways are equal if
+ * they refer to the same way of the same map. The node list is a view which
+ * creates node flyweights on access.
+ */
+public class OffHeapMapWay implements MapWay {
+	private OffHeapMap map;
+	private int way;
+
+	OffHeapMapWay(OffHeapMap map, int way) {
+		this.map = map;
+		this.way = way;
+	}
+
+	/** Returns the map which contains the way. */
+	OffHeapMap getMap() {
+		return map;
+	}
+
+	/** Returns the number of the way within its map. */
+	int getIndex() {
+		return way;
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public long getId() {
+		return map.getWayId(way);
+	}
+
+	/** Throws an <code>UnsupportedOperationException</code>. */
+	@Override
+	public void setId(int id) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** Returns the name of the way or null. */
+	@Override
+	public String getName() {
+		return map.getWayName(way);
+	}
+
+	/** Throws an <code>UnsupportedOperationException</code>. */
+	@Override
+	public void setName(String name) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EntityAttribute[] getAttributes() {
+		return map.getAttributeSet(map.getWayAttSet(way));
+	}
+
+	/** Throws an <code>UnsupportedOperationException</code>. */
+	@Override
+	public void setAttributes(List<EntityAttribute> atts) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public EntityViewInfo getViewInfo() {
+		return map.getViewInfo(map.getWayAttSet(way));
+	}
+
+	/**
+	 * Throws an <code>UnsupportedOperationException</code>. View information
+	 * is provided by the entity classifier of the map.
+	 */
+	@Override
+	public void setViewInfo(EntityViewInfo renderData) {
+		throw new UnsupportedOperationException();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public String getAttributeValue(String attName) {
+		return OffHeapMap.getAttributeValue(getAttributes(), attName);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isOneway() {
+		return "yes".equals(getAttributeValue("oneway"));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public boolean isArea() {
+		return "yes".equals(getAttributeValue("area"));
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public List<MapNode> getNodes() {
+		return new AbstractList<MapNode>() {
+			@Override
+			public MapNode get(int i) {
+				if (i < 0 || i >= size())
+					throw new IndexOutOfBoundsException();
+				return new OffHeapMapNode(map, map.getWayNode(way, i));
+			}
+
+			@Override
+			public int size() {
+				return map.getWayNodeCount(way);
+			}
+		};
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public BoundingBox computeBoundingBox() {
+		return map.getWayBox(way);
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public float getBoundingBoxSize() {
+		BoundingBox bb = map.getWayBox(way);
+		return bb.getLatMax() - bb.getLatMin() + bb.getLonMax()
+				- bb.getLonMin();
+	}
+
+	/** {@inheritDoc} */
+	@Override
+	public void accept(EntityVisitor visitor) {
+		visitor.visitMapWay(this);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (obj instanceof OffHeapMapWay) {
+			OffHeapMapWay other = (OffHeapMapWay) obj;
+			return way == other.way && map == other.map;
+		}
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return way;
+	}
+
+	@Override
+	public String toString() {
+		return "Way(" + getId() + ")";
+	}
+}
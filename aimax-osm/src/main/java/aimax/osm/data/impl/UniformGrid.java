@@ -0,0 +1,236 @@
+package aimax.osm.data.impl;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.WayRef;
+
+/**
+ * Uniform grid over a bounding box. Supports nearest neighbor queries for way
+ * nodes which are stored cell by cell. Queries visit the cells in ascending
+ * order of a lower bound of their distance to the reference position and stop
+ * as soon as no remaining cell can contain a nearer node. Used by
+ * {@link WayNodeIndex} and {@link OffHeapMap}.
+ */
+class UniformGrid {
+	final float latMin;
+	final float lonMin;
+	final float cellHeight;
+	final float cellWidth;
+	final int rows;
+	final int cols;
+
+	UniformGrid(BoundingBox bb, int rows, int cols) {
+		latMin = bb.getLatMin();
+		lonMin = bb.getLonMin();
+		this.rows = rows;
+		this.cols = cols;
+		cellHeight = Math.max(bb.getLatMax() - latMin, 1e-6f) / rows;
+		cellWidth = Math.max(bb.getLonMax() - lonMin, 1e-6f) / cols;
+	}
+
+	/**
+	 * Returns rows and columns of a grid with approximately square cells (in
+	 * kilometers) which contain on average the specified number of entries.
+	 */
+	static int[] computeDimensions(BoundingBox bb, int entryCount,
+			int entriesPerCell) {
+		double aspect = Math.max(bb.getWestEastDistKM(), 1e-3)
+				/ Math.max(bb.getNorthSouthDistKM(), 1e-3);
+		int cells = Math.max(1, entryCount / entriesPerCell);
+		int rows = Math.max(1, (int) Math.round(Math.sqrt(cells / aspect)));
+		int cols = Math.max(1, (int) Math.round(Math.sqrt(cells * aspect)));
+		return new int[] { rows, cols };
+	}
+
+	int row(float lat) {
+		int result = (int) ((lat - latMin) / cellHeight);
+		return Math.min(rows - 1, Math.max(0, result));
+	}
+
+	int col(float lon) {
+		int result = (int) ((lon - lonMin) / cellWidth);
+		return Math.min(cols - 1, Math.max(0, result));
+	}
+
+	/**
+	 * Returns the <code>k</code> way nodes which are nearest to the specified
+	 * position and part of a way accepted by the filter, in ascending order of
+	 * distance.
+	 *
+	 * @param filter
+	 *            possibly null
+	 */
+	List<MapNode> getNearestNodes(Position pos, int k, MapWayFilter filter,
+			CellEntries entries) {
+		BestNodes best = new BestNodes(k);
+		if (k > 0) {
+			PriorityQueue<Cell> frontier = new PriorityQueue<Cell>();
+			BitSet visited = new BitSet(rows * cols);
+			int startCell = row(pos.getLat()) * cols + col(pos.getLon());
+			frontier.add(new Cell(startCell, 0));
+			visited.set(startCell);
+			while (!frontier.isEmpty()) {
+				Cell cell = frontier.remove();
+				if (!best.isImprovement(cell.bound))
+					break;
+				int end = entries.getEnd(cell.idx);
+				for (int i = entries.getStart(cell.idx); i < end; i++) {
+					double dist = Position.getDistKM(pos.getLat(), pos
+							.getLon(), entries.getLat(i), entries.getLon(i));
+					if (best.isImprovement(dist)) {
+						MapNode candidate = entries.getNode(i);
+						if (isAccepted(candidate, filter))
+							best.add(candidate, dist);
+					}
+				}
+				int r = cell.idx / cols;
+				int c = cell.idx % cols;
+				addNeighbor(frontier, visited, pos, r - 1, c);
+				addNeighbor(frontier, visited, pos, r + 1, c);
+				addNeighbor(frontier, visited, pos, r, c - 1);
+				addNeighbor(frontier, visited, pos, r, c + 1);
+			}
+		}
+		return best.getNodes();
+	}
+
+	/**
+	 * Returns the <code>k</code> way nodes of the collection which are nearest
+	 * to the specified position and part of a way accepted by the filter, in
+	 * ascending order of distance. All nodes are checked, no index is needed.
+	 *
+	 * @param filter
+	 *            possibly null
+	 */
+	static List<MapNode> selectNearestNodes(Collection<MapNode> nodes,
+			Position pos, int k, MapWayFilter filter) {
+		BestNodes best = new BestNodes(k);
+		for (MapNode node : nodes) {
+			if (node.hasPosition() && !node.getWayRefs().isEmpty()) {
+				double dist = pos.getDistKM(node);
+				if (best.isImprovement(dist) && isAccepted(node, filter))
+					best.add(node, dist);
+			}
+		}
+		return best.getNodes();
+	}
+
+	/**
+	 * Returns a lower bound of the distance between the position and all
+	 * positions within the specified cell. The distance to the nearest corner
+	 * or edge point in latitude/longitude coordinates is reduced by the
+	 * maximal deviation of great circles from the parallels.
+	 */
+	double computeLowerBound(Position pos, int r, int c) {
+		float cLatMin = latMin + r * cellHeight;
+		float cLonMin = lonMin + c * cellWidth;
+		float lat = Math.min(Math.max(pos.getLat(), cLatMin), cLatMin
+				+ cellHeight);
+		float lon = Math.min(Math.max(pos.getLon(), cLonMin), cLonMin
+				+ cellWidth);
+		double dLon = Math.toRadians(Math.abs(lon - pos.getLon()));
+		return Position.getDistKM(pos.getLat(), pos.getLon(), lat, lon)
+				- Position.EARTH_RADIUS * dLon * dLon / 8;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void addNeighbor(PriorityQueue<Cell> frontier, BitSet visited,
+			Position pos, int r, int c) {
+		if (r >= 0 && r < rows && c >= 0 && c < cols
+				&& !visited.get(r * cols + c)) {
+			visited.set(r * cols + c);
+			frontier.add(new Cell(r * cols + c, computeLowerBound(pos, r, c)));
+		}
+	}
+
+	private static boolean isAccepted(MapNode node, MapWayFilter filter) {
+		if (filter == null)
+			return true;
+		for (WayRef ref : node.getWayRefs())
+			if (filter.isAccepted(ref.getWay()))
+				return true;
+		return false;
+	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// inner classes
+
+	/**
+	 * Provides the way nodes of the grid cells. The nodes of cell
+	 * <code>c</code> have the indices <code>getStart(c)</code> to
+	 * <code>getEnd(c)-1</code>.
+	 */
+	interface CellEntries {
+		int getStart(int cell);
+
+		int getEnd(int cell);
+
+		float getLat(int i);
+
+		float getLon(int i);
+
+		MapNode getNode(int i);
+	}
+
+	/** The best nodes found so far, sorted by ascending distance. */
+	private static class BestNodes {
+		MapNode[] nodes;
+		double[] dists;
+		int found;
+
+		BestNodes(int k) {
+			nodes = new MapNode[k];
+			dists = new double[k];
+		}
+
+		/** Checks whether a node with the given distance would be added. */
+		boolean isImprovement(double dist) {
+			return found < nodes.length
+					|| (found > 0 && dist < dists[found - 1]);
+		}
+
+		void add(MapNode node, double dist) {
+			int j = (found < nodes.length) ? found++ : found - 1;
+			for (; j > 0 && dists[j - 1] > dist; j--) {
+				dists[j] = dists[j - 1];
+				nodes[j] = nodes[j - 1];
+			}
+			dists[j] = dist;
+			nodes[j] = node;
+		}
+
+		List<MapNode> getNodes() {
+			List<MapNode> result = new ArrayList<MapNode>(found);
+			for (int i = 0; i < found; i++)
+				result.add(nodes[i]);
+			return result;
+		}
+	}
+
+	/** Grid cell with a lower bound of its distance to the query position. */
+	private static class Cell implements Comparable<Cell> {
+		int idx;
+		double bound;
+
+		Cell(int idx, double bound) {
+			this.idx = idx;
+			this.bound = bound;
+		}
+
+		@Override
+		public int compareTo(Cell other) {
+			return Double.compare(bound, other.bound);
+		}
+	}
+}
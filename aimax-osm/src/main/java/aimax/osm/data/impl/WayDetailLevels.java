@@ -0,0 +1,282 @@
+package aimax.osm.data.impl;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import aima.core.util.datastructure.LongIntHashMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+
+/**
+ * Simplified node lists of ways for rendering in small scales. For each level
+ * of detail, the nodes are selected by the Douglas-Peucker algorithm with a
+ * tolerance which corresponds to a quarter of a millimeter on the screen at
+ * the largest scale of the level. The indices of the selected nodes of all
+ * ways are stored in one int array. A node list object is only created for
+ * levels in which the simplification actually removes nodes; otherwise, the
+ * original node list of the way is returned.
+ */
+public class WayDetailLevels {
+	/** Largest scales of the levels 1, 2 and 3. */
+	private static final float[] MAX_SCALES = { 1f / 350000, 1f / 750000,
+			1f / 10000000 };
+	/** Tolerated deviation on the screen in km. */
+	private static final double SCREEN_TOLERANCE = 0.25e-6;
+	static final int LEVELS = MAX_SCALES.length;
+
+	private LongIntHashMap slots;
+	/** Node lists of way slot s and level l at index s * LEVELS + l - 1. */
+	private List<?>[] nodeLists;
+
+	/** Computes all levels for the given ways. */
+	public WayDetailLevels(Collection<MapWay> ways) {
+		slots = new LongIntHashMap();
+		nodeLists = new List<?>[ways.size() * LEVELS];
+		int[][] selections = new int[nodeLists.length][];
+		int count = 0;
+		for (MapWay way : ways) {
+			List<MapNode> nodes = way.getNodes();
+			int slot = slots.size();
+			slots.put(way.getId(), slot);
+			int[] previous = null;
+			for (int level = 1; level <= LEVELS; level++) {
+				int i = slot * LEVELS + level - 1;
+				int[] selection = select(nodes, level);
+				if (selection == null)
+					nodeLists[i] = nodes;
+				else if (selection.length == 0)
+					nodeLists[i] = Collections.emptyList();
+				else if (!Arrays.equals(selection, previous)) {
+					selections[i] = selection;
+					count += selection.length;
+				} // otherwise, the list of the previous level is shared
+				previous = selection;
+			}
+		}
+		// store all indices in one array and create views on it
+		int[] indices = new int[count];
+		int from = 0;
+		int slot = 0;
+		for (MapWay way : ways) {
+			for (int level = 1; level <= LEVELS; level++) {
+				int i = slot * LEVELS + level - 1;
+				if (selections[i] != null) {
+					System.arraycopy(selections[i], 0, indices, from,
+							selections[i].length);
+					nodeLists[i] = new NodeSelection(way.getNodes(), indices,
+							from, from + selections[i].length);
+					from += selections[i].length;
+				} else if (nodeLists[i] == null) {
+					nodeLists[i] = nodeLists[i - 1];
+				}
+			}
+			slot++;
+		}
+	}
+
+	/**
+	 * Returns the level of detail which is suitable for the given scale. Level
+	 * 0 stands for all nodes, level 3 for the strongest simplification.
+	 */
+	public static int getLevel(float scale) {
+		int level = 0;
+		while (level < LEVELS && scale <= MAX_SCALES[level])
+			level++;
+		return level;
+	}
+
+	/**
+	 * Returns the tolerated deviation in km of simplified ways from the
+	 * original ways for the given level (1 to 3).
+	 */
+	public static double getToleranceKM(int level) {
+		return SCREEN_TOLERANCE / MAX_SCALES[level - 1];
+	}
+
+	/**
+	 * Returns the precomputed nodes of the way for the given level or null if
+	 * the way is unknown.
+	 */
+	@SuppressWarnings("unchecked")
+	public List<MapNode> getWayNodes(MapWay way, int level) {
+		if (level == 0)
+			return way.getNodes();
+		int slot = slots.get(way.getId());
+		return slot != -1 ? (List<MapNode>) nodeLists[slot * LEVELS + level
+				- 1] : null;
+	}
+
+	/**
+	 * Computes the nodes of a way for the given level. In contrast to
+	 * {@link #getWayNodes(MapWay, int)}, the selection is computed for each
+	 * call.
+	 */
+	public static List<MapNode> createWayNodes(List<MapNode> nodes, int level) {
+		int[] selection = level > 0 ? select(nodes, level) : null;
+		if (selection == null)
+			return nodes;
+		else if (selection.length == 0)
+			return Collections.emptyList();
+		return new NodeSelection(nodes, selection, 0, selection.length);
+	}
+
+	/**
+	 * Selects nodes by means of the Douglas-Peucker algorithm. The first and
+	 * the last node are always selected. Distances are computed in an
+	 * equirectangular projection.
+	 *
+	 * @return The indices of the selected nodes in ascending order.
+	 */
+	public static int[] simplify(List<MapNode> nodes, double toleranceKM) {
+		int n = nodes.size();
+		float[] lats = new float[n];
+		float[] lons = new float[n];
+		for (int i = 0; i < n; i++) {
+			MapNode node = nodes.get(i);
+			lats[i] = node.getLat();
+			lons[i] = node.getLon();
+		}
+		return simplify(lats, lons, n, toleranceKM);
+	}
+
+	/**
+	 * Selects nodes as {@link #simplify(List, double)} does, but reads the
+	 * coordinates of the first <code>n</code> nodes from arrays.
+	 */
+	static int[] simplify(float[] lats, float[] lons, int n,
+			double toleranceKM) {
+		double kmPerDeg = Position.EARTH_RADIUS * Math.PI / 180.0;
+		double lonCorr = n > 0 ? Math.cos(Math.toRadians(lats[0])) : 1.0;
+		double[] x = new double[n];
+		double[] y = new double[n];
+		for (int i = 0; i < n; i++) {
+			x[i] = lons[i] * kmPerDeg * lonCorr;
+			y[i] = lats[i] * kmPerDeg;
+		}
+		boolean[] selected = new boolean[n];
+		int selectedCount = Math.min(n, 2);
+		if (n > 0) {
+			selected[0] = true;
+			selected[n - 1] = true;
+		}
+		// intervals (first, last) still to be checked
+		int[] stack = new int[Math.max(2, 2 * n)];
+		int top = 0;
+		if (n > 2) {
+			stack[top++] = 0;
+			stack[top++] = n - 1;
+		}
+		while (top > 0) {
+			int last = stack[--top];
+			int first = stack[--top];
+			double maxDist = toleranceKM;
+			int maxIdx = -1;
+			for (int i = first + 1; i < last; i++) {
+				double dist = getSegmentDistance(x[i], y[i], x[first],
+						y[first], x[last], y[last]);
+				if (dist > maxDist) {
+					maxDist = dist;
+					maxIdx = i;
+				}
+			}
+			if (maxIdx != -1) {
+				selected[maxIdx] = true;
+				selectedCount++;
+				if (maxIdx - first > 1) {
+					stack[top++] = first;
+					stack[top++] = maxIdx;
+				}
+				if (last - maxIdx > 1) {
+					stack[top++] = maxIdx;
+					stack[top++] = last;
+				}
+			}
+		}
+		int[] result = new int[selectedCount];
+		int j = 0;
+		for (int i = 0; i < n; i++)
+			if (selected[i])
+				result[j++] = i;
+		return result;
+	}
+
+	/**
+	 * Returns the selection for the given level, null if all nodes are
+	 * selected, or an empty array for closed ways which degenerate to less
+	 * than four nodes (too small to be shown). The coordinates of the first
+	 * <code>n</code> nodes are read from arrays.
+	 */
+	static int[] select(float[] lats, float[] lons, int n, boolean closed,
+			int level) {
+		int[] result = simplify(lats, lons, n, getToleranceKM(level));
+		if (n > 0 && result.length < 4 && closed)
+			return new int[0];
+		return result.length < n ? result : null;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Returns the selection for the given level as
+	 * {@link #select(float[], float[], int, boolean, int)} does.
+	 */
+	private static int[] select(List<MapNode> nodes, int level) {
+		int size = nodes.size();
+		int[] result = simplify(nodes, getToleranceKM(level));
+		if (size > 0 && result.length < 4
+				&& nodes.get(0).equals(nodes.get(size - 1)))
+			return new int[0];
+		return result.length < size ? result : null;
+	}
+
+	/** Distance between point p and the segment from a to b. */
+	private static double getSegmentDistance(double px, double py, double ax,
+			double ay, double bx, double by) {
+		double dx = bx - ax;
+		double dy = by - ay;
+		double len2 = dx * dx + dy * dy;
+		double t = 0;
+		if (len2 > 0)
+			t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy)
+					/ len2));
+		double qx = ax + t * dx - px;
+		double qy = ay + t * dy - py;
+		return Math.sqrt(qx * qx + qy * qy);
+	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// some inner classes...
+
+	/** Read-only view on selected nodes of a way. */
+	private static class NodeSelection extends AbstractList<MapNode> {
+		private List<MapNode> nodes;
+		private int[] indices;
+		private int from;
+		private int to;
+
+		NodeSelection(List<MapNode> nodes, int[] indices, int from, int to) {
+			this.nodes = nodes;
+			this.indices = indices;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public MapNode get(int i) {
+			if (i < 0 || i >= to - from)
+				throw new IndexOutOfBoundsException();
+			return nodes.get(indices[from + i]);
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package aimax.osm.data.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Uniform grid over way nodes which supports nearest neighbor queries. The
+ * nodes are sorted by grid cell and stored together with their coordinates in
+ * arrays. Queries visit the cells in ascending order of a lower bound of their
+ * distance to the reference position and stop as soon as no remaining cell can
+ * contain a nearer node. The index is immutable and reflects the nodes at
+ * construction time.
+ */
+public class WayNodeIndex {
+	/** Average number of nodes per cell. */
+	private static final int NODES_PER_CELL = 8;
+
+	private UniformGrid grid;
+	// nodes of cell c: cellNodes[cellStart[c]] ... cellNodes[cellStart[c+1]-1]
+	private int[] cellStart;
+	private MapNode[] cellNodes;
+	private float[] lats;
+	private float[] lons;
+
+	/**
+	 * Creates an index for all nodes of the collection which have a position
+	 * and are part of at least one way.
+	 *
+	 * @param nodes
+	 *            the nodes to be indexed.
+	 * @param bb
+	 *            a bounding box containing all the nodes.
+	 */
+	public WayNodeIndex(Collection<MapNode> nodes, BoundingBox bb) {
+		List<MapNode> wayNodes = new ArrayList<MapNode>();
+		for (MapNode node : nodes)
+			if (node.hasPosition() && !node.getWayRefs().isEmpty())
+				wayNodes.add(node);
+		int[] dim = UniformGrid.computeDimensions(bb, wayNodes.size(),
+				NODES_PER_CELL);
+		grid = new UniformGrid(bb, dim[0], dim[1]);
+		int cellCount = grid.rows * grid.cols;
+
+		int[] cellOfNode = new int[wayNodes.size()];
+		cellStart = new int[cellCount + 1];
+		for (int i = 0; i < cellOfNode.length; i++) {
+			MapNode node = wayNodes.get(i);
+			cellOfNode[i] = grid.row(node.getLat()) * grid.cols
+					+ grid.col(node.getLon());
+			cellStart[cellOfNode[i] + 1]++;
+		}
+		for (int c = 0; c < cellCount; c++)
+			cellStart[c + 1] += cellStart[c];
+		int[] next = new int[cellCount];
+		System.arraycopy(cellStart, 0, next, 0, next.length);
+		cellNodes = new MapNode[cellOfNode.length];
+		lats = new float[cellOfNode.length];
+		lons = new float[cellOfNode.length];
+		for (int i = 0; i < cellOfNode.length; i++) {
+			int pos = next[cellOfNode[i]]++;
+			MapNode node = wayNodes.get(i);
+			cellNodes[pos] = node;
+			lats[pos] = node.getLat();
+			lons[pos] = node.getLon();
+		}
+	}
+
+	/** Returns the number of indexed way nodes. */
+	public int size() {
+		return cellNodes.length;
+	}
+
+	/**
+	 * Returns the way node which is nearest to the specified position and part
+	 * of a way accepted by the filter.
+	 *
+	 * @param filter
+	 *            possibly null
+	 * @return A node or null
+	 */
+	public MapNode getNearestWayNode(Position pos, MapWayFilter filter) {
+		List<MapNode> result = getNearestWayNodes(pos, 1, filter);
+		return result.isEmpty() ? null : result.get(0);
+	}
+
+	/**
+	 * Returns the <code>k</code> way nodes which are nearest to the specified
+	 * position and part of a way accepted by the filter, in ascending order of
+	 * distance.
+	 *
+	 * @param filter
+	 *            possibly null
+	 */
+	public List<MapNode> getNearestWayNodes(Position pos, int k,
+			MapWayFilter filter) {
+		if (cellNodes.length == 0)
+			return new ArrayList<MapNode>();
+		return grid.getNearestNodes(pos, k, filter,
+				new UniformGrid.CellEntries() {
+					@Override
+					public int getStart(int cell) {
+						return cellStart[cell];
+					}
+
+					@Override
+					public int getEnd(int cell) {
+						return cellStart[cell + 1];
+					}
+
+					@Override
+					public float getLat(int i) {
+						return lats[i];
+					}
+
+					@Override
+					public float getLon(int i) {
+						return lons[i];
+					}
+
+					@Override
+					public MapNode getNode(int i) {
+						return cellNodes[i];
+					}
+				});
+	}
+}
@@ -2,6 +2,8 @@
  * This package contains implementations for all needed domain objects
  * and containers. The {@link aimax.osm.data.impl.DefaultMap} class
  * keeps the complete map in the RAM. So the maximum map size is limited by the
- * available memory size.
+ * available memory size. {@link aimax.osm.data.impl.OffHeapMap} keeps
+ * the map data in buffers outside the Java heap, possibly in memory-mapped
+ * files.
  */
 package aimax.osm.data.impl;
\ No newline at end of file
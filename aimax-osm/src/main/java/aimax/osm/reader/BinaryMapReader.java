@@ -0,0 +1,268 @@
+package aimax.osm.reader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityAttributeManager;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.MapBuilderProxy;
+import aimax.osm.data.entities.EntityAttribute;
+
+/**
+ * Reads maps which have been written by
+ * {@link aimax.osm.writer.BinaryMapWriter}. Files are mapped into memory by
+ * means of <code>FileChannel.map</code>, so no copy of the file content is
+ * created on the heap and the operating system loads pages on demand. Strings
+ * are decoded lazily when they are referenced for the first time. Compared to
+ * XML parsing, no tokenizing and number parsing is necessary. The map builder
+ * receives the same calls as from {@link OsmReader}.
+ */
+public class BinaryMapReader implements MapReader {
+
+	/** Identifies binary map files. */
+	public static final int MAGIC = 0x41494d42;
+	/** Version of the binary format. */
+	public static final int VERSION = 1;
+	/** Extension of binary map files. */
+	public static final String FILE_EXTENSION = "aimap";
+
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private BoundingBox boundingBox;
+	private EntityClassifier<Boolean> attFilter;
+
+	/**
+	 * Sets a bounding box for the next read action. Map nodes which are not
+	 * inside will be ignored unless they are referenced by ways.
+	 */
+	@Override
+	public void setFilter(BoundingBox bb) {
+		boundingBox = bb;
+		attFilter = null;
+	}
+
+	/**
+	 * Sets an attribute filter for the next read action. Map entities for
+	 * which the classifier returns null will be ignored.
+	 */
+	@Override
+	public void setFilter(EntityClassifier<Boolean> attFilter) {
+		this.attFilter = attFilter;
+		boundingBox = null;
+	}
+
+	/** Maps the file into memory and sends all data to the builder. */
+	@Override
+	public void readMap(File file, MapBuilder builder) {
+		FileInputStream fs = null;
+		try {
+			fs = new FileInputStream(file);
+			FileChannel channel = fs.getChannel();
+			parseFilteredMap(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()), builder);
+		} catch (FileNotFoundException e) {
+			LOG.warning("File " + file + " does not exist.");
+		} catch (Exception e) {
+			LOG.warning("The map could not be read. " + e);
+		} finally {
+			boundingBox = null;
+			attFilter = null;
+			if (fs != null) {
+				try {
+					fs.close();
+				} catch (IOException e) {
+					LOG.log(Level.SEVERE, "Unable to close input stream.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads all data from the specified stream and sends it to the builder.
+	 * The stream content is copied into a buffer before.
+	 */
+	@Override
+	public void readMap(InputStream inputStream, MapBuilder builder) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int count;
+			while ((count = inputStream.read(buffer)) != -1)
+				bytes.write(buffer, 0, count);
+			parseFilteredMap(ByteBuffer.wrap(bytes.toByteArray()), builder);
+		} catch (IOException e) {
+			throw new OsmRuntimeException("Unable to read binary input stream.",
+					e);
+		} finally {
+			boundingBox = null;
+			attFilter = null;
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				LOG.log(Level.SEVERE, "Unable to close input stream.", e);
+			}
+		}
+	}
+
+	@Override
+	public String[] fileFormatDescriptions() {
+		return new String[] { "Binary Map (" + FILE_EXTENSION + ")" };
+	}
+
+	@Override
+	public String[] fileFormatExtensions() {
+		return new String[] { FILE_EXTENSION };
+	}
+
+	/** Decodes the buffer content and sends it to the builder. */
+	protected void parseMap(ByteBuffer buffer, MapBuilder builder) {
+		if (buffer.getInt() != MAGIC)
+			throw new OsmRuntimeException("Not a binary map file.");
+		int version = buffer.get();
+		if (version != VERSION)
+			throw new OsmRuntimeException("Unsupported binary map version "
+					+ version + ".");
+		float latMin = buffer.getFloat();
+		float lonMin = buffer.getFloat();
+		float latMax = buffer.getFloat();
+		float lonMax = buffer.getFloat();
+		builder.setBoundingBox(new BoundingBox(latMin, lonMin, latMax, lonMax));
+
+		StringTable strings = new StringTable(buffer);
+		int nodeCount = (int) readVarLong(buffer);
+		long id = 0;
+		int lat = 0;
+		int lon = 0;
+		for (int i = 0; i < nodeCount; i++) {
+			id += readSignedVarLong(buffer);
+			lat += (int) readSignedVarLong(buffer);
+			lon += (int) readSignedVarLong(buffer);
+			String name = readName(buffer, strings);
+			List<EntityAttribute> atts = readAttributes(buffer, strings);
+			builder.addNode(id, name, atts, Float.intBitsToFloat(lat), Float
+					.intBitsToFloat(lon));
+		}
+		int wayCount = (int) readVarLong(buffer);
+		id = 0;
+		for (int i = 0; i < wayCount; i++) {
+			id += readSignedVarLong(buffer);
+			String name = readName(buffer, strings);
+			List<EntityAttribute> atts = readAttributes(buffer, strings);
+			int size = (int) readVarLong(buffer);
+			List<Long> wayNodeIds = new ArrayList<Long>(size);
+			long nodeId = 0;
+			for (int j = 0; j < size; j++) {
+				nodeId += readSignedVarLong(buffer);
+				wayNodeIds.add(nodeId);
+			}
+			builder.addWay(id, name, atts, wayNodeIds);
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Sends the buffer content to the builder, filtered in the same way as by
+	 * {@link FilteringOsmReader}.
+	 */
+	private void parseFilteredMap(ByteBuffer buffer, MapBuilder builder) {
+		MapBuilderProxy proxy = FilteringOsmReader.createProxy(builder,
+				boundingBox, attFilter);
+		try {
+			parseMap(buffer, proxy);
+			FilteringOsmReader.completeMap(proxy);
+		} finally {
+			FilteringOsmReader.disposeProxy(proxy);
+		}
+	}
+
+	private String readName(ByteBuffer buffer, StringTable strings) {
+		int idx = (int) readVarLong(buffer);
+		return idx > 0 ? strings.get(idx - 1) : null;
+	}
+
+	private List<EntityAttribute> readAttributes(ByteBuffer buffer,
+			StringTable strings) {
+		int count = (int) readVarLong(buffer);
+		List<EntityAttribute> result = new ArrayList<EntityAttribute>(count);
+		for (int i = 0; i < count; i++) {
+			String key = strings.get((int) readVarLong(buffer));
+			String value = strings.get((int) readVarLong(buffer));
+			EntityAttribute att = EntityAttributeManager.instance().intern(
+					new EntityAttribute(key, value));
+			if (att != null)
+				result.add(att);
+		}
+		return result;
+	}
+
+	private static long readSignedVarLong(ByteBuffer buffer) {
+		long value = readVarLong(buffer);
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static long readVarLong(ByteBuffer buffer) {
+		long result = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			result |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return result;
+	}
+
+	/**
+	 * Remembers the positions of all strings in the buffer and decodes each
+	 * string when it is requested for the first time.
+	 */
+	private static class StringTable {
+		private ByteBuffer buffer;
+		private int[] offsets;
+		private int[] lengths;
+		private String[] strings;
+
+		StringTable(ByteBuffer buffer) {
+			this.buffer = buffer;
+			int count = (int) readVarLong(buffer);
+			offsets = new int[count];
+			lengths = new int[count];
+			strings = new String[count];
+			for (int i = 0; i < count; i++) {
+				lengths[i] = (int) readVarLong(buffer);
+				offsets[i] = buffer.position();
+				buffer.position(offsets[i] + lengths[i]);
+			}
+		}
+
+		String get(int idx) {
+			String result = strings[idx];
+			if (result == null) {
+				byte[] bytes = new byte[lengths[idx]];
+				ByteBuffer view = buffer.duplicate();
+				view.position(offsets[idx]);
+				view.get(bytes);
+				result = new String(bytes, UTF8);
+				strings[idx] = result;
+			}
+			return result;
+		}
+	}
+}
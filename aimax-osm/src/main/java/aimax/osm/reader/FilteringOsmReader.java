@@ -1,17 +1,32 @@
 package aimax.osm.reader;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.logging.Level;
 
+import aima.core.util.datastructure.LongIntHashMap;
 import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityAttributeManager;
 import aimax.osm.data.EntityClassifier;
 import aimax.osm.data.MapBuilder;
 import aimax.osm.data.MapBuilderProxy;
 import aimax.osm.data.entities.EntityAttribute;
-import aimax.osm.data.impl.DefaultMapNode;
-import aimax.osm.data.impl.DefaultMapWay;
 
+/**
+ * Reads maps with optional bounding box or attribute filter. Nodes which are
+ * rejected by the filter are recorded in a temporary file. If ways reference
+ * some of them, the referenced nodes are added from the record after parsing,
+ * so the file is parsed only once.
+ */
 public class FilteringOsmReader extends OsmReader {
 	BoundingBox boundingBox;
 	EntityClassifier<Boolean> attFilter;
@@ -38,41 +53,195 @@ public class FilteringOsmReader extends OsmReader {
 	 * Reads all data from the file and send it to the sink.
 	 */
 	public void readMap(File file, MapBuilder builder) {
+		MapBuilderProxy proxy = createProxy(builder, boundingBox, attFilter);
 		try {
-			MapBuilderProxy proxy;
-			if (boundingBox != null)
-				proxy = new BBBuilderProxy(builder, boundingBox);
-			else if (attFilter != null)
-				proxy = new FilteringBuilderProxy(builder, attFilter);
-			else
-				proxy = new MapBuilderProxy(builder);
 			parseMap(createFileStream(file), proxy);
-			if (proxy.nodeRefsWithoutDefsAdded()) {
-				if (boundingBox != null || attFilter != null) {
-					LOG.info("Starting to parse the map file a second time.");
-					proxy.incrementCounter();
-					parseMap(createFileStream(file), proxy);
-				} else {
-					LOG
-							.warning("Nodes were referenced in ways but not defined before.");
-				}
-			}
+			completeMap(proxy);
 		} catch (FileNotFoundException e) {
 			LOG.warning("File does not exist " + file);
 		} catch (Exception e) {
 			LOG.warning("The map could not be read. " + e);
 			e.printStackTrace();
 		} finally {
+			disposeProxy(proxy);
 			boundingBox = null;
 			attFilter = null;
 		}
 	}
 
+	/**
+	 * Creates a builder proxy which applies the bounding box filter or, if
+	 * the box is null, the attribute filter. Nodes which are rejected by the
+	 * filter are recorded by the proxy. Used by all readers which support
+	 * filters.
+	 */
+	static MapBuilderProxy createProxy(MapBuilder builder, BoundingBox bb,
+			EntityClassifier<Boolean> attFilter) {
+		if (bb != null)
+			return new BBBuilderProxy(builder, bb);
+		else if (attFilter != null)
+			return new FilteringBuilderProxy(builder, attFilter);
+		else
+			return new MapBuilderProxy(builder);
+	}
+
+	/**
+	 * Must be called after all entities have been passed to a proxy created
+	 * by {@link #createProxy(MapBuilder, BoundingBox, EntityClassifier)}.
+	 * Adds the rejected nodes which are referenced by accepted ways.
+	 */
+	static void completeMap(MapBuilderProxy proxy) {
+		if (proxy.nodeRefsWithoutDefsAdded()) {
+			if (proxy instanceof RejectingBuilderProxy) {
+				RejectedNodes rejectedNodes =
+						((RejectingBuilderProxy) proxy).rejectedNodes;
+				LOG.info("Adding referenced nodes out of "
+						+ rejectedNodes.size() + " rejected nodes.");
+				proxy.incrementCounter();
+				rejectedNodes.addTo(proxy);
+			} else {
+				LOG
+						.warning("Nodes were referenced in ways but not defined before.");
+			}
+		}
+	}
+
+	/**
+	 * Releases the resources of a proxy created by
+	 * {@link #createProxy(MapBuilder, BoundingBox, EntityClassifier)}. Must
+	 * be called when reading has finished, also after errors.
+	 */
+	static void disposeProxy(MapBuilderProxy proxy) {
+		if (proxy instanceof RejectingBuilderProxy)
+			((RejectingBuilderProxy) proxy).rejectedNodes.dispose();
+	}
+
 	// ////////////////////////////////////////////////////////////////////
 	// inner classes
 
+	/**
+	 * Records nodes which have been rejected by a filter in a temporary file,
+	 * so that the heap memory needed for filtering depends on the size of the
+	 * extract, not on the size of the file which is read. The ids of undefined
+	 * nodes which are referenced by accepted ways are collected in a primitive
+	 * set, and only those nodes are added from the record.
+	 */
+	private static class RejectedNodes {
+		private File file;
+		private DataOutputStream out;
+		private int size;
+		// ids of nodes referenced by accepted ways but not defined
+		private LongIntHashMap referencedIds = new LongIntHashMap();
+
+		int size() {
+			return size;
+		}
+
+		void add(long id, String name, List<EntityAttribute> nodeAtts,
+				float lat, float lon) {
+			try {
+				if (out == null) {
+					file = File.createTempFile("aimax-rejected", ".tmp");
+					file.deleteOnExit();
+					out = new DataOutputStream(new BufferedOutputStream(
+							new FileOutputStream(file), 64 * 1024));
+				}
+				out.writeLong(id);
+				out.writeFloat(lat);
+				out.writeFloat(lon);
+				out.writeBoolean(name != null);
+				if (name != null)
+					out.writeUTF(name);
+				out.writeInt(nodeAtts.size());
+				for (EntityAttribute att : nodeAtts) {
+					out.writeUTF(att.getKey());
+					out.writeUTF(att.getValue());
+				}
+			} catch (IOException e) {
+				throw new OsmRuntimeException("Unable to record rejected node.",
+						e);
+			}
+			size++;
+		}
+
+		/**
+		 * Remembers the nodes of an accepted way which are not defined in the
+		 * builder.
+		 */
+		void addReferences(List<Long> wayNodeIds, MapBuilder builder) {
+			if (size == 0)
+				return;
+			for (long nodeId : wayNodeIds)
+				if (!builder.isNodeDefined(nodeId, null))
+					referencedIds.put(nodeId, 0);
+		}
+
+		/** Adds all recorded nodes which are referenced but not yet defined. */
+		void addTo(MapBuilder builder) {
+			if (out == null)
+				return;
+			DataInputStream in = null;
+			try {
+				out.close();
+				in = new DataInputStream(new BufferedInputStream(
+						new FileInputStream(file), 64 * 1024));
+				List<EntityAttribute> nodeAtts = new ArrayList<EntityAttribute>();
+				for (int i = 0; i < size; i++) {
+					long id = in.readLong();
+					float lat = in.readFloat();
+					float lon = in.readFloat();
+					String name = in.readBoolean() ? in.readUTF() : null;
+					nodeAtts.clear();
+					int attCount = in.readInt();
+					for (int j = 0; j < attCount; j++) {
+						EntityAttribute att = EntityAttributeManager.instance()
+								.intern(new EntityAttribute(in.readUTF(), in
+										.readUTF()));
+						if (att != null)
+							nodeAtts.add(att);
+					}
+					if (referencedIds.containsKey(id)
+							&& !builder.isNodeDefined(id, null))
+						builder.addNode(id, name, nodeAtts, lat, lon);
+				}
+			} catch (IOException e) {
+				throw new OsmRuntimeException("Unable to read rejected nodes.", e);
+			} finally {
+				if (in != null) {
+					try {
+						in.close();
+					} catch (IOException e) {
+						LOG.log(Level.SEVERE, "Unable to close input stream.", e);
+					}
+				}
+			}
+		}
+
+		/** Deletes the temporary file. */
+		void dispose() {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					LOG.log(Level.SEVERE, "Unable to close output stream.", e);
+				}
+				file.delete();
+				out = null;
+			}
+		}
+	}
+
+	/** Base class of builder proxies which record rejected nodes. */
+	private static class RejectingBuilderProxy extends MapBuilderProxy {
+		RejectedNodes rejectedNodes = new RejectedNodes();
+
+		protected RejectingBuilderProxy(MapBuilder builder) {
+			super(builder);
+		}
+	}
+
 	/** Builder proxy used for bounding box filtering. */
-	private static class BBBuilderProxy extends MapBuilderProxy {
+	private static class BBBuilderProxy extends RejectingBuilderProxy {
 		BoundingBox bb;
 
 		protected BBBuilderProxy(MapBuilder builder, BoundingBox bb) {
@@ -92,6 +261,8 @@ public class FilteringOsmReader extends OsmReader {
 			if (counter == 0 && lat >= bb.getLatMin() && lat <= bb.getLatMax()
 					&& lon >= bb.getLonMin() && lon <= bb.getLonMax())
 				super.addNode(id, name, atts, lat, lon);
+			else if (counter == 0)
+				rejectedNodes.add(id, name, atts, lat, lon);
 			else if (counter == 1 && super.isNodeReferenced(id))
 				super.addNode(id, name, atts, lat, lon);
 		}
@@ -103,6 +274,7 @@ public class FilteringOsmReader extends OsmReader {
 				for (long nodeId : wayNodeIds)
 					if (builder.isNodeDefined(nodeId, bb)) {
 						super.addWay(id, name, atts, wayNodeIds);
+						rejectedNodes.addReferences(wayNodeIds, builder);
 						break;
 					}
 			}
@@ -110,8 +282,7 @@ public class FilteringOsmReader extends OsmReader {
 	}
 
 	/** Builder proxy used for attribute filtering. */
-	private static class FilteringBuilderProxy extends
-			aimax.osm.data.MapBuilderProxy {
+	private static class FilteringBuilderProxy extends RejectingBuilderProxy {
 		EntityClassifier<Boolean> attFilter;
 
 		protected FilteringBuilderProxy(MapBuilder builder,
@@ -124,10 +295,11 @@ public class FilteringOsmReader extends OsmReader {
 		public void addNode(long id, String name, List<EntityAttribute> atts,
 				float lat, float lon) {
 			if (counter == 0) {
-				DefaultMapNode node = new DefaultMapNode(id);
-				node.setAttributes(atts);
-				if (attFilter.classify(node) != null)
+				if (attFilter.classify(atts
+						.toArray(new EntityAttribute[atts.size()])) != null)
 					super.addNode(id, name, atts, lat, lon);
+				else
+					rejectedNodes.add(id, name, atts, lat, lon);
 			} else if (counter == 1 && super.isNodeReferenced(id))
 				super.addNode(id, name, atts, lat, lon);
 		}
@@ -136,10 +308,10 @@ public class FilteringOsmReader extends OsmReader {
 		public void addWay(long id, String name, List<EntityAttribute> atts,
 				List<Long> wayNodeIds) {
 			if (counter == 0) {
-				DefaultMapWay way = new DefaultMapWay(id);
-				way.setAttributes(atts);
-				if (attFilter.classify(way) != null) {
+				if (attFilter.classify(atts
+						.toArray(new EntityAttribute[atts.size()])) != null) {
 					super.addWay(id, name, atts, wayNodeIds);
+					rejectedNodes.addReferences(wayNodeIds, builder);
 				}
 			}
 		}
@@ -0,0 +1,316 @@
+package aimax.osm.reader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.xml.sax.SAXException;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.EntityViewInfo;
+
+/**
+ * Reads maps in three pipelined stages which are connected by bounded
+ * queues. The first stage reads (and for bz2 files decompresses) the input
+ * stream in chunks. The second stage parses the XML, including number parsing
+ * and attribute interning, and records the resulting map builder calls. The
+ * calling thread forms the third stage and applies the recorded calls to the
+ * map builder in the original order. Filters and bz2 decompression work as in
+ * the super classes.<br>
+ * <br>
+ * The parser stage cannot know which entities the builder already contains.
+ * So the checks whether a node or way has been defined before are performed
+ * by the third stage, right before the entity is added.
+ */
+public class PipelinedOsmReader extends Bz2OsmReader {
+
+	private static final byte[] END_OF_STREAM = new byte[0];
+	private static final List<Command> END_OF_COMMANDS = new ArrayList<Command>();
+
+	private int chunkSize = 64 * 1024;
+	private int queueCapacity = 32;
+	private int batchSize = 1000;
+
+	/** Sets the number of bytes which are read at once by the first stage. */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/** Sets the maximal number of chunks or batches waiting in a queue. */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Sets the number of builder calls which are passed from the second to the
+	 * third stage at once.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	@Override
+	protected void parseMap(final InputStream inputStream, MapBuilder consumer)
+			throws SAXException, IOException {
+		final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<byte[]>(
+				queueCapacity);
+		final BlockingQueue<List<Command>> batches;
+		batches = new ArrayBlockingQueue<List<Command>>(queueCapacity);
+		final Throwable[] errors = new Throwable[2];
+
+		Thread readStage = new Thread("osm-read") {
+			@Override
+			public void run() {
+				try {
+					try {
+						int count;
+						do {
+							byte[] buffer = new byte[chunkSize];
+							count = inputStream.read(buffer);
+							if (count > 0)
+								chunks.put(count == chunkSize ? buffer
+										: Arrays.copyOf(buffer, count));
+						} while (count != -1);
+					} catch (IOException e) {
+						errors[0] = e;
+					}
+					chunks.put(END_OF_STREAM);
+				} catch (InterruptedException e) {
+					// canceled by another stage
+				}
+			}
+		};
+		final Thread parseStage = new Thread("osm-parse") {
+			@Override
+			public void run() {
+				RecordingBuilder recorder = new RecordingBuilder(batches);
+				try {
+					try {
+						createParser().parse(new ChunkInputStream(chunks),
+								new OsmHandler(recorder));
+						recorder.flush();
+					} catch (Throwable e) {
+						errors[1] = e;
+					} finally {
+						batches.put(END_OF_COMMANDS);
+					}
+				} catch (InterruptedException e) {
+					// canceled by another stage
+				}
+			}
+		};
+		readStage.setDaemon(true);
+		parseStage.setDaemon(true);
+		readStage.start();
+		parseStage.start();
+		try {
+			List<Command> batch;
+			while ((batch = batches.take()) != END_OF_COMMANDS) {
+				for (Command command : batch)
+					command.apply(consumer);
+			}
+			// after a parse error, the read stage may be blocked on a full queue
+			readStage.interrupt();
+			readStage.join();
+			parseStage.join();
+		} catch (InterruptedException e) {
+			throw new InterruptedIOException("Map reading interrupted.");
+		} finally {
+			readStage.interrupt();
+			parseStage.interrupt();
+		}
+		// a read error is reported first because it causes parse errors
+		rethrow(errors[0]);
+		rethrow(errors[1]);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static void rethrow(Throwable e) throws SAXException, IOException {
+		if (e instanceof SAXException)
+			throw (SAXException) e;
+		else if (e instanceof IOException)
+			throw (IOException) e;
+		else if (e instanceof RuntimeException)
+			throw (RuntimeException) e;
+		else if (e instanceof Error)
+			throw (Error) e;
+		else if (e != null)
+			throw new OsmRuntimeException(e);
+	}
+
+	/** Input stream which delivers the chunks of the first stage. */
+	private static class ChunkInputStream extends InputStream {
+		private BlockingQueue<byte[]> chunks;
+		private byte[] chunk = new byte[0];
+		private int pos;
+
+		ChunkInputStream(BlockingQueue<byte[]> chunks) {
+			this.chunks = chunks;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!nextChunk())
+				return -1;
+			return chunk[pos++] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			if (!nextChunk())
+				return -1;
+			int count = Math.min(len, chunk.length - pos);
+			System.arraycopy(chunk, pos, b, off, count);
+			pos += count;
+			return count;
+		}
+
+		/** Returns false at the end of the stream. */
+		private boolean nextChunk() throws IOException {
+			try {
+				while (pos == chunk.length && chunk != END_OF_STREAM) {
+					chunk = chunks.take();
+					pos = 0;
+				}
+			} catch (InterruptedException e) {
+				throw new InterruptedIOException("Map reading interrupted.");
+			}
+			return chunk != END_OF_STREAM;
+		}
+	}
+
+	/** A recorded map builder call. */
+	private static interface Command {
+		void apply(MapBuilder builder);
+	}
+
+	/**
+	 * Records builder calls of the parser and passes them in batches to the
+	 * third stage. Lists are copied because the element processors reuse them.
+	 */
+	private class RecordingBuilder implements MapBuilder {
+		private BlockingQueue<List<Command>> batches;
+		private List<Command> batch = new ArrayList<Command>(batchSize);
+
+		RecordingBuilder(BlockingQueue<List<Command>> batches) {
+			this.batches = batches;
+		}
+
+		@Override
+		public void setEntityClassifier(
+				final EntityClassifier<EntityViewInfo> classifier) {
+			record(new Command() {
+				@Override
+				public void apply(MapBuilder builder) {
+					builder.setEntityClassifier(classifier);
+				}
+			});
+		}
+
+		@Override
+		public void setBoundingBox(final BoundingBox bb) {
+			record(new Command() {
+				@Override
+				public void apply(MapBuilder builder) {
+					builder.setBoundingBox(bb);
+				}
+			});
+		}
+
+		/** Returns false. The check is performed when the node is added. */
+		@Override
+		public boolean isNodeDefined(long id, BoundingBox bb) {
+			return false;
+		}
+
+		/** Returns false. Not used by the parser. */
+		@Override
+		public boolean isNodeReferenced(long id) {
+			return false;
+		}
+
+		@Override
+		public void addNode(final long id, final String name,
+				List<EntityAttribute> atts, final float lat, final float lon) {
+			final List<EntityAttribute> attList = new ArrayList<EntityAttribute>(
+					atts);
+			record(new Command() {
+				@Override
+				public void apply(MapBuilder builder) {
+					if (!builder.isNodeDefined(id, null))
+						builder.addNode(id, name, attList, lat, lon);
+				}
+			});
+		}
+
+		/** Returns false. The check is performed when the way is added. */
+		@Override
+		public boolean isWayDefined(long id) {
+			return false;
+		}
+
+		@Override
+		public void addWay(final long id, final String name,
+				List<EntityAttribute> atts, List<Long> wayNodeIds) {
+			final List<EntityAttribute> attList = new ArrayList<EntityAttribute>(
+					atts);
+			final List<Long> nodeIdList = new ArrayList<Long>(wayNodeIds);
+			record(new Command() {
+				@Override
+				public void apply(MapBuilder builder) {
+					if (!builder.isWayDefined(id))
+						builder.addWay(id, name, attList, nodeIdList);
+				}
+			});
+		}
+
+		/** Returns false. Not used by the parser. */
+		@Override
+		public boolean nodeRefsWithoutDefsAdded() {
+			return false;
+		}
+
+		/** Returns null. Not used by the parser. */
+		@Override
+		public OsmMap buildMap() {
+			return null;
+		}
+
+		void flush() {
+			if (!batch.isEmpty()) {
+				putBatch();
+				batch = new ArrayList<Command>(batchSize);
+			}
+		}
+
+		private void record(Command command) {
+			batch.add(command);
+			if (batch.size() >= batchSize)
+				flush();
+		}
+
+		private void putBatch() {
+			try {
+				batches.put(batch);
+			} catch (InterruptedException e) {
+				// lets the parse stage terminate without waiting
+				Thread.currentThread().interrupt();
+				throw new OsmRuntimeException("Map reading interrupted.", e);
+			}
+		}
+	}
+}
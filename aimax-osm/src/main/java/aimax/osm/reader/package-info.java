@@ -10,5 +10,7 @@
  * almost unchanged. Some refactoring was done to reduce the number of
  * classes needed and to improve speed by focusing on the relevant
  * data.
+ * <p><code>BinaryMapReader</code> reads maps in the compact binary format
+ * written by <code>aimax.osm.writer.BinaryMapWriter</code>.
  */
 package aimax.osm.reader;
\ No newline at end of file
@@ -0,0 +1,50 @@
+package aimax.osm.routing;
+
+import aima.core.search.framework.BidirectionalProblem;
+import aima.core.search.framework.DefaultGoalTest;
+import aima.core.search.framework.Problem;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Route finding problem which can be tackled from both directions. The reverse
+ * problem starts at the goal node, looks for the initial node and traverses
+ * oneway ways against their direction. Travel distances are symmetric, so the
+ * paths of the reverse problem correspond to paths of the same length in the
+ * original problem.
+ */
+public class BidirectionalRouteFindingProblem extends RouteFindingProblem
+		implements BidirectionalProblem {
+
+	private Problem reverseProblem;
+
+	/**
+	 * Creates a new route planning problem.
+	 *
+	 * @param from
+	 *            A way node complying to the filter.
+	 * @param to
+	 *            A way node complying to the filter.
+	 * @param filter
+	 *            A filter for ways constraining routing results.
+	 */
+	public BidirectionalRouteFindingProblem(MapNode from, MapNode to,
+			MapWayFilter filter, boolean ignoreOneWays) {
+		super(from, to, filter, ignoreOneWays);
+		reverseProblem = new Problem(to, new OsmActionsFunction(filter,
+				ignoreOneWays, from, true), new OsmResultFunction(),
+				new DefaultGoalTest(from), new OsmDistanceStepCostFunction());
+	}
+
+	//
+	// START Interface BidirectionalProblem
+	public Problem getOriginalProblem() {
+		return this;
+	}
+
+	public Problem getReverseProblem() {
+		return reverseProblem;
+	}
+	// END Interface BidirectionalProblem
+	//
+}
@@ -0,0 +1,425 @@
+package aimax.osm.routing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import aima.core.search.framework.SearchCounters;
+import aima.core.util.datastructure.LongIntHashMap;
+
+/**
+ * Immutable contraction hierarchy for fast shortest path queries on a static
+ * map. Nodes are ordered by importance, and shortcut edges preserve shortest
+ * path distances when less important nodes are left out. A query runs two
+ * Dijkstra searches which only follow edges leading to more important nodes
+ * and meet at the most important node of the shortest path. So search spaces
+ * stay small even for long distance routes. Shortcuts are unpacked
+ * recursively into the original edges, which are given by a way id and two
+ * node indices of the way.<br>
+ * <br>
+ * Hierarchies are created by {@link ContractionHierarchyBuilder} and can be
+ * stored in a compact binary form by {@link #write(OutputStream)}. Queries do
+ * not modify the hierarchy, so it can be shared by concurrent threads.
+ */
+public class ContractionHierarchy {
+
+	private static final int FORMAT_ID = 0x4f534d43; // "OSMC"
+	private static final int FORMAT_VERSION = 1;
+
+	private long[] nodeIds;
+	private LongIntHashMap nodeNumbers;
+	// upward edges by source node number
+	private int[] upStart;
+	private int[] upTargets;
+	private float[] upCosts;
+	private int[] upEdges;
+	// downward edges by target node number
+	private int[] downStart;
+	private int[] downSources;
+	private float[] downCosts;
+	private int[] downEdges;
+	// original edges are numbered 0 ... origWayIds.length - 1
+	private long[] origWayIds;
+	private int[] origFromIdx;
+	private int[] origToIdx;
+	private float[] origCosts;
+	// children of shortcut number e - origWayIds.length
+	private int[] shortcutChildren;
+
+	/**
+	 * Creates a hierarchy from the edge list produced by the builder. Edge
+	 * numbers are given by the position in the arrays; original edges come
+	 * first.
+	 */
+	ContractionHierarchy(long[] nodeIds, int[] ranks, int[] edgeSources,
+			int[] edgeTargets, float[] edgeCosts, int edgeCount,
+			long[] origWayIds, int[] origFromIdx, int[] origToIdx,
+			int[] shortcutChildren) {
+		this.nodeIds = nodeIds;
+		this.origWayIds = origWayIds;
+		this.origFromIdx = origFromIdx;
+		this.origToIdx = origToIdx;
+		this.origCosts = Arrays.copyOf(edgeCosts, origWayIds.length);
+		this.shortcutChildren = shortcutChildren;
+		int n = nodeIds.length;
+		upStart = new int[n + 1];
+		downStart = new int[n + 1];
+		for (int e = 0; e < edgeCount; e++) {
+			if (ranks[edgeTargets[e]] > ranks[edgeSources[e]])
+				upStart[edgeSources[e] + 1]++;
+			else
+				downStart[edgeTargets[e] + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			upStart[i + 1] += upStart[i];
+			downStart[i + 1] += downStart[i];
+		}
+		upTargets = new int[upStart[n]];
+		upCosts = new float[upStart[n]];
+		upEdges = new int[upStart[n]];
+		downSources = new int[downStart[n]];
+		downCosts = new float[downStart[n]];
+		downEdges = new int[downStart[n]];
+		int[] upNext = Arrays.copyOf(upStart, n);
+		int[] downNext = Arrays.copyOf(downStart, n);
+		for (int e = 0; e < edgeCount; e++) {
+			if (ranks[edgeTargets[e]] > ranks[edgeSources[e]]) {
+				int pos = upNext[edgeSources[e]]++;
+				upTargets[pos] = edgeTargets[e];
+				upCosts[pos] = edgeCosts[e];
+				upEdges[pos] = e;
+			} else {
+				int pos = downNext[edgeTargets[e]]++;
+				downSources[pos] = edgeSources[e];
+				downCosts[pos] = edgeCosts[e];
+				downEdges[pos] = e;
+			}
+		}
+		initNodeNumbers();
+	}
+
+	private ContractionHierarchy() {
+	}
+
+	/** Returns the number of nodes covered by the hierarchy. */
+	public int getNodeCount() {
+		return nodeIds.length;
+	}
+
+	/** Returns the number of shortcut edges. */
+	public int getShortcutCount() {
+		return shortcutChildren.length / 2;
+	}
+
+	/** Checks whether the node with the specified id is covered. */
+	public boolean containsNode(long nodeId) {
+		return nodeNumbers.containsKey(nodeId);
+	}
+
+	/**
+	 * Returns the original edges of a shortest path between two nodes,
+	 * an empty array if both nodes are equal, or null if no path exists.
+	 *
+	 * @param counters
+	 *            receives the number of settled nodes and the path cost, may
+	 *            be null.
+	 */
+	public int[] findRoute(long fromNodeId, long toNodeId,
+			SearchCounters counters) {
+		int source = nodeNumbers.get(fromNodeId);
+		int target = nodeNumbers.get(toNodeId);
+		if (source == -1 || target == -1)
+			return null;
+		if (source == target)
+			return new int[0];
+		SearchSpace fwd = new SearchSpace(source);
+		SearchSpace bwd = new SearchSpace(target);
+		double best = Double.POSITIVE_INFINITY;
+		int meet = -1;
+		long settled = 0;
+		while (true) {
+			double fKey = fwd.minKey();
+			double bKey = bwd.minKey();
+			if (Math.min(fKey, bKey) >= best)
+				break;
+			boolean forward = fKey <= bKey;
+			SearchSpace curr = forward ? fwd : bwd;
+			SearchSpace other = forward ? bwd : fwd;
+			int node = curr.pop();
+			if (node == -1)
+				continue; // stale entry
+			settled++;
+			double dist = curr.getDist(node);
+			double otherDist = other.getDist(node);
+			if (dist + otherDist < best) {
+				best = dist + otherDist;
+				meet = node;
+			}
+			if (forward) {
+				for (int i = upStart[node]; i < upStart[node + 1]; i++)
+					fwd.relax(upTargets[i], dist + upCosts[i], upEdges[i],
+							node);
+			} else {
+				for (int i = downStart[node]; i < downStart[node + 1]; i++)
+					bwd.relax(downSources[i], dist + downCosts[i],
+							downEdges[i], node);
+			}
+		}
+		if (counters != null) {
+			counters.setNodesExpanded(settled);
+			if (meet != -1)
+				counters.setPathCost(best);
+		}
+		if (meet == -1)
+			return null;
+		IntList hierarchyEdges = new IntList();
+		for (int node = meet; node != source; node = fwd.getPredNode(node))
+			hierarchyEdges.add(fwd.getPredEdge(node));
+		hierarchyEdges.reverse();
+		for (int node = meet; node != target; node = bwd.getPredNode(node))
+			hierarchyEdges.add(bwd.getPredEdge(node));
+		IntList result = new IntList();
+		for (int i = 0; i < hierarchyEdges.size(); i++)
+			unpack(hierarchyEdges.get(i), result);
+		return result.toArray();
+	}
+
+	/** Returns the id of the way an original edge belongs to. */
+	public long getEdgeWayId(int edge) {
+		return origWayIds[edge];
+	}
+
+	/** Returns the index of the start node of an original edge in its way. */
+	public int getEdgeFromIndex(int edge) {
+		return origFromIdx[edge];
+	}
+
+	/** Returns the index of the end node of an original edge in its way. */
+	public int getEdgeToIndex(int edge) {
+		return origToIdx[edge];
+	}
+
+	/** Returns the length of an original edge in KM. */
+	public float getEdgeCost(int edge) {
+		return origCosts[edge];
+	}
+
+	/** Writes the hierarchy in a compact binary form. */
+	public void write(OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				stream));
+		out.writeInt(FORMAT_ID);
+		out.writeInt(FORMAT_VERSION);
+		writeLongs(out, nodeIds);
+		writeInts(out, upStart);
+		writeInts(out, upTargets);
+		writeFloats(out, upCosts);
+		writeInts(out, upEdges);
+		writeInts(out, downStart);
+		writeInts(out, downSources);
+		writeFloats(out, downCosts);
+		writeInts(out, downEdges);
+		writeLongs(out, origWayIds);
+		writeInts(out, origFromIdx);
+		writeInts(out, origToIdx);
+		writeFloats(out, origCosts);
+		writeInts(out, shortcutChildren);
+		out.flush();
+	}
+
+	/** Reads a hierarchy which has been written by {@link #write}. */
+	public static ContractionHierarchy read(InputStream stream)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				stream));
+		if (in.readInt() != FORMAT_ID || in.readInt() != FORMAT_VERSION)
+			throw new IOException("Unsupported contraction hierarchy format.");
+		ContractionHierarchy result = new ContractionHierarchy();
+		result.nodeIds = readLongs(in);
+		result.upStart = readInts(in);
+		result.upTargets = readInts(in);
+		result.upCosts = readFloats(in);
+		result.upEdges = readInts(in);
+		result.downStart = readInts(in);
+		result.downSources = readInts(in);
+		result.downCosts = readFloats(in);
+		result.downEdges = readInts(in);
+		result.origWayIds = readLongs(in);
+		result.origFromIdx = readInts(in);
+		result.origToIdx = readInts(in);
+		result.origCosts = readFloats(in);
+		result.shortcutChildren = readInts(in);
+		result.initNodeNumbers();
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void initNodeNumbers() {
+		nodeNumbers = new LongIntHashMap(nodeIds.length);
+		for (int i = 0; i < nodeIds.length; i++)
+			nodeNumbers.put(nodeIds[i], i);
+	}
+
+	/** Adds the original edges represented by the edge to the list. */
+	private void unpack(int edge, IntList result) {
+		IntList stack = new IntList();
+		stack.add(edge);
+		while (stack.size() > 0) {
+			int e = stack.removeLast();
+			if (e < origWayIds.length) {
+				result.add(e);
+			} else {
+				int s = 2 * (e - origWayIds.length);
+				stack.add(shortcutChildren[s + 1]);
+				stack.add(shortcutChildren[s]);
+			}
+		}
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values)
+			throws IOException {
+		out.writeInt(values.length);
+		for (int value : values)
+			out.writeInt(value);
+	}
+
+	private static void writeLongs(DataOutputStream out, long[] values)
+			throws IOException {
+		out.writeInt(values.length);
+		for (long value : values)
+			out.writeLong(value);
+	}
+
+	private static void writeFloats(DataOutputStream out, float[] values)
+			throws IOException {
+		out.writeInt(values.length);
+		for (float value : values)
+			out.writeFloat(value);
+	}
+
+	private static int[] readInts(DataInputStream in) throws IOException {
+		int[] result = new int[in.readInt()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = in.readInt();
+		return result;
+	}
+
+	private static long[] readLongs(DataInputStream in) throws IOException {
+		long[] result = new long[in.readInt()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = in.readLong();
+		return result;
+	}
+
+	private static float[] readFloats(DataInputStream in) throws IOException {
+		float[] result = new float[in.readInt()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = in.readFloat();
+		return result;
+	}
+
+	/**
+	 * Distances and predecessors of the nodes reached by one direction of a
+	 * query. Search spaces are small, so node data is stored in slots which
+	 * are allocated on demand.
+	 */
+	private static class SearchSpace {
+		private final LongIntHashMap slots = new LongIntHashMap(64);
+		private final NodeHeap heap = new NodeHeap();
+		private double[] dists = new double[64];
+		private int[] predEdges = new int[64];
+		private int[] predNodes = new int[64];
+		private int slotCount;
+
+		SearchSpace(int root) {
+			relax(root, 0, -1, -1);
+		}
+
+		double minKey() {
+			return heap.isEmpty() ? Double.POSITIVE_INFINITY : heap.minKey();
+		}
+
+		/** Returns the next node to be settled or -1 for stale entries. */
+		int pop() {
+			double key = heap.minKey();
+			int node = heap.pop();
+			return key > getDist(node) ? -1 : node;
+		}
+
+		double getDist(int node) {
+			int slot = slots.get(node);
+			return slot != -1 ? dists[slot] : Double.POSITIVE_INFINITY;
+		}
+
+		int getPredEdge(int node) {
+			return predEdges[slots.get(node)];
+		}
+
+		int getPredNode(int node) {
+			return predNodes[slots.get(node)];
+		}
+
+		void relax(int node, double dist, int predEdge, int predNode) {
+			int slot = slots.get(node);
+			if (slot == -1) {
+				if (slotCount == dists.length) {
+					dists = Arrays.copyOf(dists, 2 * slotCount);
+					predEdges = Arrays.copyOf(predEdges, 2 * slotCount);
+					predNodes = Arrays.copyOf(predNodes, 2 * slotCount);
+				}
+				slot = slotCount++;
+				slots.put(node, slot);
+			} else if (dist >= dists[slot]) {
+				return;
+			}
+			dists[slot] = dist;
+			predEdges[slot] = predEdge;
+			predNodes[slot] = predNode;
+			heap.insert(node, dist);
+		}
+	}
+
+	/** Growable list of primitive int values. */
+	private static class IntList {
+		private int[] values = new int[16];
+		private int size;
+
+		int size() {
+			return size;
+		}
+
+		int get(int i) {
+			return values[i];
+		}
+
+		void add(int value) {
+			if (size == values.length)
+				values = Arrays.copyOf(values, 2 * size);
+			values[size++] = value;
+		}
+
+		int removeLast() {
+			return values[--size];
+		}
+
+		void reverse() {
+			for (int i = 0, j = size - 1; i < j; i++, j--) {
+				int tmp = values[i];
+				values[i] = values[j];
+				values[j] = tmp;
+			}
+		}
+
+		int[] toArray() {
+			return Arrays.copyOf(values, size);
+		}
+	}
+}
@@ -0,0 +1,425 @@
+package aimax.osm.routing;
+
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.util.CancelableThread;
+import aima.core.util.datastructure.LongIntHashMap;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+
+/**
+ * Computes a {@link ContractionHierarchy} for the ways of a map which are
+ * accepted by a way filter. Each pair of neighbor way nodes is linked by an
+ * original edge, in both directions if the way is not a oneway or oneways are
+ * ignored. Nodes are contracted one after another in the order of a priority
+ * which prefers nodes whose removal adds few shortcuts (edge difference), few
+ * of whose neighbors have been contracted, and which are low in the hierarchy
+ * built so far. Priorities are updated lazily. When a node is contracted, a
+ * shortcut is added for each pair of incoming and outgoing edge unless a local
+ * witness search finds a path of at most the same length which avoids the
+ * node.<br>
+ * <br>
+ * Preprocessing is expensive. Resulting hierarchies should be stored for
+ * reuse with {@link ContractionHierarchy#write(java.io.OutputStream)}.
+ */
+public class ContractionHierarchyBuilder {
+
+	private int witnessSettleLimit = 200;
+
+	// nodes
+	private int nodeCount;
+	private long[] nodeIds;
+	private int[][] outEdges;
+	private int[] outCount;
+	private int[][] inEdges;
+	private int[] inCount;
+	private boolean[] contracted;
+	private int[] contractedNeighbors;
+	private double[] priorities;
+	private int[] levels;
+	// edges, original edges first
+	private int edgeCount;
+	private int[] edgeSources;
+	private int[] edgeTargets;
+	private float[] edgeCosts;
+	private int[] shortcutChildren;
+	private int origEdgeCount;
+	private long[] origWayIds;
+	private int[] origFromIdx;
+	private int[] origToIdx;
+	// state of the witness search
+	private double[] witnessDists;
+	private int[] touched;
+	private int touchedCount;
+	private NodeHeap witnessHeap = new NodeHeap();
+	private int[] targetStamps;
+	private int targetStamp;
+
+	/**
+	 * Sets the maximal number of nodes settled by each witness search. Higher
+	 * values result in less shortcuts but longer preprocessing time. Witness
+	 * searches which only estimate the number of shortcuts for the node
+	 * ordering use a fifth of the limit.
+	 */
+	public void setWitnessSettleLimit(int limit) {
+		witnessSettleLimit = limit;
+	}
+
+	/**
+	 * Computes a contraction hierarchy. Returns null if the current thread
+	 * was canceled.
+	 *
+	 * @param filter
+	 *            selects the ways to be used for routing, null means all
+	 *            ways.
+	 * @param ignoreOneways
+	 *            if true, oneway ways are traversed in both directions.
+	 */
+	public ContractionHierarchy build(OsmMap map, MapWayFilter filter,
+			boolean ignoreOneways) {
+		buildGraph(map, filter, ignoreOneways);
+		int[] ranks = contract();
+		ContractionHierarchy result = null;
+		if (ranks != null)
+			result = new ContractionHierarchy(nodeIds, ranks, edgeSources,
+					edgeTargets, edgeCosts, edgeCount, origWayIds,
+					origFromIdx, origToIdx, Arrays.copyOf(shortcutChildren,
+							2 * (edgeCount - origEdgeCount)));
+		clear();
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void buildGraph(OsmMap map, MapWayFilter filter,
+			boolean ignoreOneways) {
+		LongIntHashMap nodeNumbers = new LongIntHashMap(
+				map.getNodeCount() / 4);
+		nodeIds = new long[1024];
+		nodeCount = 0;
+		edgeSources = new int[1024];
+		edgeTargets = new int[1024];
+		edgeCosts = new float[1024];
+		origWayIds = new long[1024];
+		origFromIdx = new int[1024];
+		origToIdx = new int[1024];
+		edgeCount = 0;
+		for (MapWay way : map.getWays(map.getBoundingBox())) {
+			if (filter != null && !filter.isAccepted(way))
+				continue;
+			List<MapNode> wayNodes = way.getNodes();
+			boolean bothDirections = ignoreOneways || !way.isOneway();
+			int prev = -1;
+			for (int idx = 0; idx < wayNodes.size(); idx++) {
+				MapNode node = wayNodes.get(idx);
+				int curr = nodeNumbers.get(node.getId());
+				if (curr == -1) {
+					if (nodeCount == nodeIds.length)
+						nodeIds = Arrays.copyOf(nodeIds, 2 * nodeCount);
+					curr = nodeCount++;
+					nodeIds[curr] = node.getId();
+					nodeNumbers.put(node.getId(), curr);
+				}
+				if (prev != -1 && prev != curr) {
+					MapNode prevNode = wayNodes.get(idx - 1);
+					float cost = (float) Position.getDistKM(prevNode.getLat(),
+							prevNode.getLon(), node.getLat(), node.getLon());
+					addOriginalEdge(prev, curr, cost, way.getId(), idx - 1, idx);
+					if (bothDirections)
+						addOriginalEdge(curr, prev, cost, way.getId(), idx,
+								idx - 1);
+				}
+				prev = curr;
+			}
+		}
+		nodeIds = Arrays.copyOf(nodeIds, nodeCount);
+		origEdgeCount = edgeCount;
+		origWayIds = Arrays.copyOf(origWayIds, edgeCount);
+		origFromIdx = Arrays.copyOf(origFromIdx, edgeCount);
+		origToIdx = Arrays.copyOf(origToIdx, edgeCount);
+		shortcutChildren = new int[1024];
+
+		outEdges = new int[nodeCount][];
+		outCount = new int[nodeCount];
+		inEdges = new int[nodeCount][];
+		inCount = new int[nodeCount];
+		for (int e = 0; e < edgeCount; e++) {
+			outCount[edgeSources[e]]++;
+			inCount[edgeTargets[e]]++;
+		}
+		for (int n = 0; n < nodeCount; n++) {
+			outEdges[n] = new int[Math.max(2, outCount[n])];
+			inEdges[n] = new int[Math.max(2, inCount[n])];
+		}
+		Arrays.fill(outCount, 0);
+		Arrays.fill(inCount, 0);
+		for (int e = 0; e < edgeCount; e++)
+			link(e);
+		contracted = new boolean[nodeCount];
+		contractedNeighbors = new int[nodeCount];
+		priorities = new double[nodeCount];
+		levels = new int[nodeCount];
+		witnessDists = new double[nodeCount];
+		Arrays.fill(witnessDists, Double.POSITIVE_INFINITY);
+		touched = new int[64];
+		targetStamps = new int[nodeCount];
+		targetStamp = 0;
+	}
+
+	private void addOriginalEdge(int source, int target, float cost,
+			long wayId, int fromIdx, int toIdx) {
+		if (edgeCount == origWayIds.length) {
+			origWayIds = Arrays.copyOf(origWayIds, 2 * edgeCount);
+			origFromIdx = Arrays.copyOf(origFromIdx, 2 * edgeCount);
+			origToIdx = Arrays.copyOf(origToIdx, 2 * edgeCount);
+		}
+		origWayIds[edgeCount] = wayId;
+		origFromIdx[edgeCount] = fromIdx;
+		origToIdx[edgeCount] = toIdx;
+		addEdge(source, target, cost);
+	}
+
+	private int addEdge(int source, int target, float cost) {
+		if (edgeCount == edgeSources.length) {
+			edgeSources = Arrays.copyOf(edgeSources, 2 * edgeCount);
+			edgeTargets = Arrays.copyOf(edgeTargets, 2 * edgeCount);
+			edgeCosts = Arrays.copyOf(edgeCosts, 2 * edgeCount);
+		}
+		edgeSources[edgeCount] = source;
+		edgeTargets[edgeCount] = target;
+		edgeCosts[edgeCount] = cost;
+		return edgeCount++;
+	}
+
+	/** Adds the edge to the adjacency lists of its nodes. */
+	private void link(int e) {
+		int s = edgeSources[e];
+		int t = edgeTargets[e];
+		if (outCount[s] == outEdges[s].length)
+			outEdges[s] = Arrays.copyOf(outEdges[s], 2 * outCount[s]);
+		outEdges[s][outCount[s]++] = e;
+		if (inCount[t] == inEdges[t].length)
+			inEdges[t] = Arrays.copyOf(inEdges[t], 2 * inCount[t]);
+		inEdges[t][inCount[t]++] = e;
+	}
+
+	/**
+	 * Contracts all nodes and returns their ranks, or null if the current
+	 * thread was canceled.
+	 */
+	private int[] contract() {
+		NodeHeap queue = new NodeHeap();
+		for (int n = 0; n < nodeCount; n++) {
+			priorities[n] = computePriority(n);
+			queue.insert(n, priorities[n]);
+		}
+		int[] ranks = new int[nodeCount];
+		int rank = 0;
+		while (!queue.isEmpty()) {
+			if (CancelableThread.currIsCanceled())
+				return null;
+			double priority = queue.minKey();
+			int node = queue.pop();
+			if (contracted[node] || priority != priorities[node])
+				continue; // stale entry
+			// lazy update: priorities may have increased meanwhile
+			priorities[node] = computePriority(node);
+			if (!queue.isEmpty() && priorities[node] > queue.minKey()) {
+				queue.insert(node, priorities[node]);
+				continue;
+			}
+			contractNode(node, false);
+			contracted[node] = true;
+			ranks[node] = rank++;
+			// remove the edges of the node from the remaining graph
+			for (int i = 0; i < outCount[node]; i++)
+				unlinkIn(outEdges[node][i]);
+			for (int i = 0; i < inCount[node]; i++)
+				unlinkOut(inEdges[node][i]);
+			for (int i = 0; i < outCount[node]; i++)
+				updateNeighbor(edgeTargets[outEdges[node][i]], node, queue);
+			for (int i = 0; i < inCount[node]; i++)
+				updateNeighbor(edgeSources[inEdges[node][i]], node, queue);
+		}
+		return ranks;
+	}
+
+	/** Removes the edge from the incoming edges of its target. */
+	private void unlinkIn(int e) {
+		int t = edgeTargets[e];
+		int[] edges = inEdges[t];
+		for (int i = 0; i < inCount[t]; i++) {
+			if (edges[i] == e) {
+				edges[i] = edges[--inCount[t]];
+				break;
+			}
+		}
+	}
+
+	/** Removes the edge from the outgoing edges of its source. */
+	private void unlinkOut(int e) {
+		int s = edgeSources[e];
+		int[] edges = outEdges[s];
+		for (int i = 0; i < outCount[s]; i++) {
+			if (edges[i] == e) {
+				edges[i] = edges[--outCount[s]];
+				break;
+			}
+		}
+	}
+
+	private void updateNeighbor(int neighbor, int node, NodeHeap queue) {
+		if (!contracted[neighbor]) {
+			contractedNeighbors[neighbor]++;
+			levels[neighbor] = Math.max(levels[neighbor], levels[node] + 1);
+			double priority = computePriority(neighbor);
+			if (priority != priorities[neighbor]) {
+				priorities[neighbor] = priority;
+				queue.insert(neighbor, priority);
+			}
+		}
+	}
+
+	private double computePriority(int node) {
+		int removedEdges = outCount[node] + inCount[node];
+		int shortcuts = contractNode(node, true);
+		return 2 * (shortcuts - removedEdges) + contractedNeighbors[node]
+				+ levels[node];
+	}
+
+	/**
+	 * Adds the shortcuts needed to bypass the node and returns their number.
+	 * If <code>simulate</code> is true, shortcuts are only counted.
+	 */
+	private int contractNode(int node, boolean simulate) {
+		int result = 0;
+		// the adjacency lists of the node do not change during contraction
+		int inSize = inCount[node];
+		int outSize = outCount[node];
+		for (int i = 0; i < inSize; i++) {
+			int in = inEdges[node][i];
+			int source = edgeSources[in];
+			// mark the targets which need a witness
+			targetStamp++;
+			int targetCount = 0;
+			double maxOutCost = 0;
+			for (int j = 0; j < outSize; j++) {
+				int out = outEdges[node][j];
+				int target = edgeTargets[out];
+				if (target != source) {
+					if (targetStamps[target] != targetStamp) {
+						targetStamps[target] = targetStamp;
+						targetCount++;
+					}
+					maxOutCost = Math.max(maxOutCost, edgeCosts[out]);
+				}
+			}
+			if (targetCount == 0)
+				continue;
+			witnessSearch(source, node, edgeCosts[in] + maxOutCost,
+					targetCount, simulate ? Math.max(1, witnessSettleLimit / 5)
+							: witnessSettleLimit);
+			for (int j = 0; j < outSize; j++) {
+				int out = outEdges[node][j];
+				int target = edgeTargets[out];
+				if (target == source)
+					continue;
+				float cost = edgeCosts[in] + edgeCosts[out];
+				if (witnessDists[target] <= cost)
+					continue;
+				result++;
+				if (!simulate) {
+					int shortcut = addEdge(source, target, cost);
+					int s = 2 * (shortcut - origEdgeCount);
+					if (s + 1 >= shortcutChildren.length)
+						shortcutChildren = Arrays.copyOf(shortcutChildren,
+								2 * shortcutChildren.length);
+					shortcutChildren[s] = in;
+					shortcutChildren[s + 1] = out;
+					link(shortcut);
+					// parallel edges to the target need no further shortcut
+					setWitnessDist(target, cost);
+				}
+			}
+			resetWitnessSearch();
+		}
+		return result;
+	}
+
+	/**
+	 * Computes distances from the source in the remaining graph without the
+	 * excluded node. The search stops when all marked targets are settled,
+	 * the specified distance is exceeded, or the settle limit is reached.
+	 * Nodes which have not been settled keep tentative distances, which are
+	 * upper bounds.
+	 */
+	private void witnessSearch(int source, int excluded, double maxCost,
+			int targetCount, int settleLimit) {
+		witnessHeap.clear();
+		setWitnessDist(source, 0);
+		witnessHeap.insert(source, 0);
+		int settled = 0;
+		while (!witnessHeap.isEmpty() && settled < settleLimit) {
+			double dist = witnessHeap.minKey();
+			int node = witnessHeap.pop();
+			if (dist > witnessDists[node])
+				continue;
+			if (dist > maxCost)
+				break;
+			settled++;
+			if (targetStamps[node] == targetStamp && --targetCount == 0)
+				break;
+			for (int i = 0; i < outCount[node]; i++) {
+				int e = outEdges[node][i];
+				int target = edgeTargets[e];
+				if (target == excluded)
+					continue;
+				double newDist = dist + edgeCosts[e];
+				if (newDist < witnessDists[target]) {
+					setWitnessDist(target, newDist);
+					witnessHeap.insert(target, newDist);
+				}
+			}
+		}
+	}
+
+	private void setWitnessDist(int node, double dist) {
+		if (witnessDists[node] == Double.POSITIVE_INFINITY) {
+			if (touchedCount == touched.length)
+				touched = Arrays.copyOf(touched, 2 * touchedCount);
+			touched[touchedCount++] = node;
+		}
+		witnessDists[node] = dist;
+	}
+
+	private void resetWitnessSearch() {
+		for (int i = 0; i < touchedCount; i++)
+			witnessDists[touched[i]] = Double.POSITIVE_INFINITY;
+		touchedCount = 0;
+	}
+
+	/** Releases all preprocessing data. */
+	private void clear() {
+		nodeIds = null;
+		outEdges = inEdges = null;
+		outCount = inCount = null;
+		contracted = null;
+		contractedNeighbors = null;
+		priorities = null;
+		levels = null;
+		edgeSources = edgeTargets = null;
+		edgeCosts = null;
+		shortcutChildren = null;
+		origWayIds = null;
+		origFromIdx = origToIdx = null;
+		witnessDists = null;
+		touched = null;
+		targetStamps = null;
+	}
+}
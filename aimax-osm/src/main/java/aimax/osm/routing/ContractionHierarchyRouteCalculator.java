@@ -0,0 +1,95 @@
+package aimax.osm.routing;
+
+import java.util.Hashtable;
+
+import aima.core.search.framework.HeuristicFunction;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.Search;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Route calculator for applications which answer many routing requests on the
+ * same static map. For each way selection, a {@link ContractionHierarchy} is
+ * computed when it is needed for the first time (or provided by
+ * {@link #setHierarchy(OsmMap, int, ContractionHierarchy)}, e.g. after reading
+ * it from a file) and used for all further requests. The hierarchies are
+ * discarded together with the other preprocessed data when another map is
+ * used or when the map is reloaded or cleared.
+ * Way selection options which are not supported by a hierarchy are handled
+ * as in the super class.
+ */
+public class ContractionHierarchyRouteCalculator extends RouteCalculator {
+
+	private Hashtable<Integer, ContractionHierarchy> hierarchies = new Hashtable<Integer, ContractionHierarchy>();
+
+	/**
+	 * Returns the hierarchy for the specified map and way selection and
+	 * computes it if necessary. Returns null if the way selection is not
+	 * supported or the computation was canceled.
+	 */
+	public synchronized ContractionHierarchy getHierarchy(OsmMap map,
+			int waySelection) {
+		if (!isHierarchySupported(waySelection))
+			return null;
+		checkMap(map);
+		ContractionHierarchy result = hierarchies.get(waySelection);
+		if (result == null) {
+			MapWayFilter filter = createMapWayFilter(map, waySelection);
+			result = new ContractionHierarchyBuilder().build(map, filter,
+					waySelection == 0);
+			if (result != null)
+				hierarchies.put(waySelection, result);
+		}
+		return result;
+	}
+
+	/** Provides a precomputed hierarchy for a map and a way selection. */
+	public synchronized void setHierarchy(OsmMap map, int waySelection,
+			ContractionHierarchy hierarchy) {
+		checkMap(map);
+		hierarchies.put(waySelection, hierarchy);
+	}
+
+	/**
+	 * Checks whether the way selection is answered by hierarchy queries. This
+	 * implementation supports the way filters of the super class with normal
+	 * A* search (distance, car, and bike).
+	 */
+	protected boolean isHierarchySupported(int waySelection) {
+		return waySelection >= 0 && waySelection <= 2;
+	}
+
+	/**
+	 * Creates a plain route finding problem if the way selection is answered
+	 * by a hierarchy query. The query only needs the start node, so the
+	 * routing graph is not compiled in that case.
+	 */
+	@Override
+	protected Problem createProblem(MapNode[] pNodes, OsmMap map,
+			MapWayFilter wayFilter, boolean ignoreOneways, int waySelection) {
+		if (getHierarchy(map, waySelection) != null)
+			return new RouteFindingProblem(pNodes[0], pNodes[1], wayFilter,
+					ignoreOneways);
+		return super.createProblem(pNodes, map, wayFilter, ignoreOneways,
+				waySelection);
+	}
+
+	/** Creates a hierarchy query if the way selection supports it. */
+	@Override
+	protected Search createSearch(HeuristicFunction hf, MapNode[] pNodes,
+			OsmMap map, int waySelection) {
+		ContractionHierarchy hierarchy = getHierarchy(map, waySelection);
+		if (hierarchy != null)
+			return new ContractionHierarchySearch(hierarchy, map, pNodes[1]);
+		return super.createSearch(hf, pNodes, map, waySelection);
+	}
+
+	/** Discards the hierarchies as well. */
+	@Override
+	protected synchronized void discardPreprocessedData() {
+		super.discardPreprocessedData();
+		hierarchies.clear();
+	}
+}
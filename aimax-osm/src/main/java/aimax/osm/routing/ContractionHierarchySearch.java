@@ -0,0 +1,103 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import aima.core.agent.Action;
+import aima.core.agent.impl.NoOpAction;
+import aima.core.search.framework.Metrics;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.QueueSearch;
+import aima.core.search.framework.Search;
+import aima.core.search.framework.SearchCounters;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+
+/**
+ * Answers route finding problems by a query on a {@link ContractionHierarchy}
+ * instead of searching the map. The initial state of the problem must be a
+ * <code>MapNode</code>. The resulting actions are {@link OsmMoveAction}s; each
+ * of them covers a sequence of original edges along the same way.
+ */
+public class ContractionHierarchySearch implements Search {
+	private ContractionHierarchy hierarchy;
+	private OsmMap map;
+	private MapNode goal;
+	private SearchCounters counters = new SearchCounters();
+
+	/**
+	 * @param hierarchy
+	 *            a hierarchy computed for <code>map</code>.
+	 * @param map
+	 *            provides the ways referenced by the hierarchy.
+	 * @param goal
+	 *            the target of the route.
+	 */
+	public ContractionHierarchySearch(ContractionHierarchy hierarchy,
+			OsmMap map, MapNode goal) {
+		this.hierarchy = hierarchy;
+		this.map = map;
+		this.goal = goal;
+	}
+
+	@Override
+	public List<Action> search(Problem p) {
+		counters.clear();
+		counters.startTimer();
+		try {
+			MapNode start = (MapNode) p.getInitialState();
+			int[] edges = hierarchy.findRoute(start.getId(), goal.getId(),
+					counters);
+			if (edges == null)
+				return Collections.emptyList();
+			List<Action> result = new ArrayList<Action>();
+			if (edges.length == 0) {
+				result.add(NoOpAction.NO_OP);
+				return result;
+			}
+			int first = 0;
+			for (int i = 1; i <= edges.length; i++) {
+				if (i == edges.length || !continues(edges[i - 1], edges[i])) {
+					MapWay way = map.getWay(hierarchy
+							.getEdgeWayId(edges[first]));
+					result.add(new OsmMoveAction(way, hierarchy
+							.getEdgeFromIndex(edges[first]), hierarchy
+							.getEdgeToIndex(edges[i - 1])));
+					first = i;
+				}
+			}
+			return result;
+		} finally {
+			counters.stopTimer();
+		}
+	}
+
+	@Override
+	public Metrics getMetrics() {
+		Metrics result = new Metrics();
+		result.set(QueueSearch.METRIC_NODES_EXPANDED,
+				counters.getNodesExpanded());
+		result.set(QueueSearch.METRIC_PATH_COST, counters.getPathCost());
+		return result;
+	}
+
+	/** Returns the primitive counters of the last search. */
+	public SearchCounters getCounters() {
+		return counters;
+	}
+
+	/**
+	 * Checks whether the second edge continues the first edge along the same
+	 * way in the same direction.
+	 */
+	private boolean continues(int edge1, int edge2) {
+		int from1 = hierarchy.getEdgeFromIndex(edge1);
+		int to1 = hierarchy.getEdgeToIndex(edge1);
+		int to2 = hierarchy.getEdgeToIndex(edge2);
+		return hierarchy.getEdgeWayId(edge1) == hierarchy.getEdgeWayId(edge2)
+				&& hierarchy.getEdgeFromIndex(edge2) == to1
+				&& (to2 - to1) == (to1 - from1);
+	}
+}
@@ -0,0 +1,265 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.util.datastructure.LongIntHashMap;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+
+/**
+ * Landmark preprocessing for ALT (A*, landmarks, triangle inequality) route
+ * finding. All ways of a map which are accepted by a way filter are compiled
+ * into a graph of way nodes. A number of landmarks is selected by farthest
+ * selection: each new landmark is the node whose road distance to the nearest
+ * landmark selected so far is maximal. For each landmark, the road distances
+ * from the landmark to all nodes and from all nodes to the landmark are
+ * computed by Dijkstra's algorithm and stored in float arrays indexed by node
+ * number. By the triangle inequality, these distances provide lower bounds for
+ * the road distance between arbitrary nodes.<br>
+ * <br>
+ * The index reflects the map at construction time. It has to be rebuilt after
+ * the map has been changed.
+ */
+public class LandmarkIndex {
+
+	/** Default number of landmarks. */
+	public static final int DEFAULT_LANDMARK_COUNT = 16;
+
+	private final MapWayFilter filter;
+	private final boolean ignoreOneways;
+	// node id -> node number
+	private LongIntHashMap nodeNumbers;
+	private int nodeCount;
+	// compressed adjacency lists of outgoing and incoming edges
+	private int[] outStart;
+	private int[] outTargets;
+	private float[] outCosts;
+	private int[] inStart;
+	private int[] inTargets;
+	private float[] inCosts;
+
+	private long[] landmarkIds;
+	// distances in KM from landmark to node and from node to landmark
+	private float[][] fromLandmark;
+	private float[][] toLandmark;
+
+	/**
+	 * Creates an index with the default number of landmarks.
+	 *
+	 * @param map
+	 *            the information source.
+	 * @param filter
+	 *            selects the ways to be used for routing, null means all
+	 *            ways.
+	 * @param ignoreOneways
+	 *            if true, oneway ways are traversed in both directions.
+	 */
+	public LandmarkIndex(OsmMap map, MapWayFilter filter, boolean ignoreOneways) {
+		this(map, filter, ignoreOneways, DEFAULT_LANDMARK_COUNT);
+	}
+
+	public LandmarkIndex(OsmMap map, MapWayFilter filter,
+			boolean ignoreOneways, int landmarkCount) {
+		this.filter = filter;
+		this.ignoreOneways = ignoreOneways;
+		buildGraph(map);
+		selectLandmarks(landmarkCount);
+		// the adjacency arrays are only needed for preprocessing
+		outStart = outTargets = inStart = inTargets = null;
+		outCosts = inCosts = null;
+	}
+
+	public MapWayFilter getFilter() {
+		return filter;
+	}
+
+	public boolean isIgnoringOneways() {
+		return ignoreOneways;
+	}
+
+	/** Returns the number of nodes covered by the index. */
+	public int getNodeCount() {
+		return nodeCount;
+	}
+
+	/** Returns the ids of the selected landmark nodes. */
+	public long[] getLandmarkIds() {
+		return landmarkIds.clone();
+	}
+
+	/**
+	 * Returns a lower bound for the road distance in KM from node
+	 * <code>from</code> to node <code>to</code>. If one of the nodes is not
+	 * covered by the index, 0 is returned.
+	 */
+	public double getLowerBound(MapNode from, MapNode to) {
+		int u = nodeNumbers.get(from.getId());
+		int v = nodeNumbers.get(to.getId());
+		if (u == -1 || v == -1 || u == v)
+			return 0;
+		float result = 0;
+		for (int l = 0; l < landmarkIds.length; l++) {
+			// d(L,v) <= d(L,u) + d(u,v)
+			float[] dists = fromLandmark[l];
+			if (dists[u] != Float.POSITIVE_INFINITY
+					&& dists[v] != Float.POSITIVE_INFINITY
+					&& dists[v] - dists[u] > result)
+				result = dists[v] - dists[u];
+			// d(u,L) <= d(u,v) + d(v,L)
+			dists = toLandmark[l];
+			if (dists[u] != Float.POSITIVE_INFINITY
+					&& dists[v] != Float.POSITIVE_INFINITY
+					&& dists[u] - dists[v] > result)
+				result = dists[u] - dists[v];
+		}
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Compiles the ways accepted by the filter into adjacency arrays. */
+	private void buildGraph(OsmMap map) {
+		nodeNumbers = new LongIntHashMap(map.getNodeCount() / 4);
+		int[] sources = new int[1024];
+		int[] targets = new int[1024];
+		float[] costs = new float[1024];
+		int edgeCount = 0;
+		for (MapWay way : map.getWays(map.getBoundingBox())) {
+			if (filter != null && !filter.isAccepted(way))
+				continue;
+			List<MapNode> wayNodes = way.getNodes();
+			boolean bothDirections = ignoreOneways || !way.isOneway();
+			int prev = -1;
+			MapNode prevNode = null;
+			for (MapNode node : wayNodes) {
+				int curr = nodeNumbers.get(node.getId());
+				if (curr == -1) {
+					curr = nodeCount++;
+					nodeNumbers.put(node.getId(), curr);
+				}
+				if (prev != -1) {
+					if (edgeCount + 2 > sources.length) {
+						sources = Arrays.copyOf(sources, 2 * sources.length);
+						targets = Arrays.copyOf(targets, 2 * targets.length);
+						costs = Arrays.copyOf(costs, 2 * costs.length);
+					}
+					float cost = (float) Position.getDistKM(prevNode.getLat(),
+							prevNode.getLon(), node.getLat(), node.getLon());
+					sources[edgeCount] = prev;
+					targets[edgeCount] = curr;
+					costs[edgeCount++] = cost;
+					if (bothDirections) {
+						sources[edgeCount] = curr;
+						targets[edgeCount] = prev;
+						costs[edgeCount++] = cost;
+					}
+				}
+				prev = curr;
+				prevNode = node;
+			}
+		}
+		outStart = new int[nodeCount + 1];
+		outTargets = new int[edgeCount];
+		outCosts = new float[edgeCount];
+		inStart = new int[nodeCount + 1];
+		inTargets = new int[edgeCount];
+		inCosts = new float[edgeCount];
+		compress(sources, targets, costs, edgeCount, outStart, outTargets,
+				outCosts);
+		compress(targets, sources, costs, edgeCount, inStart, inTargets,
+				inCosts);
+	}
+
+	/** Sorts the edges by source node using counting sort. */
+	private void compress(int[] sources, int[] targets, float[] costs,
+			int edgeCount, int[] start, int[] resultTargets,
+			float[] resultCosts) {
+		for (int i = 0; i < edgeCount; i++)
+			start[sources[i] + 1]++;
+		for (int n = 0; n < nodeCount; n++)
+			start[n + 1] += start[n];
+		int[] next = Arrays.copyOf(start, nodeCount);
+		for (int i = 0; i < edgeCount; i++) {
+			int pos = next[sources[i]]++;
+			resultTargets[pos] = targets[i];
+			resultCosts[pos] = costs[i];
+		}
+	}
+
+	private void selectLandmarks(int landmarkCount) {
+		List<Long> ids = new ArrayList<Long>();
+		List<float[]> fromDists = new ArrayList<float[]>();
+		List<float[]> toDists = new ArrayList<float[]>();
+		long[] nodeIds = new long[nodeCount];
+		for (long id : nodeNumbers.keys())
+			nodeIds[nodeNumbers.get(id)] = id;
+		if (nodeCount > 0) {
+			// the first landmark is the node farthest away from an
+			// arbitrary node
+			float[] minDists = dijkstra(0, false);
+			while (ids.size() < landmarkCount) {
+				int landmark = -1;
+				for (int n = 0; n < nodeCount; n++)
+					if (minDists[n] != Float.POSITIVE_INFINITY
+							&& (landmark == -1 || minDists[n] > minDists[landmark]))
+						landmark = n;
+				if (landmark == -1 || ids.contains(nodeIds[landmark]))
+					break;
+				float[] from = dijkstra(landmark, false);
+				float[] to = ignoreOneways ? from : dijkstra(landmark, true);
+				ids.add(nodeIds[landmark]);
+				fromDists.add(from);
+				toDists.add(to);
+				if (ids.size() == 1)
+					minDists = from.clone();
+				else
+					for (int n = 0; n < nodeCount; n++)
+						minDists[n] = Math.min(minDists[n], from[n]);
+			}
+		}
+		landmarkIds = new long[ids.size()];
+		for (int i = 0; i < landmarkIds.length; i++)
+			landmarkIds[i] = ids.get(i);
+		fromLandmark = fromDists.toArray(new float[ids.size()][]);
+		toLandmark = toDists.toArray(new float[ids.size()][]);
+	}
+
+	/**
+	 * Computes the road distances from the source node to all nodes or, if
+	 * <code>reverse</code> is true, from all nodes to the source node.
+	 */
+	private float[] dijkstra(int source, boolean reverse) {
+		int[] start = reverse ? inStart : outStart;
+		int[] targets = reverse ? inTargets : outTargets;
+		float[] costs = reverse ? inCosts : outCosts;
+		double[] dists = new double[nodeCount];
+		Arrays.fill(dists, Double.POSITIVE_INFINITY);
+		dists[source] = 0;
+		NodeHeap heap = new NodeHeap();
+		heap.insert(source, 0);
+		while (!heap.isEmpty()) {
+			double dist = heap.minKey();
+			int node = heap.pop();
+			if (dist > dists[node])
+				continue; // stale entry
+			for (int e = start[node]; e < start[node + 1]; e++) {
+				double newDist = dist + costs[e];
+				if (newDist < dists[targets[e]]) {
+					dists[targets[e]] = newDist;
+					heap.insert(targets[e], newDist);
+				}
+			}
+		}
+		float[] result = new float[nodeCount];
+		for (int n = 0; n < nodeCount; n++)
+			result[n] = (float) dists[n];
+		return result;
+	}
+}
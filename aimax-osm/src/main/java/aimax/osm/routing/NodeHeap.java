@@ -0,0 +1,69 @@
+package aimax.osm.routing;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of node numbers with primitive keys, used by the graph
+ * searches of the routing preprocessing classes. A node can be contained
+ * several times, so stale entries have to be detected by the caller.
+ */
+class NodeHeap {
+	private int[] nodes = new int[256];
+	private double[] keys = new double[256];
+	private int size;
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		size = 0;
+	}
+
+	double minKey() {
+		return keys[0];
+	}
+
+	void insert(int node, double key) {
+		if (size == nodes.length) {
+			nodes = Arrays.copyOf(nodes, 2 * size);
+			keys = Arrays.copyOf(keys, 2 * size);
+		}
+		int k = size++;
+		while (k > 0) {
+			int parent = (k - 1) >>> 1;
+			if (keys[parent] <= key)
+				break;
+			nodes[k] = nodes[parent];
+			keys[k] = keys[parent];
+			k = parent;
+		}
+		nodes[k] = node;
+		keys[k] = key;
+	}
+
+	int pop() {
+		int result = nodes[0];
+		int node = nodes[--size];
+		double key = keys[size];
+		int k = 0;
+		int half = size >>> 1;
+		while (k < half) {
+			int child = 2 * k + 1;
+			if (child + 1 < size && keys[child + 1] < keys[child])
+				child++;
+			if (key <= keys[child])
+				break;
+			nodes[k] = nodes[child];
+			keys[k] = keys[child];
+			k = child;
+		}
+		nodes[k] = node;
+		keys[k] = key;
+		return result;
+	}
+}
@@ -15,13 +15,16 @@ import aimax.osm.data.entities.WayRef;
  * Generates {@link aimax.osm.routing.OsmMoveAction}s for states which are
  * assumed to be of class {@link aimax.osm.data.entities.MapNode}. If a goal is
  * specified, all generated actions lead to road crossings, road ends, or the
- * specified goal. Otherwise, they lead to directly linked neighbor nodes.
+ * specified goal. Otherwise, they lead to directly linked neighbor nodes. In
+ * reverse mode, oneway ways are traversed against their direction. This is
+ * needed for searches which start at the goal and look for predecessors.
  * @author Ruediger Lunde
  */
 public class OsmActionsFunction implements ActionsFunction {
 
 	protected MapWayFilter filter;
 	private boolean ignoreOneWays;
+	private boolean reverse;
 	/**
 	 * Goal node, possibly null. If a goal is specified, travel actions will
 	 * include paths with size greater one.
@@ -35,6 +38,16 @@ public class OsmActionsFunction implements ActionsFunction {
 		this.goal = goal;
 	}
 
+	/**
+	 * Creates an actions function which traverses oneway ways against their
+	 * direction if <code>reverse</code> is true.
+	 */
+	public OsmActionsFunction(MapWayFilter filter, boolean ignoreOneWays,
+			MapNode goal, boolean reverse) {
+		this(filter, ignoreOneWays, goal);
+		this.reverse = reverse;
+	}
+
 	/** Expects a <code>MapNode</code> as argument. */
 	@Override
 	public Set<Action> actions(Object s) {
@@ -46,19 +59,22 @@ public class OsmActionsFunction implements ActionsFunction {
 				int nodeIdx = wref.getNodeIdx();
 				List<MapNode> wayNodes = way.getNodes();
 				MapNode to;
-				for (int idx = nodeIdx + 1; idx < wayNodes.size(); idx++) {
-					to = wayNodes.get(idx);
-					if (goal == null || goal == to
-							|| to.getWayRefs().size() > 1
-							|| idx == wayNodes.size() - 1) {
-						result.add(new OsmMoveAction(way, nodeIdx, idx));
-						break;
+				boolean bothDirections = !way.isOneway() || ignoreOneWays;
+				if (!reverse || bothDirections) {
+					for (int idx = nodeIdx + 1; idx < wayNodes.size(); idx++) {
+						to = wayNodes.get(idx);
+						if (goal == null || goal.equals(to)
+								|| to.getWayRefs().size() > 1
+								|| idx == wayNodes.size() - 1) {
+							result.add(new OsmMoveAction(way, nodeIdx, idx));
+							break;
+						}
 					}
 				}
-				if (!way.isOneway() || ignoreOneWays) {
+				if (reverse || bothDirections) {
 					for (int idx = nodeIdx - 1; idx >= 0; idx--) {
 						to = wayNodes.get(idx);
-						if (goal == null || goal == to
+						if (goal == null || goal.equals(to)
 								|| to.getWayRefs().size() > 1 || idx == 0) {
 							result.add(new OsmMoveAction(way, nodeIdx, idx));
 							break;
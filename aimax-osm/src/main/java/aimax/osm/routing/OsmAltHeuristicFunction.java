@@ -0,0 +1,59 @@
+package aimax.osm.routing;
+
+import aima.core.search.framework.HeuristicFunction;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Implements the ALT heuristic (A*, landmarks, triangle inequality). The
+ * estimated distance is the maximum of the straight-line distance and the
+ * lower bound provided by a {@link LandmarkIndex}. Both are consistent, so
+ * their maximum is consistent too.
+ */
+public class OsmAltHeuristicFunction implements HeuristicFunction {
+	private LandmarkIndex landmarks;
+	private MapNode from;
+	private MapNode to;
+
+	/**
+	 * Creates a heuristic function which estimates the distance from a state
+	 * to the goal.
+	 */
+	public OsmAltHeuristicFunction(LandmarkIndex landmarks, MapNode goal) {
+		this(landmarks, null, goal);
+	}
+
+	/**
+	 * Creates a heuristic function for a route finding problem. If
+	 * <code>from</code> is null, the distance from a state to
+	 * <code>to</code> is estimated, otherwise the distance from
+	 * <code>from</code> to a state.
+	 */
+	private OsmAltHeuristicFunction(LandmarkIndex landmarks, MapNode from,
+			MapNode to) {
+		this.landmarks = landmarks;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Returns a heuristic function for the reverse problem which estimates
+	 * the distance from the specified start node to a state.
+	 */
+	public OsmAltHeuristicFunction createReverseFunction(MapNode start) {
+		return new OsmAltHeuristicFunction(landmarks, start, null);
+	}
+
+	/**
+	 * Assumes a <code>MapNode</code> as state and returns the estimated road
+	 * distance in KM.
+	 */
+	@Override
+	public double h(Object s) {
+		MapNode state = (MapNode) s;
+		MapNode n1 = (from != null) ? from : state;
+		MapNode n2 = (from != null) ? state : to;
+		return Math.max(new Position(n1).getDistKM(n2),
+				landmarks.getLowerBound(n1, n2));
+	}
+}
@@ -13,9 +13,9 @@ import aimax.osm.data.entities.MapWay;
  * @author Ruediger Lunde
  */
 public class OsmMoveAction implements Action {
-	private MapWay way;
-	private int fromIndex;
-	private int toIndex;
+	private final MapWay way;
+	private final int fromIndex;
+	private final int toIndex;
 	
 	/** The indices correspond to the list of nodes stored with the way. */
 	public OsmMoveAction(MapWay way, int fromNodeIdx, int toNodeIdx) {
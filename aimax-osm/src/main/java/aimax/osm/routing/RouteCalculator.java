@@ -9,7 +9,10 @@ import aima.core.search.framework.HeuristicFunction;
 import aima.core.search.framework.Problem;
 import aima.core.search.framework.Search;
 import aima.core.search.informed.AStarSearch;
+import aima.core.search.informed.BidirectionalAStarSearch;
 import aima.core.util.CancelableThread;
+import aimax.osm.data.MapEvent;
+import aimax.osm.data.MapEventListener;
 import aimax.osm.data.OsmMap;
 import aimax.osm.data.MapWayAttFilter;
 import aimax.osm.data.MapWayFilter;
@@ -24,9 +27,31 @@ import aimax.osm.data.entities.MapNode;
  */
 public class RouteCalculator {
 
+	/**
+	 * Way selection option which finds car routes by bidirectional A* search
+	 * with landmark heuristics.
+	 */
+	public static final int CAR_ALT_WAY_SELECTION = 3;
+
+	// the map for which preprocessed data is maintained
+	private OsmMap preprocessedMap;
+	private MapEventListener mapListener = new MapEventListener() {
+		@Override
+		public void eventHappened(MapEvent event) {
+			if (event.getType() == MapEvent.Type.MAP_NEW
+					|| event.getType() == MapEvent.Type.MAP_CLEARED)
+				discardPreprocessedData();
+		}
+	};
+	// landmarks for the last way selection for which they were needed
+	private LandmarkIndex landmarks;
+	private int landmarkWaySelection;
+	private RoutingGraph routingGraph;
+
 	/** Returns the names of all supported way selection options. */
 	public String[] getWaySelectionOptions() {
-		return new String[] { "Distance", "Distance (Car)", "Distance (Bike)" };
+		return new String[] { "Distance", "Distance (Car)", "Distance (Bike)",
+				"Distance (Car, Landmarks)" };
 	}
 
 	/**
@@ -52,13 +77,16 @@ public class RouteCalculator {
 			MapWayFilter wayFilter = createMapWayFilter(map, waySelection);
 			boolean ignoreOneways = (waySelection == 0);
 			List<MapNode[]> pNodeList = subdivideProblem(markers, map, wayFilter);
+			if (waySelection == CAR_ALT_WAY_SELECTION)
+				updateLandmarks(map, wayFilter, ignoreOneways, waySelection);
 			for (int i = 0; i < pNodeList.size()
 					&& !CancelableThread.currIsCanceled(); i++) {
 				Problem problem = createProblem(pNodeList.get(i), map, wayFilter,
 						ignoreOneways, waySelection);
 				HeuristicFunction hf = createHeuristicFunction(pNodeList.get(i),
 						waySelection);
-				Search search = createSearch(hf, waySelection);
+				Search search = createSearch(hf, pNodeList.get(i), map,
+						waySelection);
 				List<Action> actions = search.search(problem);
 				if (actions.isEmpty())
 					break;
@@ -81,7 +109,7 @@ public class RouteCalculator {
 
 	/** Factory method, responsible for way filter creation. */
 	protected MapWayFilter createMapWayFilter(OsmMap map, int waySelection) {
-		if (waySelection == 1)
+		if (waySelection == 1 || waySelection == CAR_ALT_WAY_SELECTION)
 			return MapWayAttFilter.createCarWayFilter();
 		else if (waySelection == 2)
 			return MapWayAttFilter.createBicycleWayFilter();
@@ -109,9 +137,19 @@ public class RouteCalculator {
 		return result;
 	}
 
-	/** Factory method, responsible for problem creation. */
+	/**
+	 * Factory method, responsible for problem creation. Way selections with a
+	 * routing graph profile are answered on the compiled routing graph.
+	 */
 	protected Problem createProblem(MapNode[] pNodes, OsmMap map,
 			MapWayFilter wayFilter, boolean ignoreOneways, int waySelection) {
+		if (waySelection == CAR_ALT_WAY_SELECTION)
+			return new BidirectionalRouteFindingProblem(pNodes[0], pNodes[1],
+					wayFilter, ignoreOneways);
+		int profile = getRoutingGraphProfile(waySelection);
+		if (profile != -1)
+			return new RoutingGraphProblem(pNodes[0], pNodes[1],
+					getRoutingGraph(map), profile, ignoreOneways);
 		return new RouteFindingProblem(pNodes[0], pNodes[1], wayFilter,
 				ignoreOneways);
 	}
@@ -119,11 +157,107 @@ public class RouteCalculator {
 	/** Factory method, responsible for heuristic function creation. */
 	protected HeuristicFunction createHeuristicFunction(MapNode[] pNodes,
 			int waySelection) {
+		if (waySelection == CAR_ALT_WAY_SELECTION)
+			return new OsmAltHeuristicFunction(landmarks, pNodes[1]);
 		return new OsmSldHeuristicFunction(pNodes[1]);
 	}
 	
+	/**
+	 * Factory method, responsible for search creation. The start node is
+	 * needed by bidirectional searches, which are only used with landmark
+	 * heuristics. Searches which depend on preprocessed map data can be
+	 * created by overriding this method. All other cases are delegated to
+	 * {@link #createSearch(HeuristicFunction, int)}.
+	 */
+	protected Search createSearch(HeuristicFunction hf, MapNode[] pNodes,
+			OsmMap map, int waySelection) {
+		if (waySelection == CAR_ALT_WAY_SELECTION
+				&& hf instanceof OsmAltHeuristicFunction)
+			return new BidirectionalAStarSearch(hf,
+					((OsmAltHeuristicFunction) hf)
+							.createReverseFunction(pNodes[0]));
+		return createSearch(hf, waySelection);
+	}
+
 	/** Factory method, responsible for search creation. */
 	protected Search createSearch(HeuristicFunction hf, int waySelection) {
 		return new AStarSearch(new GraphSearch(), hf);
 	}
+
+	/**
+	 * Factory method, responsible for landmark preprocessing. Landmarks are
+	 * expensive to compute and therefore reused as long as map and way
+	 * selection do not change.
+	 */
+	protected LandmarkIndex createLandmarkIndex(OsmMap map,
+			MapWayFilter wayFilter, boolean ignoreOneways) {
+		return new LandmarkIndex(map, wayFilter, ignoreOneways);
+	}
+
+	/**
+	 * Factory method, responsible for routing graph compilation. The graph is
+	 * reused until another map is used or the map is reloaded or cleared. This implementation compiles
+	 * one profile for each of the way selections distance, car, and bike.
+	 */
+	protected RoutingGraph createRoutingGraph(OsmMap map) {
+		return RoutingGraph.compile(map, createMapWayFilter(map, 0),
+				createMapWayFilter(map, 1), createMapWayFilter(map, 2));
+	}
+
+	/**
+	 * Returns the number of the routing graph profile which corresponds to
+	 * the way selection, or -1 if the way selection is not answered on the
+	 * routing graph.
+	 */
+	protected int getRoutingGraphProfile(int waySelection) {
+		return (waySelection >= 0 && waySelection <= 2) ? waySelection : -1;
+	}
+
+	/**
+	 * Returns the routing graph for the specified map and compiles it if
+	 * necessary.
+	 */
+	protected synchronized RoutingGraph getRoutingGraph(OsmMap map) {
+		checkMap(map);
+		if (routingGraph == null)
+			routingGraph = createRoutingGraph(map);
+		return routingGraph;
+	}
+
+	/**
+	 * Discards all preprocessed data if it has been computed for another map.
+	 * The calculator listens to the map and discards the data as well when
+	 * the map is reloaded or cleared.
+	 */
+	protected synchronized void checkMap(OsmMap map) {
+		if (map != preprocessedMap) {
+			if (preprocessedMap != null)
+				preprocessedMap.removeMapDataEventListener(mapListener);
+			discardPreprocessedData();
+			preprocessedMap = map;
+			map.addMapDataEventListener(mapListener);
+		}
+	}
+
+	/**
+	 * Discards routing graph and landmarks. Subclasses which maintain further
+	 * preprocessed data should extend this method.
+	 */
+	protected synchronized void discardPreprocessedData() {
+		routingGraph = null;
+		landmarks = null;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private synchronized void updateLandmarks(OsmMap map,
+			MapWayFilter wayFilter, boolean ignoreOneways, int waySelection) {
+		checkMap(map);
+		if (landmarks == null || landmarkWaySelection != waySelection) {
+			landmarks = createLandmarkIndex(map, wayFilter, ignoreOneways);
+			landmarkWaySelection = waySelection;
+		}
+	}
 }
@@ -0,0 +1,295 @@
+package aimax.osm.routing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import aima.core.util.datastructure.LongIntHashMap;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+
+/**
+ * Immutable routing graph which is compiled once from an <code>OsmMap</code>.
+ * Its nodes are the junctions of the map, that is all way nodes which are
+ * referenced by more than one way, and all way end nodes. Its edges connect
+ * junctions which follow each other along a way. They are stored in
+ * compressed sparse row format: the outgoing edges of junction
+ * <code>j</code> have the numbers <code>getFirstEdge(j)</code> up to
+ * <code>getEdgeEnd(j) - 1</code>. Junctions are stored by node id and
+ * position, edges by way id, node indices within the way, a oneway flag, and
+ * one float cost per vehicle profile, all in primitive arrays. Map entities
+ * are only looked up by id when requested. A profile is specified by a way filter; edges on ways
+ * which are not accepted by a profile have infinite costs for it.<br>
+ * <br>
+ * The junction definition corresponds to the actions which are generated by
+ * {@link OsmActionsFunction} if a goal is specified, so searches on the graph
+ * find the same routes. The graph reflects the map at compile time. It has to
+ * be recompiled after the map has been changed.
+ */
+public class RoutingGraph {
+
+	private static final byte ALONG_ONEWAY = 1;
+	private static final byte AGAINST_ONEWAY = 2;
+
+	private final OsmMap map;
+	private final MapWayFilter[] profiles;
+	// node id -> junction number
+	private final LongIntHashMap junctionNumbers;
+	private final long[] junctionIds;
+	private final float[] junctionLats;
+	private final float[] junctionLons;
+	private final long[] wayIds;
+	// compressed adjacency lists of outgoing edges
+	private final int[] edgeStart;
+	private final int[] edgeTargets;
+	private final int[] edgeWays;
+	private final int[] edgeFromIndices;
+	private final int[] edgeToIndices;
+	private final byte[] edgeFlags;
+	// costs in KM per profile and edge
+	private final float[][] edgeCosts;
+
+	/**
+	 * Compiles all ways of a map which are accepted by at least one of the
+	 * profiles into a routing graph.
+	 *
+	 * @param map
+	 *            the information source.
+	 * @param profiles
+	 *            way filters, one for each vehicle profile. Null accepts all
+	 *            ways.
+	 */
+	public static RoutingGraph compile(OsmMap map, MapWayFilter... profiles) {
+		return new RoutingGraph(map, profiles);
+	}
+
+	private RoutingGraph(OsmMap map, MapWayFilter[] profiles) {
+		this.map = map;
+		this.profiles = profiles.clone();
+		List<MapWay> ways = new ArrayList<MapWay>();
+		for (MapWay way : map.getWays(map.getBoundingBox()))
+			if (isAcceptedByAnyProfile(way))
+				ways.add(way);
+		wayIds = new long[ways.size()];
+		for (int w = 0; w < wayIds.length; w++)
+			wayIds[w] = ways.get(w).getId();
+
+		// number the junctions and count their outgoing edges
+		junctionNumbers = new LongIntHashMap(map.getNodeCount() / 4 + 16);
+		long[] ids = new long[16];
+		float[] lats = new float[16];
+		float[] lons = new float[16];
+		int[] degrees = new int[16];
+		int junctionCount = 0;
+		int edgeCount = 0;
+		for (MapWay way : ways) {
+			List<MapNode> wayNodes = way.getNodes();
+			int prev = -1;
+			for (int idx = 0; idx < wayNodes.size(); idx++) {
+				if (isJunction(wayNodes, idx)) {
+					MapNode node = wayNodes.get(idx);
+					int num = junctionNumbers.get(node.getId());
+					if (num == -1) {
+						num = junctionCount++;
+						junctionNumbers.put(node.getId(), num);
+						if (num == degrees.length) {
+							ids = Arrays.copyOf(ids, 2 * num);
+							lats = Arrays.copyOf(lats, 2 * num);
+							lons = Arrays.copyOf(lons, 2 * num);
+							degrees = Arrays.copyOf(degrees, 2 * num);
+						}
+						ids[num] = node.getId();
+						lats[num] = node.getLat();
+						lons[num] = node.getLon();
+					}
+					if (prev != -1) {
+						degrees[prev]++;
+						degrees[num]++;
+						edgeCount += 2;
+					}
+					prev = num;
+				}
+			}
+		}
+		junctionIds = Arrays.copyOf(ids, junctionCount);
+		junctionLats = Arrays.copyOf(lats, junctionCount);
+		junctionLons = Arrays.copyOf(lons, junctionCount);
+		edgeStart = new int[junctionCount + 1];
+		for (int i = 0; i < junctionCount; i++)
+			edgeStart[i + 1] = edgeStart[i] + degrees[i];
+
+		// fill the edge arrays
+		edgeTargets = new int[edgeCount];
+		edgeWays = new int[edgeCount];
+		edgeFromIndices = new int[edgeCount];
+		edgeToIndices = new int[edgeCount];
+		edgeFlags = new byte[edgeCount];
+		edgeCosts = new float[profiles.length][edgeCount];
+		int[] next = Arrays.copyOf(edgeStart, junctionCount);
+		for (int w = 0; w < wayIds.length; w++) {
+			MapWay way = ways.get(w);
+			List<MapNode> wayNodes = way.getNodes();
+			int prevIdx = -1;
+			float dist = 0f;
+			Position pos = null;
+			for (int idx = 0; idx < wayNodes.size(); idx++) {
+				MapNode node = wayNodes.get(idx);
+				if (pos != null)
+					dist += pos.getDistKM(node);
+				pos = new Position(node);
+				if (isJunction(wayNodes, idx)) {
+					if (prevIdx != -1) {
+						int from = junctionNumbers.get(wayNodes.get(prevIdx)
+								.getId());
+						int to = junctionNumbers.get(node.getId());
+						addEdge(next[from]++, to, way, w, prevIdx, idx, dist,
+								way.isOneway() ? ALONG_ONEWAY : 0);
+						addEdge(next[to]++, from, way, w, idx, prevIdx, dist,
+								way.isOneway() ? AGAINST_ONEWAY : 0);
+					}
+					prevIdx = idx;
+					dist = 0f;
+				}
+			}
+		}
+	}
+
+	/** Returns the number of vehicle profiles. */
+	public int getProfileCount() {
+		return profiles.length;
+	}
+
+	/** Returns the way filter of the specified profile. */
+	public MapWayFilter getProfile(int profile) {
+		return profiles[profile];
+	}
+
+	public int getJunctionCount() {
+		return junctionIds.length;
+	}
+
+	public int getEdgeCount() {
+		return edgeTargets.length;
+	}
+
+	/**
+	 * Returns the junction number of the specified node or -1 if the node is
+	 * not a junction of this graph.
+	 */
+	public int getJunction(MapNode node) {
+		return junctionNumbers.get(node.getId());
+	}
+
+	/** Returns the id of the node which corresponds to a junction number. */
+	public long getJunctionId(int junction) {
+		return junctionIds[junction];
+	}
+
+	/** Returns the latitude of the junction. */
+	public float getJunctionLat(int junction) {
+		return junctionLats[junction];
+	}
+
+	/** Returns the longitude of the junction. */
+	public float getJunctionLon(int junction) {
+		return junctionLons[junction];
+	}
+
+	/**
+	 * Returns the node which corresponds to a junction number. The node is
+	 * looked up in the map by id.
+	 */
+	public MapNode getJunctionNode(int junction) {
+		return map.getNode(junctionIds[junction]);
+	}
+
+	/** Returns the number of the first outgoing edge of a junction. */
+	public int getFirstEdge(int junction) {
+		return edgeStart[junction];
+	}
+
+	/**
+	 * Returns the number of the first edge which is not an outgoing edge of
+	 * the junction.
+	 */
+	public int getEdgeEnd(int junction) {
+		return edgeStart[junction + 1];
+	}
+
+	/** Returns the junction number of the edge target. */
+	public int getEdgeTarget(int edge) {
+		return edgeTargets[edge];
+	}
+
+	/** Returns the id of the way along which the edge leads. */
+	public long getEdgeWayId(int edge) {
+		return wayIds[edgeWays[edge]];
+	}
+
+	/**
+	 * Returns the way along which the edge leads. The way is looked up in the
+	 * map by id.
+	 */
+	public MapWay getEdgeWay(int edge) {
+		return map.getWay(wayIds[edgeWays[edge]]);
+	}
+
+	/** Returns the index of the edge source within the nodes of the way. */
+	public int getEdgeFromIndex(int edge) {
+		return edgeFromIndices[edge];
+	}
+
+	/** Returns the index of the edge target within the nodes of the way. */
+	public int getEdgeToIndex(int edge) {
+		return edgeToIndices[edge];
+	}
+
+	/**
+	 * Returns the length of the edge in KM, or positive infinity if the way is
+	 * not accepted by the profile.
+	 */
+	public float getEdgeCost(int profile, int edge) {
+		return edgeCosts[profile][edge];
+	}
+
+	/** Checks whether the edge traverses a oneway way in its direction. */
+	public boolean isAlongOneway(int edge) {
+		return edgeFlags[edge] == ALONG_ONEWAY;
+	}
+
+	/** Checks whether the edge traverses a oneway way against its direction. */
+	public boolean isAgainstOneway(int edge) {
+		return edgeFlags[edge] == AGAINST_ONEWAY;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private boolean isAcceptedByAnyProfile(MapWay way) {
+		for (MapWayFilter profile : profiles)
+			if (profile == null || profile.isAccepted(way))
+				return true;
+		return false;
+	}
+
+	private static boolean isJunction(List<MapNode> wayNodes, int idx) {
+		return idx == 0 || idx == wayNodes.size() - 1
+				|| wayNodes.get(idx).getWayRefs().size() > 1;
+	}
+
+	private void addEdge(int edge, int target, MapWay way, int wayNum,
+			int fromIdx, int toIdx, float dist, byte flags) {
+		edgeTargets[edge] = target;
+		edgeWays[edge] = wayNum;
+		edgeFromIndices[edge] = fromIdx;
+		edgeToIndices[edge] = toIdx;
+		edgeFlags[edge] = flags;
+		for (int p = 0; p < profiles.length; p++)
+			edgeCosts[p][edge] = (profiles[p] == null || profiles[p]
+					.isAccepted(way)) ? dist : Float.POSITIVE_INFINITY;
+	}
+}
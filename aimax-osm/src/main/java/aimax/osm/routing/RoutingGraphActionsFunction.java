@@ -0,0 +1,163 @@
+package aimax.osm.routing;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.ActionsFunction;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.WayRef;
+
+/**
+ * Generates {@link aimax.osm.routing.OsmMoveAction}s for <code>MapNode</code>
+ * states by reading the outgoing edges of a compiled {@link RoutingGraph}
+ * instead of walking along the ways. The actions are the same as those
+ * generated by an {@link OsmActionsFunction} with goal: they lead to
+ * junctions or to the goal. Their travel distances are taken from the graph.
+ * States which are not junctions (typically the start node) are handled by an
+ * <code>OsmActionsFunction</code>. The action of an edge is created when the
+ * edge is expanded for the first time and reused afterwards.
+ */
+public class RoutingGraphActionsFunction implements ActionsFunction {
+
+	private RoutingGraph graph;
+	private int profile;
+	private boolean ignoreOneways;
+	private boolean reverse;
+	private MapNode goal;
+	// the goal if it is located between two junctions
+	private MapWay goalWay;
+	private int goalIdx;
+	private OsmActionsFunction fallback;
+	// edge -> action, created on demand
+	private final OsmMoveAction[] edgeActions;
+
+	/**
+	 * @param graph
+	 *            the compiled routing graph.
+	 * @param profile
+	 *            the number of the vehicle profile whose costs are used.
+	 * @param ignoreOneways
+	 *            if true, oneway ways are traversed in both directions.
+	 * @param goal
+	 *            the goal node.
+	 * @param reverse
+	 *            if true, oneway ways are traversed against their direction.
+	 */
+	public RoutingGraphActionsFunction(RoutingGraph graph, int profile,
+			boolean ignoreOneways, MapNode goal, boolean reverse) {
+		this.graph = graph;
+		this.profile = profile;
+		this.ignoreOneways = ignoreOneways;
+		this.goal = goal;
+		this.reverse = reverse;
+		if (graph.getJunction(goal) == -1 && goal.getWayRefs().size() == 1) {
+			WayRef wref = goal.getWayRefs().get(0);
+			goalWay = wref.getWay();
+			goalIdx = wref.getNodeIdx();
+		}
+		fallback = new OsmActionsFunction(graph.getProfile(profile),
+				ignoreOneways, goal, reverse);
+		edgeActions = new OsmMoveAction[graph.getEdgeCount()];
+	}
+
+	/** Expects a <code>MapNode</code> as argument. */
+	@Override
+	public Set<Action> actions(Object s) {
+		int junction = graph.getJunction((MapNode) s);
+		if (junction == -1)
+			return fallback.actions(s);
+		ActionSet result = new ActionSet(graph.getEdgeEnd(junction)
+				- graph.getFirstEdge(junction));
+		for (int e = graph.getFirstEdge(junction); e < graph
+				.getEdgeEnd(junction); e++) {
+			float cost = graph.getEdgeCost(profile, e);
+			if (cost == Float.POSITIVE_INFINITY)
+				continue;
+			if (!ignoreOneways
+					&& (reverse ? graph.isAlongOneway(e) : graph
+							.isAgainstOneway(e)))
+				continue;
+			OsmMoveAction action = edgeActions[e];
+			if (action == null) {
+				action = createEdgeAction(e, cost);
+				edgeActions[e] = action;
+			}
+			result.add(action);
+		}
+		return result;
+	}
+
+	/** Returns the goal node. */
+	public MapNode getGoal() {
+		return goal;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Creates the action for an edge. Edges which pass the goal end at the
+	 * goal.
+	 */
+	private OsmMoveAction createEdgeAction(int e, float cost) {
+		MapWay way = graph.getEdgeWay(e);
+		int fromIdx = graph.getEdgeFromIndex(e);
+		int toIdx = graph.getEdgeToIndex(e);
+		if (way.equals(goalWay)
+				&& (fromIdx < goalIdx && goalIdx < toIdx || toIdx < goalIdx
+						&& goalIdx < fromIdx))
+			return new OsmMoveAction(way, fromIdx, goalIdx);
+		return new EdgeMoveAction(way, fromIdx, toIdx, cost);
+	}
+
+	/**
+	 * Move action along a graph edge. The travel distance is provided by the
+	 * graph.
+	 */
+	private static class EdgeMoveAction extends OsmMoveAction {
+		private final float cost;
+
+		EdgeMoveAction(MapWay way, int fromNodeIdx, int toNodeIdx, float cost) {
+			super(way, fromNodeIdx, toNodeIdx);
+			this.cost = cost;
+		}
+
+		@Override
+		public float getTravelDistance() {
+			return cost;
+		}
+	}
+
+	/**
+	 * Lightweight set of actions. The generated actions are distinct by
+	 * construction, so no hashing is needed.
+	 */
+	private static class ActionSet extends AbstractSet<Action> {
+		private List<Action> actions;
+
+		ActionSet(int capacity) {
+			actions = new ArrayList<Action>(capacity);
+		}
+
+		@Override
+		public boolean add(Action a) {
+			return actions.add(a);
+		}
+
+		@Override
+		public Iterator<Action> iterator() {
+			return actions.iterator();
+		}
+
+		@Override
+		public int size() {
+			return actions.size();
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package aimax.osm.routing;
+
+import aima.core.search.framework.DefaultGoalTest;
+import aima.core.search.framework.Problem;
+import aimax.osm.data.entities.MapNode;
+
+/**
+ * Route finding problem whose actions are read from a compiled
+ * {@link RoutingGraph}. As in {@link RouteFindingProblem}, states are
+ * represented by <code>MapNode</code> objects and true path lengths (in
+ * kilometers) are used as costs, so all searches and heuristics for route
+ * finding problems can be applied without changes.
+ */
+public class RoutingGraphProblem extends Problem {
+	/**
+	 * Creates a new route planning problem.
+	 *
+	 * @param from
+	 *            A way node complying to the profile.
+	 * @param to
+	 *            A way node complying to the profile.
+	 * @param graph
+	 *            A routing graph compiled from the map containing the nodes.
+	 * @param profile
+	 *            The number of the vehicle profile to be used.
+	 */
+	public RoutingGraphProblem(MapNode from, MapNode to, RoutingGraph graph,
+			int profile, boolean ignoreOneWays) {
+		initialState = from;
+		actionsFunction = new RoutingGraphActionsFunction(graph, profile,
+				ignoreOneWays, to, false);
+		resultFunction = new OsmResultFunction();
+		goalTest = new DefaultGoalTest(to);
+		stepCostFunction = new OsmDistanceStepCostFunction();
+	}
+}
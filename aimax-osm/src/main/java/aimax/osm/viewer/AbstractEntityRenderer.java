@@ -11,18 +11,23 @@ import aimax.osm.data.entities.Track;
  * how to display entities and how to transform world into view coordinates. If
  * the order in which the entities are provided shall not be identical to the
  * order of drawing, the renderer should use entity buffers and sort them before
- * printing.
+ * printing. Renderers are not thread-safe. For rendering in several threads
+ * at the same time, each thread should use its own copy (see
+ * {@link #clone()}).
  * 
  * @author Ruediger Lunde
  * 
  */
-public abstract class AbstractEntityRenderer implements EntityVisitor {
+public abstract class AbstractEntityRenderer implements EntityVisitor,
+		Cloneable {
 	protected UnifiedImageBuilder imageBdr;
 	/** Is responsible for world to view coordinate transformations. */
 	protected CoordTransformer transformer;
 	protected WayNodeProvider wnProvider;
 	private UColor backgroundColor = UColor.WHITE;
 	protected boolean debugMode;
+	/** Controls which parts of the entities are printed. */
+	protected PrintMode printMode = PrintMode.ALL;
 	/**
 	 * Controls the size of symbols, line widths, and texts. Value two doubles
 	 * the original size.
@@ -49,6 +54,18 @@ public abstract class AbstractEntityRenderer implements EntityVisitor {
 		return debugMode;
 	}
 
+	public PrintMode getPrintMode() {
+		return printMode;
+	}
+
+	/**
+	 * Allows to print shapes and names in separate passes, e.g. to render
+	 * shapes as tiles and names for the whole view at once.
+	 */
+	public void setPrintMode(PrintMode mode) {
+		printMode = mode;
+	}
+
 	public float getDisplayFactor() {
 		return displayFactor;
 	}
@@ -63,9 +80,26 @@ public abstract class AbstractEntityRenderer implements EntityVisitor {
 		this.imageBdr = imageBdr;
 		this.transformer = transformer;
 		this.wnProvider = wnProvider;
-		imageBdr.setColor(backgroundColor);
-		imageBdr.setAreaFilled(true);
-		imageBdr.drawRect(0, 0, imageBdr.getWidth(), imageBdr.getHeight());
+		if (printMode != PrintMode.NAMES) {
+			imageBdr.setColor(backgroundColor);
+			imageBdr.setAreaFilled(true);
+			imageBdr.drawRect(0, 0, imageBdr.getWidth(), imageBdr.getHeight());
+		}
+	}
+
+	/**
+	 * Returns a renderer with the same settings which can be used
+	 * independently of this one.
+	 */
+	@Override
+	public AbstractEntityRenderer clone() {
+		AbstractEntityRenderer copy = null;
+		try {
+			copy = (AbstractEntityRenderer) super.clone();
+		} catch (CloneNotSupportedException e) {
+			e.printStackTrace(); // should never happen...
+		}
+		return copy;
 	}
 
 	/**
@@ -88,4 +122,16 @@ public abstract class AbstractEntityRenderer implements EntityVisitor {
 	/** Abstract method, responsible for rendering a track. */
 	@Override
 	public abstract void visitTrack(Track track);
+
+	// ////////////////////////////////////////////////////////////////////
+	// inner classes
+
+	/**
+	 * Print modes: shapes and names, only shapes (lines, areas, icons, and
+	 * arrows), or only names. In names mode, the background is left
+	 * unchanged.
+	 */
+	public enum PrintMode {
+		ALL, SHAPES, NAMES
+	}
 }
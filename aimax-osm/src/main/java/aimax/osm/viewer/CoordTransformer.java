@@ -70,6 +70,19 @@ public class CoordTransformer {
 		}
 	}
 	
+	/**
+	 * Copies scale and resolution from another transformer and moves the
+	 * specified world position into the left upper corner of the view.
+	 */
+	public void adjustTransformation(CoordTransformer other, float originLat,
+			float originLon) {
+		lonCorr = other.lonCorr;
+		dotsPerDeg = other.dotsPerDeg;
+		dotsPerInch = other.dotsPerInch;
+		this.originLat = originLat;
+		this.originLon = originLon;
+	}
+
 	/**
 	 * Multiples the current scale with the specified factor and
 	 * adjusts the view so that the objects shown at the
@@ -114,6 +127,11 @@ public class CoordTransformer {
 		return dotsPerDeg;
 	}
 	
+	/** Returns the correction factor for longitude values. */
+	public float getLonCorr() {
+		return lonCorr;
+	}
+
 	/**
 	 * Returns the scale. 1 / 100 000 means one cm on the screen corresponds to
 	 * 1 km in real world. */
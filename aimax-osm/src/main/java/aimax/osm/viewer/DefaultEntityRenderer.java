@@ -52,6 +52,20 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 		tmpNodeBuffer = new ArrayList<MapNode>();
 	}
 
+	/** Returns a copy with the same settings and empty buffers. */
+	@Override
+	public DefaultEntityRenderer clone() {
+		DefaultEntityRenderer copy = (DefaultEntityRenderer) super.clone();
+		copy.wayNodeHash = new Hashtable<Long, List<MapNode>>();
+		copy.areaBuffer = new ArrayList<MapWay>();
+		copy.wayBuffer = new ArrayList<MapWay>();
+		copy.nodeBuffer = new ArrayList<MapEntity>();
+		copy.trackBuffer = new ArrayList<Track>();
+		copy.nameInfoBuffer = new ArrayList<NameInfo>();
+		copy.tmpNodeBuffer = new ArrayList<MapNode>();
+		return copy;
+	}
+
 	/** Clears all buffers and prepares rendering. */
 	@Override
 	public void initForRendering(UnifiedImageBuilder imageBdr,
@@ -118,7 +132,7 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 		List<MapNode> nodes = getWayNodes(way);
 		if (!nodes.isEmpty() && pInfo.wayColor != null) {
 			if (pInfo.wayFillColor != null
-					&& nodes.get(0) == nodes.get(nodes.size() - 1)
+					&& nodes.get(0).equals(nodes.get(nodes.size() - 1))
 					&& (way.isArea() || !pInfo.fillAreasOnly))
 				// alternative solution:
 				// && (way.isArea() ||
@@ -173,8 +187,19 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 				n = (MapNode) node;
 			printNode(n, (DefaultEntityViewInfo) node.getViewInfo());
 		}
-		for (Track track : trackBuffer)
-			printTrack(track);
+		if (printMode != PrintMode.NAMES)
+			for (Track track : trackBuffer)
+				printTrack(track);
+		if (printMode != PrintMode.SHAPES)
+			printNames();
+		// System.out.print("Areas: " + areaBuffer.size() + "  ");
+		// System.out.print("Ways: " + wayBuffer.size() + "  ");
+		// System.out.print("Nodes: " + nodeBuffer.size() + "  ");
+		// System.out.print("Names: " + nameInfoBuffer.size() + "\n");
+	}
+
+	/** Prints the buffered names, omitting names which are too close. */
+	protected void printNames() {
 		// System.out.print("NamesOrg: " + nameInfoBuffer.size() + "\n");
 		Collections.sort(nameInfoBuffer);
 		// remove names whose positions are to close to each other
@@ -199,10 +224,6 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 			imageBdr.setColor(textInfo.color);
 			imageBdr.drawString(textInfo.name, textInfo.x, textInfo.y);
 		}
-		// System.out.print("Areas: " + areaBuffer.size() + "  ");
-		// System.out.print("Ways: " + wayBuffer.size() + "  ");
-		// System.out.print("Nodes: " + nodeBuffer.size() + "  ");
-		// System.out.print("Names: " + nameInfoBuffer.size() + "\n");
 	}
 
 	/** Prints a way entity. */
@@ -232,7 +253,8 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 
 		if (pInfo.icon != null) {
 			width = Math.round(pInfo.icon.size * displayFactorSym);
-			pInfo.icon.draw(imageBdr, x, y, displayFactorSym);
+			if (printMode != PrintMode.NAMES)
+				pInfo.icon.draw(imageBdr, x, y, displayFactorSym);
 		}
 
 		if (scale >= pInfo.minNameScale * displayFactor) {
@@ -273,7 +295,13 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 		boolean visible = getViewCoords(nodes, viewWidth, viewHeight, xPoints,
 				yPoints);
 
-		if (visible) {
+		if (visible && printMode == PrintMode.NAMES) {
+			// only the name positions are needed
+			if (textInfo != null) {
+				setWayNamePosition(textInfo, xPoints, yPoints, asArea);
+				nameInfoBuffer.add(textInfo);
+			}
+		} else if (visible) {
 			boolean filled = false;
 			if (asArea) {
 				imageBdr.setColor(pInfo.wayFillColor != null ? pInfo.wayFillColor
@@ -415,7 +443,8 @@ public class DefaultEntityRenderer extends AbstractEntityRenderer {
 
 		if (pInfo.icon != null) {
 			width = Math.round(pInfo.icon.size * displayFactorSym);
-			pInfo.icon.draw(imageBdr, x, y, displayFactor);
+			if (printMode != PrintMode.NAMES)
+				pInfo.icon.draw(imageBdr, x, y, displayFactor);
 		}
 
 		if (nameColor != null) {
@@ -23,7 +23,6 @@ import javax.swing.JTabbedPane;
 import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.JToolBar;
-import javax.swing.filechooser.FileFilter;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
 import aimax.osm.data.BoundingBox;
@@ -33,16 +32,20 @@ import aimax.osm.data.OsmMap;
 import aimax.osm.data.entities.EntityViewInfo;
 import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.impl.DefaultMap;
-import aimax.osm.reader.Bz2OsmReader;
+import aimax.osm.reader.BinaryMapReader;
 import aimax.osm.reader.MapReader;
+import aimax.osm.reader.PipelinedOsmReader;
 import aimax.osm.viewer.MapStyleFactory;
+import aimax.osm.writer.BinaryMapWriter;
 import aimax.osm.writer.Bz2OsmWriter;
 import aimax.osm.writer.MapWriter;
 
 /**
  * Implements a simple frame with a toolbar, a sidebar, and a map view. The
  * toolbar provides buttons for map loading, map saving, and informations about
- * recent events. The sidebar contains a tab for entity finding. The frame
+ * recent events. Besides the formats of the map reader and writer, maps can
+ * be loaded and saved in the binary format of {@link BinaryMapReader}. The
+ * sidebar contains a tab for entity finding. The frame
  * serves as base class for all non-agent applications of this library and can
  * be extended in various ways.
  * 
@@ -59,6 +62,8 @@ public class MapViewFrame extends JFrame implements ActionListener {
 	protected EntityClassifier<EntityViewInfo> viewInfo;
 	protected MapReader mapReader;
 	protected MapWriter mapWriter;
+	protected BinaryMapReader binaryMapReader = new BinaryMapReader();
+	protected BinaryMapWriter binaryMapWriter = new BinaryMapWriter();
 
 	private JFileChooser fileChooser;
 	private JButton loadButton;
@@ -101,7 +106,7 @@ public class MapViewFrame extends JFrame implements ActionListener {
 			}
 		});
 		fileChooser = new JFileChooser();
-		setMapReader(new Bz2OsmReader());
+		setMapReader(new PipelinedOsmReader());
 		setMapWriter(new Bz2OsmWriter());
 
 		JPanel contentPanel = new JPanel();
@@ -116,6 +121,7 @@ public class MapViewFrame extends JFrame implements ActionListener {
 		contentPanel.add(splitter, BorderLayout.CENTER);
 
 		view = new MapViewPane();
+		view.enableTiledRendering(true);
 		splitter.add(view, JSplitPane.RIGHT);
 
 		sidebar = new JTabbedPane();
@@ -228,12 +234,10 @@ public class MapViewFrame extends JFrame implements ActionListener {
 		for (int i = fileChooser.getChoosableFileFilters().length - 1; i > 0; i--)
 			fileChooser.removeChoosableFileFilter(fileChooser
 					.getChoosableFileFilters()[i]);
-		String[] exts = mapReader.fileFormatDescriptions();
-		for (int i = 0; i < exts.length; i++) {
-			FileFilter filter = new FileNameExtensionFilter(exts[i], mapReader
-					.fileFormatExtensions()[i]);
-			fileChooser.addChoosableFileFilter(filter);
-		}
+		addFileFilters(fileChooser, mapReader.fileFormatDescriptions(),
+				mapReader.fileFormatExtensions());
+		addFileFilters(fileChooser, binaryMapReader.fileFormatDescriptions(),
+				binaryMapReader.fileFormatExtensions());
 		fileChooser.setFileFilter(fileChooser.getChoosableFileFilters()[0]);
 		fileChooser.setSelectedFile(new File(""));
 	}
@@ -257,7 +261,7 @@ public class MapViewFrame extends JFrame implements ActionListener {
 	public void readMap(File file) {
 		MapBuilder builder = getMap().getBuilder();
 		builder.setEntityClassifier(viewInfo);
-		mapReader.readMap(file, builder);
+		getMapReader(file).readMap(file, builder);
 		builder.buildMap();
 		fileChooser.setSelectedFile(file.getAbsoluteFile());
 	}
@@ -275,28 +279,27 @@ public class MapViewFrame extends JFrame implements ActionListener {
 			fileChooser.setDialogTitle(title);
 			int returnVal = fileChooser.showDialog(this, "Load");
 			if (returnVal == JFileChooser.APPROVE_OPTION) {
+				MapReader reader = getMapReader(fileChooser.getSelectedFile());
 				if ((e.getModifiers() & KeyEvent.CTRL_MASK) != 0) {
 					// ctrl+load -> ask the user for a bounding box.
 					BoundingBox bb = askForBoundingBox();
 					if (bb != null)
-						mapReader.setFilter(bb);
+						reader.setFilter(bb);
 					else
 						return;
 				}
 				if ((e.getModifiers() & KeyEvent.SHIFT_MASK) != 0) {
 					EntityClassifier<Boolean> filter = createOverviewFilter();
-					mapReader.setFilter(filter);
+					reader.setFilter(filter);
 				}
 				readMap(fileChooser.getSelectedFile());
 			}
 		} else if (e.getSource() == saveButton) {
 			JFileChooser fc = new JFileChooser();
-			String[] exts = mapWriter.fileFormatDescriptions();
-			for (int i = 0; i < exts.length; i++) {
-				FileFilter filter = new FileNameExtensionFilter(exts[i],
-						mapWriter.fileFormatExtensions()[i]);
-				fc.addChoosableFileFilter(filter);
-			}
+			addFileFilters(fc, mapWriter.fileFormatDescriptions(),
+					mapWriter.fileFormatExtensions());
+			addFileFilters(fc, binaryMapWriter.fileFormatDescriptions(),
+					binaryMapWriter.fileFormatExtensions());
 			fc.setFileFilter(fc.getChoosableFileFilters()[0]);
 			fc.setCurrentDirectory(fileChooser.getCurrentDirectory());
 			int returnVal = fc.showSaveDialog(this);
@@ -304,8 +307,12 @@ public class MapViewFrame extends JFrame implements ActionListener {
 					&& (!fc.getSelectedFile().exists() || JOptionPane
 							.showConfirmDialog(this, "File exists, overwrite?",
 									"Confirm", JOptionPane.OK_CANCEL_OPTION) == JOptionPane.OK_OPTION)) {
-				mapWriter.writeMap(fc.getSelectedFile(), getMap(), view
-						.getBoundingBox());
+				File file = fc.getSelectedFile();
+				if (isBinaryMapFile(file))
+					binaryMapWriter.writeMap(file, getMap(), view
+							.getBoundingBox());
+				else
+					mapWriter.writeMap(file, getMap(), view.getBoundingBox());
 			}
 		} else if (e.getSource() == statisticsButton) {
 			Object[][] data = getMap().getStatistics();
@@ -377,4 +384,21 @@ public class MapViewFrame extends JFrame implements ActionListener {
 		result.addRule("place", "village", Boolean.TRUE);
 		return result;
 	}
+
+	/** Returns the reader which is responsible for the format of the file. */
+	protected MapReader getMapReader(File file) {
+		return isBinaryMapFile(file) ? binaryMapReader : mapReader;
+	}
+
+	/** Checks whether the file name has the extension of binary maps. */
+	protected boolean isBinaryMapFile(File file) {
+		return file.getName().endsWith("." + BinaryMapReader.FILE_EXTENSION);
+	}
+
+	private void addFileFilters(JFileChooser fc, String[] descriptions,
+			String[] extensions) {
+		for (int i = 0; i < descriptions.length; i++)
+			fc.addChoosableFileFilter(new FileNameExtensionFilter(
+					descriptions[i], extensions[i]));
+	}
 }
@@ -31,6 +31,7 @@ import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.entities.WayRef;
 import aimax.osm.data.impl.DefaultMap;
 import aimax.osm.viewer.AbstractEntityRenderer;
+import aimax.osm.viewer.AbstractEntityRenderer.PrintMode;
 import aimax.osm.viewer.CoordTransformer;
 import aimax.osm.viewer.DefaultEntityRenderer;
 import aimax.osm.viewer.MapViewEvent;
@@ -41,7 +42,10 @@ import aimax.osm.viewer.UColor;
  * Provides a panel which visualizes map data. As model, an
  * {@link aimax.osm.data.OsmMap} is used. The panel reacts on user events
  * and visualizes currently visible map entities as image. For details about
- * image creation see method {@link #updateOffScreenImage()}.
+ * image creation see method {@link #updateOffScreenImage()}. Alternatively,
+ * map entities can be rendered in background threads as cached tiles (see
+ * {@link #enableTiledRendering(boolean)}), which makes panning and zooming
+ * back much faster for dense maps.
  * <p>
  * Hint for using the viewer: Try Mouse-Left, Mouse-Right, Mouse-Drag,
  * Ctrl-Mouse-Left, Plus, Minus, Ctrl-Plus, Ctrl-Minus, arrow buttons, and also
@@ -78,6 +82,14 @@ public class MapViewPane extends JComponent implements MapEventListener {
 	/** Off-screen image. */
 	private Image image;
 	private boolean isImageUpToDate;
+	/** Null if tiled rendering is disabled. */
+	private TileCache tileCache;
+	/**
+	 * Prints the names of map entities on top of the tiles, which contain only
+	 * shapes. Names near tile borders would otherwise be clipped or printed
+	 * twice.
+	 */
+	private AbstractEntityRenderer labelRenderer;
 
 	public MapViewPane() {
 		transformer = new CoordTransformer();
@@ -109,6 +121,7 @@ public class MapViewPane extends JComponent implements MapEventListener {
 			map.addMapDataEventListener(this);
 			isAdjusted = false;
 		}
+		resetTiles();
 		viewChanged(MapViewEvent.Type.NEW_MAP);
 	}
 
@@ -119,12 +132,14 @@ public class MapViewPane extends JComponent implements MapEventListener {
 	/** Allows to replace the renderer. */
 	public void setRenderer(AbstractEntityRenderer renderer) {
 		this.renderer = renderer;
+		resetTiles();
 		viewChanged(MapViewEvent.Type.NEW_RENDERER);
 	}
 
 	/** Controls whether kd-tree informations, node identifiers etc. are shown. */
 	public void enableDebugMode(boolean b) {
 		renderer.enableDebugMode(b);
+		resetTiles();
 		viewChanged(MapViewEvent.Type.NEW_RENDERER);
 	}
 
@@ -132,6 +147,32 @@ public class MapViewPane extends JComponent implements MapEventListener {
 		return renderer.isDebugModeEnabled();
 	}
 
+	/**
+	 * Controls whether map entities are rendered as tiles in background
+	 * threads. The tiles are cached, so that panning and zooming back only
+	 * require the newly visible tiles to be rendered. Names are printed for
+	 * the whole view in a separate pass. Renderers whose output depends on
+	 * state outside the renderer and the map should not be used with tiled
+	 * rendering. In debug mode, the whole view is rendered at once.
+	 */
+	public void enableTiledRendering(boolean b) {
+		if (b && tileCache == null) {
+			int threads = Math.max(1, Runtime.getRuntime()
+					.availableProcessors() - 1);
+			tileCache = new TileCache(256, 64L << 20, threads, this);
+			resetTiles();
+		} else if (!b && tileCache != null) {
+			tileCache.shutdown();
+			tileCache = null;
+			labelRenderer = null;
+		}
+		viewChanged(MapViewEvent.Type.NEW_RENDERER);
+	}
+
+	public boolean isTiledRenderingEnabled() {
+		return tileCache != null;
+	}
+
 	/** Returns the component responsible for coordinate transformation. */
 	public CoordTransformer getTransformer() {
 		return transformer;
@@ -154,6 +195,7 @@ public class MapViewPane extends JComponent implements MapEventListener {
 				.getWidth()
 				/ cm;
 		transformer.setScreenResolution((int) (dotsPerCm * 2.54));
+		resetTiles();
 		viewChanged(MapViewEvent.Type.ZOOM);
 	}
 
@@ -169,6 +211,7 @@ public class MapViewPane extends JComponent implements MapEventListener {
 		double height = Toolkit.getDefaultToolkit().getScreenSize().getHeight();
 		double dotsPerInch = Math.sqrt(width * width + height * height) / inch;
 		transformer.setScreenResolution((int) dotsPerInch);
+		resetTiles();
 		viewChanged(MapViewEvent.Type.ZOOM);
 	}
 
@@ -186,6 +229,7 @@ public class MapViewPane extends JComponent implements MapEventListener {
 
 	public void multiplyDisplayFactorWith(float fac) {
 		renderer.setDisplayFactor(renderer.getDisplayFactor() * fac);
+		resetTiles();
 		viewChanged(MapViewEvent.Type.ZOOM);
 	}
 
@@ -249,6 +293,17 @@ public class MapViewPane extends JComponent implements MapEventListener {
 		return new BoundingBox(latMin, lonMin, latMax, lonMax);
 	}
 
+	/**
+	 * Returns the map node which is the nearest with respect to the specified
+	 * view coordinates among the currently displayed nodes.
+	 */
+	public MapNode getNextNode(int x, int y) {
+		// in tiled mode, the renderer has only seen markers and tracks
+		if (isTiledRendering() && labelRenderer.getTransformer() != null)
+			return labelRenderer.getNextNode(x, y);
+		return renderer.getNextNode(x, y);
+	}
+
 	/**
 	 * Removes the mark which is the nearest with respect to the given view
 	 * coordinates.
@@ -333,7 +388,9 @@ public class MapViewPane extends JComponent implements MapEventListener {
 				|| image.getHeight(null) != getHeight()) {
 			isImageUpToDate = false;
 		}
-		if (!isImageUpToDate)
+		if (isTiledRendering())
+			updateTiledImage();
+		else if (!isImageUpToDate)
 			updateOffScreenImage();
 		g.drawImage(image, 0, 0, this);
 	}
@@ -354,9 +411,8 @@ public class MapViewPane extends JComponent implements MapEventListener {
 			float lonMin = transformer.lon(0);
 			float latMax = transformer.lat(0);
 			float lonMax = transformer.lon(imageBdr.getWidth());
-			float scale = transformer.computeScale();
 			BoundingBox vbox = new BoundingBox(latMin, lonMin, latMax, lonMax);
-			float viewScale = scale / renderer.getDisplayFactor();
+			float viewScale = getViewScale();
 			renderer.initForRendering(imageBdr, transformer, map);
 			map.visitEntities(renderer, vbox, viewScale);
 			for (MapEntity entity : map.getVisibleMarkersAndTracks(viewScale))
@@ -379,6 +435,55 @@ public class MapViewPane extends JComponent implements MapEventListener {
 		isImageUpToDate = true;
 	}
 
+	/**
+	 * Composes the off-screen image from cached tiles and adds names, markers,
+	 * and tracks. Missing tiles are requested from the tile cache, which
+	 * initiates a repaint as soon as they are available.
+	 */
+	protected void updateTiledImage() {
+		if (image == null || image.getWidth(null) != getWidth()
+				|| image.getHeight(null) != getHeight())
+			image = createImage(getWidth(), getHeight());
+		imageBdr.initImage(image);
+		if (getWidth() > 0 && map != null) {
+			if (!isAdjusted) {
+				transformer.adjustTransformation(map.getBoundingBox(),
+						imageBdr.getWidth(), imageBdr.getHeight());
+				isAdjusted = true;
+			}
+			renderer.initForRendering(imageBdr, transformer, map);
+			Graphics g = image.getGraphics();
+			tileCache.drawTiles(g, transformer, getWidth(), getHeight());
+			g.dispose();
+			float viewScale = getViewScale();
+			labelRenderer.initForRendering(imageBdr, transformer, map);
+			map.visitEntities(labelRenderer, getBoundingBox(), viewScale);
+			labelRenderer.printBufferedObjects();
+			for (MapEntity entity : map.getVisibleMarkersAndTracks(viewScale))
+				entity.accept(renderer);
+			renderer.printBufferedObjects();
+		}
+		isImageUpToDate = true;
+	}
+
+	/** Returns the scale for entity visibility tests. */
+	private float getViewScale() {
+		return transformer.computeScale() / renderer.getDisplayFactor();
+	}
+
+	private boolean isTiledRendering() {
+		return tileCache != null && !renderer.isDebugModeEnabled();
+	}
+
+	/** Discards all tiles, e.g. after changes of map data or renderer. */
+	private void resetTiles() {
+		if (tileCache != null) {
+			tileCache.reset(map, renderer);
+			labelRenderer = renderer.clone();
+			labelRenderer.setPrintMode(PrintMode.NAMES);
+		}
+	}
+
 	/**
 	 * Draws the off-screen image if exists at position (dx, dy) scaled by the
 	 * specified factor.
@@ -423,9 +528,13 @@ public class MapViewPane extends JComponent implements MapEventListener {
 	@Override
 	public void eventHappened(MapEvent event) {
 		if (event.getType() == MapEvent.Type.MAP_NEW) {
+			resetTiles();
 			adjustToFit();
 			fireMapViewEvent(new MapViewEvent(this, MapViewEvent.Type.NEW_MAP));
 		} else {
+			if (event.getType() == MapEvent.Type.MAP_MODIFIED
+					|| event.getType() == MapEvent.Type.MAP_CLEARED)
+				resetTiles();
 			isImageUpToDate = false;
 			repaint();
 		}
@@ -464,7 +573,7 @@ public class MapViewPane extends JComponent implements MapEventListener {
 							MapViewEvent.Type.MARKER_ADDED));
 				} else { // double click
 					map.removeMarker(marker);
-					MapNode mNode = renderer.getNextNode(e.getX(), e.getY());
+					MapNode mNode = getNextNode(e.getX(), e.getY());
 					if (mNode != null)
 						showMapEntityInfoDialog(mNode,
 								renderer.isDebugModeEnabled());
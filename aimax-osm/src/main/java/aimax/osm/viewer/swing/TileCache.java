@@ -0,0 +1,321 @@
+package aimax.osm.viewer.swing;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.OsmMap;
+import aimax.osm.viewer.AbstractEntityRenderer;
+import aimax.osm.viewer.AbstractEntityRenderer.PrintMode;
+import aimax.osm.viewer.CoordTransformer;
+
+/**
+ * Renders map entities in square tiles of fixed size and caches the results.
+ * Tiles are aligned to a grid in world pixel coordinates, so that panning only
+ * requires the tiles which become visible to be rendered. Missing tiles are
+ * rendered by a pool of background threads, each with its own copy of the
+ * renderer. The component is repainted whenever a tile is completed. Cached
+ * tiles are discarded in least-recently-used order when the memory budget is
+ * exceeded. Tiles contain only shapes. Names, markers, and tracks have to be
+ * printed separately.
+ */
+public class TileCache {
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+
+	private final int tileSize;
+	private final long maxBytes;
+	private final Component observer;
+	private Thread[] workers;
+
+	private OsmMap map;
+	/** Renderer copy which is used as template for the workers. */
+	private AbstractEntityRenderer renderer;
+	/** Incremented whenever map or renderer change. */
+	private int generation;
+	private CoordTransformer levelTransformer;
+	private long level;
+	/** Tiles in access order. */
+	private LinkedHashMap<Tile, Image> tiles;
+	/** Tiles to be rendered, most recent requests first. */
+	private LinkedList<Tile> pending;
+	/** Tiles currently rendered by the workers. */
+	private HashSet<Tile> inProgress;
+	private int maxPending;
+	private boolean isShutdown;
+
+	/**
+	 * Creates a cache and starts the worker threads.
+	 *
+	 * @param tileSize
+	 *            Width and height of the tiles in pixels.
+	 * @param maxBytes
+	 *            Memory budget for cached tile images.
+	 * @param threadCount
+	 *            Number of rendering threads.
+	 * @param observer
+	 *            Component to be repainted when a tile has been rendered.
+	 */
+	public TileCache(int tileSize, long maxBytes, int threadCount,
+			Component observer) {
+		this.tileSize = tileSize;
+		this.maxBytes = maxBytes;
+		this.observer = observer;
+		tiles = new LinkedHashMap<Tile, Image>(64, 0.75f, true);
+		pending = new LinkedList<Tile>();
+		inProgress = new HashSet<Tile>();
+		maxPending = 64;
+		workers = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			workers[i] = new Thread(new Worker(), "TileRenderer-" + i);
+			workers[i].setDaemon(true);
+			workers[i].setPriority(Thread.NORM_PRIORITY - 1);
+			workers[i].start();
+		}
+	}
+
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/** Returns the number of rendered tiles which are currently cached. */
+	public synchronized int getCachedTileCount() {
+		return tiles.size();
+	}
+
+	/**
+	 * Discards all tiles and pending requests. Tiles requested later are
+	 * rendered with a copy of the given renderer in its current state, but
+	 * without names.
+	 */
+	public synchronized void reset(OsmMap map, AbstractEntityRenderer renderer) {
+		this.map = map;
+		this.renderer = renderer.clone();
+		this.renderer.setPrintMode(PrintMode.SHAPES);
+		generation++;
+		levelTransformer = null;
+		tiles.clear();
+		pending.clear();
+		inProgress.clear();
+	}
+
+	/**
+	 * Draws all cached tiles which are visible for the given transformation
+	 * and requests the missing ones.
+	 *
+	 * @return true if all visible tiles were available.
+	 */
+	public synchronized boolean drawTiles(Graphics g,
+			CoordTransformer transformer, int width, int height) {
+		if (map == null)
+			return true;
+		updateLevel(transformer);
+		double pxLon = levelTransformer.getDotsPerDeg()
+				* levelTransformer.getLonCorr();
+		double pxLat = levelTransformer.getDotsPerDeg();
+		double originX = transformer.lon(0) * pxLon;
+		double originY = -transformer.lat(0) * pxLat;
+		int col0 = (int) Math.floor(originX / tileSize);
+		int row0 = (int) Math.floor(originY / tileSize);
+		int x0 = (int) Math.round(col0 * (double) tileSize - originX);
+		int y0 = (int) Math.round(row0 * (double) tileSize - originY);
+		int cols = (width - x0 + tileSize - 1) / tileSize;
+		int rows = (height - y0 + tileSize - 1) / tileSize;
+		boolean complete = true;
+		// request from the border to the center, so that central tiles are
+		// rendered first
+		int maxRing = (Math.min(cols, rows) - 1) / 2;
+		for (int ring = 0; ring <= maxRing; ring++) {
+			for (int r = 0; r < rows; r++) {
+				for (int c = 0; c < cols; c++) {
+					if (getRing(c, r, cols, rows) != ring)
+						continue;
+					Tile tile = new Tile(level, col0 + c, row0 + r);
+					Image image = tiles.get(tile);
+					if (image != null)
+						g.drawImage(image, x0 + c * tileSize, y0 + r
+								* tileSize, null);
+					else {
+						request(tile);
+						complete = false;
+					}
+				}
+			}
+		}
+		return complete;
+	}
+
+	/** Stops the worker threads. */
+	public synchronized void shutdown() {
+		isShutdown = true;
+		pending.clear();
+		tiles.clear();
+		notifyAll();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Selects the level which corresponds to the scale of the transformer.
+	 * Scales which differ only by rounding errors share the same level.
+	 */
+	private void updateLevel(CoordTransformer transformer) {
+		long newLevel = Math.round(Math.log(transformer.getDotsPerDeg()) * 1e4);
+		if (levelTransformer == null || newLevel != level) {
+			level = newLevel;
+			levelTransformer = new CoordTransformer();
+			levelTransformer.adjustTransformation(transformer, 0f, 0f);
+		}
+	}
+
+	/** Returns the distance of a tile from the border of the visible area. */
+	private static int getRing(int c, int r, int cols, int rows) {
+		return Math.min(Math.min(c, cols - 1 - c), Math.min(r, rows - 1 - r));
+	}
+
+	private void request(Tile tile) {
+		if (inProgress.contains(tile))
+			return;
+		if (pending.remove(tile) || pending.size() < maxPending) {
+			tile.generation = generation;
+			tile.transformer = levelTransformer;
+			pending.addFirst(tile);
+			notify();
+		} else {
+			pending.removeLast();
+			request(tile);
+		}
+	}
+
+	/** Returns the next tile to render or null after shutdown. */
+	private synchronized Tile nextTile() throws InterruptedException {
+		while (pending.isEmpty() && !isShutdown)
+			wait();
+		if (isShutdown)
+			return null;
+		Tile tile = pending.removeFirst();
+		inProgress.add(tile);
+		return tile;
+	}
+
+	/** Stores the image of a rendered tile; null indicates a failure. */
+	private synchronized void addTile(Tile tile, Image image) {
+		if (tile.generation != generation)
+			return;
+		inProgress.remove(tile);
+		if (image != null) {
+			tiles.put(tile, image);
+			long bytes = 4L * tileSize * tileSize * tiles.size();
+			Iterator<Tile> iter = tiles.keySet().iterator();
+			while (bytes > maxBytes && iter.hasNext()) {
+				iter.next();
+				iter.remove();
+				bytes -= 4L * tileSize * tileSize;
+			}
+		}
+	}
+
+	private Image renderTile(Tile tile, AbstractEntityRenderer renderer,
+			OsmMap map) {
+		BufferedImage image = new BufferedImage(tileSize, tileSize,
+				BufferedImage.TYPE_INT_RGB);
+		CoordTransformer transformer = new CoordTransformer();
+		double pxLon = tile.transformer.getDotsPerDeg()
+				* tile.transformer.getLonCorr();
+		double pxLat = tile.transformer.getDotsPerDeg();
+		transformer.adjustTransformation(tile.transformer,
+				(float) (-tile.row * (double) tileSize / pxLat),
+				(float) (tile.col * (double) tileSize / pxLon));
+		AWTImageBuilder imageBdr = new AWTImageBuilder();
+		imageBdr.initImage(image);
+		renderer.initForRendering(imageBdr, transformer, map);
+		// include entities nearby whose symbols reach into the tile
+		int margin = tileSize / 4;
+		BoundingBox vbox = new BoundingBox(transformer.lat(tileSize + margin),
+				transformer.lon(-margin), transformer.lat(-margin),
+				transformer.lon(tileSize + margin));
+		float viewScale = transformer.computeScale()
+				/ renderer.getDisplayFactor();
+		map.visitEntities(renderer, vbox, viewScale);
+		renderer.printBufferedObjects();
+		return image;
+	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// some inner classes...
+
+	/** Identifies a tile by level, column, and row. */
+	private static class Tile {
+		long level;
+		int col;
+		int row;
+		// request data, not part of the key
+		int generation;
+		CoordTransformer transformer;
+
+		Tile(long level, int col, int row) {
+			this.level = level;
+			this.col = col;
+			this.row = row;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Tile))
+				return false;
+			Tile other = (Tile) obj;
+			return level == other.level && col == other.col
+					&& row == other.row;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (level * 31 + col) * 31 + row;
+		}
+	}
+
+	/** Renders requested tiles with its own renderer copy. */
+	private class Worker implements Runnable {
+		@Override
+		public void run() {
+			AbstractEntityRenderer workerRenderer = null;
+			int rendererGeneration = -1;
+			try {
+				Tile tile;
+				while ((tile = nextTile()) != null) {
+					OsmMap tileMap;
+					synchronized (TileCache.this) {
+						if (tile.generation != generation)
+							continue; // outdated request
+						if (rendererGeneration != generation) {
+							workerRenderer = renderer.clone();
+							rendererGeneration = generation;
+						}
+						tileMap = map;
+					}
+					Image image = null;
+					try {
+						image = renderTile(tile, workerRenderer, tileMap);
+					} catch (RuntimeException e) {
+						// e.g. map modified during rendering
+						LOG.log(Level.WARNING, "Tile rendering failed.", e);
+					}
+					addTile(tile, image);
+					if (image != null)
+						observer.repaint();
+				}
+			} catch (InterruptedException e) {
+				// terminate
+			}
+		}
+	}
+}
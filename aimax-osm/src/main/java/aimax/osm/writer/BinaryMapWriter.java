@@ -0,0 +1,239 @@
+package aimax.osm.writer;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.Track;
+import aimax.osm.reader.BinaryMapReader;
+import aimax.osm.reader.OsmRuntimeException;
+
+/**
+ * Writes a map to file using a compact binary format which can be read by
+ * {@link aimax.osm.reader.BinaryMapReader}. The file starts with a header
+ * (magic number, version, bounding box) and a string table containing all
+ * names, attribute keys and attribute values. Nodes and ways follow, each
+ * section in the order used by {@link OsmWriter}. Entities refer to strings by
+ * table index. Ids, coordinates (as float bits) and way node ids are delta
+ * encoded and stored as variable length integers. Entities are streamed tile
+ * by tile (see {@link TiledMapWalker}); a first pass over the region collects
+ * the strings and counts the entities.<br>
+ * <br>
+ * The class does not implement {@link MapWriter} because the format cannot be
+ * written to a character stream.
+ */
+public class BinaryMapWriter {
+
+	private static Logger LOG = Logger.getLogger("aimax.osm");
+
+	/** Writes all data from <code>map</code> within the bounding box to file. */
+	public void writeMap(File file, OsmMap map, BoundingBox bb) {
+		try {
+			writeMap(new FileOutputStream(file), map, bb);
+		} catch (FileNotFoundException e) {
+			LOG.warning("File does not exist " + file);
+		}
+	}
+
+	/**
+	 * Writes all data from <code>map</code> within the bounding box to a
+	 * stream. The stream is closed afterwards.
+	 */
+	public void writeMap(OutputStream os, OsmMap map, BoundingBox bb) {
+		final DataOutputStream out = new DataOutputStream(
+				new BufferedOutputStream(os));
+		try {
+			TiledMapWalker walker = new TiledMapWalker(map, bb);
+			final HashMap<String, Integer> stringTable;
+			stringTable = new HashMap<String, Integer>();
+			final List<String> strings = new ArrayList<String>();
+			final int[] counts = new int[2];
+			walker.visitNodes(new EntityVisitor() {
+				@Override
+				public void visitMapNode(MapNode node) {
+					addStrings(node, stringTable, strings);
+					counts[0]++;
+				}
+				@Override
+				public void visitMapWay(MapWay way) {
+				}
+				@Override
+				public void visitTrack(Track track) {
+				}
+			});
+			walker.visitWays(new EntityVisitor() {
+				@Override
+				public void visitMapWay(MapWay way) {
+					addStrings(way, stringTable, strings);
+					counts[1]++;
+				}
+				@Override
+				public void visitMapNode(MapNode node) {
+				}
+				@Override
+				public void visitTrack(Track track) {
+				}
+			});
+
+			out.writeInt(BinaryMapReader.MAGIC);
+			out.writeByte(BinaryMapReader.VERSION);
+			out.writeFloat(bb.getLatMin());
+			out.writeFloat(bb.getLonMin());
+			out.writeFloat(bb.getLatMax());
+			out.writeFloat(bb.getLonMax());
+			writeVarLong(out, strings.size());
+			for (String s : strings) {
+				byte[] bytes = s.getBytes("UTF-8");
+				writeVarLong(out, bytes.length);
+				out.write(bytes);
+			}
+
+			writeVarLong(out, counts[0]);
+			walker.visitNodes(new EntityVisitor() {
+				long prevId = 0;
+				int prevLat = 0;
+				int prevLon = 0;
+				@Override
+				public void visitMapNode(MapNode node) {
+					int lat = Float.floatToIntBits(node.getLat());
+					int lon = Float.floatToIntBits(node.getLon());
+					try {
+						writeSignedVarLong(out, node.getId() - prevId);
+						writeSignedVarLong(out, (long) lat - prevLat);
+						writeSignedVarLong(out, (long) lon - prevLon);
+						writeNameAndAttributes(out, node, stringTable);
+					} catch (IOException e) {
+						throw new OsmRuntimeException(
+								"Unable to write binary map to file.", e);
+					}
+					prevId = node.getId();
+					prevLat = lat;
+					prevLon = lon;
+				}
+				@Override
+				public void visitMapWay(MapWay way) {
+				}
+				@Override
+				public void visitTrack(Track track) {
+				}
+			});
+
+			writeVarLong(out, counts[1]);
+			walker.visitWays(new EntityVisitor() {
+				long prevId = 0;
+				@Override
+				public void visitMapWay(MapWay way) {
+					try {
+						writeSignedVarLong(out, way.getId() - prevId);
+						writeNameAndAttributes(out, way, stringTable);
+						List<MapNode> wayNodes = way.getNodes();
+						writeVarLong(out, wayNodes.size());
+						long prevNodeId = 0;
+						for (MapNode node : wayNodes) {
+							writeSignedVarLong(out, node.getId() - prevNodeId);
+							prevNodeId = node.getId();
+						}
+					} catch (IOException e) {
+						throw new OsmRuntimeException(
+								"Unable to write binary map to file.", e);
+					}
+					prevId = way.getId();
+				}
+				@Override
+				public void visitMapNode(MapNode node) {
+				}
+				@Override
+				public void visitTrack(Track track) {
+				}
+			});
+		} catch (IOException e) {
+			throw new OsmRuntimeException("Unable to write binary map to file.",
+					e);
+		} finally {
+			try {
+				out.close();
+			} catch (IOException e) {
+				LOG.log(Level.SEVERE, "Unable to close output stream.", e);
+			}
+		}
+	}
+
+	/** Describes the supported file format. */
+	public String[] fileFormatDescriptions() {
+		return new String[] { "Binary Map (" + BinaryMapReader.FILE_EXTENSION
+				+ ")" };
+	}
+
+	/** Contains the file extension of the supported format. */
+	public String[] fileFormatExtensions() {
+		return new String[] { BinaryMapReader.FILE_EXTENSION };
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private void addStrings(MapEntity entity,
+			HashMap<String, Integer> stringTable, List<String> strings) {
+		if (entity.getName() != null)
+			addString(entity.getName(), stringTable, strings);
+		for (EntityAttribute att : entity.getAttributes()) {
+			addString(att.getKey(), stringTable, strings);
+			addString(att.getValue(), stringTable, strings);
+		}
+	}
+
+	private void addString(String s, HashMap<String, Integer> stringTable,
+			List<String> strings) {
+		if (!stringTable.containsKey(s)) {
+			stringTable.put(s, strings.size());
+			strings.add(s);
+		}
+	}
+
+	/** Writes string table index + 1 for the name (0 for no name). */
+	private void writeNameAndAttributes(DataOutputStream out,
+			MapEntity entity, HashMap<String, Integer> stringTable)
+			throws IOException {
+		String name = entity.getName();
+		writeVarLong(out, name != null ? stringTable.get(name) + 1 : 0);
+		EntityAttribute[] atts = entity.getAttributes();
+		writeVarLong(out, atts.length);
+		for (EntityAttribute att : atts) {
+			writeVarLong(out, stringTable.get(att.getKey()));
+			writeVarLong(out, stringTable.get(att.getValue()));
+		}
+	}
+
+	/** Writes a signed value using zigzag encoding. */
+	private static void writeSignedVarLong(DataOutputStream out, long value)
+			throws IOException {
+		writeVarLong(out, (value << 1) ^ (value >> 63));
+	}
+
+	/** Writes seven bits per byte, the high bit marks continuation. */
+	private static void writeVarLong(DataOutputStream out, long value)
+			throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+}
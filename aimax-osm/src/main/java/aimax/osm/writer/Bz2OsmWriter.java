@@ -4,10 +4,15 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.logging.Logger;
 
 import aimax.osm.data.BoundingBox;
@@ -18,7 +23,9 @@ import aimax.osm.data.OsmMap;
  * implementation uses the Apache Commons Compress library
  * (see http://commons.apache.org/compress/). Please add the
  * corresponding jar file to your class path, otherwise the
- * pack functionality will not be available.
+ * pack functionality will not be available. Compression is performed by
+ * a separate thread, which is fed with chunks of encoded XML by a bounded
+ * queue. So writing the XML and compressing it run in parallel.
  * @author Ruediger Lunde
  */
 public class Bz2OsmWriter implements MapWriter {
@@ -26,6 +33,8 @@ public class Bz2OsmWriter implements MapWriter {
 	private static Logger LOG = Logger.getLogger("aimax.osm");
 	private OsmWriter osmReader = new OsmWriter();
 	private Class<?> compressorClass;
+	private int chunkSize = 64 * 1024;
+	private int queueCapacity = 32;
 	
 	/**
 	 * Tries to find the <code>BZip2CompressorInputStream</code> class using
@@ -40,6 +49,16 @@ public class Bz2OsmWriter implements MapWriter {
 		}
 	}
 	
+	/** Sets the number of bytes which are passed to the compressor at once. */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = chunkSize;
+	}
+
+	/** Sets the maximal number of chunks waiting for compression. */
+	public void setQueueCapacity(int queueCapacity) {
+		this.queueCapacity = queueCapacity;
+	}
+
 	/**
 	 * Writes all data from <code>mapData</code> to file.
 	 */
@@ -49,11 +68,8 @@ public class Bz2OsmWriter implements MapWriter {
 		try  {
 			OutputStream os = new BufferedOutputStream
 			(new FileOutputStream(file));
-			if (compressorClass != null && file.getName().endsWith(".bz2")) {
-				Constructor<?> c = compressorClass.getConstructor
-				(new Class[] {OutputStream.class});
-				os = (OutputStream) c.newInstance(os);
-			}
+			if (compressorClass != null && file.getName().endsWith(".bz2"))
+				os = createCompressionStream(os);
 			OutputStreamWriter writer = new OutputStreamWriter(os, "UTF-8");
 			writeMap(writer, mapData, bb);
 		} catch (FileNotFoundException e) {
@@ -64,6 +80,21 @@ public class Bz2OsmWriter implements MapWriter {
 			LOG.warning("The map could not be read. " + e);
 		}
 	}
+
+	/**
+	 * Returns a stream which compresses the written bytes in a separate
+	 * thread and passes them to <code>os</code>. Errors of <code>os</code>
+	 * are reported by subsequent write operations or by <code>close</code>.
+	 * Requires the Apache Commons Compress library.
+	 */
+	public OutputStream createCompressionStream(OutputStream os)
+			throws Exception {
+		if (compressorClass == null)
+			throw new IllegalStateException("Compression not available.");
+		Constructor<?> c = compressorClass.getConstructor
+		(new Class[] {OutputStream.class});
+		return new CompressionStage((OutputStream) c.newInstance(os));
+	}
 	
 	/**
 	 * Reads all data from the file and send it to the sink.
@@ -88,4 +119,113 @@ public class Bz2OsmWriter implements MapWriter {
 		else
 			return new String[] {"osm"};
 	}
+
+	// ////////////////////////////////////////////////////////////////////
+	// some inner classes...
+
+	/**
+	 * Collects written bytes in chunks and passes them to a compression
+	 * thread. Errors of the compression thread are reported by subsequent
+	 * write operations or by <code>close</code>.
+	 */
+	private class CompressionStage extends OutputStream {
+		private final byte[] endOfStream = new byte[0];
+		private BlockingQueue<byte[]> chunks;
+		private byte[] buffer;
+		private int count;
+		private Thread thread;
+		private volatile IOException error;
+
+		CompressionStage(final OutputStream compressor) {
+			chunks = new ArrayBlockingQueue<byte[]>(queueCapacity);
+			buffer = new byte[chunkSize];
+			thread = new Thread("osm-compress") {
+				@Override
+				public void run() {
+					try {
+						byte[] chunk;
+						// takes all chunks until the end, also after errors,
+						// so that the producer never blocks
+						while ((chunk = chunks.take()) != endOfStream) {
+							if (error == null) {
+								try {
+									compressor.write(chunk);
+								} catch (IOException e) {
+									error = e;
+								}
+							}
+						}
+					} catch (InterruptedException e) {
+						// canceled
+					} finally {
+						try {
+							compressor.close();
+						} catch (IOException e) {
+							if (error == null)
+								error = e;
+						}
+					}
+				}
+			};
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			if (count == buffer.length)
+				flushBuffer();
+			buffer[count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			while (len > 0) {
+				if (count == buffer.length)
+					flushBuffer();
+				int n = Math.min(len, buffer.length - count);
+				System.arraycopy(b, off, buffer, count, n);
+				count += n;
+				off += n;
+				len -= n;
+			}
+		}
+
+		/** Waits until all data has been compressed and closes the stream. */
+		@Override
+		public void close() throws IOException {
+			if (thread == null)
+				return;
+			try {
+				try {
+					flushBuffer();
+				} finally {
+					chunks.put(endOfStream);
+					thread.join();
+				}
+			} catch (InterruptedException e) {
+				thread.interrupt();
+				throw new InterruptedIOException("Compression interrupted.");
+			} finally {
+				thread = null;
+			}
+			if (error != null)
+				throw error;
+		}
+
+		private void flushBuffer() throws IOException {
+			if (error != null)
+				throw error;
+			if (count > 0) {
+				try {
+					chunks.put(count == buffer.length ? buffer : Arrays
+							.copyOf(buffer, count));
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException("Compression interrupted.");
+				}
+				buffer = new byte[chunkSize];
+				count = 0;
+			}
+		}
+	}
 }
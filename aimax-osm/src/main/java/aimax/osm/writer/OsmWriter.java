@@ -7,20 +7,23 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
-import java.util.Collection;
-import java.util.HashSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityVisitor;
 import aimax.osm.data.OsmMap;
 import aimax.osm.data.entities.EntityAttribute;
 import aimax.osm.data.entities.MapNode;
 import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.Track;
 import aimax.osm.reader.OsmRuntimeException;
 
 /** 
- * Writes a map to file using the standard osm XML format.
+ * Writes a map to file using the standard osm XML format. Entities are
+ * streamed to the writer tile by tile (see {@link TiledMapWalker}), first all
+ * nodes, then all ways. So memory consumption does not grow with the size of
+ * the exported region.
  * @author Ruediger Lunde
  */
 public class OsmWriter implements MapWriter {
@@ -46,35 +49,54 @@ public class OsmWriter implements MapWriter {
 	/**
 	 * Writes all data from <code>mapData</code> to a stream.
 	 */
-	public void writeMap(OutputStreamWriter writer, OsmMap map, BoundingBox bb) {
+	public void writeMap(final OutputStreamWriter writer, OsmMap map,
+			BoundingBox bb) {
 
 		try {
-			StringBuffer text = new StringBuffer();
-			text.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
-			text.append("<osm version=\"0.6\" generator=\"aimax-osm-writer\">\n");
-			text.append("<bound box=\"");
-			text.append(bb.getLatMin() + ",");
-			text.append(bb.getLonMin() + ",");
-			text.append(bb.getLatMax() + ",");
-			text.append(bb.getLonMax());
-			text.append("\" origin=\"?\"/>\n");
-			writer.write(text.toString());
+			writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+			writer.write("<osm version=\"0.6\" generator=\"aimax-osm-writer\">\n");
+			writer.write("<bound box=\"");
+			writer.write(bb.getLatMin() + ",");
+			writer.write(bb.getLonMin() + ",");
+			writer.write(bb.getLatMax() + ",");
+			writer.write(Float.toString(bb.getLonMax()));
+			writer.write("\" origin=\"?\"/>\n");
 			
-			HashSet<MapNode> nodeHash = new HashSet<MapNode>();
-			Collection<MapWay> ways = map.getWays(bb);
-			for (MapWay way : ways)
-				for (MapNode node : way.getNodes())
-					if (!nodeHash.contains(node)) {
+			TiledMapWalker walker = new TiledMapWalker(map, bb);
+			walker.visitNodes(new EntityVisitor() {
+				@Override
+				public void visitMapNode(MapNode node) {
+					try {
 						writeNode(writer, node);
-						nodeHash.add(node);
+					} catch (IOException e) {
+						throw new OsmRuntimeException(
+								"Unable to write XML output to file.", e);
 					}
-			for (MapNode poi : map.getPois(bb))
-				if (!nodeHash.contains(poi)) {
-					writeNode(writer, poi);
-					nodeHash.add(poi);
 				}
-			for (MapWay way : ways) 
-				writeWay(writer, way);
+				@Override
+				public void visitMapWay(MapWay way) {
+				}
+				@Override
+				public void visitTrack(Track track) {
+				}
+			});
+			walker.visitWays(new EntityVisitor() {
+				@Override
+				public void visitMapWay(MapWay way) {
+					try {
+						writeWay(writer, way);
+					} catch (IOException e) {
+						throw new OsmRuntimeException(
+								"Unable to write XML output to file.", e);
+					}
+				}
+				@Override
+				public void visitMapNode(MapNode node) {
+				}
+				@Override
+				public void visitTrack(Track track) {
+				}
+			});
 			writer.write("</osm>\n");
 		} catch (IOException e) {
 			throw new OsmRuntimeException("Unable to write XML output to file.", e);
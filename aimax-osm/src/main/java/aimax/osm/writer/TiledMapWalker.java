@@ -0,0 +1,219 @@
+package aimax.osm.writer;
+
+import java.util.Arrays;
+
+import aima.core.util.datastructure.LongIntHashMap;
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityVisitor;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.entities.Track;
+import aimax.osm.data.impl.DefaultMap;
+
+/**
+ * Visits the entities of a map region tile by tile, without collecting them.
+ * The region is divided into a grid of tiles, and the spatial index of the
+ * map is queried once per tile. The visited nodes are the nodes of all ways
+ * which intersect the region (also if they are outside) and all points of
+ * interest inside the region, the visited ways are the ways which intersect
+ * the region. Each entity is visited exactly once: A node belongs to the tile
+ * which contains its position (positions outside the region are moved to the
+ * nearest border tile), a way to the tile which contains the left lower
+ * corner of its bounding box. Duplicates can therefore only occur within a
+ * tile, and memory consumption depends on the tile size instead of the size
+ * of the region.<br>
+ * <br>
+ * On creation, the ways of the region are determined once. Their number
+ * defines the grid size, their extent limits the queries of the border tiles,
+ * and the left lower corners of their bounding boxes are kept in primitive
+ * arrays, so that later passes do not need to compute them again.
+ */
+public class TiledMapWalker {
+	/** Average number of ways per tile used to determine the grid size. */
+	private static final int WAYS_PER_TILE = 1000;
+	private static final int MAX_TILES_PER_SIDE = 64;
+
+	private OsmMap map;
+	private BoundingBox bb;
+	/** The region, extended by the bounding boxes of all its ways. */
+	private BoundingBox extent;
+	/** Maps the ids of the ways of the region to corner array indices. */
+	private LongIntHashMap wayIndices;
+	private float[] wayLatMins;
+	private float[] wayLonMins;
+	private int tilesPerSide;
+	private float tileHeight;
+	private float tileWidth;
+
+	public TiledMapWalker(OsmMap map, BoundingBox bb) {
+		this.map = map;
+		this.bb = bb;
+		collectWays();
+		tilesPerSide = (int) Math.ceil(Math.sqrt(wayIndices.size()
+				/ (double) WAYS_PER_TILE));
+		tilesPerSide = Math.max(1, Math.min(MAX_TILES_PER_SIDE, tilesPerSide));
+		tileHeight = (bb.getLatMax() - bb.getLatMin()) / tilesPerSide;
+		tileWidth = (bb.getLonMax() - bb.getLonMin()) / tilesPerSide;
+	}
+
+	/**
+	 * Passes all nodes of the region to <code>visitor.visitMapNode</code>,
+	 * tile by tile.
+	 */
+	public void visitNodes(final EntityVisitor visitor) {
+		final LongIntHashMap visited = new LongIntHashMap();
+		for (int r = 0; r < tilesPerSide; r++) {
+			for (int c = 0; c < tilesPerSide; c++) {
+				final int row = r;
+				final int col = c;
+				visited.clear();
+				visitWaysAndPois(new EntityVisitor() {
+					@Override
+					public void visitMapWay(MapWay way) {
+						if (wayIndices.containsKey(way.getId()))
+							for (MapNode node : way.getNodes())
+								if (isInTile(node, row, col)
+										&& visited.put(node.getId(), 1) == -1)
+									visitor.visitMapNode(node);
+					}
+
+					@Override
+					public void visitMapNode(MapNode node) {
+						if (bb.isInside(node.getLat(), node.getLon())
+								&& isInTile(node, row, col)
+								&& visited.put(node.getId(), 1) == -1)
+							visitor.visitMapNode(node);
+					}
+
+					@Override
+					public void visitTrack(Track track) {
+					}
+				}, getTileQueryBox(row, col));
+			}
+		}
+	}
+
+	/**
+	 * Passes all ways of the region to <code>visitor.visitMapWay</code>, tile
+	 * by tile.
+	 */
+	public void visitWays(final EntityVisitor visitor) {
+		for (int r = 0; r < tilesPerSide; r++) {
+			for (int c = 0; c < tilesPerSide; c++) {
+				final int row = r;
+				final int col = c;
+				visitWaysAndPois(new EntityVisitor() {
+					@Override
+					public void visitMapWay(MapWay way) {
+						int i = wayIndices.get(way.getId());
+						if (i != -1 && getRow(wayLatMins[i]) == row
+								&& getCol(wayLonMins[i]) == col)
+							visitor.visitMapWay(way);
+					}
+
+					@Override
+					public void visitMapNode(MapNode node) {
+					}
+
+					@Override
+					public void visitTrack(Track track) {
+					}
+				}, getTileQueryBox(row, col));
+			}
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Visits the ways and points of interest which intersect the box. Maps
+	 * based on {@link DefaultMap} are visited without intermediate lists.
+	 */
+	private void visitWaysAndPois(EntityVisitor visitor, BoundingBox box) {
+		if (map instanceof DefaultMap) {
+			((DefaultMap) map).visitWaysAndPois(visitor, box);
+		} else {
+			for (MapWay way : map.getWays(box))
+				visitor.visitMapWay(way);
+			for (MapNode poi : map.getPois(box))
+				visitor.visitMapNode(poi);
+		}
+	}
+
+	/**
+	 * Determines the ways which intersect the region, their extent, and the
+	 * left lower corners of their bounding boxes.
+	 */
+	private void collectWays() {
+		wayIndices = new LongIntHashMap();
+		wayLatMins = new float[1024];
+		wayLonMins = new float[1024];
+		extent = new BoundingBox(bb.getLatMin(), bb.getLonMin(),
+				bb.getLatMax(), bb.getLonMax());
+		visitWaysAndPois(new EntityVisitor() {
+			@Override
+			public void visitMapWay(MapWay way) {
+				if (wayIndices.containsKey(way.getId()))
+					return;
+				BoundingBox wayBox = way.computeBoundingBox();
+				if (wayBox.intersectsWith(bb)) {
+					int i = wayIndices.size();
+					if (i == wayLatMins.length) {
+						wayLatMins = Arrays.copyOf(wayLatMins, 2 * i);
+						wayLonMins = Arrays.copyOf(wayLonMins, 2 * i);
+					}
+					wayLatMins[i] = wayBox.getLatMin();
+					wayLonMins[i] = wayBox.getLonMin();
+					wayIndices.put(way.getId(), i);
+					extent.unifyWith(wayBox);
+				}
+			}
+
+			@Override
+			public void visitMapNode(MapNode node) {
+			}
+
+			@Override
+			public void visitTrack(Track track) {
+			}
+		}, bb);
+	}
+
+	private int getRow(float lat) {
+		int result = tileHeight > 0 ? (int) ((lat - bb.getLatMin()) / tileHeight)
+				: 0;
+		return Math.min(tilesPerSide - 1, Math.max(0, result));
+	}
+
+	private int getCol(float lon) {
+		int result = tileWidth > 0 ? (int) ((lon - bb.getLonMin()) / tileWidth)
+				: 0;
+		return Math.min(tilesPerSide - 1, Math.max(0, result));
+	}
+
+	private boolean isInTile(MapNode node, int row, int col) {
+		return getRow(node.getLat()) == row && getCol(node.getLon()) == col;
+	}
+
+	/**
+	 * Returns a box which contains all positions belonging to the tile. Border
+	 * tiles extend to the extent of the ways of the region. A small margin
+	 * compensates rounding errors.
+	 */
+	private BoundingBox getTileQueryBox(int row, int col) {
+		float latMargin = tileHeight / 1000;
+		float lonMargin = tileWidth / 1000;
+		float latMin = row > 0 ? bb.getLatMin() + row * tileHeight - latMargin
+				: extent.getLatMin() - latMargin;
+		float latMax = row < tilesPerSide - 1 ? bb.getLatMin() + (row + 1)
+				* tileHeight + latMargin : extent.getLatMax() + latMargin;
+		float lonMin = col > 0 ? bb.getLonMin() + col * tileWidth - lonMargin
+				: extent.getLonMin() - lonMargin;
+		float lonMax = col < tilesPerSide - 1 ? bb.getLonMin() + (col + 1)
+				* tileWidth + lonMargin : extent.getLonMax() + lonMargin;
+		return new BoundingBox(latMin, lonMin, latMax, lonMax);
+	}
+}
@@ -0,0 +1,156 @@
+package aimax.test.osm.unit;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+
+import aima.core.agent.Action;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.reader.OsmReader;
+import aimax.osm.routing.OsmMoveAction;
+
+/**
+ * Creates small maps for tests. The grid maps consist of horizontal and
+ * vertical roads of different types, some of them one-way streets, and named
+ * points of interest between the roads. Node positions are slightly shifted
+ * at random, so that distances differ.
+ */
+public class TestMaps {
+
+	private static final String[] HIGHWAYS = { "primary", "residential",
+			"track", "footway", "secondary" };
+
+	/** Returns the id of the grid node in the specified row and column. */
+	public static long getNodeId(int size, int row, int col) {
+		return size * row + col + 1;
+	}
+
+	/** Returns the OSM XML representation of a grid map. */
+	public static String createGridXml(int size, long seed) {
+		Random random = new Random(seed);
+		StringBuffer xml = new StringBuffer("<osm>\n");
+		for (int row = 0; row < size; row++)
+			for (int col = 0; col < size; col++)
+				appendNode(xml, getNodeId(size, row, col), 50 + row * 0.01
+						+ random.nextDouble() * 0.004, 12 + col * 0.01
+						+ random.nextDouble() * 0.004, null);
+		for (int i = 0; i < size - 1; i++)
+			appendNode(xml, 100000 + i, 50.005 + i * 0.01,
+					12.005 + random.nextInt(size - 1) * 0.01, "Place " + i);
+		long wayId = 1;
+		for (int row = 0; row < size; row++) {
+			// two ways per row which share the middle node
+			int mid = size / 2;
+			String highway = HIGHWAYS[row % HIGHWAYS.length];
+			boolean oneway = row % 3 == 1;
+			xml.append("<way id=\"" + wayId++ + "\">");
+			for (int col = 0; col <= mid; col++)
+				xml.append("<nd ref=\"" + getNodeId(size, row, col) + "\"/>");
+			appendWayTags(xml, highway, oneway, "Row " + row);
+			xml.append("<way id=\"" + wayId++ + "\">");
+			for (int col = mid; col < size; col++)
+				xml.append("<nd ref=\"" + getNodeId(size, row, col) + "\"/>");
+			appendWayTags(xml, highway, oneway, "Row " + row);
+		}
+		for (int col = 0; col < size; col++) {
+			xml.append("<way id=\"" + wayId++ + "\">");
+			for (int row = 0; row < size; row++)
+				xml.append("<nd ref=\"" + getNodeId(size, row, col) + "\"/>");
+			appendWayTags(xml, HIGHWAYS[(col + 1) % HIGHWAYS.length],
+					col % 4 == 2, null);
+		}
+		xml.append("</osm>\n");
+		return xml.toString();
+	}
+
+	/** Reads the map from OSM XML and passes it to the builder. */
+	public static OsmMap readMap(String xml, MapBuilder builder) {
+		try {
+			new OsmReader().readMap(new ByteArrayInputStream(xml
+					.getBytes("UTF-8")), builder);
+		} catch (UnsupportedEncodingException e) {
+			throw new IllegalStateException(e);
+		}
+		return builder.buildMap();
+	}
+
+	/** Creates a grid map with <code>size</code> rows and columns. */
+	public static DefaultMap createGridMap(int size, long seed) {
+		DefaultMap map = new DefaultMap();
+		readMap(createGridXml(size, seed), map.getBuilder());
+		return map;
+	}
+
+	/**
+	 * Checks that both maps contain the same ways and points of interest with
+	 * equal names, attributes, and node positions.
+	 */
+	public static void assertMapsEqual(OsmMap expected, OsmMap actual) {
+		Assert.assertEquals(expected.getNodeCount(), actual.getNodeCount());
+		Assert.assertEquals(expected.getWayCount(), actual.getWayCount());
+		Assert.assertEquals(expected.getPoiCount(), actual.getPoiCount());
+		for (MapWay way : expected.getWays(expected.getBoundingBox())) {
+			MapWay way2 = actual.getWay(way.getId());
+			Assert.assertNotNull(way2);
+			Assert.assertEquals(way.getName(), way2.getName());
+			Assert.assertArrayEquals(way.getAttributes(), way2.getAttributes());
+			Assert.assertEquals(way.getNodes().size(), way2.getNodes().size());
+			for (int i = 0; i < way.getNodes().size(); i++)
+				assertNodesEqual(way.getNodes().get(i), way2.getNodes().get(i));
+		}
+		for (MapNode poi : expected.getPois(expected.getBoundingBox()))
+			assertNodesEqual(poi, actual.getNode(poi.getId()));
+	}
+
+	/** Compares id, name, attributes, and position. */
+	public static void assertNodesEqual(MapNode expected, MapNode actual) {
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected.getId(), actual.getId());
+		Assert.assertEquals(expected.getName(), actual.getName());
+		Assert.assertEquals(expected.getLat(), actual.getLat(), 0.0);
+		Assert.assertEquals(expected.getLon(), actual.getLon(), 0.0);
+		Assert.assertArrayEquals(expected.getAttributes(), actual
+				.getAttributes());
+	}
+
+	/** Returns the sum of the travel distances of all move actions in KM. */
+	public static double getRouteLength(List<Action> actions) {
+		double result = 0;
+		for (Action action : actions)
+			if (action instanceof OsmMoveAction)
+				result += ((OsmMoveAction) action).getTravelDistance();
+		return result;
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private static void appendNode(StringBuffer xml, long id, double lat,
+			double lon, String name) {
+		xml.append("<node id=\"" + id + "\" lat=\"" + (float) lat
+				+ "\" lon=\"" + (float) lon + "\"");
+		if (name == null)
+			xml.append("/>\n");
+		else
+			xml.append("><tag k=\"name\" v=\"" + name + "\"/>"
+					+ "<tag k=\"amenity\" v=\"restaurant\"/></node>\n");
+	}
+
+	private static void appendWayTags(StringBuffer xml, String highway,
+			boolean oneway, String name) {
+		xml.append("<tag k=\"highway\" v=\"" + highway + "\"/>");
+		if (oneway)
+			xml.append("<tag k=\"oneway\" v=\"yes\"/>");
+		if (name != null)
+			xml.append("<tag k=\"name\" v=\"" + name + "\"/>");
+		xml.append("</way>\n");
+	}
+}
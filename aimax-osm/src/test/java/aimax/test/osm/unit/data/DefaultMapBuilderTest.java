@@ -0,0 +1,130 @@
+package aimax.test.osm.unit.data;
+
+import java.io.ByteArrayInputStream;
+import java.util.Collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.DefaultMapBuilder;
+import aimax.osm.reader.OsmReader;
+
+public class DefaultMapBuilderTest {
+
+	@Test
+	public void testColumnsBuildSameMap() {
+		OsmMap map1 = readMap(new DefaultMapBuilder(false));
+		OsmMap map2 = readMap(new DefaultMapBuilder(true));
+		Assert.assertEquals(map1.getNodeCount(), map2.getNodeCount());
+		Assert.assertEquals(map1.getWayCount(), map2.getWayCount());
+		Assert.assertEquals(map1.getPoiCount(), map2.getPoiCount());
+		Assert.assertEquals(20, map1.getWayCount());
+		Assert.assertTrue(map1.getPoiCount() > 0);
+
+		Collection<MapWay> ways = map1.getWays(map1.getBoundingBox());
+		Assert.assertEquals(20, ways.size());
+		for (MapWay way1 : ways) {
+			MapWay way2 = map2.getWay(way1.getId());
+			Assert.assertNotNull(way2);
+			Assert.assertEquals(way1.getName(), way2.getName());
+			Assert.assertArrayEquals(way1.getAttributes(),
+					way2.getAttributes());
+			Assert.assertEquals(way1.getNodes().size(), way2.getNodes().size());
+			for (int i = 0; i < way1.getNodes().size(); i++)
+				assertNodesEqual(way1.getNodes().get(i), way2.getNodes().get(i));
+		}
+		for (MapNode poi : map1.getPois(map1.getBoundingBox()))
+			assertNodesEqual(poi, map2.getNode(poi.getId()));
+	}
+
+	@Test
+	public void testCompileRemovesUnusedNodes() {
+		StringBuffer xml = new StringBuffer("<osm>");
+		for (int id = 1; id <= 30; id++) {
+			xml.append("<node id=\"" + id + "\" lat=\"50." + id
+					+ "\" lon=\"12." + id + "\">");
+			if (id % 10 == 0)
+				xml.append("<tag k=\"name\" v=\"Poi " + id + "\"/>");
+			xml.append("</node>");
+		}
+		// nodes 1-19 are used, node 100 is undefined
+		xml.append("<way id=\"1\">");
+		for (int id = 1; id < 20; id += 2)
+			xml.append("<nd ref=\"" + id + "\"/>");
+		xml.append("<nd ref=\"100\"/>"
+				+ "<tag k=\"highway\" v=\"primary\"/></way>");
+		xml.append("<way id=\"2\">");
+		for (int id = 2; id < 20; id += 2)
+			xml.append("<nd ref=\"" + id + "\"/>");
+		xml.append("<tag k=\"highway\" v=\"track\"/></way></osm>");
+		DefaultMapBuilder builder = new DefaultMapBuilder();
+		new OsmReader().readMap(
+				new ByteArrayInputStream(xml.toString().getBytes()), builder);
+		OsmMap map = builder.buildMap();
+
+		Assert.assertEquals(3, map.getPoiCount());
+		Assert.assertEquals(21, map.getNodeCount());
+		for (int id = 1; id <= 30; id++) {
+			MapNode node = map.getNode(id);
+			if (id < 20 || id % 10 == 0) {
+				Assert.assertNotNull(node);
+				Assert.assertEquals(id, node.getId());
+			} else {
+				Assert.assertNull(node);
+			}
+		}
+		Assert.assertNull(map.getNode(100));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Reads a grid of 10 x 10 nodes with horizontal and vertical roads and
+	 * some named points of interest.
+	 */
+	private OsmMap readMap(DefaultMapBuilder builder) {
+		StringBuffer xml = new StringBuffer("<osm>");
+		for (int row = 0; row < 10; row++) {
+			for (int col = 0; col < 10; col++) {
+				int id = 10 * row + col + 1;
+				xml.append("<node id=\"" + id + "\" lat=\"50." + row
+						+ "\" lon=\"12." + col + "\">");
+				if (id % 7 == 0)
+					xml.append("<tag k=\"name\" v=\"Poi " + id + "\"/>"
+							+ "<tag k=\"amenity\" v=\"restaurant\"/>");
+				xml.append("</node>");
+			}
+		}
+		for (int i = 0; i < 10; i++) {
+			xml.append("<way id=\"" + (i + 1) + "\">");
+			for (int col = 0; col < 10; col++)
+				xml.append("<nd ref=\"" + (10 * i + col + 1) + "\"/>");
+			xml.append("<tag k=\"highway\" v=\"primary\"/>"
+					+ "<tag k=\"name\" v=\"Row " + i + "\"/></way>");
+			xml.append("<way id=\"" + (i + 11) + "\">");
+			for (int row = 0; row < 10; row++)
+				xml.append("<nd ref=\"" + (10 * row + i + 1) + "\"/>");
+			xml.append("<tag k=\"highway\" v=\"residential\"/></way>");
+		}
+		xml.append("</osm>");
+		new OsmReader().readMap(
+				new ByteArrayInputStream(xml.toString().getBytes()), builder);
+		return builder.buildMap();
+	}
+
+	private void assertNodesEqual(MapNode node1, MapNode node2) {
+		Assert.assertNotNull(node2);
+		Assert.assertEquals(node1.getId(), node2.getId());
+		Assert.assertEquals(node1.getName(), node2.getName());
+		Assert.assertEquals(node1.getLat(), node2.getLat(), 0.0);
+		Assert.assertEquals(node1.getLon(), node2.getLon(), 0.0);
+		Assert.assertArrayEquals(node1.getAttributes(), node2.getAttributes());
+		Assert.assertEquals(node1.getWayRefs().size(), node2.getWayRefs()
+				.size());
+	}
+}
@@ -0,0 +1,123 @@
+package aimax.test.osm.unit.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.impl.DefaultMapNode;
+import aimax.osm.viewer.MapStyleFactory;
+
+public class EntityClassifierTest {
+
+	private static final String[] KEYS = { "highway", "natural", "landuse",
+			"place", "building", "leisure", "tourism", "amenity", "waterway",
+			"railway", "boundary", "admin_level", "track_type", "aeroway",
+			"aerialway", "historic", "route", "marker", "mountain_pass",
+			"addr:housenumber", "name", "surface" };
+
+	private static final String[] VALUES = { "1", "2", "3", "4", "GPS",
+			"beach", "camp_site", "city", "cliff", "coastline", "cycleway",
+			"farm", "footway", "forest", "garden", "glacier", "grass", "heath",
+			"island", "living_street", "memorial", "motorway", "park",
+			"parking", "path", "peak", "pedestrian", "primary", "rail",
+			"residential", "riverbank", "road", "secondary", "service",
+			"speed_camera", "steps", "tertiary", "town", "track", "trunk",
+			"unclassified", "viewpoint", "village", "water", "wood", "yes",
+			"administrative", "unknown" };
+
+	@Test
+	public void testDefaultClassifierMatchesRules() {
+		assertTableMatchesRules(new MapStyleFactory()
+				.createDefaultClassifier());
+	}
+
+	@Test
+	public void testNightViewClassifierMatchesRules() {
+		assertTableMatchesRules(new MapStyleFactory()
+				.createNightViewClassifier());
+	}
+
+	@Test
+	public void testRuleOrderAndDefaults() {
+		EntityClassifier<String> ec = new EntityClassifier<String>();
+		ec.setDefaultEntityClass("other");
+		EntityClassifier<String> road = ec.addRule("highway", null, "road");
+		ec.addRule("highway", "primary", "primary");
+		EntityClassifier<String> building = ec.addRule("building", "yes",
+				null);
+		ec.addRule("name", null, "named");
+
+		Assert.assertEquals("primary", ec.classify(createNode("highway",
+				"primary", "name", "B 10")));
+		Assert.assertEquals("road", ec.classify(createNode("highway",
+				"track")));
+		Assert.assertEquals("named", ec.classify(createNode("building",
+				"yes", "name", "Hall")));
+		Assert.assertEquals("other", ec.classify(createNode("building",
+				"yes")));
+		Assert.assertEquals("other", ec.classify(createNode("surface",
+				"asphalt")));
+
+		// modifying sub-classifiers discards the compiled tables
+		road.addRule("oneway", "yes", "oneway road");
+		building.setDefaultEntityClass("building");
+		Assert.assertEquals("oneway road", ec.classify(createNode("highway",
+				"track", "oneway", "yes")));
+		Assert.assertEquals("building", ec.classify(createNode("building",
+				"yes", "name", "Hall")));
+		ec.replaceRule("highway", "primary", "main road");
+		Assert.assertEquals("main road", ec.classify(createNode("highway",
+				"primary")));
+		assertTableMatchesRules(ec);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Classifies random entities with attributes which are mostly used by
+	 * the rules and compares the results of decision table and recursive rule
+	 * evaluation.
+	 */
+	private <C> void assertTableMatchesRules(EntityClassifier<C> ec) {
+		Random random = new Random(17);
+		List<String> keys = new ArrayList<String>();
+		Collections.addAll(keys, KEYS);
+		int classified = 0;
+		for (int i = 0; i < 20000; i++) {
+			Collections.shuffle(keys, random);
+			int attCount = random.nextInt(5);
+			String[] atts = new String[2 * attCount];
+			for (int j = 0; j < attCount; j++) {
+				atts[2 * j] = keys.get(j);
+				atts[2 * j + 1] = VALUES[random.nextInt(VALUES.length)];
+			}
+			MapEntity entity = createNode(atts);
+			C expected = ec.classifyRecursively(entity);
+			Assert.assertSame(expected, ec.classify(entity));
+			Assert.assertSame(expected, ec.classify(entity.getAttributes()));
+			if (expected != null)
+				classified++;
+		}
+		Assert.assertTrue(classified > 1000);
+	}
+
+	/** Creates a node with alternating attribute keys and values. */
+	private MapEntity createNode(String... keysAndValues) {
+		List<EntityAttribute> atts = new ArrayList<EntityAttribute>();
+		for (int i = 0; i < keysAndValues.length; i += 2)
+			atts.add(new EntityAttribute(keysAndValues[i],
+					keysAndValues[i + 1]));
+		DefaultMapNode result = new DefaultMapNode(1);
+		result.setAttributes(atts);
+		return result;
+	}
+}
@@ -0,0 +1,142 @@
+package aimax.test.osm.unit.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.impl.DefaultMapEntity;
+import aimax.osm.data.impl.DefaultMapNode;
+import aimax.osm.data.impl.DefaultMapWay;
+import aimax.osm.data.impl.NameIndex;
+
+public class NameIndexTest {
+
+	private static final String[] SYLLABLES = { "Ba", "ch", "str", "a",
+			"sse", "Weg", "en", "Ü", "berg", "dorf", " ", "-" };
+
+	private List<MapEntity> entities;
+	private NameIndex index;
+
+	@Before
+	public void setUp() {
+		Random random = new Random(6);
+		entities = new ArrayList<MapEntity>();
+		for (int i = 0; i < 300; i++) {
+			DefaultMapEntity entity = (i % 2 == 0) ? new DefaultMapNode(i)
+					: new DefaultMapWay(i);
+			if (i % 10 != 0)
+				entity.setName(createName(random));
+			List<EntityAttribute> atts = new ArrayList<EntityAttribute>();
+			if (i % 3 == 0)
+				atts.add(new EntityAttribute("highway", i % 2 == 0 ? "Primary"
+						: "track"));
+			if (i % 7 == 0)
+				atts.add(new EntityAttribute("amenity", "parking"));
+			entity.setAttributes(atts);
+			entities.add(entity);
+		}
+		index = new NameIndex(entities);
+	}
+
+	@Test
+	public void testFindByName() {
+		for (MapEntity entity : entities) {
+			if (entity.getName() == null)
+				continue;
+			String name = entity.getName();
+			assertFound(matchName(name, 0), index.findByName(name));
+			assertFound(matchName(name, 0), index.findByName(name
+					.toUpperCase()));
+			Assert.assertTrue(getIds(index.findByName(name.toLowerCase()))
+					.contains(entity.getId()));
+		}
+		Assert.assertTrue(index.findByName("unknown").isEmpty());
+	}
+
+	@Test
+	public void testFindByNamePrefix() {
+		for (MapEntity entity : entities) {
+			String name = entity.getName();
+			if (name == null)
+				continue;
+			for (int len = 1; len <= Math.min(4, name.length()); len++) {
+				String prefix = name.substring(0, len);
+				assertFound(matchName(prefix, 1), index
+						.findByNamePrefix(prefix));
+				assertFound(matchName(prefix, 1), index
+						.findByNamePrefix(prefix.toUpperCase()));
+			}
+		}
+		Assert.assertEquals(270, index.findByNamePrefix("").size());
+		Assert.assertTrue(index.findByNamePrefix("xyz").isEmpty());
+	}
+
+	@Test
+	public void testFindByNamePart() {
+		for (String part : new String[] { "ba", "STR", "sse", "ü", "g d",
+				"enen", "-weg" })
+			assertFound(matchName(part, 2), index.findByNamePart(part,
+					Integer.MAX_VALUE));
+		Assert.assertNull(index.findByNamePart("a", 10));
+	}
+
+	@Test
+	public void testFindByAttribute() {
+		Assert.assertEquals(100, index.findByAttributeKey("highway").size());
+		Assert.assertEquals(100, index.findByAttributeKey("HighWay").size());
+		Assert.assertEquals(50, index.findByAttributeValue("primary").size());
+		Assert.assertEquals(50, index.findByAttributeValue("Track").size());
+		Assert.assertEquals(43, index.findByAttributeValue("parking").size());
+		Assert.assertTrue(index.findByAttributeKey("name").isEmpty());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private String createName(Random random) {
+		StringBuffer result = new StringBuffer();
+		int count = 1 + random.nextInt(5);
+		for (int i = 0; i < count; i++)
+			result.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		return result.toString();
+	}
+
+	/**
+	 * Returns the ids of all entities whose name matches the pattern
+	 * ignoring case. Mode 0: equal, 1: prefix, 2: contains.
+	 */
+	private TreeSet<Long> matchName(String pattern, int mode) {
+		String p = pattern.toLowerCase();
+		TreeSet<Long> result = new TreeSet<Long>();
+		for (MapEntity entity : entities) {
+			if (entity.getName() == null)
+				continue;
+			String name = entity.getName().toLowerCase();
+			if (mode == 0 && name.equals(p) || mode == 1 && name.startsWith(p)
+					|| mode == 2 && name.contains(p))
+				result.add(entity.getId());
+		}
+		return result;
+	}
+
+	private void assertFound(TreeSet<Long> expected, List<MapEntity> found) {
+		Assert.assertEquals(expected, getIds(found));
+		// no duplicates
+		Assert.assertEquals(expected.size(), found.size());
+	}
+
+	private TreeSet<Long> getIds(List<MapEntity> entities) {
+		TreeSet<Long> result = new TreeSet<Long>();
+		for (MapEntity entity : entities)
+			result.add(entity.getId());
+		return result;
+	}
+}
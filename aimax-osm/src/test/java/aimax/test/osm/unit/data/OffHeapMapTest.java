@@ -0,0 +1,140 @@
+package aimax.test.osm.unit.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapEntity;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.data.impl.OffHeapMap;
+import aimax.test.osm.unit.TestMaps;
+
+public class OffHeapMapTest {
+	private static final int SIZE = 12;
+
+	private DefaultMap expected;
+	private OffHeapMap map;
+
+	@Before
+	public void setUp() {
+		String xml = TestMaps.createGridXml(SIZE, 5);
+		expected = new DefaultMap();
+		TestMaps.readMap(xml, expected.getBuilder());
+		map = new OffHeapMap();
+		TestMaps.readMap(xml, map.getBuilder());
+	}
+
+	@After
+	public void tearDown() {
+		map.close();
+	}
+
+	@Test
+	public void testMapEqualsDefaultMap() {
+		Assert.assertEquals(SIZE * SIZE + SIZE - 1, map.getNodeCount());
+		Assert.assertEquals(3 * SIZE, map.getWayCount());
+		Assert.assertEquals(SIZE - 1, map.getPoiCount());
+		TestMaps.assertMapsEqual(expected, map);
+	}
+
+	@Test
+	public void testQueriesMatchDefaultMap() {
+		BoundingBox bb = new BoundingBox(50.025f, 12.035f, 50.075f, 12.085f);
+		Assert.assertEquals(getIds(expected.getWays(bb)), getIds(map
+				.getWays(bb)));
+		Assert.assertEquals(getIds(expected.getPois(bb)), getIds(map
+				.getPois(bb)));
+		Assert.assertFalse(getIds(map.getWays(bb)).isEmpty());
+
+		Random random = new Random(3);
+		MapWayFilter[] filters = { null,
+				MapWayAttFilter.createCarWayFilter() };
+		for (int i = 0; i < 50; i++) {
+			Position pos = new Position(49.99f + random.nextFloat() * 0.14f,
+					11.99f + random.nextFloat() * 0.14f);
+			for (MapWayFilter filter : filters) {
+				List<MapNode> nodes1 = expected.getNearestWayNodes(pos, 5,
+						filter);
+				List<MapNode> nodes2 = map.getNearestWayNodes(pos, 5, filter);
+				Assert.assertEquals(5, nodes2.size());
+				for (int j = 0; j < nodes1.size(); j++)
+					TestMaps.assertNodesEqual(nodes1.get(j), nodes2.get(j));
+				TestMaps.assertNodesEqual(nodes1.get(0), map
+						.getNearestWayNode(pos, filter));
+			}
+		}
+	}
+
+	@Test
+	public void testStoreRoundTrip() throws IOException {
+		File file = File.createTempFile("aimax-store", ".bin");
+		OffHeapMap map2 = new OffHeapMap();
+		try {
+			map.saveStore(file);
+			map2.openStore(file);
+			TestMaps.assertMapsEqual(map, map2);
+			BoundingBox bb = new BoundingBox(50.0f, 12.0f, 50.05f, 12.05f);
+			Assert.assertEquals(getIds(map.getWays(bb)), getIds(map2
+					.getWays(bb)));
+			Position pos = new Position(50.03f, 12.04f);
+			Assert.assertEquals(map.getNearestWayNode(pos, null).getId(),
+					map2.getNearestWayNode(pos, null).getId());
+		} finally {
+			map2.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFlyweightEquality() {
+		long id = TestMaps.getNodeId(SIZE, 3, 4);
+		MapNode node1 = map.getNode(id);
+		MapNode node2 = map.getNode(id);
+		Assert.assertNotSame(node1, node2);
+		Assert.assertEquals(node1, node2);
+		Assert.assertEquals(node1.hashCode(), node2.hashCode());
+		Assert.assertFalse(node1.equals(map.getNode(id + 1)));
+
+		MapWay way1 = map.getWay(1);
+		MapWay way2 = map.getWay(1);
+		Assert.assertNotSame(way1, way2);
+		Assert.assertEquals(way1, way2);
+		Assert.assertEquals(way1.hashCode(), way2.hashCode());
+		Assert.assertFalse(way1.equals(map.getWay(2)));
+		// nodes reached via ways are equal to nodes found by id
+		MapNode first = way1.getNodes().get(0);
+		Assert.assertEquals(map.getNode(first.getId()), first);
+		Assert.assertEquals(map.getNode(first.getId()).hashCode(), first
+				.hashCode());
+
+		OffHeapMap other = new OffHeapMap();
+		TestMaps.readMap(TestMaps.createGridXml(SIZE, 5), other.getBuilder());
+		Assert.assertFalse(node1.equals(other.getNode(id)));
+		other.close();
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private TreeSet<Long> getIds(Collection<? extends MapEntity> entities) {
+		TreeSet<Long> result = new TreeSet<Long>();
+		for (MapEntity entity : entities)
+			result.add(entity.getId());
+		return result;
+	}
+}
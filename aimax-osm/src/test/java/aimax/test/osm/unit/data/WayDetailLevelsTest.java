@@ -0,0 +1,152 @@
+package aimax.test.osm.unit.data;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.DefaultMapNode;
+import aimax.osm.data.impl.DefaultMapWay;
+import aimax.osm.data.impl.WayDetailLevels;
+
+public class WayDetailLevelsTest {
+
+	@Test
+	public void testSimplifyKeepsEndpoints() {
+		Random random = new Random(4);
+		for (int i = 0; i < 50; i++) {
+			List<MapNode> nodes = createNodes(random, 2 + random.nextInt(60),
+					0.05f);
+			int[] selection = WayDetailLevels.simplify(nodes, 1.0);
+			Assert.assertEquals(0, selection[0]);
+			Assert.assertEquals(nodes.size() - 1,
+					selection[selection.length - 1]);
+			for (int j = 1; j < selection.length; j++)
+				Assert.assertTrue(selection[j - 1] < selection[j]);
+		}
+		Assert.assertEquals(0, WayDetailLevels.simplify(
+				new ArrayList<MapNode>(), 1.0).length);
+		Assert.assertArrayEquals(new int[] { 0 }, WayDetailLevels.simplify(
+				createNodes(random, 1, 0.05f), 1.0));
+	}
+
+	@Test
+	public void testLevelTolerances() {
+		Random random = new Random(8);
+		int[] removals = new int[4];
+		for (int i = 0; i < 50; i++) {
+			List<MapNode> nodes = createNodes(random, 100, 0.02f);
+			for (int level = 1; level <= 3; level++) {
+				double tolerance = WayDetailLevels.getToleranceKM(level);
+				List<MapNode> simplified = WayDetailLevels.createWayNodes(
+						nodes, level);
+				Assert.assertEquals(nodes.get(0), simplified.get(0));
+				Assert.assertEquals(nodes.get(nodes.size() - 1), simplified
+						.get(simplified.size() - 1));
+				assertWithinTolerance(nodes, simplified, tolerance);
+				removals[level] += nodes.size() - simplified.size();
+			}
+		}
+		// stronger simplification in higher levels
+		Assert.assertTrue(removals[1] > 0);
+		Assert.assertTrue(removals[2] > removals[1]);
+		Assert.assertTrue(removals[3] > removals[2]);
+		Assert.assertTrue(WayDetailLevels.getToleranceKM(1) < WayDetailLevels
+				.getToleranceKM(2));
+		Assert.assertTrue(WayDetailLevels.getToleranceKM(2) < WayDetailLevels
+				.getToleranceKM(3));
+	}
+
+	@Test
+	public void testPrecomputedLevels() {
+		Random random = new Random(15);
+		List<MapWay> ways = new ArrayList<MapWay>();
+		for (int i = 0; i < 30; i++) {
+			DefaultMapWay way = new DefaultMapWay(i + 1);
+			List<MapNode> nodes = createNodes(random, 2 + random.nextInt(80),
+					i % 3 == 0 ? 0.001f : 0.03f);
+			if (i % 5 == 0)
+				nodes.add(nodes.get(0)); // closed way
+			way.setNodes(nodes);
+			ways.add(way);
+		}
+		WayDetailLevels levels = new WayDetailLevels(ways);
+		for (MapWay way : ways) {
+			Assert.assertSame(way.getNodes(), levels.getWayNodes(way, 0));
+			for (int level = 1; level <= 3; level++)
+				Assert.assertEquals(WayDetailLevels.createWayNodes(way
+						.getNodes(), level), levels.getWayNodes(way, level));
+		}
+		Assert.assertNull(levels.getWayNodes(new DefaultMapWay(1000), 1));
+	}
+
+	@Test
+	public void testSmallClosedWaysDisappear() {
+		List<MapNode> nodes = createNodes(new Random(2), 5, 0.0001f);
+		nodes.add(nodes.get(0));
+		Assert.assertTrue(WayDetailLevels.createWayNodes(nodes, 3).isEmpty());
+		Assert.assertSame(nodes, WayDetailLevels.createWayNodes(nodes, 0));
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/** Creates a random walk with the given maximal step size in degrees. */
+	private List<MapNode> createNodes(Random random, int count, float step) {
+		List<MapNode> result = new ArrayList<MapNode>();
+		float lat = 50f;
+		float lon = 12f;
+		for (int i = 0; i < count; i++) {
+			DefaultMapNode node = new DefaultMapNode(i + 1);
+			node.setPosition(lat, lon);
+			result.add(node);
+			float size = step * random.nextFloat() * random.nextFloat();
+			lat += size * (random.nextFloat() - 0.3f);
+			lon += size * (random.nextFloat() - 0.3f);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks that all nodes which were removed between two successive
+	 * selected nodes are near the segment between them. The same projection
+	 * as in the simplification is used.
+	 */
+	private void assertWithinTolerance(List<MapNode> nodes,
+			List<MapNode> simplified, double toleranceKM) {
+		int i = 0;
+		for (int j = 1; j < simplified.size(); j++) {
+			MapNode a = simplified.get(j - 1);
+			MapNode b = simplified.get(j);
+			while (nodes.get(i) != a)
+				i++;
+			for (i++; nodes.get(i) != b; i++)
+				Assert.assertTrue(getSegmentDistance(nodes.get(i), a, b,
+						nodes.get(0).getLat()) <= toleranceKM + 1e-9);
+		}
+	}
+
+	private double getSegmentDistance(MapNode p, MapNode a, MapNode b,
+			float refLat) {
+		double kmPerDeg = Position.EARTH_RADIUS * Math.PI / 180.0;
+		double lonCorr = Math.cos(Math.toRadians(refLat));
+		double px = p.getLon() * kmPerDeg * lonCorr;
+		double py = p.getLat() * kmPerDeg;
+		double ax = a.getLon() * kmPerDeg * lonCorr;
+		double ay = a.getLat() * kmPerDeg;
+		double dx = b.getLon() * kmPerDeg * lonCorr - ax;
+		double dy = b.getLat() * kmPerDeg - ay;
+		double len2 = dx * dx + dy * dy;
+		double t = 0;
+		if (len2 > 0)
+			t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy)
+					/ len2));
+		return Math.hypot(ax + t * dx - px, ay + t * dy - py);
+	}
+}
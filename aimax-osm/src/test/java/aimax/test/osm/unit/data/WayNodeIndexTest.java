@@ -0,0 +1,123 @@
+package aimax.test.osm.unit.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.WayRef;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.data.impl.WayNodeIndex;
+import aimax.test.osm.unit.TestMaps;
+
+public class WayNodeIndexTest {
+	private static final int SIZE = 15;
+
+	private DefaultMap map;
+	private List<MapNode> nodes;
+	private WayNodeIndex index;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(SIZE, 9);
+		nodes = new ArrayList<MapNode>();
+		for (int row = 0; row < SIZE; row++)
+			for (int col = 0; col < SIZE; col++)
+				nodes.add(map.getNode(TestMaps.getNodeId(SIZE, row, col)));
+		// points of interest without way references must not be found
+		nodes.addAll(map.getPois(map.getBoundingBox()));
+		index = new WayNodeIndex(nodes, map.getBoundingBox());
+	}
+
+	@Test
+	public void testSize() {
+		Assert.assertEquals(SIZE * SIZE, index.size());
+		WayNodeIndex empty = new WayNodeIndex(new ArrayList<MapNode>(),
+				new BoundingBox(50f, 12f, 50.1f, 12.1f));
+		Assert.assertEquals(0, empty.size());
+		Assert.assertTrue(empty.getNearestWayNodes(new Position(50f, 12f), 3,
+				null).isEmpty());
+		Assert.assertNull(empty.getNearestWayNode(new Position(50f, 12f),
+				null));
+	}
+
+	@Test
+	public void testNearestNodesMatchLinearSearch() {
+		Random random = new Random(21);
+		MapWayFilter[] filters = { null, MapWayAttFilter.createCarWayFilter(),
+				MapWayAttFilter.createBicycleWayFilter() };
+		for (int i = 0; i < 100; i++) {
+			// also positions outside of the grid
+			Position pos = new Position(49.95f + random.nextFloat() * 0.25f,
+					11.95f + random.nextFloat() * 0.25f);
+			for (MapWayFilter filter : filters) {
+				for (int k : new int[] { 0, 1, 7 }) {
+					List<MapNode> result = index.getNearestWayNodes(pos, k,
+							filter);
+					assertNearest(pos, k, filter, result);
+					assertSameDistances(pos, result, map.getNearestWayNodes(
+							pos, k, filter));
+				}
+				List<MapNode> nearest = new ArrayList<MapNode>();
+				nearest.add(index.getNearestWayNode(pos, filter));
+				assertNearest(pos, 1, filter, nearest);
+			}
+		}
+	}
+
+	@Test
+	public void testMoreNodesThanAvailable() {
+		Position pos = new Position(50.05f, 12.05f);
+		List<MapNode> result = index.getNearestWayNodes(pos, 2 * SIZE * SIZE,
+				null);
+		Assert.assertEquals(SIZE * SIZE, result.size());
+		assertNearest(pos, 2 * SIZE * SIZE, null, result);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	/**
+	 * Checks the result against a linear search over all way nodes which are
+	 * accepted by the filter. Nodes with equal distance may be exchanged.
+	 */
+	private void assertNearest(Position pos, int k, MapWayFilter filter,
+			List<MapNode> result) {
+		List<Double> dists = new ArrayList<Double>();
+		for (MapNode node : nodes)
+			if (isAccepted(node, filter))
+				dists.add(pos.getDistKM(node));
+		Collections.sort(dists);
+		Assert.assertEquals(Math.min(k, dists.size()), result.size());
+		for (int i = 0; i < result.size(); i++) {
+			Assert.assertTrue(isAccepted(result.get(i), filter));
+			Assert.assertEquals(dists.get(i), pos.getDistKM(result.get(i)),
+					1e-9);
+		}
+	}
+
+	private void assertSameDistances(Position pos, List<MapNode> expected,
+			List<MapNode> actual) {
+		Assert.assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+			Assert.assertEquals(pos.getDistKM(expected.get(i)), pos
+					.getDistKM(actual.get(i)), 1e-9);
+	}
+
+	private boolean isAccepted(MapNode node, MapWayFilter filter) {
+		for (WayRef ref : node.getWayRefs())
+			if (filter == null || filter.isAccepted(ref.getWay()))
+				return true;
+		return false;
+	}
+}
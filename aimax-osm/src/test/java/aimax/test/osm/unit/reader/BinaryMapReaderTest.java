@@ -0,0 +1,101 @@
+package aimax.test.osm.unit.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.reader.BinaryMapReader;
+import aimax.osm.reader.FilteringOsmReader;
+import aimax.osm.reader.MapReader;
+import aimax.osm.writer.BinaryMapWriter;
+import aimax.test.osm.unit.TestMaps;
+
+public class BinaryMapReaderTest {
+
+	private String xml;
+	private File xmlFile;
+	private File binaryFile;
+
+	@Before
+	public void setUp() throws Exception {
+		xml = TestMaps.createGridXml(12, 7);
+		xmlFile = File.createTempFile("aimax-test", ".osm");
+		OutputStream os = new FileOutputStream(xmlFile);
+		os.write(xml.getBytes("UTF-8"));
+		os.close();
+		OsmMap map = TestMaps.readMap(xml, new DefaultMap().getBuilder());
+		binaryFile = File.createTempFile("aimax-test", "."
+				+ BinaryMapReader.FILE_EXTENSION);
+		new BinaryMapWriter().writeMap(binaryFile, map, map.getBoundingBox());
+	}
+
+	@After
+	public void tearDown() {
+		xmlFile.delete();
+		binaryFile.delete();
+	}
+
+	@Test
+	public void testWriteAndReadMap() throws Exception {
+		OsmMap map = TestMaps.readMap(xml, new DefaultMap().getBuilder());
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new BinaryMapWriter().writeMap(os, map, map.getBoundingBox());
+		MapBuilder builder = new DefaultMap().getBuilder();
+		new BinaryMapReader().readMap(new ByteArrayInputStream(os
+				.toByteArray()), builder);
+		TestMaps.assertMapsEqual(map, builder.buildMap());
+	}
+
+	@Test
+	public void testReadMapWithBoundingBoxFilter() {
+		BoundingBox bb = new BoundingBox(50.03f, 12.02f, 50.07f, 12.06f);
+		MapReader xmlReader = new FilteringOsmReader();
+		xmlReader.setFilter(bb);
+		MapReader binaryReader = new BinaryMapReader();
+		binaryReader.setFilter(bb);
+		OsmMap expected = read(xmlReader, xmlFile);
+		OsmMap actual = read(binaryReader, binaryFile);
+		Assert.assertTrue(expected.getWayCount() > 0);
+		Assert.assertTrue(expected.getWayCount() < 36);
+		TestMaps.assertMapsEqual(expected, actual);
+	}
+
+	@Test
+	public void testReadMapWithAttributeFilter() {
+		EntityClassifier<Boolean> filter = new EntityClassifier<Boolean>();
+		filter.addRule("highway", "primary", Boolean.TRUE);
+		filter.addRule("amenity", "restaurant", Boolean.TRUE);
+		MapReader xmlReader = new FilteringOsmReader();
+		xmlReader.setFilter(filter);
+		MapReader binaryReader = new BinaryMapReader();
+		binaryReader.setFilter(filter);
+		OsmMap expected = read(xmlReader, xmlFile);
+		OsmMap actual = read(binaryReader, binaryFile);
+		Assert.assertTrue(expected.getWayCount() > 0);
+		Assert.assertTrue(expected.getWayCount() < 36);
+		Assert.assertTrue(expected.getPoiCount() > 0);
+		TestMaps.assertMapsEqual(expected, actual);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private OsmMap read(MapReader reader, File file) {
+		MapBuilder builder = new DefaultMap().getBuilder();
+		reader.readMap(file, builder);
+		return builder.buildMap();
+	}
+}
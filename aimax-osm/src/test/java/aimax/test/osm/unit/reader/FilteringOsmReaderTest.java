@@ -0,0 +1,164 @@
+package aimax.test.osm.unit.reader;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.EntityClassifier;
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.MapBuilderProxy;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.EntityAttribute;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.reader.FilteringOsmReader;
+import aimax.osm.reader.OsmReader;
+import aimax.test.osm.unit.TestMaps;
+
+/**
+ * Compares the single-pass filtered import with an import which parses the
+ * file twice: first with the filter, then again to add the nodes which are
+ * referenced by accepted ways but were rejected.
+ */
+public class FilteringOsmReaderTest {
+
+	private String xml;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		xml = TestMaps.createGridXml(20, 11);
+		file = File.createTempFile("aimax-test", ".osm");
+		OutputStream os = new FileOutputStream(file);
+		os.write(xml.getBytes("UTF-8"));
+		os.close();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testBoundingBoxFilter() throws Exception {
+		final BoundingBox bb = new BoundingBox(50.05f, 12.04f, 50.12f, 12.1f);
+		FilteringOsmReader reader = new FilteringOsmReader();
+		reader.setFilter(bb);
+		OsmMap actual = read(reader);
+		OsmMap expected = readTwice(new Filter() {
+			@Override
+			public boolean acceptNode(List<EntityAttribute> atts, float lat,
+					float lon) {
+				return bb.isInside(lat, lon);
+			}
+
+			@Override
+			public boolean acceptWay(List<EntityAttribute> atts,
+					List<Long> wayNodeIds, MapBuilder builder) {
+				for (long nodeId : wayNodeIds)
+					if (builder.isNodeDefined(nodeId, bb))
+						return true;
+				return false;
+			}
+		});
+		Assert.assertTrue(expected.getWayCount() > 0);
+		Assert.assertTrue(expected.getNodeCount() < 400);
+		TestMaps.assertMapsEqual(expected, actual);
+	}
+
+	@Test
+	public void testAttributeFilter() throws Exception {
+		final EntityClassifier<Boolean> attFilter = new EntityClassifier<Boolean>();
+		attFilter.addRule("highway", "primary", Boolean.TRUE);
+		attFilter.addRule("highway", "secondary", Boolean.TRUE);
+		attFilter.addRule("amenity", "restaurant", Boolean.TRUE);
+		FilteringOsmReader reader = new FilteringOsmReader();
+		reader.setFilter(attFilter);
+		OsmMap actual = read(reader);
+		OsmMap expected = readTwice(new Filter() {
+			@Override
+			public boolean acceptNode(List<EntityAttribute> atts, float lat,
+					float lon) {
+				return attFilter.classify(atts.toArray(new EntityAttribute[atts
+						.size()])) != null;
+			}
+
+			@Override
+			public boolean acceptWay(List<EntityAttribute> atts,
+					List<Long> wayNodeIds, MapBuilder builder) {
+				return attFilter.classify(atts.toArray(new EntityAttribute[atts
+						.size()])) != null;
+			}
+		});
+		Assert.assertTrue(expected.getWayCount() > 0);
+		Assert.assertTrue(expected.getPoiCount() > 0);
+		TestMaps.assertMapsEqual(expected, actual);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private OsmMap read(FilteringOsmReader reader) {
+		MapBuilder builder = new DefaultMap().getBuilder();
+		reader.readMap(file, builder);
+		return builder.buildMap();
+	}
+
+	/** Reads the map twice, the second time for referenced nodes only. */
+	private OsmMap readTwice(Filter filter) throws Exception {
+		MapBuilder builder = new DefaultMap().getBuilder();
+		TwoPassBuilderProxy proxy = new TwoPassBuilderProxy(builder, filter);
+		new OsmReader().readMap(new ByteArrayInputStream(xml.getBytes("UTF-8")),
+				proxy);
+		proxy.incrementCounter();
+		new OsmReader().readMap(new ByteArrayInputStream(xml.getBytes("UTF-8")),
+				proxy);
+		return builder.buildMap();
+	}
+
+	private interface Filter {
+		boolean acceptNode(List<EntityAttribute> atts, float lat, float lon);
+
+		boolean acceptWay(List<EntityAttribute> atts, List<Long> wayNodeIds,
+				MapBuilder builder);
+	}
+
+	private static class TwoPassBuilderProxy extends MapBuilderProxy {
+		private Filter filter;
+
+		TwoPassBuilderProxy(MapBuilder builder, Filter filter) {
+			super(builder);
+			this.filter = filter;
+		}
+
+		@Override
+		public void addNode(long id, String name, List<EntityAttribute> atts,
+				float lat, float lon) {
+			if (counter == 0 && filter.acceptNode(atts, lat, lon)
+					|| counter == 1 && isNodeReferenced(id)
+					&& !isNodeDefined(id, null))
+				super.addNode(id, name, atts, lat, lon);
+		}
+
+		@Override
+		public void addWay(long id, String name, List<EntityAttribute> atts,
+				List<Long> wayNodeIds) {
+			if (counter == 0 && filter.acceptWay(atts, wayNodeIds, builder))
+				super.addWay(id, name, atts, wayNodeIds);
+		}
+
+		/** Builds the map only after the second pass. */
+		@Override
+		public OsmMap buildMap() {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package aimax.test.osm.unit.reader;
+
+import java.io.ByteArrayInputStream;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.impl.DefaultMapBuilder;
+import aimax.osm.reader.OsmRuntimeException;
+import aimax.osm.reader.PipelinedOsmReader;
+
+public class PipelinedOsmReaderTest {
+
+	private PipelinedOsmReader reader;
+
+	@Before
+	public void setUp() {
+		reader = new PipelinedOsmReader();
+		reader.setChunkSize(16);
+		reader.setQueueCapacity(2);
+		reader.setBatchSize(2);
+	}
+
+	@Test
+	public void testReadMap() {
+		StringBuffer xml = new StringBuffer("<osm>");
+		for (int i = 1; i <= 100; i++)
+			xml.append("<node id=\"" + i + "\" lat=\"50." + i
+					+ "\" lon=\"12." + i + "\"/>");
+		xml.append("<way id=\"1\"><nd ref=\"1\"/><nd ref=\"2\"/>"
+				+ "<tag k=\"highway\" v=\"primary\"/></way></osm>");
+		DefaultMapBuilder builder = new DefaultMapBuilder();
+		reader.readMap(new ByteArrayInputStream(xml.toString().getBytes()),
+				builder);
+		OsmMap map = builder.buildMap();
+		Assert.assertEquals(1, map.getWayCount());
+	}
+
+	@Test(timeout = 10000, expected = OsmRuntimeException.class)
+	public void testReadMalformedMap() {
+		StringBuffer xml = new StringBuffer("<osm></way>");
+		// much more data than the queue between the first two stages can hold
+		for (int i = 0; i < 1000; i++)
+			xml.append("<node id=\"" + i + "\" lat=\"50.0\" lon=\"12.0\"/>");
+		xml.append("</osm>");
+		reader.readMap(new ByteArrayInputStream(xml.toString().getBytes()),
+				new DefaultMapBuilder());
+	}
+}
@@ -0,0 +1,138 @@
+package aimax.test.osm.unit.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.GraphSearch;
+import aima.core.search.framework.HeuristicFunction;
+import aima.core.search.framework.Problem;
+import aima.core.search.framework.Search;
+import aima.core.search.informed.AStarSearch;
+import aima.core.search.informed.BidirectionalAStarSearch;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.routing.BidirectionalRouteFindingProblem;
+import aimax.osm.routing.LandmarkIndex;
+import aimax.osm.routing.OsmAltHeuristicFunction;
+import aimax.osm.routing.OsmSldHeuristicFunction;
+import aimax.osm.routing.RouteCalculator;
+import aimax.osm.routing.RouteFindingProblem;
+import aimax.test.osm.unit.TestMaps;
+
+public class LandmarkIndexTest {
+	private static final int SIZE = 10;
+
+	private DefaultMap map;
+	private MapWayFilter filter;
+	private LandmarkIndex landmarks;
+	private List<MapNode[]> pairs;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(SIZE, 13);
+		filter = MapWayAttFilter.createCarWayFilter();
+		landmarks = new LandmarkIndex(map, filter, false, 4);
+		Random random = new Random(5);
+		pairs = new ArrayList<MapNode[]>();
+		for (int i = 0; i < 40; i++) {
+			Position from = new Position(50f + random.nextFloat() * 0.1f,
+					12f + random.nextFloat() * 0.1f);
+			Position to = new Position(50f + random.nextFloat() * 0.1f,
+					12f + random.nextFloat() * 0.1f);
+			pairs.add(new MapNode[] { map.getNearestWayNode(from, filter),
+					map.getNearestWayNode(to, filter) });
+		}
+	}
+
+	@Test
+	public void testLandmarks() {
+		Assert.assertEquals(4, landmarks.getLandmarkIds().length);
+		Assert.assertTrue(landmarks.getNodeCount() > 0);
+		for (long id : landmarks.getLandmarkIds())
+			Assert.assertNotNull(map.getNode(id));
+	}
+
+	@Test
+	public void testLowerBounds() {
+		for (MapNode[] pair : pairs) {
+			List<Action> route = search(new AStarSearch(new GraphSearch(),
+					new OsmSldHeuristicFunction(pair[1])),
+					new RouteFindingProblem(pair[0], pair[1], filter, false));
+			if (!route.isEmpty())
+				Assert.assertTrue(landmarks.getLowerBound(pair[0], pair[1])
+						<= TestMaps.getRouteLength(route) + 1e-4);
+		}
+	}
+
+	@Test
+	public void testAltRoutesMatchAStar() {
+		int routes = 0;
+		for (MapNode[] pair : pairs) {
+			List<Action> expected = search(new AStarSearch(new GraphSearch(),
+					new OsmSldHeuristicFunction(pair[1])),
+					new RouteFindingProblem(pair[0], pair[1], filter, false));
+			OsmAltHeuristicFunction hf = new OsmAltHeuristicFunction(
+					landmarks, pair[1]);
+			List<Action> alt = search(new AStarSearch(new GraphSearch(), hf),
+					new RouteFindingProblem(pair[0], pair[1], filter, false));
+			HeuristicFunction reverseHf = hf.createReverseFunction(pair[0]);
+			List<Action> bidirectional = search(new BidirectionalAStarSearch(
+					hf, reverseHf), new BidirectionalRouteFindingProblem(
+					pair[0], pair[1], filter, false));
+			Assert.assertEquals(expected.isEmpty(), alt.isEmpty());
+			Assert.assertEquals(expected.isEmpty(), bidirectional.isEmpty());
+			double length = TestMaps.getRouteLength(expected);
+			Assert.assertEquals(length, TestMaps.getRouteLength(alt), 1e-4);
+			Assert.assertEquals(length, TestMaps.getRouteLength(bidirectional),
+					1e-4);
+			if (length > 0)
+				routes++;
+		}
+		Assert.assertTrue(routes > 20);
+	}
+
+	@Test
+	public void testRouteCalculatorAltOption() {
+		RouteCalculator calculator = new RouteCalculator();
+		for (MapNode[] pair : pairs.subList(0, 10)) {
+			List<MapNode> markers = new ArrayList<MapNode>();
+			markers.add(pair[0]);
+			markers.add(pair[1]);
+			List<Position> expected = calculator.calculateRoute(markers, map,
+					1);
+			List<Position> actual = calculator.calculateRoute(markers, map,
+					RouteCalculator.CAR_ALT_WAY_SELECTION);
+			Assert.assertEquals(getLength(expected), getLength(actual), 1e-4);
+		}
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private List<Action> search(Search search, Problem problem) {
+		try {
+			return search.search(problem);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private double getLength(List<Position> positions) {
+		double result = 0;
+		for (int i = 1; i < positions.size(); i++)
+			result += Position.getDistKM(positions.get(i - 1).getLat(),
+					positions.get(i - 1).getLon(), positions.get(i).getLat(),
+					positions.get(i).getLon());
+		return result;
+	}
+}
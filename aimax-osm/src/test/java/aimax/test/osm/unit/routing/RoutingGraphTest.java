@@ -0,0 +1,143 @@
+package aimax.test.osm.unit.routing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aima.core.agent.Action;
+import aima.core.search.framework.GraphSearch;
+import aima.core.search.framework.Problem;
+import aima.core.search.informed.AStarSearch;
+import aimax.osm.data.MapWayAttFilter;
+import aimax.osm.data.MapWayFilter;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.Position;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.routing.OsmSldHeuristicFunction;
+import aimax.osm.routing.RouteCalculator;
+import aimax.osm.routing.RouteFindingProblem;
+import aimax.osm.routing.RoutingGraph;
+import aimax.osm.routing.RoutingGraphProblem;
+import aimax.test.osm.unit.TestMaps;
+
+public class RoutingGraphTest {
+	private static final int SIZE = 10;
+
+	private DefaultMap map;
+	private MapWayFilter[] profiles;
+	private RoutingGraph graph;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(SIZE, 11);
+		profiles = new MapWayFilter[] { MapWayAttFilter.createAnyWayFilter(),
+				MapWayAttFilter.createCarWayFilter(),
+				MapWayAttFilter.createBicycleWayFilter() };
+		graph = RoutingGraph.compile(map, profiles);
+	}
+
+	@Test
+	public void testGraphStructure() {
+		// junctions: all grid nodes, the row ways share their middle node
+		Assert.assertEquals(SIZE * SIZE, graph.getJunctionCount());
+		// two directed edges per pair of neighbored grid nodes
+		Assert.assertEquals(4 * SIZE * (SIZE - 1), graph.getEdgeCount());
+		long id = TestMaps.getNodeId(SIZE, 2, 3);
+		int junction = graph.getJunction(map.getNode(id));
+		Assert.assertEquals(id, graph.getJunctionId(junction));
+		Assert.assertEquals(map.getNode(id), graph.getJunctionNode(junction));
+		Assert.assertEquals(map.getNode(id).getLat(), graph
+				.getJunctionLat(junction), 0.0);
+		Assert.assertEquals(map.getNode(id).getLon(), graph
+				.getJunctionLon(junction), 0.0);
+		Assert.assertEquals(4, graph.getEdgeEnd(junction)
+				- graph.getFirstEdge(junction));
+		for (int e = graph.getFirstEdge(junction); e < graph
+				.getEdgeEnd(junction); e++) {
+			Assert.assertEquals(graph.getEdgeWayId(e), graph.getEdgeWay(e)
+					.getId());
+			Assert.assertFalse(graph.isAlongOneway(e)
+					&& graph.isAgainstOneway(e));
+		}
+	}
+
+	@Test
+	public void testRoutesMatchBaselineSearch() {
+		Random random = new Random(7);
+		int routes = 0;
+		for (int i = 0; i < 40; i++) {
+			Position from = new Position(50f + random.nextFloat() * 0.1f,
+					12f + random.nextFloat() * 0.1f);
+			Position to = new Position(50f + random.nextFloat() * 0.1f,
+					12f + random.nextFloat() * 0.1f);
+			for (int p = 0; p < profiles.length; p++) {
+				MapNode fromNode = map.getNearestWayNode(from, profiles[p]);
+				MapNode toNode = map.getNearestWayNode(to, profiles[p]);
+				boolean ignoreOneways = (p == 0);
+				List<Action> expected = search(new RouteFindingProblem(
+						fromNode, toNode, profiles[p], ignoreOneways), toNode);
+				List<Action> actual = search(new RoutingGraphProblem(fromNode,
+						toNode, graph, p, ignoreOneways), toNode);
+				Assert.assertEquals(expected.isEmpty(), actual.isEmpty());
+				Assert.assertEquals(TestMaps.getRouteLength(expected),
+						TestMaps.getRouteLength(actual), 1e-4);
+				if (!actual.isEmpty())
+					routes++;
+			}
+		}
+		Assert.assertTrue(routes > 80);
+	}
+
+	@Test
+	public void testCalculatorRecompilesAfterReload() {
+		CountingRouteCalculator calculator = new CountingRouteCalculator();
+		List<MapNode> markers = new ArrayList<MapNode>();
+		markers.add(map.getNode(TestMaps.getNodeId(SIZE, 0, 0)));
+		markers.add(map.getNode(TestMaps.getNodeId(SIZE, SIZE - 1, SIZE - 1)));
+		List<Position> route1 = calculator.calculateRoute(markers, map, 1);
+		calculator.calculateRoute(markers, map, 2);
+		Assert.assertEquals(1, calculator.compilations);
+		Assert.assertFalse(route1.isEmpty());
+
+		// markers and tracks do not invalidate the graph
+		map.addMarker(50.02f, 12.02f);
+		calculator.calculateRoute(markers, map, 1);
+		Assert.assertEquals(1, calculator.compilations);
+
+		TestMaps.readMap(TestMaps.createGridXml(SIZE, 11), map.getBuilder());
+		markers.set(0, map.getNode(markers.get(0).getId()));
+		markers.set(1, map.getNode(markers.get(1).getId()));
+		List<Position> route2 = calculator.calculateRoute(markers, map, 1);
+		Assert.assertEquals(2, calculator.compilations);
+		Assert.assertEquals(route1.size(), route2.size());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private List<Action> search(Problem problem, MapNode goal) {
+		try {
+			return new AStarSearch(new GraphSearch(),
+					new OsmSldHeuristicFunction(goal)).search(problem);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Counts the routing graph compilations. */
+	private static class CountingRouteCalculator extends RouteCalculator {
+		int compilations;
+
+		@Override
+		protected RoutingGraph createRoutingGraph(OsmMap map) {
+			compilations++;
+			return super.createRoutingGraph(map);
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package aimax.test.osm.unit.viewer;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+
+import javax.swing.JPanel;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.viewer.CoordTransformer;
+import aimax.osm.viewer.DefaultEntityRenderer;
+import aimax.osm.viewer.MapStyleFactory;
+import aimax.osm.viewer.swing.TileCache;
+import aimax.test.osm.unit.TestMaps;
+
+public class TileCacheTest {
+	private static final int TILE_SIZE = 32;
+
+	private DefaultMap map;
+	private DefaultEntityRenderer renderer;
+	private TileCache cache;
+	private CoordTransformer transformer;
+	private Graphics g;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(10, 3);
+		map.setEntityClassifier(new MapStyleFactory()
+				.createDefaultClassifier());
+		renderer = new DefaultEntityRenderer();
+		// memory budget for two tiles
+		cache = new TileCache(TILE_SIZE, 2 * 4L * TILE_SIZE * TILE_SIZE, 2,
+				new JPanel());
+		cache.reset(map, renderer);
+		transformer = new CoordTransformer();
+		transformer.adjustTransformation(map.getBoundingBox(), 200, 200);
+		// a view of one pixel shows exactly one tile
+		g = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB).getGraphics();
+	}
+
+	@After
+	public void tearDown() {
+		cache.shutdown();
+		g.dispose();
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws InterruptedException {
+		drawUntilComplete(); // tile A
+		Assert.assertEquals(1, cache.getCachedTileCount());
+		transformer.adjust(2 * TILE_SIZE, 0);
+		drawUntilComplete(); // tile B
+		Assert.assertEquals(2, cache.getCachedTileCount());
+		transformer.adjust(-2 * TILE_SIZE, 0);
+		Assert.assertTrue(draw()); // A is now more recently used than B
+		transformer.adjust(4 * TILE_SIZE, 0);
+		drawUntilComplete(); // tile C replaces B
+		Assert.assertEquals(2, cache.getCachedTileCount());
+		transformer.adjust(-4 * TILE_SIZE, 0);
+		Assert.assertTrue(draw());
+		transformer.adjust(2 * TILE_SIZE, 0);
+		Assert.assertFalse(draw());
+	}
+
+	@Test
+	public void testLevels() throws InterruptedException {
+		drawUntilComplete();
+		transformer.zoom(2f, 0, 0);
+		Assert.assertFalse(draw());
+		drawUntilComplete();
+		Assert.assertEquals(2, cache.getCachedTileCount());
+		transformer.zoom(0.5f, 0, 0);
+		Assert.assertTrue(draw());
+	}
+
+	@Test
+	public void testResetDiscardsTiles() throws InterruptedException {
+		drawUntilComplete();
+		Assert.assertEquals(1, cache.getCachedTileCount());
+		cache.reset(map, renderer);
+		Assert.assertEquals(0, cache.getCachedTileCount());
+		Assert.assertFalse(draw());
+		drawUntilComplete();
+		Assert.assertEquals(1, cache.getCachedTileCount());
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private boolean draw() {
+		return cache.drawTiles(g, transformer, 1, 1);
+	}
+
+	/** Requests the visible tiles until the background threads are done. */
+	private void drawUntilComplete() throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			if (draw())
+				return;
+			Thread.sleep(10);
+		}
+		Assert.fail("Tile rendering not completed.");
+	}
+}
@@ -0,0 +1,69 @@
+package aimax.test.osm.unit.writer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+
+import aimax.osm.data.MapBuilder;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.reader.OsmReader;
+import aimax.osm.writer.Bz2OsmWriter;
+import aimax.test.osm.unit.TestMaps;
+
+public class Bz2OsmWriterTest {
+
+	@Test
+	public void testWriteAndReadMap() throws Exception {
+		DefaultMap map = TestMaps.createGridMap(10, 5);
+		Bz2OsmWriter writer = new Bz2OsmWriter();
+		writer.setChunkSize(256);
+		writer.setQueueCapacity(2);
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		writer.writeMap(new OutputStreamWriter(writer
+				.createCompressionStream(os), "UTF-8"), map, map
+				.getBoundingBox());
+		InputStream is = new BZip2CompressorInputStream(
+				new ByteArrayInputStream(os.toByteArray()));
+		MapBuilder builder = new DefaultMap().getBuilder();
+		new OsmReader().readMap(is, builder);
+		OsmMap built = builder.buildMap();
+		Assert.assertEquals(map.getWayCount(), built.getWayCount());
+		Assert.assertEquals(map.getNodeCount(), built.getNodeCount());
+	}
+
+	@Test(timeout = 10000)
+	public void testWriteToFailingStream() throws Exception {
+		Bz2OsmWriter writer = new Bz2OsmWriter();
+		writer.setChunkSize(256);
+		writer.setQueueCapacity(2);
+		OutputStream os = writer.createCompressionStream(new OutputStream() {
+			private int count;
+
+			@Override
+			public void write(int b) throws IOException {
+				if (++count > 1000)
+					throw new IOException("Disk full.");
+			}
+		});
+		byte[] data = new byte[4096];
+		for (int i = 0; i < data.length; i++)
+			data[i] = (byte) (i * 31 + i / 7);
+		try {
+			// much more data than the compressor can buffer
+			for (int i = 0; i < 2000; i++)
+				os.write(data);
+			os.close();
+			Assert.fail("Write error not reported.");
+		} catch (IOException e) {
+			Assert.assertEquals("Disk full.", e.getMessage());
+		}
+	}
+}
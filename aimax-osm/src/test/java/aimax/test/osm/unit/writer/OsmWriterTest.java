@@ -0,0 +1,95 @@
+package aimax.test.osm.unit.writer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStreamWriter;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import aimax.osm.data.BoundingBox;
+import aimax.osm.data.OsmMap;
+import aimax.osm.data.entities.MapNode;
+import aimax.osm.data.entities.MapWay;
+import aimax.osm.data.impl.DefaultMap;
+import aimax.osm.writer.OsmWriter;
+import aimax.test.osm.unit.TestMaps;
+
+public class OsmWriterTest {
+
+	private DefaultMap map;
+
+	@Before
+	public void setUp() {
+		map = TestMaps.createGridMap(12, 3);
+	}
+
+	@Test
+	public void testWriteAndReadMap() throws Exception {
+		BoundingBox bb = map.getBoundingBox();
+		OsmMap result = writeAndRead(bb);
+		Assert.assertEquals(map.getWayCount(), result.getWayCount());
+		Assert.assertEquals(map.getNodeCount(), result.getNodeCount());
+		Assert.assertEquals(map.getPoiCount(), result.getPoiCount());
+		assertEntitiesEqual(map, result, bb);
+	}
+
+	@Test
+	public void testWriteAndReadRegion() throws Exception {
+		BoundingBox bb = new BoundingBox(50.025f, 12.025f, 50.055f, 12.065f);
+		OsmMap result = writeAndRead(bb);
+		assertEntitiesEqual(map, result, bb);
+	}
+
+	//
+	// PRIVATE METHODS
+	//
+
+	private OsmMap writeAndRead(BoundingBox bb) throws Exception {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		new OsmWriter().writeMap(new OutputStreamWriter(os, "UTF-8"), map, bb);
+		return TestMaps.readMap(os.toString("UTF-8"), new DefaultMap()
+				.getBuilder());
+	}
+
+	/**
+	 * Checks that the result contains exactly the ways which intersect the
+	 * region, with all their nodes, and the points of interest inside.
+	 */
+	private void assertEntitiesEqual(OsmMap expected, OsmMap result,
+			BoundingBox bb) {
+		Set<Long> wayIds = new HashSet<Long>();
+		for (MapWay way : expected.getWays(bb)) {
+			if (!way.computeBoundingBox().intersectsWith(bb))
+				continue;
+			wayIds.add(way.getId());
+			MapWay way2 = result.getWay(way.getId());
+			Assert.assertNotNull(way2);
+			Assert.assertEquals(way.getName(), way2.getName());
+			Assert.assertArrayEquals(way.getAttributes(), way2.getAttributes());
+			Assert.assertEquals(way.getNodes().size(), way2.getNodes().size());
+			for (int i = 0; i < way.getNodes().size(); i++)
+				assertNodesEqual(way.getNodes().get(i), way2.getNodes().get(i));
+		}
+		Assert.assertFalse(wayIds.isEmpty());
+		Assert.assertEquals(wayIds.size(), result.getWayCount());
+		int poiCount = 0;
+		for (MapNode poi : expected.getPois(bb)) {
+			if (bb.isInside(poi.getLat(), poi.getLon())) {
+				assertNodesEqual(poi, result.getNode(poi.getId()));
+				poiCount++;
+			}
+		}
+		Assert.assertEquals(poiCount, result.getPoiCount());
+	}
+
+	private void assertNodesEqual(MapNode node1, MapNode node2) {
+		Assert.assertNotNull(node2);
+		Assert.assertEquals(node1.getName(), node2.getName());
+		Assert.assertEquals(node1.getLat(), node2.getLat(), 0.0);
+		Assert.assertEquals(node1.getLon(), node2.getLon(), 0.0);
+		Assert.assertArrayEquals(node1.getAttributes(), node2.getAttributes());
+	}
+}